@@ -0,0 +1,73 @@
+package com.stripe.net;
+
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.model.Charge;
+import com.stripe.model.SubscriptionItem;
+import com.stripe.model.UsageRecord;
+import com.stripe.model.issuing.Card;
+
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building resource URLs, as every {@code retrieve} or {@code create} does.
+ * {@code regexInstanceUrl} derives the path with regular expressions and {@code String.format}
+ * on each call, as the library used to, for comparison with {@code instanceUrl}.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ApiResourceUrlBenchmark {
+  private static final String API_BASE = "https://api.stripe.com";
+
+  @Benchmark
+  public String classUrl() {
+    return ApiResource.classUrl(Charge.class, API_BASE);
+  }
+
+  @Benchmark
+  public String instanceUrl() throws InvalidRequestException {
+    return ApiResource.instanceUrl(Charge.class, "ch_123", API_BASE);
+  }
+
+  @Benchmark
+  public String namespacedInstanceUrl() throws InvalidRequestException {
+    return ApiResource.instanceUrl(Card.class, "ic_123", API_BASE);
+  }
+
+  @Benchmark
+  public String subresourceUrl() throws InvalidRequestException {
+    return ApiResource.subresourceUrl(SubscriptionItem.class, "si_123", UsageRecord.class);
+  }
+
+  /**
+   * Builds {@code instanceUrl(Charge.class, "ch_123")} the way the library used to.
+   */
+  @Benchmark
+  public String regexInstanceUrl() throws UnsupportedEncodingException {
+    String className = Charge.class.getSimpleName()
+        .replaceAll("(.)([A-Z][a-z]+)", "$1_$2")
+        .replaceAll("([a-z0-9])([A-Z])", "$1_$2")
+        .toLowerCase();
+    if (Charge.class.getName().contains("com.stripe.model.issuing.")) {
+      className = "issuing/" + className;
+    }
+    String classUrl = String.format("%ss", String.format("%s/v1/%s", API_BASE, className));
+    return String.format("%s/%s", classUrl, ApiResource.urlEncode("ch_123"));
+  }
+}
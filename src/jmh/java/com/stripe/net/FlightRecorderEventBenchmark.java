@@ -0,0 +1,75 @@
+package com.stripe.net;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures what the JFR events cost a request. {@code untraced} and {@code beginNotRecorded} run
+ * without a recording and should match {@code baseline}; the {@code recording} variants run with
+ * {@code -XX:StartFlightRecording}, on JVMs with JFR.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FlightRecorderEventBenchmark {
+  private static final String URL = "https://api.stripe.com/v1/customers/cus_123";
+  private static final String BODY = "{\"id\": \"cus_123\", \"object\": \"customer\"}";
+
+  @Benchmark
+  public void baseline(Blackhole blackhole) {
+    blackhole.consume(URL);
+  }
+
+  @Benchmark
+  public void beginNotRecorded(Blackhole blackhole) {
+    blackhole.consume(FlightRecorderEvent.API_REQUEST.begin());
+  }
+
+  @Benchmark
+  public void untraced(Blackhole blackhole) {
+    blackhole.consume(trace());
+  }
+
+  /**
+   * Records one event, for comparison with the cost of not recording it.
+   */
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "-XX:StartFlightRecording=disk=false")
+  public void beginRecording(Blackhole blackhole) {
+    Object event = FlightRecorderEvent.API_REQUEST.begin();
+    FlightRecorderEvent.API_REQUEST.commit(event, "GET", "/v1/customers/{id}", 200, "req_123",
+        0L, 42L);
+    blackhole.consume(event);
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "-XX:StartFlightRecording=disk=false")
+  public void tracedRecording(Blackhole blackhole) {
+    blackhole.consume(trace());
+  }
+
+  private static RequestTrace trace() {
+    RequestTrace trace = RequestTrace.start(null, ApiResource.RequestMethod.GET, URL, null);
+    trace.encoded(0);
+    trace.connected();
+    trace.firstByte(200, "req_123");
+    trace.bodyRead(BODY);
+    trace.deserialized();
+    return trace;
+  }
+}
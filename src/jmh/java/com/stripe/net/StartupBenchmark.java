@@ -0,0 +1,43 @@
+package com.stripe.net;
+
+import com.stripe.model.Customer;
+import com.stripe.model.Event;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long a fresh JVM takes to parse its first response, including loading the
+ * library's classes and setting up {@link ApiResource#GSON}. Each fork measures a single call,
+ * so that nothing is loaded or initialized beforehand.
+ *
+ * <p>Run with {@code ./gradlew jmh}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+  private static final String CUSTOMER = "{\"id\": \"cus_123\", \"object\": \"customer\"}";
+  private static final String EVENT = "{\"id\": \"evt_123\", \"object\": \"event\", "
+      + "\"type\": \"charge.succeeded\", \"data\": {\"object\": "
+      + "{\"id\": \"ch_123\", \"object\": \"charge\", \"amount\": 100}}}";
+
+  @Benchmark
+  public Customer firstResponse() {
+    return ApiResource.GSON.fromJson(CUSTOMER, Customer.class);
+  }
+
+  @Benchmark
+  public Event firstEvent() {
+    return ApiResource.GSON.fromJson(EVENT, Event.class);
+  }
+}
@@ -1,5 +1,11 @@
 package com.stripe;
 
+import com.stripe.net.CompositeRequestListener;
+import com.stripe.net.ObjectCache;
+import com.stripe.net.RateLimiter;
+import com.stripe.net.RequestCoalescer;
+import com.stripe.net.RequestListener;
+
 import java.net.PasswordAuthentication;
 import java.net.Proxy;
 
@@ -34,6 +40,12 @@ public abstract class Stripe {
 
   private static volatile Map<String, String> appInfo = null;
 
+  private static volatile RateLimiter rateLimiter = null;
+  private static volatile RequestCoalescer requestCoalescer = null;
+  private static volatile ObjectCache objectCache = null;
+  private static volatile RequestListener requestListener = null;
+  private static volatile boolean telemetryEnabled = false;
+
 
   /**
    * (FOR TESTING ONLY) If you'd like your API requests to hit your own
@@ -146,6 +158,93 @@ public abstract class Stripe {
     return proxyCredential;
   }
 
+  /**
+   * Sets a client-side rate limiter that every API request has to go through before being sent.
+   * Pass {@code null} to disable rate limiting, which is the default.
+   *
+   * @param limiter the limiter shared by all requests
+   */
+  public static void setRateLimiter(final RateLimiter limiter) {
+    rateLimiter = limiter;
+  }
+
+  public static RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /**
+   * Sets a coalescer that lets concurrent identical {@code GET} requests share one HTTP call.
+   * Pass {@code null} to send every request on its own, which is the default.
+   *
+   * @param coalescer the coalescer shared by all requests
+   */
+  public static void setRequestCoalescer(final RequestCoalescer coalescer) {
+    requestCoalescer = coalescer;
+  }
+
+  public static RequestCoalescer getRequestCoalescer() {
+    return requestCoalescer;
+  }
+
+  /**
+   * Sets a cache that answers {@code retrieve} calls on selected resource classes without going
+   * to the network. Pass {@code null} to disable caching, which is the default.
+   *
+   * @param cache the cache shared by all requests
+   */
+  public static void setObjectCache(final ObjectCache cache) {
+    objectCache = cache;
+  }
+
+  public static ObjectCache getObjectCache() {
+    return objectCache;
+  }
+
+  /**
+   * Sets a listener notified of the phases of every API request, for instance to record
+   * latencies, replacing the listeners installed so far. Pass {@code null} to remove them, which is
+   * the default.
+   *
+   * @param listener the listener called for all requests
+   * @see #addRequestListener(RequestListener)
+   */
+  public static void setRequestListener(final RequestListener listener) {
+    synchronized (Stripe.class) {
+      requestListener = listener;
+    }
+  }
+
+  /**
+   * Adds a listener notified of the phases of every API request, after the listeners installed so
+   * far.
+   *
+   * @param listener the listener called for all requests
+   */
+  public static void addRequestListener(final RequestListener listener) {
+    synchronized (Stripe.class) {
+      requestListener = CompositeRequestListener.combine(requestListener, listener);
+    }
+  }
+
+  public static RequestListener getRequestListener() {
+    return requestListener;
+  }
+
+  /**
+   * Enables sending Stripe the {@code Request-Id} and duration of completed requests, in an
+   * {@code X-Stripe-Client-Telemetry} header of the following requests, so that the latency seen
+   * by the client can be correlated with Stripe's. Disabled by default.
+   *
+   * @param enabled whether to report request metrics
+   */
+  public static void setTelemetryEnabled(final boolean enabled) {
+    telemetryEnabled = enabled;
+  }
+
+  public static boolean isTelemetryEnabled() {
+    return telemetryEnabled;
+  }
+
   public static void setAppInfo(String name) {
     setAppInfo(name, null, null, null);
   }
@@ -0,0 +1,352 @@
+package com.stripe.bulk;
+
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import com.stripe.net.RequestOptions;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs one API operation over a stream of parameter maps with bounded concurrency.
+ *
+ * <p>Inputs are pulled from the iterator only when a worker is free, so arbitrarily large inputs
+ * can be processed without being loaded into memory. Every item is sent with its own idempotency
+ * key, derived from the run's key prefix and the item's position, so retries, and re-runs with
+ * the same prefix, never apply an item twice.
+ *
+ * <p>Requests rejected with a {@link RateLimitException} are retried with exponential backoff,
+ * and the number of items in flight is halved. It then grows back by one for each window of
+ * successful requests.
+ *
+ * <p><pre>
+ * {@code
+ * BulkReport<Refund> report = BulkExecutor.builder()
+ *     .setConcurrency(8)
+ *     .build()
+ *     .execute(refundParams.iterator(), new BulkOperation<Refund>() {
+ *       public Refund execute(Map<String, Object> params, RequestOptions options)
+ *           throws StripeException {
+ *         return Refund.create(params, options);
+ *       }
+ *     });
+ * }
+ * </pre>
+ */
+public class BulkExecutor {
+  private final int concurrency;
+  private final int maxRetries;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final String idempotencyKeyPrefix;
+  private final RequestOptions requestOptions;
+
+  private BulkExecutor(int concurrency, int maxRetries, long initialBackoffMillis,
+      long maxBackoffMillis, String idempotencyKeyPrefix, RequestOptions requestOptions) {
+    this.concurrency = concurrency;
+    this.maxRetries = maxRetries;
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.idempotencyKeyPrefix = idempotencyKeyPrefix;
+    this.requestOptions = requestOptions;
+  }
+
+  public static BulkExecutorBuilder builder() {
+    return new BulkExecutorBuilder();
+  }
+
+  public String getIdempotencyKeyPrefix() {
+    return idempotencyKeyPrefix;
+  }
+
+  /**
+   * Runs {@code operation} once per input and collects every result in the returned report.
+   */
+  public <T> BulkReport<T> execute(Iterator<? extends Map<String, Object>> inputs,
+      BulkOperation<T> operation) throws InterruptedException {
+    return execute(inputs, operation, null);
+  }
+
+  /**
+   * Runs {@code operation} once per input, handing each result to {@code handler} as soon as it
+   * is available. Results are not retained in the returned report, which keeps memory use
+   * independent of the input size.
+   *
+   * @param inputs parameter maps, consumed lazily
+   * @param operation API call to make for each input
+   * @param handler receives every per-item result; if {@code null}, results are retained in the
+   *     report instead
+   * @return the run summary, once every item has completed
+   * @throws InterruptedException if the calling thread is interrupted while waiting for capacity
+   */
+  public <T> BulkReport<T> execute(Iterator<? extends Map<String, Object>> inputs,
+      BulkOperation<T> operation, BulkResultHandler<T> handler) throws InterruptedException {
+    final long start = System.nanoTime();
+    final Run<T> run = new Run<>(operation, handler);
+    final ExecutorService pool = Executors.newFixedThreadPool(concurrency, new WorkerFactory());
+
+    try {
+      long index = 0;
+      while (inputs.hasNext()) {
+        // backpressure: don't pull the next input until a worker can take it
+        run.limit.acquire();
+        final Map<String, Object> params = inputs.next();
+        final long itemIndex = index++;
+        try {
+          pool.execute(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                run.process(itemIndex, params);
+              } finally {
+                run.limit.release();
+              }
+            }
+          });
+        } catch (RuntimeException e) {
+          run.limit.release();
+          throw e;
+        }
+      }
+      run.limit.awaitIdle();
+    } finally {
+      pool.shutdown();
+    }
+
+    return new BulkReport<>(run.successCount.get(), run.failureCount.get(),
+        run.rateLimitedCount.get(), System.nanoTime() - start, run.results);
+  }
+
+  private final class Run<T> {
+    final BulkOperation<T> operation;
+    final BulkResultHandler<T> handler;
+    final AdaptiveLimit limit = new AdaptiveLimit(concurrency);
+    final List<BulkResult<T>> results = new ArrayList<>();
+    final AtomicLong successCount = new AtomicLong();
+    final AtomicLong failureCount = new AtomicLong();
+    final AtomicLong rateLimitedCount = new AtomicLong();
+    final Random random = new Random();
+
+    Run(BulkOperation<T> operation, BulkResultHandler<T> handler) {
+      this.operation = operation;
+      this.handler = handler;
+    }
+
+    void process(long index, Map<String, Object> params) {
+      final String idempotencyKey = idempotencyKeyPrefix + "-" + index;
+      final RequestOptions options = withIdempotencyKey(requestOptions, idempotencyKey);
+
+      int attempts = 0;
+      BulkResult<T> result;
+      while (true) {
+        attempts++;
+        try {
+          T value = operation.execute(params, options);
+          limit.onSuccess();
+          result = new BulkResult<>(index, params, idempotencyKey, attempts, value, null);
+          break;
+        } catch (RateLimitException e) {
+          rateLimitedCount.incrementAndGet();
+          limit.onThrottled();
+          if (attempts > maxRetries || !sleepBeforeRetry(attempts)) {
+            result = new BulkResult<>(index, params, idempotencyKey, attempts, null, e);
+            break;
+          }
+        } catch (StripeException | RuntimeException e) {
+          result = new BulkResult<>(index, params, idempotencyKey, attempts, null, e);
+          break;
+        }
+      }
+
+      if (result.isSuccess()) {
+        successCount.incrementAndGet();
+      } else {
+        failureCount.incrementAndGet();
+      }
+      report(result);
+    }
+
+    private synchronized void report(BulkResult<T> result) {
+      if (handler != null) {
+        handler.onResult(result);
+      } else {
+        results.add(result);
+      }
+    }
+
+    private boolean sleepBeforeRetry(int attempts) {
+      long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts - 1, 20));
+      double jitter;
+      synchronized (random) {
+        jitter = 0.5 + random.nextDouble() / 2;
+      }
+      try {
+        Thread.sleep((long) (backoff * jitter));
+        return true;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+  }
+
+  private static RequestOptions withIdempotencyKey(RequestOptions base, String idempotencyKey) {
+    if (base == null) {
+      base = RequestOptions.getDefault();
+    }
+    return RequestOptions.builder()
+        .setApiKey(base.getApiKey())
+        .setClientId(base.getClientId())
+        .setStripeVersion(base.getStripeVersion())
+        .setStripeAccount(base.getStripeAccount())
+        .setConnectTimeout(base.getConnectTimeout())
+        .setReadTimeout(base.getReadTimeout())
+        .setIdempotencyKey(idempotencyKey)
+        .build();
+  }
+
+  /**
+   * Concurrency limit that is halved on every rate limited request and grows back by one after
+   * as many consecutive successes as the current limit.
+   */
+  static final class AdaptiveLimit {
+    private final int max;
+    private int limit;
+    private int inFlight;
+    private int successes;
+
+    AdaptiveLimit(int max) {
+      this.max = max;
+      this.limit = max;
+    }
+
+    synchronized void acquire() throws InterruptedException {
+      while (inFlight >= limit) {
+        wait();
+      }
+      inFlight++;
+    }
+
+    synchronized void release() {
+      inFlight--;
+      notifyAll();
+    }
+
+    synchronized void onSuccess() {
+      if (limit < max && ++successes >= limit) {
+        limit++;
+        successes = 0;
+        notifyAll();
+      }
+    }
+
+    synchronized void onThrottled() {
+      limit = Math.max(1, limit / 2);
+      successes = 0;
+    }
+
+    synchronized int getLimit() {
+      return limit;
+    }
+
+    synchronized void awaitIdle() throws InterruptedException {
+      while (inFlight > 0) {
+        wait();
+      }
+    }
+  }
+
+  private static final class WorkerFactory implements ThreadFactory {
+    private static final AtomicInteger poolNumber = new AtomicInteger();
+    private final int pool = poolNumber.incrementAndGet();
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r,
+          String.format("stripe-bulk-%d-%d", pool, threadNumber.incrementAndGet()));
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  public static final class BulkExecutorBuilder {
+    private int concurrency = 4;
+    private int maxRetries = 5;
+    private long initialBackoffMillis = 500;
+    private long maxBackoffMillis = 30 * 1000;
+    private String idempotencyKeyPrefix;
+    private RequestOptions requestOptions;
+
+    /**
+     * Sets the maximum number of requests in flight. Defaults to 4.
+     */
+    public BulkExecutorBuilder setConcurrency(int concurrency) {
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    /**
+     * Sets how many times a rate limited item is retried before it is reported as failed.
+     * Defaults to 5.
+     */
+    public BulkExecutorBuilder setMaxRetries(int maxRetries) {
+      this.maxRetries = maxRetries;
+      return this;
+    }
+
+    /**
+     * Sets the backoff before the first retry of a rate limited item and the cap on subsequent,
+     * exponentially growing backoffs. Defaults to 500ms and 30s.
+     */
+    public BulkExecutorBuilder setBackoff(long initialBackoffMillis, long maxBackoffMillis) {
+      this.initialBackoffMillis = initialBackoffMillis;
+      this.maxBackoffMillis = maxBackoffMillis;
+      return this;
+    }
+
+    /**
+     * Sets the prefix of the generated idempotency keys. Reusing the prefix of an interrupted run
+     * makes it safe to replay the same inputs: items that already went through are answered from
+     * Stripe's idempotency cache instead of being applied again. Defaults to a random UUID.
+     */
+    public BulkExecutorBuilder setIdempotencyKeyPrefix(String idempotencyKeyPrefix) {
+      this.idempotencyKeyPrefix = idempotencyKeyPrefix;
+      return this;
+    }
+
+    /**
+     * Sets the request options (API key, Stripe account, ...) used for every item. Any
+     * idempotency key they carry is replaced by the per-item key.
+     */
+    public BulkExecutorBuilder setRequestOptions(RequestOptions requestOptions) {
+      this.requestOptions = requestOptions;
+      return this;
+    }
+
+    /**
+     * Constructs a {@link BulkExecutor} with the specified values.
+     */
+    public BulkExecutor build() {
+      if (concurrency < 1) {
+        throw new IllegalArgumentException("Concurrency must be at least 1");
+      }
+      if (maxRetries < 0) {
+        throw new IllegalArgumentException("Max retries must not be negative");
+      }
+      String prefix = (idempotencyKeyPrefix != null)
+          ? idempotencyKeyPrefix : UUID.randomUUID().toString();
+      return new BulkExecutor(concurrency, maxRetries, initialBackoffMillis, maxBackoffMillis,
+          prefix, requestOptions);
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package com.stripe.bulk;
+
+import com.stripe.exception.StripeException;
+import com.stripe.net.RequestOptions;
+
+import java.util.Map;
+
+/**
+ * A single API call applied to every input of a {@link BulkExecutor} run, for example:
+ *
+ * <p><pre>
+ * {@code
+ * new BulkOperation<Refund>() {
+ *   public Refund execute(Map<String, Object> params, RequestOptions options)
+ *       throws StripeException {
+ *     return Refund.create(params, options);
+ *   }
+ * }
+ * }
+ * </pre>
+ *
+ * <p>Implementations must pass {@code options} through to the API call so that the idempotency
+ * key assigned to the item is used. They are invoked concurrently from several threads.
+ */
+public interface BulkOperation<T> {
+  T execute(Map<String, Object> params, RequestOptions options) throws StripeException;
+}
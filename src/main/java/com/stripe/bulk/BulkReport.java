@@ -0,0 +1,51 @@
+package com.stripe.bulk;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of a {@link BulkExecutor} run.
+ */
+public final class BulkReport<T> {
+  private final long successCount;
+  private final long failureCount;
+  private final long rateLimitedCount;
+  private final long elapsedNanos;
+  private final List<BulkResult<T>> results;
+
+  BulkReport(long successCount, long failureCount, long rateLimitedCount, long elapsedNanos,
+      List<BulkResult<T>> results) {
+    this.successCount = successCount;
+    this.failureCount = failureCount;
+    this.rateLimitedCount = rateLimitedCount;
+    this.elapsedNanos = elapsedNanos;
+    this.results = results;
+  }
+
+  public long getSuccessCount() {
+    return successCount;
+  }
+
+  public long getFailureCount() {
+    return failureCount;
+  }
+
+  /**
+   * Returns the number of requests that were rejected with a {@code 429} and retried.
+   */
+  public long getRateLimitedCount() {
+    return rateLimitedCount;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Returns every per-item result in completion order. Results are only retained when the run
+   * was started without a {@link BulkResultHandler}; otherwise this list is empty.
+   */
+  public List<BulkResult<T>> getResults() {
+    return Collections.unmodifiableList(results);
+  }
+}
@@ -0,0 +1,67 @@
+package com.stripe.bulk;
+
+import java.util.Map;
+
+/**
+ * Outcome of a single item of a {@link BulkExecutor} run.
+ */
+public final class BulkResult<T> {
+  private final long index;
+  private final Map<String, Object> params;
+  private final String idempotencyKey;
+  private final int attempts;
+  private final T value;
+  private final Exception error;
+
+  BulkResult(long index, Map<String, Object> params, String idempotencyKey, int attempts,
+      T value, Exception error) {
+    this.index = index;
+    this.params = params;
+    this.idempotencyKey = idempotencyKey;
+    this.attempts = attempts;
+    this.value = value;
+    this.error = error;
+  }
+
+  /**
+   * Returns the zero-based position of the item in the input.
+   */
+  public long getIndex() {
+    return index;
+  }
+
+  public Map<String, Object> getParams() {
+    return params;
+  }
+
+  public String getIdempotencyKey() {
+    return idempotencyKey;
+  }
+
+  /**
+   * Returns the number of requests made for this item, including retries after rate limiting.
+   */
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  /**
+   * Returns the value returned by the operation, or {@code null} if the item failed.
+   */
+  public T getValue() {
+    return value;
+  }
+
+  /**
+   * Returns the exception that made the item fail, or {@code null} if it succeeded. This is
+   * normally a {@link com.stripe.exception.StripeException}, but unchecked exceptions thrown by
+   * the operation are reported here as well.
+   */
+  public Exception getError() {
+    return error;
+  }
+}
@@ -0,0 +1,10 @@
+package com.stripe.bulk;
+
+/**
+ * Receives the outcome of each item of a {@link BulkExecutor} run as soon as it completes. Calls
+ * are serialized, so implementations don't need to be thread-safe, but they should return quickly
+ * as they hold up the reporting of other items.
+ */
+public interface BulkResultHandler<T> {
+  void onResult(BulkResult<T> result);
+}
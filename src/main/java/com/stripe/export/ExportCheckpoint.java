@@ -0,0 +1,12 @@
+package com.stripe.export;
+
+/**
+ * Receives progress from {@link ListExporter} after every page has been flushed to the output.
+ * Persisting {@link ExportStats#getCursor()} and {@link ExportStats#getOutputLength()} here allows
+ * an interrupted export to be resumed with
+ * {@link ExportOptions.ExportOptionsBuilder#setStartingAfter(String)} and
+ * {@link ExportOptions.ExportOptionsBuilder#setOutputLength(long)}.
+ */
+public interface ExportCheckpoint {
+  void onPage(ExportStats stats);
+}
@@ -0,0 +1,16 @@
+package com.stripe.export;
+
+/**
+ * Output formats supported by {@link ListExporter}.
+ */
+public enum ExportFormat {
+  /**
+   * Newline-delimited JSON: one compact JSON object per line.
+   */
+  NDJSON,
+
+  /**
+   * RFC 4180 comma-separated values with a header row.
+   */
+  CSV
+}
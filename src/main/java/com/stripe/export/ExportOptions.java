@@ -0,0 +1,168 @@
+package com.stripe.export;
+
+import com.stripe.net.RequestOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings for a {@link ListExporter} run.
+ */
+public final class ExportOptions {
+  private final ExportFormat format;
+  private final List<String> columns;
+  private final boolean gzip;
+  private final Map<String, Object> params;
+  private final RequestOptions requestOptions;
+  private final String startingAfter;
+  private final long outputLength;
+  private final ExportCheckpoint checkpoint;
+
+  private ExportOptions(ExportFormat format, List<String> columns, boolean gzip,
+      Map<String, Object> params, RequestOptions requestOptions, String startingAfter,
+      long outputLength, ExportCheckpoint checkpoint) {
+    this.format = format;
+    this.columns = columns;
+    this.gzip = gzip;
+    this.params = params;
+    this.requestOptions = requestOptions;
+    this.startingAfter = startingAfter;
+    this.outputLength = outputLength;
+    this.checkpoint = checkpoint;
+  }
+
+  public ExportFormat getFormat() {
+    return format;
+  }
+
+  /**
+   * Returns the selected columns as dotted attribute paths (e.g. {@code billing_details.name}),
+   * or {@code null} if every attribute should be exported.
+   */
+  public List<String> getColumns() {
+    return columns;
+  }
+
+  public boolean isGzip() {
+    return gzip;
+  }
+
+  public Map<String, Object> getParams() {
+    return params;
+  }
+
+  public RequestOptions getRequestOptions() {
+    return requestOptions;
+  }
+
+  public String getStartingAfter() {
+    return startingAfter;
+  }
+
+  /**
+   * Returns the length of the output at the checkpoint being resumed from, or -1 if unset.
+   */
+  public long getOutputLength() {
+    return outputLength;
+  }
+
+  public ExportCheckpoint getCheckpoint() {
+    return checkpoint;
+  }
+
+  public static ExportOptionsBuilder builder() {
+    return new ExportOptionsBuilder();
+  }
+
+  public static final class ExportOptionsBuilder {
+    private ExportFormat format = ExportFormat.NDJSON;
+    private List<String> columns;
+    private boolean gzip;
+    private Map<String, Object> params;
+    private RequestOptions requestOptions;
+    private String startingAfter;
+    private long outputLength = -1;
+    private ExportCheckpoint checkpoint;
+
+    public ExportOptionsBuilder setFormat(ExportFormat format) {
+      this.format = format;
+      return this;
+    }
+
+    /**
+     * Restricts the export to the given attributes. Nested attributes are selected with dotted
+     * paths such as {@code outcome.risk_level}. For CSV exports the list also determines the
+     * header row; when unset, the top-level scalar attributes of the first object are used.
+     * Resumed CSV exports must set the columns of the original export, as no header is written.
+     */
+    public ExportOptionsBuilder setColumns(List<String> columns) {
+      this.columns = (columns == null) ? null
+          : Collections.unmodifiableList(new ArrayList<>(columns));
+      return this;
+    }
+
+    /**
+     * Compresses the output with gzip. Every page is written as its own gzip member, so the output
+     * is complete up to the last checkpoint if the export is interrupted, and resuming into the
+     * same file appends further members, which standard gzip readers decode as a single stream.
+     */
+    public ExportOptionsBuilder setGzip(boolean gzip) {
+      this.gzip = gzip;
+      return this;
+    }
+
+    /**
+     * Sets the list parameters (e.g. {@code created} filters) sent with every page request.
+     */
+    public ExportOptionsBuilder setParams(Map<String, Object> params) {
+      this.params = params;
+      return this;
+    }
+
+    public ExportOptionsBuilder setRequestOptions(RequestOptions requestOptions) {
+      this.requestOptions = requestOptions;
+      return this;
+    }
+
+    /**
+     * Resumes an export after the object with the given ID, typically the last cursor reported
+     * to an {@link ExportCheckpoint}.
+     */
+    public ExportOptionsBuilder setStartingAfter(String startingAfter) {
+      this.startingAfter = startingAfter;
+      return this;
+    }
+
+    /**
+     * Sets the length of the output at the checkpoint being resumed from, as reported by
+     * {@link ExportStats#getOutputLength()}. Required to resume into a file, which is truncated to
+     * this length before appending, so that a page that failed halfway leaves nothing behind.
+     */
+    public ExportOptionsBuilder setOutputLength(long outputLength) {
+      this.outputLength = outputLength;
+      return this;
+    }
+
+    public ExportOptionsBuilder setCheckpoint(ExportCheckpoint checkpoint) {
+      this.checkpoint = checkpoint;
+      return this;
+    }
+
+    /**
+     * Constructs an {@link ExportOptions} with the specified values.
+     */
+    public ExportOptions build() {
+      if (format == null) {
+        throw new IllegalArgumentException("An export format is required");
+      }
+      if (format == ExportFormat.CSV && startingAfter != null && columns == null) {
+        throw new IllegalArgumentException(
+            "Resuming a CSV export requires the columns of the original export");
+      }
+      return new ExportOptions(format, columns, gzip, params, requestOptions, startingAfter,
+          outputLength, checkpoint);
+    }
+  }
+}
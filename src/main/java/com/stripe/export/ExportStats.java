@@ -0,0 +1,102 @@
+package com.stripe.export;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable snapshot of the progress of an export.
+ */
+public final class ExportStats {
+  private final long objectCount;
+  private final long pageCount;
+  private final long bytesRead;
+  private final long bytesWritten;
+  private final long elapsedNanos;
+  private final String cursor;
+  private final long outputLength;
+
+  ExportStats(long objectCount, long pageCount, long bytesRead, long bytesWritten,
+      long elapsedNanos, String cursor, long outputLength) {
+    this.objectCount = objectCount;
+    this.pageCount = pageCount;
+    this.bytesRead = bytesRead;
+    this.bytesWritten = bytesWritten;
+    this.elapsedNanos = elapsedNanos;
+    this.cursor = cursor;
+    this.outputLength = outputLength;
+  }
+
+  public long getObjectCount() {
+    return objectCount;
+  }
+
+  public long getPageCount() {
+    return pageCount;
+  }
+
+  /**
+   * Returns the number of response body bytes read from the API.
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * Returns the number of bytes handed to the output stream, before any compression.
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Returns the ID of the last object written. Passing it as the {@code starting_after} cursor
+   * of a new export resumes right after it.
+   */
+  public String getCursor() {
+    return cursor;
+  }
+
+  /**
+   * Returns the length of the output up to the end of the last page, compression included. For a
+   * file export, this is the length of the file. Resuming with
+   * {@link ExportOptions.ExportOptionsBuilder#setOutputLength(long)} set to it discards whatever a
+   * failed page left after it.
+   */
+  public long getOutputLength() {
+    return outputLength;
+  }
+
+  /**
+   * Returns the average number of objects exported per second.
+   */
+  public double getObjectsPerSecond() {
+    return perSecond(objectCount);
+  }
+
+  /**
+   * Returns the average number of response bytes read per second.
+   */
+  public double getBytesPerSecond() {
+    return perSecond(bytesRead);
+  }
+
+  private double perSecond(long count) {
+    if (elapsedNanos <= 0) {
+      return 0.0;
+    }
+    return count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "<ExportStats objects=%d pages=%d bytesRead=%d bytesWritten=%d elapsedMs=%d "
+            + "objectsPerSecond=%.1f bytesPerSecond=%.1f cursor=%s outputLength=%d>",
+        objectCount, pageCount, bytesRead, bytesWritten,
+        TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getObjectsPerSecond(), getBytesPerSecond(),
+        cursor, outputLength);
+  }
+}
@@ -0,0 +1,563 @@
+package com.stripe.export;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.net.ApiResource;
+import com.stripe.net.StripeResponseStream;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Dumps every object of a list endpoint to NDJSON or CSV.
+ *
+ * <p>Pages are read straight off the HTTP response body and written to the output as they
+ * arrive; no model objects are built. Without column selection, NDJSON records are copied token
+ * by token, so the exported JSON is exactly what the API returned, minus whitespace.
+ *
+ * <p><pre>
+ * {@code
+ * ExportOptions options = ExportOptions.builder()
+ *     .setFormat(ExportFormat.CSV)
+ *     .setColumns(Arrays.asList("id", "amount", "currency", "customer"))
+ *     .setGzip(true)
+ *     .build();
+ * ExportStats stats = new ListExporter(options).export("/v1/charges", new File("charges.csv.gz"));
+ * }
+ * </pre>
+ */
+public class ListExporter {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // unlike ApiResource.GSON, keeps explicit nulls so projected records have a stable shape
+  private static final Gson NULL_PRESERVING_GSON = new GsonBuilder().serializeNulls().create();
+
+  private final ExportOptions options;
+
+  public ListExporter(ExportOptions options) {
+    this.options = options;
+  }
+
+  /**
+   * Exports the list at {@code path} into {@code file}. If the options carry a
+   * {@code starting_after} cursor the export is treated as a resumption: the file is truncated to
+   * the output length of the checkpoint, which the options must carry too, then appended to, and
+   * no CSV header is written.
+   *
+   * @param path API path of the list endpoint (e.g. {@code /v1/charges}), or an absolute URL
+   * @param file destination file
+   * @return the final export statistics
+   */
+  public ExportStats export(String path, File file) throws StripeException, IOException {
+    boolean append = options.getStartingAfter() != null;
+    if (append && options.getOutputLength() < 0) {
+      throw new IllegalArgumentException(
+          "Resuming an export into a file requires the output length of the checkpoint");
+    }
+    try (FileOutputStream fileOut = new FileOutputStream(file, append)) {
+      if (append) {
+        FileChannel channel = fileOut.getChannel();
+        if (channel.size() < options.getOutputLength()) {
+          throw new IOException(String.format(
+              "%s is shorter than the output length of the checkpoint (%d bytes)", file,
+              options.getOutputLength()));
+        }
+        // drops what a page that failed after the checkpoint left behind
+        channel.truncate(options.getOutputLength());
+      }
+      return export(path, new BufferedOutputStream(fileOut, BUFFER_SIZE));
+    }
+  }
+
+  /**
+   * Exports the list at {@code path} into {@code out}. The stream is flushed, and the gzip
+   * trailer written if compression is enabled, but it is not closed.
+   *
+   * @param path API path of the list endpoint (e.g. {@code /v1/charges}), or an absolute URL
+   * @param out destination stream
+   * @return the final export statistics
+   */
+  public ExportStats export(String path, OutputStream out) throws StripeException, IOException {
+    final String url = path.startsWith("/") ? Stripe.getApiBase() + path : path;
+    final long start = System.nanoTime();
+
+    // output written before this export, when resuming
+    final long initialLength = (options.getStartingAfter() != null)
+        ? Math.max(0, options.getOutputLength()) : 0;
+    final CountingOutputStream output = new CountingOutputStream(out);
+    GzipMemberOutputStream gzipStream = null;
+    OutputStream target = output;
+    if (options.isGzip()) {
+      gzipStream = new GzipMemberOutputStream(output);
+      target = gzipStream;
+    }
+    final CountingOutputStream counted = new CountingOutputStream(target);
+    final Writer writer = new BufferedWriter(
+        new OutputStreamWriter(counted, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+    final RecordWriter recordWriter = (options.getFormat() == ExportFormat.CSV)
+        ? new CsvRecordWriter(writer, options.getColumns(), options.getStartingAfter() == null)
+        : new NdjsonRecordWriter(writer, options.getColumns());
+
+    String cursor = options.getStartingAfter();
+    long objectCount = 0;
+    long pageCount = 0;
+    long bytesRead = 0;
+    ExportStats stats = new ExportStats(0, 0, 0, 0, 0, cursor, initialLength);
+
+    boolean hasMore = true;
+    while (hasMore) {
+      Map<String, Object> params = new HashMap<>();
+      if (options.getParams() != null) {
+        params.putAll(options.getParams());
+      }
+      if (cursor != null) {
+        params.put("starting_after", cursor);
+      }
+
+      hasMore = false;
+      String pageCursor = null;
+      try (StripeResponseStream response = ApiResource.requestStream(
+          ApiResource.RequestMethod.GET, url, params, options.getRequestOptions())) {
+        CountingInputStream in = new CountingInputStream(response.body());
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+          String name = reader.nextName();
+          if ("data".equals(name)) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+              String id = recordWriter.write(reader);
+              if (id != null) {
+                pageCursor = id;
+              }
+              objectCount++;
+            }
+            reader.endArray();
+          } else if ("has_more".equals(name)) {
+            hasMore = reader.nextBoolean();
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.endObject();
+        bytesRead += in.getCount();
+      }
+
+      writer.flush();
+      if (gzipStream != null) {
+        gzipStream.finishMember();
+      }
+      out.flush();
+      pageCount++;
+
+      // an empty page (or one without IDs) cannot move the cursor forward
+      if (pageCursor == null) {
+        hasMore = false;
+      } else {
+        cursor = pageCursor;
+      }
+
+      stats = new ExportStats(objectCount, pageCount, bytesRead, counted.getCount(),
+          System.nanoTime() - start, cursor, initialLength + output.getCount());
+      if (options.getCheckpoint() != null) {
+        options.getCheckpoint().onPage(stats);
+      }
+    }
+
+    writer.flush();
+    if (gzipStream != null) {
+      gzipStream.finish();
+    }
+    out.flush();
+
+    return stats;
+  }
+
+  /**
+   * Resolves a dotted attribute path against a JSON object. Returns {@code null} if any segment
+   * is missing.
+   */
+  static JsonElement lookup(JsonObject object, String path) {
+    JsonElement current = object;
+    int from = 0;
+    while (current != null && from <= path.length()) {
+      if (!current.isJsonObject()) {
+        return null;
+      }
+      int dot = path.indexOf('.', from);
+      int to = (dot < 0) ? path.length() : dot;
+      current = current.getAsJsonObject().get(path.substring(from, to));
+      from = to + 1;
+    }
+    return current;
+  }
+
+  private interface RecordWriter {
+    /**
+     * Consumes one element of the {@code data} array from {@code in}, writes it out and returns
+     * its ID.
+     */
+    String write(JsonReader in) throws IOException;
+  }
+
+  private static final class NdjsonRecordWriter implements RecordWriter {
+    private final Writer writer;
+    private final JsonWriter jsonWriter;
+    private final List<String> columns;
+    private final JsonParser parser = new JsonParser();
+
+    NdjsonRecordWriter(Writer writer, List<String> columns) {
+      this.writer = writer;
+      this.jsonWriter = new JsonWriter(writer);
+      // lenient mode allows a sequence of top-level values on the same writer
+      this.jsonWriter.setLenient(true);
+      this.columns = columns;
+    }
+
+    @Override
+    public String write(JsonReader in) throws IOException {
+      String id;
+      if (columns == null) {
+        id = copyRecord(in, jsonWriter);
+      } else {
+        JsonElement element = parse(parser, in);
+        JsonObject projected = new JsonObject();
+        for (String column : columns) {
+          JsonElement value = element.isJsonObject()
+              ? lookup(element.getAsJsonObject(), column) : null;
+          projected.add(column, (value == null) ? JsonNull.INSTANCE : value);
+        }
+        NULL_PRESERVING_GSON.toJson(projected, jsonWriter);
+        id = idOf(element);
+      }
+      jsonWriter.flush();
+      writer.write('\n');
+      return id;
+    }
+
+    private static String copyRecord(JsonReader in, JsonWriter out) throws IOException {
+      if (in.peek() != JsonToken.BEGIN_OBJECT) {
+        copyValue(in, out);
+        return null;
+      }
+
+      String id = null;
+      in.beginObject();
+      out.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        out.name(name);
+        if ("id".equals(name) && in.peek() == JsonToken.STRING) {
+          id = in.nextString();
+          out.value(id);
+        } else {
+          copyValue(in, out);
+        }
+      }
+      in.endObject();
+      out.endObject();
+      return id;
+    }
+
+    private static void copyValue(JsonReader in, JsonWriter out) throws IOException {
+      switch (in.peek()) {
+        case BEGIN_ARRAY:
+          in.beginArray();
+          out.beginArray();
+          while (in.hasNext()) {
+            copyValue(in, out);
+          }
+          in.endArray();
+          out.endArray();
+          break;
+        case BEGIN_OBJECT:
+          in.beginObject();
+          out.beginObject();
+          while (in.hasNext()) {
+            out.name(in.nextName());
+            copyValue(in, out);
+          }
+          in.endObject();
+          out.endObject();
+          break;
+        case STRING:
+          out.value(in.nextString());
+          break;
+        case NUMBER:
+          // keep the literal as sent by the API rather than round-tripping through a double
+          out.jsonValue(in.nextString());
+          break;
+        case BOOLEAN:
+          out.value(in.nextBoolean());
+          break;
+        case NULL:
+          in.nextNull();
+          out.nullValue();
+          break;
+        default:
+          throw new IllegalStateException("Unexpected JSON token: " + in.peek());
+      }
+    }
+  }
+
+  private static final class CsvRecordWriter implements RecordWriter {
+    private final Writer writer;
+    private final JsonParser parser = new JsonParser();
+    private List<String> columns;
+    private boolean writeHeader;
+
+    CsvRecordWriter(Writer writer, List<String> columns, boolean writeHeader) {
+      this.writer = writer;
+      this.columns = columns;
+      this.writeHeader = writeHeader;
+    }
+
+    @Override
+    public String write(JsonReader in) throws IOException {
+      JsonElement element = parse(parser, in);
+      JsonObject object = element.isJsonObject() ? element.getAsJsonObject() : new JsonObject();
+
+      if (columns == null) {
+        columns = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+          if (entry.getValue().isJsonPrimitive() || entry.getValue().isJsonNull()) {
+            columns.add(entry.getKey());
+          }
+        }
+      }
+
+      if (writeHeader) {
+        writeRow(columns);
+        this.writeHeader = false;
+      }
+
+      List<String> cells = new ArrayList<>(columns.size());
+      for (String column : columns) {
+        JsonElement value = lookup(object, column);
+        if (value == null || value.isJsonNull()) {
+          cells.add("");
+        } else if (value.isJsonPrimitive()) {
+          cells.add(value.getAsString());
+        } else {
+          cells.add(value.toString());
+        }
+      }
+      writeRow(cells);
+
+      return idOf(element);
+    }
+
+    private void writeRow(List<String> cells) throws IOException {
+      for (int i = 0; i < cells.size(); i++) {
+        if (i > 0) {
+          writer.write(',');
+        }
+        writeCell(cells.get(i));
+      }
+      writer.write("\r\n");
+    }
+
+    private void writeCell(String cell) throws IOException {
+      boolean quote = false;
+      for (int i = 0; i < cell.length() && !quote; i++) {
+        char c = cell.charAt(i);
+        quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+      }
+      if (!quote) {
+        writer.write(cell);
+        return;
+      }
+      writer.write('"');
+      writer.write(cell.replace("\"", "\"\""));
+      writer.write('"');
+    }
+  }
+
+  /**
+   * Parses the next value of {@code in}, rethrowing the I/O errors that Gson wraps in an unchecked
+   * exception, so that a failed read surfaces as such whatever the output format.
+   */
+  private static JsonElement parse(JsonParser parser, JsonReader in) throws IOException {
+    try {
+      return parser.parse(in);
+    } catch (JsonIOException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private static String idOf(JsonElement element) {
+    if (!element.isJsonObject()) {
+      return null;
+    }
+    JsonElement id = element.getAsJsonObject().get("id");
+    return (id != null && id.isJsonPrimitive()) ? id.getAsString() : null;
+  }
+
+  private static final class CountingInputStream extends FilterInputStream {
+    private long count;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    long getCount() {
+      return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
+
+  /**
+   * Compresses every page into its own gzip member, so that the output is a complete gzip stream
+   * whenever a checkpoint is reported, even if the export is interrupted later.
+   */
+  private static final class GzipMemberOutputStream extends OutputStream {
+    // lets a member be closed, which releases its deflater, without closing the output
+    private final OutputStream shield;
+    private GZIPOutputStream member;
+    private boolean written;
+
+    GzipMemberOutputStream(OutputStream out) {
+      this.shield = new FilterOutputStream(out) {
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+          flush();
+        }
+      };
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      member().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len > 0) {
+        member().write(b, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (member != null) {
+        member.flush();
+      } else {
+        shield.flush();
+      }
+    }
+
+    /**
+     * Writes the trailer of the current member, if anything was written since the last one.
+     */
+    void finishMember() throws IOException {
+      if (member != null) {
+        member.close();
+        member = null;
+      }
+    }
+
+    /**
+     * Finishes the last member. An export without any output still produces a gzip stream.
+     */
+    void finish() throws IOException {
+      if (!written) {
+        member();
+      }
+      finishMember();
+    }
+
+    private GZIPOutputStream member() throws IOException {
+      if (member == null) {
+        member = new GZIPOutputStream(shield, BUFFER_SIZE);
+        written = true;
+      }
+      return member;
+    }
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    long getCount() {
+      return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Account extends ApiResource implements HasId, MetadataStore<Account> {
+  public static final String OBJECT_NAME = "account";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   String businessLogo;
@@ -14,6 +14,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class AccountLink extends ApiResource {
+  public static final String OBJECT_NAME = "account_link";
+
   String object;
   Long created;
   Long expiresAt;
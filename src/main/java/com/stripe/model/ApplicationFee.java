@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class ApplicationFee extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "application_fee";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE) ExpandableField<Account> account;
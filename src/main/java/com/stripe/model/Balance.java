@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Balance extends ApiResource {
+  public static final String OBJECT_NAME = "balance";
+
   String object;
   List<Money> available;
   Boolean livemode;
@@ -17,6 +17,7 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Charge extends ApiResource implements MetadataStore<Charge>, HasId {
+  public static final String OBJECT_NAME = "charge";
   public static final String FRAUD_DETAILS = "fraud_details";
 
   @Getter(onMethod = @__({@Override})) String id;
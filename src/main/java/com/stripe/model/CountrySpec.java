@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class CountrySpec extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "country_spec";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   String defaultCurrency;
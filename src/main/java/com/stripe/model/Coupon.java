@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Coupon extends ApiResource implements MetadataStore<Coupon>, HasId {
+  public static final String OBJECT_NAME = "coupon";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amountOff;
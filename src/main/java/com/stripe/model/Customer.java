@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Customer extends ApiResource implements MetadataStore<Customer>, HasId {
+  public static final String OBJECT_NAME = "customer";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long accountBalance;
@@ -16,6 +16,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Dispute extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "dispute";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amount;
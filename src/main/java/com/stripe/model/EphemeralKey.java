@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class EphemeralKey extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "ephemeral_key";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long created;
@@ -14,6 +14,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Event extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "event";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   String account;
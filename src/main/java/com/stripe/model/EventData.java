@@ -1,5 +1,7 @@
 package com.stripe.model;
 
+import com.google.gson.JsonObject;
+
 import java.util.Map;
 
 import lombok.EqualsAndHashCode;
@@ -12,4 +14,6 @@ import lombok.Setter;
 public class EventData extends StripeObject {
   StripeObject object;
   Map<String, Object> previousAttributes;
+  // the JSON of object as sent by the API, including attributes the model does not have
+  transient JsonObject rawObject;
 }
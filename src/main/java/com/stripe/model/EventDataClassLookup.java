@@ -1,79 +1,113 @@
 package com.stripe.model;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Event data class look up used in {@link EventDataDeserializer}.
+ * Event data class look up used in {@link EventDataDeserializer}. Classes are held by name and
+ * loaded the first time an event carries an object of their type, so that parsing one event does
+ * not load every model.
  */
 final class EventDataClassLookup {
-  private static final Map<String, Class<? extends StripeObject>> classLookup = new HashMap<>();
+  private static final Map<String, String> classNames = new HashMap<>();
+  private static final ConcurrentMap<String, Class<? extends StripeObject>> classLookup =
+      new ConcurrentHashMap<>();
 
   static {
-    classLookup.put("account", Account.class);
-    classLookup.put("alipay_account", AlipayAccount.class);
-    classLookup.put("apple_pay_domain", ApplePayDomain.class);
-    classLookup.put("application", Application.class);
-    classLookup.put("application_fee", ApplicationFee.class);
-    classLookup.put("balance", Balance.class);
-    classLookup.put("balance_transaction", BalanceTransaction.class);
-    classLookup.put("bank_account", BankAccount.class);
-    classLookup.put("bitcoin_receiver", BitcoinReceiver.class);
-    classLookup.put("card", Card.class);
-    classLookup.put("charge", Charge.class);
-    classLookup.put("country_spec", CountrySpec.class);
-    classLookup.put("coupon", Coupon.class);
-    classLookup.put("customer", Customer.class);
-    classLookup.put("discount", Discount.class);
-    classLookup.put("dispute", Dispute.class);
-    classLookup.put("event", Event.class);
-    classLookup.put("exchange_rate", ExchangeRate.class);
-    classLookup.put("fee", BalanceTransaction.Fee.class);
-    classLookup.put("fee_refund", FeeRefund.class);
-    classLookup.put("file", File.class);
-    classLookup.put("file_upload", File.class);
-    classLookup.put("invoice", Invoice.class);
-    classLookup.put("invoice_line_item", InvoiceLineItem.class);
-    classLookup.put("invoiceitem", InvoiceItem.class);
-    classLookup.put("issuer_fraud_record", IssuerFraudRecord.class);
-    classLookup.put("issuing.authorization", com.stripe.model.issuing.Authorization.class);
-    classLookup.put("issuing.card", com.stripe.model.issuing.Card.class);
-    classLookup.put("issuing.card_details", com.stripe.model.issuing.CardDetails.class);
-    classLookup.put("issuing.cardholder", com.stripe.model.issuing.Cardholder.class);
-    classLookup.put("issuing.dispute", com.stripe.model.issuing.Dispute.class);
-    classLookup.put("issuing.transaction", com.stripe.model.issuing.Transaction.class);
-    classLookup.put("order", Order.class);
-    classLookup.put("order_item", OrderItem.class);
-    classLookup.put("order_return", OrderReturn.class);
-    classLookup.put("payment_intent", PaymentIntent.class);
-    classLookup.put("payout", Payout.class);
-    classLookup.put("plan", Plan.class);
-    classLookup.put("product", Product.class);
-    classLookup.put("radar.value_list", com.stripe.model.radar.ValueList.class);
-    classLookup.put("radar.value_list_item", com.stripe.model.radar.ValueListItem.class);
-    classLookup.put("reporting.report_run", com.stripe.model.reporting.ReportRun.class);
-    classLookup.put("reporting.report_type", com.stripe.model.reporting.ReportType.class);
-    classLookup.put("refund", Refund.class);
-    classLookup.put("recipient", Recipient.class);
-    classLookup.put("review", Review.class);
-    classLookup.put("scheduled_query_run", com.stripe.model.sigma.ScheduledQueryRun.class);
-    classLookup.put("sku", Sku.class);
-    classLookup.put("source", Source.class);
-    classLookup.put("source_mandate_notification", SourceMandateNotification.class);
-    classLookup.put("source_transaction", SourceTransaction.class);
-    classLookup.put("subscription", Subscription.class);
-    classLookup.put("subscription_item", SubscriptionItem.class);
-    classLookup.put("summary", Transfer.Summary.class);
-    classLookup.put("terminal.connection_token", com.stripe.model.terminal.ConnectionToken.class);
-    classLookup.put("terminal.location", com.stripe.model.terminal.Location.class);
-    classLookup.put("terminal.reader", com.stripe.model.terminal.Reader.class);
-    classLookup.put("three_d_secure", ThreeDSecure.class);
-    classLookup.put("token", Token.class);
-    classLookup.put("transfer", Transfer.class);
-    classLookup.put("transfer_reversal", Reversal.class);
+    classNames.put("account", "com.stripe.model.Account");
+    classNames.put("alipay_account", "com.stripe.model.AlipayAccount");
+    classNames.put("apple_pay_domain", "com.stripe.model.ApplePayDomain");
+    classNames.put("application", "com.stripe.model.Application");
+    classNames.put("application_fee", "com.stripe.model.ApplicationFee");
+    classNames.put("balance", "com.stripe.model.Balance");
+    classNames.put("balance_transaction", "com.stripe.model.BalanceTransaction");
+    classNames.put("bank_account", "com.stripe.model.BankAccount");
+    classNames.put("bitcoin_receiver", "com.stripe.model.BitcoinReceiver");
+    classNames.put("card", "com.stripe.model.Card");
+    classNames.put("charge", "com.stripe.model.Charge");
+    classNames.put("country_spec", "com.stripe.model.CountrySpec");
+    classNames.put("coupon", "com.stripe.model.Coupon");
+    classNames.put("customer", "com.stripe.model.Customer");
+    classNames.put("discount", "com.stripe.model.Discount");
+    classNames.put("dispute", "com.stripe.model.Dispute");
+    classNames.put("event", "com.stripe.model.Event");
+    classNames.put("exchange_rate", "com.stripe.model.ExchangeRate");
+    classNames.put("fee", "com.stripe.model.BalanceTransaction$Fee");
+    classNames.put("fee_refund", "com.stripe.model.FeeRefund");
+    classNames.put("file", "com.stripe.model.File");
+    classNames.put("file_upload", "com.stripe.model.File");
+    classNames.put("invoice", "com.stripe.model.Invoice");
+    classNames.put("invoice_line_item", "com.stripe.model.InvoiceLineItem");
+    classNames.put("invoiceitem", "com.stripe.model.InvoiceItem");
+    classNames.put("issuer_fraud_record", "com.stripe.model.IssuerFraudRecord");
+    classNames.put("issuing.authorization", "com.stripe.model.issuing.Authorization");
+    classNames.put("issuing.card", "com.stripe.model.issuing.Card");
+    classNames.put("issuing.card_details", "com.stripe.model.issuing.CardDetails");
+    classNames.put("issuing.cardholder", "com.stripe.model.issuing.Cardholder");
+    classNames.put("issuing.dispute", "com.stripe.model.issuing.Dispute");
+    classNames.put("issuing.transaction", "com.stripe.model.issuing.Transaction");
+    classNames.put("order", "com.stripe.model.Order");
+    classNames.put("order_item", "com.stripe.model.OrderItem");
+    classNames.put("order_return", "com.stripe.model.OrderReturn");
+    classNames.put("payment_intent", "com.stripe.model.PaymentIntent");
+    classNames.put("payout", "com.stripe.model.Payout");
+    classNames.put("plan", "com.stripe.model.Plan");
+    classNames.put("product", "com.stripe.model.Product");
+    classNames.put("radar.value_list", "com.stripe.model.radar.ValueList");
+    classNames.put("radar.value_list_item", "com.stripe.model.radar.ValueListItem");
+    classNames.put("reporting.report_run", "com.stripe.model.reporting.ReportRun");
+    classNames.put("reporting.report_type", "com.stripe.model.reporting.ReportType");
+    classNames.put("refund", "com.stripe.model.Refund");
+    classNames.put("recipient", "com.stripe.model.Recipient");
+    classNames.put("review", "com.stripe.model.Review");
+    classNames.put("scheduled_query_run", "com.stripe.model.sigma.ScheduledQueryRun");
+    classNames.put("sku", "com.stripe.model.Sku");
+    classNames.put("source", "com.stripe.model.Source");
+    classNames.put("source_mandate_notification", "com.stripe.model.SourceMandateNotification");
+    classNames.put("source_transaction", "com.stripe.model.SourceTransaction");
+    classNames.put("subscription", "com.stripe.model.Subscription");
+    classNames.put("subscription_item", "com.stripe.model.SubscriptionItem");
+    classNames.put("summary", "com.stripe.model.Transfer$Summary");
+    classNames.put("terminal.connection_token", "com.stripe.model.terminal.ConnectionToken");
+    classNames.put("terminal.location", "com.stripe.model.terminal.Location");
+    classNames.put("terminal.reader", "com.stripe.model.terminal.Reader");
+    classNames.put("three_d_secure", "com.stripe.model.ThreeDSecure");
+    classNames.put("token", "com.stripe.model.Token");
+    classNames.put("transfer", "com.stripe.model.Transfer");
+    classNames.put("transfer_reversal", "com.stripe.model.Reversal");
   }
 
+  /**
+   * Returns the class of the objects of the given type, or {@code null} if the type is unknown.
+   */
   public static Class<? extends StripeObject> findClass(String objectType) {
-    return classLookup.get(objectType);
+    if (objectType == null) {
+      return null;
+    }
+    Class<? extends StripeObject> clazz = classLookup.get(objectType);
+    if (clazz != null) {
+      return clazz;
+    }
+    String className = classNames.get(objectType);
+    if (className == null) {
+      return null;
+    }
+    try {
+      clazz = Class.forName(className, true, EventDataClassLookup.class.getClassLoader())
+          .asSubclass(StripeObject.class);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Missing class " + className + " for objects of type "
+          + objectType, e);
+    }
+    classLookup.putIfAbsent(objectType, clazz);
+    return clazz;
+  }
+
+  static Set<String> objectTypes() {
+    return Collections.unmodifiableSet(classNames.keySet());
   }
 }
@@ -90,6 +90,7 @@ public class EventDataDeserializer implements JsonDeserializer<EventData> {
         StripeObject object = ApiResource.GSON.fromJson(
             entry.getValue(), cl != null ? cl : StripeRawJsonObject.class);
         eventData.setObject(object);
+        eventData.setRawObject(element.getAsJsonObject());
       }
     }
     return eventData;
@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class ExchangeRate extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "exchange_rate";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Map<String, BigDecimal> rates;
@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class FileLink extends ApiResource implements MetadataStore<FileLink>, HasId {
+  public static final String OBJECT_NAME = "file_link";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long created;
@@ -17,6 +17,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Invoice extends ApiResource implements MetadataStore<Invoice>, HasId {
+  public static final String OBJECT_NAME = "invoice";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amountDue;
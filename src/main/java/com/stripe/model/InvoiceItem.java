@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class InvoiceItem extends ApiResource implements MetadataStore<InvoiceItem>, HasId {
+  public static final String OBJECT_NAME = "invoiceitem";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amount;
@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class IssuerFraudRecord extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "issuer_fraud_record";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Boolean actionable;
@@ -16,6 +16,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Order extends ApiResource implements HasId, MetadataStore<Order> {
+  public static final String OBJECT_NAME = "order";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amount;
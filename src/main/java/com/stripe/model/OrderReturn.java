@@ -16,6 +16,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class OrderReturn extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "order_return";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amount;
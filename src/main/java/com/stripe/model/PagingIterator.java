@@ -1,8 +1,8 @@
 package com.stripe.model;
 
-import com.stripe.Stripe;
 import com.stripe.net.ApiResource;
 import com.stripe.net.RequestOptions;
+import com.stripe.net.StripeClient;
 
 import java.util.HashMap;
 import java.util.Iterator;
@@ -10,6 +10,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 
 public class PagingIterator<T extends HasId> extends ApiResource implements Iterator<T> {
+  private final StripeClient client;
   private final String url;
 
   @SuppressWarnings("rawtypes")
@@ -21,7 +22,11 @@ public class PagingIterator<T extends HasId> extends ApiResource implements Iter
   private String lastId;
 
   PagingIterator(final StripeCollectionInterface<T> stripeCollection) {
-    this.url = Stripe.getApiBase() + stripeCollection.getUrl();
+    // later pages go through the client that fetched the first one
+    StripeClient owner = (stripeCollection instanceof StripeCollection)
+        ? ((StripeCollection<T>) stripeCollection).getClient() : null;
+    this.client = (owner != null) ? owner : StripeClient.getDefault();
+    this.url = client.getApiBase() + stripeCollection.getUrl();
 
     this.collectionType = stripeCollection.getClass();
 
@@ -79,6 +84,6 @@ public class PagingIterator<T extends HasId> extends ApiResource implements Iter
       final Map<String, Object> params,
       final RequestOptions options
   ) throws Exception {
-    return ApiResource.requestCollection(url, params, collectionType, options);
+    return client.requestCollection(url, params, collectionType, options);
   }
 }
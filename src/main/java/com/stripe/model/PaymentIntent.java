@@ -16,6 +16,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class PaymentIntent extends ApiResource implements MetadataStore<PaymentIntent>, HasId {
+  public static final String OBJECT_NAME = "payment_intent";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   List<String> allowedSourceTypes;
@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Payout extends ApiResource implements MetadataStore<Payout>, HasId {
+  public static final String OBJECT_NAME = "payout";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amount;
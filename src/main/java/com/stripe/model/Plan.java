@@ -16,6 +16,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Plan extends ApiResource implements MetadataStore<Plan>, HasId {
+  public static final String OBJECT_NAME = "plan";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Boolean active;
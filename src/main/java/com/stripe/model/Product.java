@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Product extends ApiResource implements HasId, MetadataStore<Product> {
+  public static final String OBJECT_NAME = "product";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Boolean active;
@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Recipient extends ApiResource implements MetadataStore<Recipient>, HasId {
+  public static final String OBJECT_NAME = "recipient";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   BankAccount activeAccount;
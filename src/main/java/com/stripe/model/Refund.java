@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Refund extends ApiResource implements MetadataStore<Charge>, HasId {
+  public static final String OBJECT_NAME = "refund";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amount;
@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Sku extends ApiResource implements HasId, MetadataStore<Sku> {
+  public static final String OBJECT_NAME = "sku";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Boolean active;
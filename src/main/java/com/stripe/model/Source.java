@@ -14,6 +14,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = true)
 public class Source extends ExternalAccount implements HasSourceTypeData {
+  public static final String OBJECT_NAME = "source";
+
   Long amount;
   String clientSecret;
   CodeVerificationFlow codeVerification;
@@ -0,0 +1,51 @@
+package com.stripe.model;
+
+import com.stripe.net.RequestOptions;
+
+import java.util.Map;
+
+/**
+ * Provides an <code>{@code Iterable<T>}</code> target that iterates across all API pages while
+ * deserializing list elements one at a time as they are read off the wire.
+ *
+ * <p>Unlike {@link PagingIterable}, no page is ever fully materialized, so memory use per page is
+ * bounded by a single object rather than by the page size. Each call to {@link #iterator()}
+ * starts a new listing from the first page.
+ *
+ * <p><pre>
+ * {@code
+ * Map<String, Object> params = new HashMap<>();
+ * params.put("limit", 100);
+ * for (Charge charge : ApiResource.requestCollectionStream(Charge.class, params, null)) {
+ *   System.out.println("Current charge = " + charge.getId());
+ * }
+ * }
+ * </pre>
+ */
+public class StreamingPagingIterable<T extends HasId> implements Iterable<T> {
+  private final String url;
+  private final Map<String, Object> params;
+  private final Class<T> clazz;
+  private final RequestOptions options;
+
+  /**
+   * Constructs an iterable over the list endpoint at {@code url}.
+   *
+   * @param url absolute URL of the list endpoint (e.g. {@code https://api.stripe.com/v1/charges})
+   * @param params request parameters applied to every page
+   * @param clazz class of the list elements
+   * @param options request options applied to every page
+   */
+  public StreamingPagingIterable(String url, Map<String, Object> params, Class<T> clazz,
+      RequestOptions options) {
+    this.url = url;
+    this.params = params;
+    this.clazz = clazz;
+    this.options = options;
+  }
+
+  @Override
+  public StreamingPagingIterator<T> iterator() {
+    return new StreamingPagingIterator<>(url, params, clazz, options);
+  }
+}
@@ -0,0 +1,195 @@
+package com.stripe.model;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import com.stripe.exception.StripeException;
+import com.stripe.net.ApiResource;
+import com.stripe.net.RequestOptions;
+import com.stripe.net.StripeResponseStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator behind {@link StreamingPagingIterable}. The {@code data} array of each page is
+ * consumed element by element from the response body; {@code has_more} and {@code url} are
+ * captured whenever they are encountered in the page object.
+ *
+ * <p>The connection for the current page stays open until the page has been fully consumed. If
+ * iteration is abandoned early, call {@link #close()} to release it.
+ */
+public class StreamingPagingIterator<T extends HasId> implements Iterator<T>, Closeable {
+  private final String url;
+  private final Map<String, Object> params;
+  private final Class<T> clazz;
+  private final RequestOptions options;
+
+  private StripeResponseStream response;
+  private JsonReader reader;
+  private boolean inData;
+  private boolean started;
+  private boolean finished;
+
+  private Boolean hasMore;
+  private String pageUrl;
+  private String lastId;
+  private T lookahead;
+
+  StreamingPagingIterator(String url, Map<String, Object> params, Class<T> clazz,
+      RequestOptions options) {
+    this.url = url;
+    this.params = params;
+    this.clazz = clazz;
+    this.options = options;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (lookahead == null && !finished) {
+      lookahead = advance();
+    }
+    return lookahead != null;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    final T next = lookahead;
+    this.lookahead = null;
+    this.lastId = next.getId();
+    return next;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns the {@code has_more} attribute of the current page, or {@code null} if it has not
+   * been read yet.
+   */
+  public Boolean getHasMore() {
+    return hasMore;
+  }
+
+  /**
+   * Returns the {@code url} attribute of the current page, or {@code null} if it has not been
+   * read yet.
+   */
+  public String getUrl() {
+    return pageUrl;
+  }
+
+  /**
+   * Stops iteration and releases the connection of the page currently being read.
+   */
+  @Override
+  public void close() {
+    this.finished = true;
+    this.lookahead = null;
+    closePage();
+  }
+
+  private T advance() {
+    try {
+      while (true) {
+        if (reader == null) {
+          if (started && !(Boolean.TRUE.equals(hasMore) && lastId != null)) {
+            close();
+            return null;
+          }
+          openPage();
+        }
+
+        T item = readNextItem();
+        if (item != null) {
+          return item;
+        }
+
+        closePage();
+      }
+    } catch (final IOException | StripeException | JsonParseException e) {
+      close();
+      throw new RuntimeException("Unable to stream stripe objects", e);
+    }
+  }
+
+  private void openPage() throws StripeException, IOException {
+    Map<String, Object> pageParams = new HashMap<>();
+
+    // copy all the parameters from the initial request
+    if (params != null) {
+      pageParams.putAll(params);
+    }
+
+    // then put our new page start in
+    if (lastId != null) {
+      pageParams.put("starting_after", lastId);
+    }
+
+    this.started = true;
+    this.hasMore = null;
+    this.response = ApiResource.requestStream(ApiResource.RequestMethod.GET, url, pageParams,
+        options);
+    this.reader = new JsonReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+    this.inData = false;
+    reader.beginObject();
+  }
+
+  /**
+   * Reads up to the next element of the {@code data} array, picking up the page attributes along
+   * the way. Returns {@code null} once the end of the page object has been reached.
+   */
+  private T readNextItem() throws IOException {
+    if (inData) {
+      if (reader.hasNext()) {
+        return ApiResource.GSON.fromJson(reader, clazz);
+      }
+      reader.endArray();
+      this.inData = false;
+    }
+
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("data".equals(name)) {
+        reader.beginArray();
+        this.inData = true;
+        if (reader.hasNext()) {
+          return ApiResource.GSON.fromJson(reader, clazz);
+        }
+        reader.endArray();
+        this.inData = false;
+      } else if ("has_more".equals(name)) {
+        this.hasMore = reader.nextBoolean();
+      } else if ("url".equals(name)) {
+        this.pageUrl = reader.nextString();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return null;
+  }
+
+  private void closePage() {
+    if (response != null) {
+      try {
+        response.close();
+      } catch (IOException e) {
+        // the page has already been consumed or abandoned; nothing left to recover
+      }
+    }
+    this.response = null;
+    this.reader = null;
+  }
+}
@@ -1,6 +1,7 @@
 package com.stripe.model;
 
 import com.stripe.net.RequestOptions;
+import com.stripe.net.StripeClient;
 
 import java.util.List;
 import java.util.Map;
@@ -59,6 +60,8 @@ public abstract class StripeCollection<T extends HasId> extends StripeObject
       private RequestOptions requestOptions;
   @Getter(onMethod = @__({@Override})) @Setter(onMethod = @__({@Override}))
       private Map<String, Object> requestParams;
+  // the client the collection was fetched through, which fetches the next pages
+  private transient StripeClient client;
 
   public Iterable<T> autoPagingIterable() {
     return new PagingIterable<>(this);
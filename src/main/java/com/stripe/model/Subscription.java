@@ -16,6 +16,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Subscription extends ApiResource implements MetadataStore<Subscription>, HasId {
+  public static final String OBJECT_NAME = "subscription";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   BigDecimal applicationFeePercent;
@@ -14,6 +14,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class SubscriptionItem extends ApiResource implements MetadataStore<Subscription>, HasId {
+  public static final String OBJECT_NAME = "subscription_item";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   BillingThresholds billingThresholds;
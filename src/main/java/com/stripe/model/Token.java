@@ -14,6 +14,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Token extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "token";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amount;
@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Topup extends ApiResource implements MetadataStore<Topup>, HasId {
+  public static final String OBJECT_NAME = "topup";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amount;
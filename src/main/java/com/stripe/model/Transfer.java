@@ -16,6 +16,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Transfer extends ApiResource implements MetadataStore<Transfer>, HasId {
+  public static final String OBJECT_NAME = "transfer";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amount;
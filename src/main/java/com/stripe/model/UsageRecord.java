@@ -16,6 +16,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class UsageRecord extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "usage_record";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Boolean livemode;
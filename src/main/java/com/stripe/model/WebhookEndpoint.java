@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class WebhookEndpoint extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "webhook_endpoint";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   String application;
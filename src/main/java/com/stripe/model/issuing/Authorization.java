@@ -21,6 +21,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Authorization extends ApiResource implements MetadataStore<Authorization>, HasId {
+  public static final String OBJECT_NAME = "issuing.authorization";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Boolean approved;
@@ -19,6 +19,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Card extends ApiResource implements MetadataStore<Card>, HasId {
+  public static final String OBJECT_NAME = "issuing.card";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   AuthorizationControls authorizationControls;
@@ -18,6 +18,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Cardholder extends ApiResource implements MetadataStore<Cardholder>, HasId {
+  public static final String OBJECT_NAME = "issuing.cardholder";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Billing billing;
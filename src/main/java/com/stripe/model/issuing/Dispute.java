@@ -19,6 +19,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Dispute extends ApiResource implements MetadataStore<Dispute>, HasId {
+  public static final String OBJECT_NAME = "issuing.dispute";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amount;
@@ -19,6 +19,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Transaction extends ApiResource implements MetadataStore<Transaction>, HasId {
+  public static final String OBJECT_NAME = "issuing.transaction";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long amount;
@@ -16,6 +16,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class ValueList extends ApiResource implements MetadataStore<ValueList>, HasId {
+  public static final String OBJECT_NAME = "radar.value_list";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   String alias;
@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class ValueListItem extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "radar.value_list_item";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long created;
@@ -17,6 +17,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class ReportRun extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "reporting.report_run";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long created;
@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class ReportType extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "reporting.report_type";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long dataAvailableEnd;
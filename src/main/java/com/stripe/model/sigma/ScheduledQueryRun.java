@@ -16,6 +16,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class ScheduledQueryRun extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "scheduled_query_run";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Long created;
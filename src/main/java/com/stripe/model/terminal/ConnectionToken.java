@@ -14,6 +14,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class ConnectionToken extends ApiResource {
+  public static final String OBJECT_NAME = "terminal.connection_token";
+
   String object;
   String secret;
 
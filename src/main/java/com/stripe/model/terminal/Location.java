@@ -16,6 +16,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Location extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "terminal.location";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   Address address;
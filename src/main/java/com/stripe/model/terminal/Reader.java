@@ -15,6 +15,8 @@ import lombok.Setter;
 @Setter
 @EqualsAndHashCode(callSuper = false)
 public class Reader extends ApiResource implements HasId {
+  public static final String OBJECT_NAME = "terminal.reader";
+
   @Getter(onMethod = @__({@Override})) String id;
   String object;
   String deviceType;
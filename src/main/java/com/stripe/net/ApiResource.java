@@ -8,46 +8,26 @@ import com.google.gson.TypeAdapterFactory;
 import com.stripe.Stripe;
 import com.stripe.exception.InvalidRequestException;
 import com.stripe.exception.StripeException;
-import com.stripe.model.BalanceTransaction;
-import com.stripe.model.BalanceTransactionDeserializer;
-import com.stripe.model.ChargeRefundCollection;
-import com.stripe.model.ChargeRefundCollectionDeserializer;
-import com.stripe.model.Dispute;
-import com.stripe.model.DisputeDataDeserializer;
-import com.stripe.model.EphemeralKey;
-import com.stripe.model.EphemeralKeyDeserializer;
-import com.stripe.model.EventData;
-import com.stripe.model.EventDataDeserializer;
-import com.stripe.model.EventRequest;
-import com.stripe.model.EventRequestDeserializer;
 import com.stripe.model.ExpandableField;
-import com.stripe.model.ExpandableFieldDeserializer;
-import com.stripe.model.FeeRefundCollection;
-import com.stripe.model.FeeRefundCollectionDeserializer;
 import com.stripe.model.HasId;
-import com.stripe.model.OrderItem;
-import com.stripe.model.OrderItemDeserializer;
-import com.stripe.model.PaymentIntentSourceAction;
-import com.stripe.model.PaymentIntentSourceActionDeserializer;
-import com.stripe.model.Source;
-import com.stripe.model.SourceMandateNotification;
-import com.stripe.model.SourceTransaction;
-import com.stripe.model.SourceTypeDataDeserializer;
+import com.stripe.model.StreamingPagingIterable;
 import com.stripe.model.StripeCollectionInterface;
 import com.stripe.model.StripeObject;
-import com.stripe.model.StripeRawJsonObject;
-import com.stripe.model.StripeRawJsonObjectDeserializer;
 
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.net.URLEncoder;
 import java.util.Map;
 import java.util.Objects;
 
 public abstract class ApiResource extends StripeObject {
-  private static StripeResponseGetter stripeResponseGetter = new LiveStripeResponseGetter();
-
+  /**
+   * Replaces the transport of the {@linkplain StripeClient#getDefault() default client}, which
+   * the static methods of the resource classes go through.
+   */
   public static void setStripeResponseGetter(StripeResponseGetter srg) {
-    ApiResource.stripeResponseGetter = srg;
+    StripeClient.getDefault().setResponseGetter(srg);
   }
 
   public static final Gson GSON = createGson();
@@ -55,23 +35,7 @@ public abstract class ApiResource extends StripeObject {
   private static Gson createGson() {
     GsonBuilder builder = new GsonBuilder()
         .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
-        .registerTypeAdapter(BalanceTransaction.class, new BalanceTransactionDeserializer())
-        .registerTypeAdapter(ChargeRefundCollection.class, new ChargeRefundCollectionDeserializer())
-        .registerTypeAdapter(Dispute.class, new DisputeDataDeserializer())
-        .registerTypeAdapter(EphemeralKey.class, new EphemeralKeyDeserializer())
-        .registerTypeAdapter(EventData.class, new EventDataDeserializer())
-        .registerTypeAdapter(EventRequest.class, new EventRequestDeserializer())
-        .registerTypeAdapter(ExpandableField.class, new ExpandableFieldDeserializer())
-        .registerTypeAdapter(FeeRefundCollection.class, new FeeRefundCollectionDeserializer())
-        .registerTypeAdapter(OrderItem.class, new OrderItemDeserializer())
-        .registerTypeAdapter(PaymentIntentSourceAction.class,
-            new PaymentIntentSourceActionDeserializer())
-        .registerTypeAdapter(Source.class, new SourceTypeDataDeserializer<Source>())
-        .registerTypeAdapter(SourceMandateNotification.class,
-            new SourceTypeDataDeserializer<SourceMandateNotification>())
-        .registerTypeAdapter(SourceTransaction.class,
-            new SourceTypeDataDeserializer<SourceTransaction>())
-        .registerTypeAdapter(StripeRawJsonObject.class, new StripeRawJsonObjectDeserializer());
+        .registerTypeAdapterFactory(new LazyDeserializerFactory());
 
     for (TypeAdapterFactory factory : ApiResourceTypeAdapterFactoryProvider.getAll()) {
       builder.registerTypeAdapterFactory(factory);
@@ -79,35 +43,73 @@ public abstract class ApiResource extends StripeObject {
     return builder.create();
   }
 
+  private static final String MODEL_PACKAGE = "com.stripe.model.";
+
+  // the URL paths of each resource class, computed on first use
+  private static final ClassValue<ClassPaths> CLASS_PATHS = new ClassValue<ClassPaths>() {
+    @Override
+    protected ClassPaths computeValue(Class<?> clazz) {
+      return new ClassPaths(className(clazz));
+    }
+  };
+
+  /**
+   * Returns the path of a class in URLs: the {@code OBJECT_NAME} it declares, such as
+   * {@code issuing.card}, or its name in snake_case otherwise, under the namespace of its package.
+   */
   private static String className(Class<?> clazz) {
-    // Convert CamelCase to snake_case
-    String className = clazz.getSimpleName()
-        .replaceAll("(.)([A-Z][a-z]+)", "$1_$2")
-        .replaceAll("([a-z0-9])([A-Z])", "$1_$2")
-        .toLowerCase();
-
-    // Issuing or Sigma resources are in their own package. Until we can support adding OBJECT_NAME
-    // to all classes, we use this dirty trick to properly format the API endpoints
-    if (clazz.getName().contains("com.stripe.model.issuing.")) {
-      className = "issuing/" + className;
-    } else if (clazz.getName().contains("com.stripe.model.sigma.")) {
-      className = "sigma/" + className;
-    } else if (clazz.getName().contains("com.stripe.model.radar.")) {
-      className = "radar/" + className;
-    } else if (clazz.getName().contains("com.stripe.model.reporting.")) {
-      className = "reporting/" + className;
-    } else if (clazz.getName().contains("com.stripe.model.terminal.")) {
-      className = "terminal/" + className;
+    String className = objectName(clazz);
+    if (className != null) {
+      className = className.substring(className.lastIndexOf('.') + 1);
+    } else {
+      // Convert CamelCase to snake_case
+      className = clazz.getSimpleName()
+          .replaceAll("(.)([A-Z][a-z]+)", "$1_$2")
+          .replaceAll("([a-z0-9])([A-Z])", "$1_$2")
+          .toLowerCase();
+
+      // Handle special cases
+      switch (className) {
+        case "invoice_item":
+          className = "invoiceitem";
+          break;
+        case "file_upload":
+          className = "file";
+          break;
+        default:
+          break;
+      }
     }
 
-    // Handle special cases
-    switch (className) {
-      case "invoice_item":
-        return "invoiceitem";
-      case "file_upload":
-        return "file";
-      default:
-        return className;
+    // Issuing, Radar, Reporting, Sigma and Terminal resources are in their own package
+    String name = clazz.getName();
+    if (name.startsWith(MODEL_PACKAGE)) {
+      int dot = name.indexOf('.', MODEL_PACKAGE.length());
+      String namespace = (dot < 0) ? "" : name.substring(MODEL_PACKAGE.length(), dot);
+      switch (namespace) {
+        case "issuing":
+        case "radar":
+        case "reporting":
+        case "sigma":
+        case "terminal":
+          return namespace + "/" + className;
+        default:
+          break;
+      }
+    }
+    return className;
+  }
+
+  private static String objectName(Class<?> clazz) {
+    try {
+      Field field = clazz.getDeclaredField("OBJECT_NAME");
+      if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class) {
+        return null;
+      }
+      return (String) field.get(null);
+    } catch (NoSuchFieldException | IllegalAccessException e) {
+      // no public OBJECT_NAME
+      return null;
     }
   }
 
@@ -116,7 +118,7 @@ public abstract class ApiResource extends StripeObject {
   }
 
   protected static String singleClassUrl(Class<?> clazz, String apiBase) {
-    return String.format("%s/v1/%s", apiBase, className(clazz));
+    return apiBase + CLASS_PATHS.get(clazz).single;
   }
 
   protected static String classUrl(Class<?> clazz) {
@@ -124,7 +126,7 @@ public abstract class ApiResource extends StripeObject {
   }
 
   protected static String classUrl(Class<?> clazz, String apiBase) {
-    return String.format("%ss", singleClassUrl(clazz, apiBase));
+    return apiBase + CLASS_PATHS.get(clazz).collection;
   }
 
   protected static String instanceUrl(Class<?> clazz, String id)
@@ -135,7 +137,7 @@ public abstract class ApiResource extends StripeObject {
   protected static String instanceUrl(Class<?> clazz, String id, String apiBase)
       throws InvalidRequestException {
     try {
-      return String.format("%s/%s", classUrl(clazz, apiBase), urlEncode(id));
+      return apiBase + CLASS_PATHS.get(clazz).collection + "/" + urlEncode(id);
     } catch (UnsupportedEncodingException e) {
       throw new InvalidRequestException("Unable to encode parameters to "
           + CHARSET
@@ -153,8 +155,8 @@ public abstract class ApiResource extends StripeObject {
   private static String subresourceUrl(Class<?> clazz, String id, Class<?> subClazz, String apiBase)
       throws InvalidRequestException {
     try {
-      return String.format("%s/%s/%ss", classUrl(clazz, apiBase),
-              urlEncode(id), className(subClazz));
+      return apiBase + CLASS_PATHS.get(clazz).collection + "/" + urlEncode(id) + "/"
+          + CLASS_PATHS.get(subClazz).plural;
     } catch (UnsupportedEncodingException e) {
       throw new InvalidRequestException("Unable to encode parameters to "
               + CHARSET
@@ -163,6 +165,24 @@ public abstract class ApiResource extends StripeObject {
     }
   }
 
+  /**
+   * The URL paths of a resource class, relative to the API base.
+   */
+  private static final class ClassPaths {
+    // e.g. "/v1/balance"
+    private final String single;
+    // e.g. "/v1/charges"
+    private final String collection;
+    // e.g. "usage_records", for subresources
+    private final String plural;
+
+    ClassPaths(String className) {
+      this.single = "/v1/" + className;
+      this.collection = single + "s";
+      this.plural = className + "s";
+    }
+  }
+
   public static final String CHARSET = "UTF-8";
 
   public enum RequestMethod {
@@ -181,6 +201,9 @@ public abstract class ApiResource extends StripeObject {
     // to us actually making a request to /v1/foo/null
     if (str == null) {
       return null;
+    } else if (isUnreserved(str)) {
+      // object ids need no encoding
+      return str;
     } else {
       // Don't use strict form encoding by changing the square bracket control
       // characters back to their literals. This is fine by the server, and
@@ -191,18 +214,36 @@ public abstract class ApiResource extends StripeObject {
     }
   }
 
+  /**
+   * Returns whether {@link URLEncoder} leaves every character of a string as is.
+   */
+  private static boolean isUnreserved(String str) {
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+          || c == '_' || c == '-' || c == '.' || c == '*')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public static <T> T multipartRequest(ApiResource.RequestMethod method,
                      String url, Map<String, Object> params, Class<T> clazz,
                      RequestOptions options) throws StripeException {
-    return ApiResource.stripeResponseGetter.request(method, url, params, clazz,
-        ApiResource.RequestType.MULTIPART, options);
+    return StripeClient.getDefault().multipartRequest(method, url, params, clazz, options);
   }
 
+  /**
+   * Sends a request to the API and deserializes the response into {@code clazz}. Retrieves may be
+   * answered from the {@link ObjectCache} installed with {@link Stripe#setObjectCache}.
+   *
+   * @see StripeClient#request
+   */
   public static <T> T request(ApiResource.RequestMethod method,
                 String url, Map<String, Object> params, Class<T> clazz,
                 RequestOptions options) throws StripeException {
-    return ApiResource.stripeResponseGetter.request(method, url, params, clazz,
-        ApiResource.RequestType.NORMAL, options);
+    return StripeClient.getDefault().request(method, url, params, clazz, options);
   }
 
   /**
@@ -217,14 +258,37 @@ public abstract class ApiResource extends StripeObject {
       String url, Map<String, Object> params, Class<T> clazz,
       RequestOptions options)
       throws StripeException {
-    T collection = request(RequestMethod.GET, url, params, clazz, options);
+    return StripeClient.getDefault().requestCollection(url, params, clazz, options);
+  }
 
-    if (collection != null) {
-      collection.setRequestOptions(options);
-      collection.setRequestParams(params);
-    }
+  /**
+   * Similar to #requestCollection, but instead of materializing each page the returned iterable
+   * reads the {@code data} array element by element straight off the response stream. Only a
+   * single deserialized object per page is held in memory at any time, and the next page is
+   * requested once the current one has been consumed.
+   */
+  public static <T extends HasId> StreamingPagingIterable<T> requestCollectionStream(
+      String url, Map<String, Object> params, Class<T> clazz, RequestOptions options) {
+    return new StreamingPagingIterable<>(url, params, clazz, options);
+  }
+
+  /**
+   * Streams the top-level list endpoint of the given resource class.
+   *
+   * @see #requestCollectionStream(String, Map, Class, RequestOptions)
+   */
+  public static <T extends HasId> StreamingPagingIterable<T> requestCollectionStream(
+      Class<T> clazz, Map<String, Object> params, RequestOptions options) {
+    return requestCollectionStream(classUrl(clazz), params, clazz, options);
+  }
 
-    return collection;
+  /**
+   * Issues a request and returns the response with its body left unread. The caller is
+   * responsible for closing the returned stream.
+   */
+  public static StripeResponseStream requestStream(ApiResource.RequestMethod method,
+      String url, Map<String, Object> params, RequestOptions options) throws StripeException {
+    return StripeClient.getDefault().requestStream(method, url, params, options);
   }
 
   /**
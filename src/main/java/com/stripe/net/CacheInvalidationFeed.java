@@ -0,0 +1,136 @@
+package com.stripe.net;
+
+import com.google.gson.JsonObject;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.model.EventData;
+import com.stripe.model.HasId;
+import com.stripe.model.StripeObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an {@link ObjectCache} in sync with changes made outside of this process, by feeding it
+ * the events Stripe emits for cached objects.
+ *
+ * <p>Events can be pushed as they arrive through webhooks, or pulled from the events endpoint:
+ *
+ * <p><pre>
+ * {@code
+ * CacheInvalidationFeed feed = new CacheInvalidationFeed(cache);
+ *
+ * // in a webhook endpoint
+ * feed.apply(Webhook.constructEvent(payload, sigHeader, secret));
+ *
+ * // or on a schedule
+ * feed.poll(null);
+ * }
+ * </pre>
+ *
+ * <p>The object of an event is typed by the class registered for its {@code object} attribute,
+ * and only events about cached classes are considered. Deletions drop the object's entries.
+ * Other events replace the entries retrieved with the event's API version with the object as
+ * sent in the event, and patch those retrieved with other versions with the attributes listed in
+ * {@code previous_attributes}. Entries that may have been retrieved after the event are dropped.
+ */
+public class CacheInvalidationFeed {
+  private final ObjectCache cache;
+
+  // events already applied in the second of the newest polled event
+  private final Set<String> polledAtHighWater = new HashSet<>();
+  private long highWater;
+
+  /**
+   * Constructs a feed for the given cache. Polling starts with the events created from now on.
+   */
+  public CacheInvalidationFeed(ObjectCache cache) {
+    this.cache = cache;
+    this.highWater = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+  }
+
+  /**
+   * Applies a single event to the cache.
+   *
+   * @return whether the event was about an object of a cached class
+   */
+  public boolean apply(Event event) {
+    EventData data = event.getData();
+    StripeObject object = (data != null) ? data.getObject() : null;
+    if (!(object instanceof HasId) || !cache.isCached(object.getClass())) {
+      return false;
+    }
+    String id = ((HasId) object).getId();
+
+    if (event.getType() != null && event.getType().endsWith(".deleted")) {
+      cache.invalidate(object.getClass(), id);
+      return true;
+    }
+
+    JsonObject current = data.getRawObject();
+    if (current == null) {
+      cache.invalidate(object.getClass(), id);
+      return true;
+    }
+
+    Map<String, Object> previousAttributes = data.getPreviousAttributes();
+    Set<String> changedKeys = (previousAttributes != null) ? previousAttributes.keySet() : null;
+    cache.applyChange(object.getClass(), id, event.getApiVersion(), current, changedKeys,
+        created(event));
+    return true;
+  }
+
+  /**
+   * Lists the events created since the last poll and applies them, oldest first.
+   *
+   * @param options options for the list requests, or {@code null} for the global configuration
+   * @return the number of events applied
+   */
+  public synchronized int poll(RequestOptions options) throws StripeException {
+    Map<String, Object> created = new HashMap<>();
+    created.put("gte", highWater);
+    Map<String, Object> params = new HashMap<>();
+    params.put("created", created);
+    params.put("limit", 100);
+
+    List<Event> events = new ArrayList<>();
+    for (Event event : Event.list(params, options).autoPagingIterable()) {
+      if (!polledAtHighWater.contains(event.getId())) {
+        events.add(event);
+      }
+    }
+    // the API lists newest first; applying in creation order lets later changes win
+    Collections.reverse(events);
+    Collections.sort(events, new Comparator<Event>() {
+      @Override
+      public int compare(Event a, Event b) {
+        return Long.compare(created(a), created(b));
+      }
+    });
+
+    for (Event event : events) {
+      apply(event);
+      long eventCreated = created(event);
+      if (eventCreated > highWater) {
+        highWater = eventCreated;
+        polledAtHighWater.clear();
+      }
+      if (eventCreated == highWater) {
+        polledAtHighWater.add(event.getId());
+      }
+    }
+    return events.size();
+  }
+
+  private static long created(Event event) {
+    return (event.getCreated() != null) ? event.getCreated() : 0;
+  }
+}
@@ -0,0 +1,62 @@
+package com.stripe.net;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link RequestListener} that forwards every event to several listeners, in order, so that for
+ * instance {@link LatencyMetrics} and a {@link RequestSampler} can observe the same requests. An
+ * exception thrown by one listener does not keep the event from the others.
+ *
+ * <p>{@link com.stripe.Stripe#addRequestListener} and
+ * {@link StripeClient.StripeClientBuilder#addRequestListener} build one as listeners are added.
+ */
+public final class CompositeRequestListener implements RequestListener {
+  private final RequestListener[] listeners;
+
+  /**
+   * Constructs a listener forwarding to the given listeners, in order.
+   */
+  public CompositeRequestListener(RequestListener... listeners) {
+    List<RequestListener> flattened = new ArrayList<>();
+    for (RequestListener listener : listeners) {
+      if (listener instanceof CompositeRequestListener) {
+        flattened.addAll(((CompositeRequestListener) listener).getListeners());
+      } else if (listener != null) {
+        flattened.add(listener);
+      }
+    }
+    this.listeners = flattened.toArray(new RequestListener[flattened.size()]);
+  }
+
+  /**
+   * Returns a listener forwarding to {@code listener} and then to {@code added}, either of which
+   * may be {@code null}.
+   */
+  public static RequestListener combine(RequestListener listener, RequestListener added) {
+    if (listener == null) {
+      return added;
+    }
+    if (added == null) {
+      return listener;
+    }
+    return new CompositeRequestListener(listener, added);
+  }
+
+  public List<RequestListener> getListeners() {
+    return Collections.unmodifiableList(Arrays.asList(listeners));
+  }
+
+  @Override
+  public void onRequestEvent(RequestEvent event) {
+    for (RequestListener listener : listeners) {
+      try {
+        listener.onRequestEvent(event);
+      } catch (RuntimeException e) {
+        // a failing listener must not starve the next ones
+      }
+    }
+  }
+}
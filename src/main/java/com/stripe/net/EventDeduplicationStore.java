@@ -0,0 +1,24 @@
+package com.stripe.net;
+
+/**
+ * Persistent record of the event IDs seen by an {@link EventDeduplicator}, shared across
+ * restarts or between processes, for instance a table with a unique key on the event ID.
+ *
+ * <p>The deduplicator keeps the recent IDs in memory and only consults the store for IDs it has
+ * not seen itself. Implementations must be thread-safe.
+ */
+public interface EventDeduplicationStore {
+  /**
+   * Records an event ID, unless it is already recorded and has not expired.
+   *
+   * @param eventId the ID of the event
+   * @param expiresAtMillis when the record may be dropped, in milliseconds since the epoch
+   * @return {@code true} if the ID was recorded, {@code false} if it was already
+   */
+  boolean add(String eventId, long expiresAtMillis);
+
+  /**
+   * Drops the record of an event ID, so that the event is handled again if it is redelivered.
+   */
+  void remove(String eventId);
+}
@@ -0,0 +1,285 @@
+package com.stripe.net;
+
+import com.stripe.model.Event;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets each event through only once within a time window, for consumers that receive the same
+ * events several times: Stripe delivers webhooks at least once, and polling the events endpoint
+ * overlaps with webhook deliveries.
+ *
+ * <p>The IDs seen recently are held in memory, in a ring ordered by arrival and indexed by an
+ * open-addressing hash table, so that the memory used is bounded by the maximum number of
+ * entries. IDs leave the ring once they are older than the window, or when the ring is full.
+ * An optional {@link EventDeduplicationStore} extends the detection to IDs that are no longer
+ * in memory, for instance after a restart or when several processes consume the same events.
+ *
+ * <p>The deduplicator can be used directly, or as a {@link WebhookEventHandler} wrapping the
+ * application's handler:
+ *
+ * <p><pre>
+ * {@code
+ * EventDeduplicator deduplicator = EventDeduplicator.builder()
+ *     .setHandler(handler)
+ *     .build();
+ * WebhookReceiver receiver = WebhookReceiver.builder()
+ *     .setSecret("whsec_...")
+ *     .setDefaultHandler(deduplicator)
+ *     .build();
+ *
+ * // or, when polling
+ * if (deduplicator.markSeen(event.getId())) {
+ *   ...
+ * }
+ * }
+ * </pre>
+ */
+public class EventDeduplicator implements WebhookEventHandler {
+  private final long windowMillis;
+  private final EventDeduplicationStore store;
+  private final WebhookEventHandler handler;
+
+  // ring of the IDs in arrival order; removed IDs leave a null until they reach the head
+  private final String[] ids;
+  private final int[] hashes;
+  private final long[] seenAtMillis;
+  private int head;
+  private int count;
+  private int size;
+
+  // open-addressing index of the ring: ring slot + 1, or 0 for an empty bucket
+  private final int[] table;
+  private final int mask;
+
+  private long checked;
+  private long duplicates;
+  private long storeDuplicates;
+  private long evictions;
+
+  private EventDeduplicator(EventDeduplicatorBuilder builder) {
+    this.windowMillis = builder.windowMillis;
+    this.store = builder.store;
+    this.handler = builder.handler;
+    this.ids = new String[builder.maxEntries];
+    this.hashes = new int[builder.maxEntries];
+    this.seenAtMillis = new long[builder.maxEntries];
+    // keep the table at most half full, so that probe sequences stay short
+    int buckets = Integer.highestOneBit(builder.maxEntries * 2 - 1) << 1;
+    this.table = new int[buckets];
+    this.mask = buckets - 1;
+  }
+
+  public static EventDeduplicatorBuilder builder() {
+    return new EventDeduplicatorBuilder();
+  }
+
+  /**
+   * Records an event ID, and returns whether it was seen for the first time within the window.
+   *
+   * @param eventId the ID of the event
+   * @return {@code true} if the event should be handled, {@code false} if it is a duplicate
+   */
+  public boolean markSeen(String eventId) {
+    return markSeen(eventId, System.currentTimeMillis());
+  }
+
+  boolean markSeen(String eventId, long nowMillis) {
+    int hash = hash(eventId);
+    synchronized (this) {
+      checked++;
+      expire(nowMillis);
+      if (find(eventId, hash) >= 0) {
+        duplicates++;
+        return false;
+      }
+      insert(eventId, hash, nowMillis);
+    }
+
+    if (store != null && !store.add(eventId, nowMillis + windowMillis)) {
+      synchronized (this) {
+        duplicates++;
+        storeDuplicates++;
+      }
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Forgets an event ID, so that the event is let through again if it is redelivered. This is
+   * used when handling the event failed.
+   */
+  public void forget(String eventId) {
+    int hash = hash(eventId);
+    synchronized (this) {
+      int bucket = find(eventId, hash);
+      if (bucket >= 0) {
+        int slot = table[bucket] - 1;
+        removeBucket(bucket);
+        ids[slot] = null;
+        size--;
+      }
+    }
+    if (store != null) {
+      store.remove(eventId);
+    }
+  }
+
+  /**
+   * Hands the event to the handler if it was not seen within the window. If the handler throws,
+   * the event is forgotten so that a redelivery is handled again.
+   *
+   * @throws IllegalStateException if the deduplicator was built without a handler
+   */
+  @Override
+  public void onEvent(Event event) throws Exception {
+    if (handler == null) {
+      throw new IllegalStateException("The deduplicator was built without a handler");
+    }
+    if (!markSeen(event.getId())) {
+      return;
+    }
+    try {
+      handler.onEvent(event);
+    } catch (Exception e) {
+      forget(event.getId());
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a snapshot of the deduplicator's counters.
+   */
+  public synchronized EventDeduplicatorStats getStats() {
+    return new EventDeduplicatorStats(checked, duplicates, storeDuplicates, evictions, size);
+  }
+
+  private static int hash(String eventId) {
+    int hash = eventId.hashCode() * 0x9e3779b1;
+    return hash ^ (hash >>> 16);
+  }
+
+  private int find(String eventId, int hash) {
+    for (int bucket = hash & mask; table[bucket] != 0; bucket = (bucket + 1) & mask) {
+      int slot = table[bucket] - 1;
+      if (hashes[slot] == hash && eventId.equals(ids[slot])) {
+        return bucket;
+      }
+    }
+    return -1;
+  }
+
+  private void insert(String eventId, int hash, long nowMillis) {
+    if (count == ids.length) {
+      removeHead(true);
+    }
+    int slot = (head + count) % ids.length;
+    ids[slot] = eventId;
+    hashes[slot] = hash;
+    seenAtMillis[slot] = nowMillis;
+    count++;
+    size++;
+
+    int bucket = hash & mask;
+    while (table[bucket] != 0) {
+      bucket = (bucket + 1) & mask;
+    }
+    table[bucket] = slot + 1;
+  }
+
+  private void expire(long nowMillis) {
+    while (count > 0 && (ids[head] == null || seenAtMillis[head] <= nowMillis - windowMillis)) {
+      removeHead(false);
+    }
+  }
+
+  private void removeHead(boolean evicted) {
+    if (ids[head] != null) {
+      int bucket = hashes[head] & mask;
+      while (table[bucket] != head + 1) {
+        bucket = (bucket + 1) & mask;
+      }
+      removeBucket(bucket);
+      ids[head] = null;
+      size--;
+      if (evicted) {
+        evictions++;
+      }
+    }
+    head = (head + 1) % ids.length;
+    count--;
+  }
+
+  /**
+   * Empties a bucket of the table, shifting back the entries of the probe sequence that follows
+   * it so that they can still be found without tombstones.
+   */
+  private void removeBucket(int bucket) {
+    int hole = bucket;
+    table[hole] = 0;
+    for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+      int home = hashes[table[next] - 1] & mask;
+      boolean reachable = (hole <= next) ? (hole < home && home <= next)
+          : (hole < home || home <= next);
+      if (!reachable) {
+        table[hole] = table[next];
+        table[next] = 0;
+        hole = next;
+      }
+    }
+  }
+
+  public static final class EventDeduplicatorBuilder {
+    private long windowMillis = TimeUnit.DAYS.toMillis(3);
+    private int maxEntries = 100000;
+    private EventDeduplicationStore store;
+    private WebhookEventHandler handler;
+
+    /**
+     * Sets how long an event ID is remembered. Defaults to 3 days, the period over which Stripe
+     * retries webhooks in live mode.
+     */
+    public EventDeduplicatorBuilder setWindowMillis(long windowMillis) {
+      this.windowMillis = windowMillis;
+      return this;
+    }
+
+    /**
+     * Sets how many event IDs are held in memory at most. Defaults to 100,000.
+     */
+    public EventDeduplicatorBuilder setMaxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * Sets the persistent store consulted for the IDs not held in memory. By default, IDs are
+     * only held in memory.
+     */
+    public EventDeduplicatorBuilder setStore(EventDeduplicationStore store) {
+      this.store = store;
+      return this;
+    }
+
+    /**
+     * Sets the handler events are handed to when the deduplicator is used as a
+     * {@link WebhookEventHandler}.
+     */
+    public EventDeduplicatorBuilder setHandler(WebhookEventHandler handler) {
+      this.handler = handler;
+      return this;
+    }
+
+    /**
+     * Constructs an {@link EventDeduplicator} with the specified values.
+     */
+    public EventDeduplicator build() {
+      if (windowMillis <= 0 || maxEntries < 1 || maxEntries > (1 << 29)) {
+        throw new IllegalArgumentException(
+            "The window must be positive, and the maximum number of entries between 1 and 2^29");
+      }
+      return new EventDeduplicator(this);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package com.stripe.net;
+
+/**
+ * Snapshot of the counters of an {@link EventDeduplicator}.
+ */
+public final class EventDeduplicatorStats {
+  private final long checked;
+  private final long duplicates;
+  private final long storeDuplicates;
+  private final long evictions;
+  private final int size;
+
+  EventDeduplicatorStats(long checked, long duplicates, long storeDuplicates, long evictions,
+      int size) {
+    this.checked = checked;
+    this.duplicates = duplicates;
+    this.storeDuplicates = storeDuplicates;
+    this.evictions = evictions;
+    this.size = size;
+  }
+
+  /**
+   * Returns the number of event IDs checked.
+   */
+  public long getChecked() {
+    return checked;
+  }
+
+  /**
+   * Returns the number of event IDs found to be duplicates, in memory or in the store.
+   */
+  public long getDuplicates() {
+    return duplicates;
+  }
+
+  /**
+   * Returns the number of duplicates that were only found in the persistent store.
+   */
+  public long getStoreDuplicates() {
+    return storeDuplicates;
+  }
+
+  /**
+   * Returns the fraction of the checked event IDs that were duplicates, between 0 and 1.
+   */
+  public double getHitRate() {
+    return (checked == 0) ? 0 : (double) duplicates / checked;
+  }
+
+  /**
+   * Returns the number of IDs dropped from memory before the end of the window because the
+   * maximum number of entries was reached. If this grows, duplicates older than the most
+   * recent entries are only detected by the store.
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Returns the number of IDs currently held in memory.
+   */
+  public int getSize() {
+    return size;
+  }
+}
@@ -0,0 +1,615 @@
+package com.stripe.net;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local store of the events received, for replay and audit without a database.
+ *
+ * <p>Events are stored as received, as raw JSON, in segment files that are memory-mapped and
+ * written in sequence. Once a segment is full, a new one is started. The journal keeps an index
+ * of the events by ID and by {@code created} time, which is rebuilt from the segments when the
+ * journal is opened. Records carry a checksum, so that a record torn by a crash is detected and
+ * overwritten by the next append.
+ *
+ * <p>Events are only parsed when read, through {@link EventJournalEntry#getEvent()}. Journaled
+ * events can be replayed into any {@link WebhookEventHandler}, or into the handlers of a
+ * {@link WebhookReceiver} with {@link WebhookReceiver#replay}.
+ *
+ * <p><pre>
+ * {@code
+ * EventJournal journal = EventJournal.builder()
+ *     .setDirectory(new File("/var/lib/app/events"))
+ *     .open();
+ * WebhookReceiver receiver = WebhookReceiver.builder()
+ *     .setSecret("whsec_...")
+ *     .setJournal(journal)
+ *     ...
+ * }
+ * </pre>
+ */
+public class EventJournal implements Closeable {
+  private static final String SEGMENT_SUFFIX = ".journal";
+  private static final String COMPACTION_SUFFIX = ".compacting";
+
+  // length and checksum, followed by the created time and the length of the ID
+  private static final int LENGTH_SIZE = 4;
+  private static final int HEADER_SIZE = 18;
+
+  private final File directory;
+  private final int segmentSize;
+  private final boolean syncOnAppend;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final List<Segment> segments = new ArrayList<>();
+  private final Map<String, Position> byId = new HashMap<>();
+  private final TreeMap<Long, List<Position>> byCreated = new TreeMap<>();
+  private long compactedEvents;
+  private boolean closed;
+
+  private EventJournal(EventJournalBuilder builder) {
+    this.directory = builder.directory;
+    this.segmentSize = builder.segmentSize;
+    this.syncOnAppend = builder.syncOnAppend;
+  }
+
+  public static EventJournalBuilder builder() {
+    return new EventJournalBuilder();
+  }
+
+  /**
+   * Appends an event, given as the raw JSON received from Stripe.
+   *
+   * @param payload the JSON of the event, encoded in UTF-8
+   * @return {@code true} if the event was appended, {@code false} if an event with the same ID
+   *     is already in the journal
+   * @throws IllegalArgumentException if the payload is not a JSON object with an {@code id}
+   * @throws IOException if a new segment cannot be created
+   */
+  public boolean append(byte[] payload) throws IOException {
+    EventJournalEntry header = readHeader(payload);
+    byte[] id = header.getId().getBytes(StandardCharsets.UTF_8);
+    if (id.length > 0xffff) {
+      throw new IllegalArgumentException("The ID of the event is too long");
+    }
+    int length = HEADER_SIZE - LENGTH_SIZE + id.length + payload.length;
+
+    ByteBuffer fields = ByteBuffer.allocate(10);
+    fields.putLong(header.getCreated());
+    fields.putShort((short) id.length);
+    CRC32 crc = new CRC32();
+    crc.update(fields.array());
+    crc.update(id);
+    crc.update(payload);
+
+    lock.writeLock().lock();
+    try {
+      ensureOpen();
+      if (byId.containsKey(header.getId())) {
+        return false;
+      }
+      Segment segment = segments.get(segments.size() - 1);
+      if (segment.buffer.capacity() - segment.writePosition < LENGTH_SIZE + length) {
+        segment = roll(LENGTH_SIZE + length);
+      }
+
+      int offset = segment.writePosition;
+      ByteBuffer buffer = segment.buffer.duplicate();
+      buffer.position(offset + LENGTH_SIZE);
+      buffer.putInt((int) crc.getValue());
+      buffer.put(fields.array());
+      buffer.put(id);
+      buffer.put(payload);
+      // the length goes last, so that a partially written record is never mistaken for a
+      // complete one
+      segment.buffer.putInt(offset, length);
+      segment.writePosition = offset + LENGTH_SIZE + length;
+      if (syncOnAppend) {
+        segment.buffer.force();
+      }
+
+      index(new Position(header.getId(), header.getCreated(), segment, offset));
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Appends an event, given as the raw JSON received from Stripe.
+   *
+   * @see #append(byte[])
+   */
+  public boolean append(String payload) throws IOException {
+    return append(payload.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Returns the event with the given ID, or {@code null} if it is not in the journal.
+   */
+  public EventJournalEntry get(String id) {
+    lock.readLock().lock();
+    try {
+      ensureOpen();
+      Position position = byId.get(id);
+      return (position != null) ? read(position) : null;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the events created within the given range, in the order they were created. Events
+   * created in the same second are returned in the order they were appended. Entries are read
+   * from the segments as the iteration proceeds; events compacted away in the meantime are
+   * skipped.
+   *
+   * @param fromCreated the lower bound of the {@code created} time, inclusive
+   * @param toCreated the upper bound of the {@code created} time, exclusive
+   */
+  public Iterable<EventJournalEntry> entries(long fromCreated, long toCreated) {
+    final List<Position> positions = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      ensureOpen();
+      if (fromCreated < toCreated) {
+        for (List<Position> created : byCreated.subMap(fromCreated, toCreated).values()) {
+          positions.addAll(created);
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    return new Iterable<EventJournalEntry>() {
+      @Override
+      public Iterator<EventJournalEntry> iterator() {
+        return new EntryIterator(positions.iterator());
+      }
+    };
+  }
+
+  /**
+   * Hands the events created within the given range to a handler, in the order they were
+   * created.
+   *
+   * @param fromCreated the lower bound of the {@code created} time, inclusive
+   * @param toCreated the upper bound of the {@code created} time, exclusive
+   * @param handler the handler
+   * @return the number of events replayed
+   * @throws Exception the first exception thrown by the handler, which stops the replay
+   */
+  public int replay(long fromCreated, long toCreated, WebhookEventHandler handler)
+      throws Exception {
+    int count = 0;
+    for (EventJournalEntry entry : entries(fromCreated, toCreated)) {
+      handler.onEvent(entry.getEvent());
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Removes the events created before the given time. Segments that only hold such events are
+   * deleted. Segments where they make up at least half of the records are rewritten without
+   * them; other segments are left as they are until more of their events expire. The segment
+   * being written to is never compacted.
+   *
+   * @param retainFromCreated the {@code created} time of the oldest events to keep
+   * @return the number of events removed
+   * @throws IOException if a segment cannot be rewritten
+   */
+  public int compact(long retainFromCreated) throws IOException {
+    lock.writeLock().lock();
+    try {
+      ensureOpen();
+      int removed = 0;
+      Iterator<Segment> iterator = segments.subList(0, segments.size() - 1).iterator();
+      while (iterator.hasNext()) {
+        Segment segment = iterator.next();
+        List<Position> expired = new ArrayList<>();
+        List<Position> kept = new ArrayList<>();
+        for (Position position : segment.positions) {
+          (position.created < retainFromCreated ? expired : kept).add(position);
+        }
+        if (expired.isEmpty() || expired.size() < kept.size()) {
+          continue;
+        }
+
+        if (kept.isEmpty()) {
+          Files.deleteIfExists(segment.file.toPath());
+          iterator.remove();
+        } else {
+          rewrite(segment, kept);
+        }
+        for (Position position : expired) {
+          unindex(position);
+        }
+        removed += expired.size();
+      }
+      compactedEvents += removed;
+      return removed;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Forces the records appended so far to disk.
+   */
+  public void flush() {
+    lock.readLock().lock();
+    try {
+      ensureOpen();
+      segments.get(segments.size() - 1).buffer.force();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns a snapshot of the journal's counters.
+   */
+  public EventJournalStats getStats() {
+    lock.readLock().lock();
+    try {
+      long bytes = 0;
+      for (Segment segment : segments) {
+        bytes += segment.writePosition;
+      }
+      return new EventJournalStats(byId.size(), segments.size(), bytes, compactedEvents);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Forces the journal to disk and closes its segments.
+   */
+  @Override
+  public void close() throws IOException {
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      for (Segment segment : segments) {
+        segment.buffer.force();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void open() throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create the journal directory " + directory);
+    }
+    File[] files = directory.listFiles();
+    if (files == null) {
+      throw new IOException("Cannot list the journal directory " + directory);
+    }
+    Arrays.sort(files);
+    for (File file : files) {
+      String name = file.getName();
+      if (name.endsWith(COMPACTION_SUFFIX)) {
+        // left over by a compaction that did not complete; the original segment is intact
+        Files.delete(file.toPath());
+      } else if (name.endsWith(SEGMENT_SUFFIX)) {
+        long number = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        Segment segment = new Segment(number, file, file.length());
+        segments.add(segment);
+        scan(segment);
+      }
+    }
+    if (segments.isEmpty()) {
+      roll(segmentSize);
+    }
+  }
+
+  /**
+   * Indexes the valid records of a segment, and sets its write position after the last one.
+   */
+  private void scan(Segment segment) {
+    MappedByteBuffer buffer = segment.buffer;
+    int offset = 0;
+    while (offset + HEADER_SIZE <= buffer.capacity()) {
+      int length = buffer.getInt(offset);
+      if (length < HEADER_SIZE - LENGTH_SIZE
+          || length > buffer.capacity() - offset - LENGTH_SIZE) {
+        break;
+      }
+      byte[] record = new byte[length - LENGTH_SIZE];
+      ByteBuffer duplicate = buffer.duplicate();
+      duplicate.position(offset + HEADER_SIZE - 10);
+      duplicate.get(record);
+      CRC32 crc = new CRC32();
+      crc.update(record);
+      if ((int) crc.getValue() != buffer.getInt(offset + LENGTH_SIZE)) {
+        break;
+      }
+
+      long created = buffer.getLong(offset + 8);
+      int idLength = buffer.getShort(offset + 16) & 0xffff;
+      String id = new String(record, 10, idLength, StandardCharsets.UTF_8);
+      index(new Position(id, created, segment, offset));
+      offset += LENGTH_SIZE + length;
+    }
+    segment.writePosition = offset;
+  }
+
+  private Segment roll(int minimumSize) throws IOException {
+    long number = 0;
+    if (!segments.isEmpty()) {
+      Segment last = segments.get(segments.size() - 1);
+      last.buffer.force();
+      number = last.number + 1;
+    }
+    File file = new File(directory, String.format("%020d%s", number, SEGMENT_SUFFIX));
+    Segment segment = new Segment(number, file, Math.max(segmentSize, minimumSize));
+    segments.add(segment);
+    return segment;
+  }
+
+  /**
+   * Copies the records to keep into a new file, which then atomically replaces the segment.
+   */
+  private void rewrite(Segment segment, List<Position> kept) throws IOException {
+    int size = 0;
+    for (Position position : kept) {
+      size += LENGTH_SIZE + segment.buffer.getInt(position.offset);
+    }
+    File temporary = new File(directory, segment.file.getName() + COMPACTION_SUFFIX);
+    Segment compacted = new Segment(segment.number, temporary, size);
+    int[] offsets = new int[kept.size()];
+    for (int i = 0; i < kept.size(); i++) {
+      int offset = kept.get(i).offset;
+      ByteBuffer record = segment.buffer.duplicate();
+      record.position(offset);
+      record.limit(offset + LENGTH_SIZE + segment.buffer.getInt(offset));
+      offsets[i] = compacted.writePosition;
+      compacted.buffer.put(record);
+      compacted.writePosition = compacted.buffer.position();
+    }
+    compacted.buffer.force();
+    Files.move(temporary.toPath(), segment.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+
+    segment.map(size);
+    segment.writePosition = size;
+    segment.positions.clear();
+    for (int i = 0; i < kept.size(); i++) {
+      Position position = kept.get(i);
+      position.offset = offsets[i];
+      segment.positions.add(position);
+    }
+  }
+
+  private EventJournalEntry read(Position position) {
+    Segment segment = position.segment;
+    int offset = position.offset;
+    int idLength = segment.buffer.getShort(offset + 16) & 0xffff;
+    int payloadLength = segment.buffer.getInt(offset) - (HEADER_SIZE - LENGTH_SIZE) - idLength;
+    byte[] payload = new byte[payloadLength];
+    ByteBuffer buffer = segment.buffer.duplicate();
+    buffer.position(offset + HEADER_SIZE + idLength);
+    buffer.get(payload);
+    return new EventJournalEntry(position.id, position.created, payload);
+  }
+
+  private void index(Position position) {
+    byId.put(position.id, position);
+    List<Position> created = byCreated.get(position.created);
+    if (created == null) {
+      created = new ArrayList<>(1);
+      byCreated.put(position.created, created);
+    }
+    created.add(position);
+    position.segment.positions.add(position);
+  }
+
+  private void unindex(Position position) {
+    byId.remove(position.id);
+    List<Position> created = byCreated.get(position.created);
+    created.remove(position);
+    if (created.isEmpty()) {
+      byCreated.remove(position.created);
+    }
+    position.segment = null;
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("The journal is closed");
+    }
+  }
+
+  /**
+   * Reads the ID and the created time of an event without parsing the rest of it.
+   */
+  private static EventJournalEntry readHeader(byte[] payload) {
+    String id = null;
+    long created = 0;
+    boolean hasCreated = false;
+    try {
+      JsonReader reader = new JsonReader(
+          new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8));
+      reader.beginObject();
+      while (reader.hasNext() && (id == null || !hasCreated)) {
+        String name = reader.nextName();
+        if ("id".equals(name) && reader.peek() == JsonToken.STRING) {
+          id = reader.nextString();
+        } else if ("created".equals(name) && reader.peek() == JsonToken.NUMBER) {
+          created = reader.nextLong();
+          hasCreated = true;
+        } else {
+          reader.skipValue();
+        }
+      }
+    } catch (IOException | IllegalStateException | NumberFormatException e) {
+      throw new IllegalArgumentException("The payload is not a valid event", e);
+    }
+    if (id == null) {
+      throw new IllegalArgumentException("The payload is not a valid event: it has no ID");
+    }
+    return new EventJournalEntry(id, created, null);
+  }
+
+  private static final class Position {
+    final String id;
+    final long created;
+    // guarded by the journal's lock; null once the event has been compacted away
+    Segment segment;
+    int offset;
+
+    Position(String id, long created, Segment segment, int offset) {
+      this.id = id;
+      this.created = created;
+      this.segment = segment;
+      this.offset = offset;
+    }
+  }
+
+  private static final class Segment {
+    final long number;
+    final File file;
+    final List<Position> positions = new ArrayList<>();
+    MappedByteBuffer buffer;
+    int writePosition;
+
+    Segment(long number, File file, long size) throws IOException {
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("The journal segment " + file + " is too large");
+      }
+      this.number = number;
+      this.file = file;
+      map(size);
+    }
+
+    void map(long size) throws IOException {
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        if (raf.length() < size) {
+          raf.setLength(size);
+        }
+        // the mapping stays valid once the file is closed, and is released when collected
+        buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+    }
+  }
+
+  private final class EntryIterator implements Iterator<EventJournalEntry> {
+    private final Iterator<Position> positions;
+    private EventJournalEntry next;
+
+    EntryIterator(Iterator<Position> positions) {
+      this.positions = positions;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && positions.hasNext()) {
+        Position position = positions.next();
+        lock.readLock().lock();
+        try {
+          ensureOpen();
+          if (position.segment != null) {
+            next = read(position);
+          }
+        } finally {
+          lock.readLock().unlock();
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public EventJournalEntry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      EventJournalEntry entry = next;
+      next = null;
+      return entry;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  public static final class EventJournalBuilder {
+    private File directory;
+    private int segmentSize = 64 * 1024 * 1024;
+    private boolean syncOnAppend;
+
+    /**
+     * Sets the directory holding the segments of the journal. It is created if needed.
+     */
+    public EventJournalBuilder setDirectory(File directory) {
+      this.directory = directory;
+      return this;
+    }
+
+    /**
+     * Sets the size of the segment files. Defaults to 64 MB. Events larger than a segment get
+     * a segment of their own.
+     */
+    public EventJournalBuilder setSegmentSize(int segmentSize) {
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
+    /**
+     * Sets whether every append is forced to disk before returning. Defaults to false, in which
+     * case the operating system writes the segments back on its own schedule, and a crash of
+     * the machine (but not of the process) may lose the most recent events.
+     */
+    public EventJournalBuilder setSyncOnAppend(boolean syncOnAppend) {
+      this.syncOnAppend = syncOnAppend;
+      return this;
+    }
+
+    /**
+     * Opens an {@link EventJournal} with the specified values, indexing the segments already in
+     * its directory.
+     *
+     * @throws IOException if the directory or its segments cannot be read
+     */
+    public EventJournal open() throws IOException {
+      if (directory == null) {
+        throw new IllegalArgumentException("A directory is required");
+      }
+      if (segmentSize < HEADER_SIZE) {
+        throw new IllegalArgumentException("The segment size is too small");
+      }
+      EventJournal journal = new EventJournal(this);
+      journal.open();
+      return journal;
+    }
+  }
+}
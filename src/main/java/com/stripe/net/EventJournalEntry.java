@@ -0,0 +1,57 @@
+package com.stripe.net;
+
+import com.stripe.model.Event;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An event read from an {@link EventJournal}. The raw JSON is only parsed into an {@link Event}
+ * when {@link #getEvent()} is first called.
+ */
+public final class EventJournalEntry {
+  private final String id;
+  private final long created;
+  private final byte[] payload;
+  private volatile Event event;
+
+  EventJournalEntry(String id, long created, byte[] payload) {
+    this.id = id;
+    this.created = created;
+    this.payload = payload;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public long getCreated() {
+    return created;
+  }
+
+  /**
+   * Returns the event as it was received, as JSON.
+   */
+  public String getPayload() {
+    return new String(payload, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the event, parsing it on the first call.
+   */
+  public Event getEvent() {
+    Event event = this.event;
+    if (event == null) {
+      event = ApiResource.GSON.fromJson(
+          new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8),
+          Event.class);
+      this.event = event;
+    }
+    return event;
+  }
+
+  byte[] payload() {
+    return payload;
+  }
+}
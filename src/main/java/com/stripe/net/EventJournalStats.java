@@ -0,0 +1,48 @@
+package com.stripe.net;
+
+/**
+ * Snapshot of the counters of an {@link EventJournal}.
+ */
+public final class EventJournalStats {
+  private final long events;
+  private final int segments;
+  private final long bytes;
+  private final long compactedEvents;
+
+  EventJournalStats(long events, int segments, long bytes, long compactedEvents) {
+    this.events = events;
+    this.segments = segments;
+    this.bytes = bytes;
+    this.compactedEvents = compactedEvents;
+  }
+
+  /**
+   * Returns the number of events in the journal.
+   */
+  public long getEvents() {
+    return events;
+  }
+
+  /**
+   * Returns the number of segment files of the journal.
+   */
+  public int getSegments() {
+    return segments;
+  }
+
+  /**
+   * Returns the number of bytes used by the records of the journal. Segment files are allocated
+   * ahead, so they take more space on disk.
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the number of events removed by {@link EventJournal#compact} since the journal was
+   * opened.
+   */
+  public long getCompactedEvents() {
+    return compactedEvents;
+  }
+}
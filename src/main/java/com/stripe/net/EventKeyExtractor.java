@@ -0,0 +1,66 @@
+package com.stripe.net;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import com.stripe.model.Customer;
+import com.stripe.model.Event;
+import com.stripe.model.EventData;
+import com.stripe.model.HasId;
+import com.stripe.model.StripeObject;
+
+/**
+ * Extracts the key of the entity an event is about. Events sharing a key are handled one at a
+ * time and in order by an {@link OrderedEventDispatcher}.
+ */
+public interface EventKeyExtractor {
+  /**
+   * Keys events by the ID of their object, so that events about the same object are ordered.
+   */
+  EventKeyExtractor OBJECT_ID = new EventKeyExtractor() {
+    @Override
+    public String key(Event event) {
+      EventData data = event.getData();
+      StripeObject object = (data != null) ? data.getObject() : null;
+      return (object instanceof HasId) ? ((HasId) object).getId() : null;
+    }
+  };
+
+  /**
+   * Keys events by the customer their object belongs to, so that events about the objects of
+   * the same customer are ordered. Events about objects without a customer are keyed by the ID
+   * of their object.
+   */
+  EventKeyExtractor CUSTOMER_ID = new EventKeyExtractor() {
+    @Override
+    public String key(Event event) {
+      EventData data = event.getData();
+      StripeObject object = (data != null) ? data.getObject() : null;
+      if (object instanceof Customer) {
+        return ((Customer) object).getId();
+      }
+      if (object != null) {
+        // the JSON the API sent is read as is; the model is only serialized when it is absent
+        JsonElement json = (data.getRawObject() != null)
+            ? data.getRawObject() : StripeObject.PRETTY_PRINT_GSON.toJsonTree(object);
+        JsonElement customer = json.isJsonObject() ? json.getAsJsonObject().get("customer") : null;
+        if (customer != null && customer.isJsonPrimitive()) {
+          return customer.getAsString();
+        }
+        if (customer != null && customer.isJsonObject()) {
+          JsonElement id = ((JsonObject) customer).get("id");
+          if (id != null && id.isJsonPrimitive()) {
+            return id.getAsString();
+          }
+        }
+      }
+      return OBJECT_ID.key(event);
+    }
+  };
+
+  /**
+   * Returns the key of the given event, or {@code null} if it has none. Events without a key are
+   * ordered with each other.
+   */
+  String key(Event event);
+}
@@ -0,0 +1,251 @@
+package com.stripe.net;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Java Flight Recorder event type for Stripe operations, so that recordings attribute socket
+ * reads and JSON parsing to the API calls behind them. All types are in the {@code Stripe}
+ * category.
+ *
+ * <p>The library targets Java 7, where {@code jdk.jfr.Event} cannot be extended, so the types
+ * are defined at run time with {@code jdk.jfr.EventFactory}, through reflection. On a JVM
+ * without JFR, or while no recording enables a type, {@link #begin()} returns {@code null}
+ * without allocating and callers skip the rest. Whether anything is recording at all is tracked
+ * with a {@code jdk.jfr.FlightRecorderListener}, so that the common case costs a field read:
+ *
+ * <p><pre>
+ * {@code
+ * Object event = FlightRecorderEvent.API_REQUEST.begin();
+ * // ...
+ * if (event != null) {
+ *   FlightRecorderEvent.API_REQUEST.commit(event, "GET", "/v1/charges/{id}", 200, ...);
+ * }
+ * }
+ * </pre>
+ */
+final class FlightRecorderEvent {
+  static final FlightRecorderEvent API_REQUEST = define("com.stripe.ApiRequest",
+      "Stripe API Request", "A request to the Stripe API, from its start to its deserialization",
+      field(String.class, "method", "Method"),
+      field(String.class, "path", "Path"),
+      field(int.class, "status", "Status"),
+      field(String.class, "requestId", "Request ID"),
+      bytesField("requestSize", "Request Size"),
+      bytesField("responseSize", "Response Size"));
+  static final FlightRecorderEvent CONNECTION_ACQUIRE = define("com.stripe.ConnectionAcquire",
+      "Stripe Connection Acquire", "Opening or reusing a connection to Stripe",
+      field(String.class, "host", "Host"));
+  static final FlightRecorderEvent RESPONSE_PARSE = define("com.stripe.ResponseParse",
+      "Stripe Response Parse", "Deserializing the body of a response into a model",
+      field(String.class, "modelClass", "Model Class"),
+      bytesField("size", "Size"));
+  static final FlightRecorderEvent WEBHOOK_VERIFY = define("com.stripe.WebhookVerify",
+      "Stripe Webhook Verify", "Checking the signature of a webhook payload",
+      field(boolean.class, "verified", "Verified"),
+      field(int.class, "secrets", "Secrets"));
+  static final FlightRecorderEvent PAGE_FETCH = define("com.stripe.PageFetch",
+      "Stripe Page Fetch", "Fetching one page of a list",
+      field(String.class, "path", "Path"),
+      field(int.class, "count", "Objects"),
+      field(boolean.class, "hasMore", "Has More"));
+
+  private static final String JFR = "jdk.jfr.";
+
+  // whether any recording is running; not initialized here, as the listener may set it first
+  private static volatile boolean recording;
+
+  static {
+    listenToRecordings();
+  }
+
+  // all null when JFR is not available
+  private final Object factory;
+  private final Object eventType;
+  private final Method isEnabled;
+  private final Method newEvent;
+  private final Method beginEvent;
+  private final Method endEvent;
+  private final Method setField;
+  private final Method commitEvent;
+
+  private FlightRecorderEvent(Object factory, Object eventType, Method isEnabled,
+      Method newEvent, Method beginEvent, Method endEvent, Method setField, Method commitEvent) {
+    this.factory = factory;
+    this.eventType = eventType;
+    this.isEnabled = isEnabled;
+    this.newEvent = newEvent;
+    this.beginEvent = beginEvent;
+    this.endEvent = endEvent;
+    this.setField = setField;
+    this.commitEvent = commitEvent;
+  }
+
+  /**
+   * Returns whether JFR is available, whether or not anything is recording.
+   */
+  boolean isAvailable() {
+    return factory != null;
+  }
+
+  /**
+   * Starts timing an event, or returns {@code null} if the type is not being recorded.
+   */
+  Object begin() {
+    if (factory == null || !recording) {
+      return null;
+    }
+    try {
+      if (!(Boolean) isEnabled.invoke(eventType)) {
+        return null;
+      }
+      Object event = newEvent.invoke(factory);
+      beginEvent.invoke(event);
+      return event;
+    } catch (IllegalAccessException | InvocationTargetException | RuntimeException e) {
+      // recording must not fail the operation
+      return null;
+    }
+  }
+
+  /**
+   * Ends an event started by {@link #begin()} and commits it with the values of its fields, in
+   * the order they are defined in.
+   */
+  void commit(Object event, Object... values) {
+    if (event == null) {
+      return;
+    }
+    try {
+      endEvent.invoke(event);
+      for (int i = 0; i < values.length; i++) {
+        setField.invoke(event, i, values[i]);
+      }
+      commitEvent.invoke(event);
+    } catch (IllegalAccessException | InvocationTargetException | RuntimeException e) {
+      // recording must not fail the operation
+    }
+  }
+
+  private static FlightRecorderEvent define(String name, String label, String description,
+      Field... fields) {
+    try {
+      Constructor<?> newAnnotation = Class.forName(JFR + "AnnotationElement")
+          .getConstructor(Class.class, Object.class);
+      Constructor<?> newValueDescriptor = Class.forName(JFR + "ValueDescriptor")
+          .getConstructor(Class.class, String.class, List.class);
+
+      List<Object> annotations = Arrays.asList(
+          newAnnotation.newInstance(Class.forName(JFR + "Name"), name),
+          newAnnotation.newInstance(Class.forName(JFR + "Label"), label),
+          newAnnotation.newInstance(Class.forName(JFR + "Description"), description),
+          newAnnotation.newInstance(Class.forName(JFR + "Category"), new String[] {"Stripe"}));
+      List<Object> valueDescriptors = new ArrayList<>();
+      for (Field field : fields) {
+        List<Object> fieldAnnotations = new ArrayList<>();
+        fieldAnnotations.add(newAnnotation.newInstance(Class.forName(JFR + "Label"),
+            field.label));
+        if (field.bytes) {
+          fieldAnnotations.add(newAnnotation.newInstance(Class.forName(JFR + "DataAmount"),
+              "BYTES"));
+        }
+        valueDescriptors.add(newValueDescriptor.newInstance(field.type, field.name,
+            fieldAnnotations));
+      }
+
+      Class<?> factoryClass = Class.forName(JFR + "EventFactory");
+      Class<?> eventClass = Class.forName(JFR + "Event");
+      Object factory = factoryClass.getMethod("create", List.class, List.class)
+          .invoke(null, annotations, valueDescriptors);
+      Object eventType = factoryClass.getMethod("getEventType").invoke(factory);
+      return new FlightRecorderEvent(factory, eventType,
+          Class.forName(JFR + "EventType").getMethod("isEnabled"),
+          factoryClass.getMethod("newEvent"),
+          eventClass.getMethod("begin"),
+          eventClass.getMethod("end"),
+          eventClass.getMethod("set", int.class, Object.class),
+          eventClass.getMethod("commit"));
+    } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+      // no JFR on this JVM, or it refused the definition
+      return new FlightRecorderEvent(null, null, null, null, null, null, null, null);
+    }
+  }
+
+  /**
+   * Registers a listener that keeps {@link #recording} up to date. The recorder itself is only
+   * looked at once it has been initialized, so that loading this class does not start it.
+   */
+  private static void listenToRecordings() {
+    try {
+      final Class<?> listenerClass = Class.forName(JFR + "FlightRecorderListener");
+      final Class<?> recorderClass = Class.forName(JFR + "FlightRecorder");
+      Object listener = Proxy.newProxyInstance(FlightRecorderEvent.class.getClassLoader(),
+          new Class<?>[] {listenerClass}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+              switch (method.getName()) {
+                case "recorderInitialized":
+                case "recordingStateChanged":
+                  recording = anyRunning(recorderClass);
+                  return null;
+                case "hashCode":
+                  return System.identityHashCode(proxy);
+                case "equals":
+                  return proxy == args[0];
+                case "toString":
+                  return "FlightRecorderEvent listener";
+                default:
+                  return null;
+              }
+            }
+          });
+      recorderClass.getMethod("addListener", listenerClass).invoke(null, listener);
+    } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+      // no JFR on this JVM: nothing is ever recorded
+    }
+  }
+
+  private static boolean anyRunning(Class<?> recorderClass) {
+    try {
+      Object recorder = recorderClass.getMethod("getFlightRecorder").invoke(null);
+      Method getState = Class.forName(JFR + "Recording").getMethod("getState");
+      for (Object r : (List<?>) recorderClass.getMethod("getRecordings").invoke(recorder)) {
+        if ("RUNNING".equals(String.valueOf(getState.invoke(r)))) {
+          return true;
+        }
+      }
+      return false;
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // assume a recording, so that events are still checked one by one
+      return true;
+    }
+  }
+
+  private static Field field(Class<?> type, String name, String label) {
+    return new Field(type, name, label, false);
+  }
+
+  private static Field bytesField(String name, String label) {
+    return new Field(long.class, name, label, true);
+  }
+
+  private static final class Field {
+    private final Class<?> type;
+    private final String name;
+    private final String label;
+    private final boolean bytes;
+
+    Field(Class<?> type, String name, String label, boolean bytes) {
+      this.type = type;
+      this.name = name;
+      this.label = label;
+      this.bytes = bytes;
+    }
+  }
+}
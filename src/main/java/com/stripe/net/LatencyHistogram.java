@@ -0,0 +1,81 @@
+package com.stripe.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A log-bucketed histogram of durations in nanoseconds, in the manner of HdrHistogram: every
+ * power of two is split into 16 linear sub-buckets, so recorded values are kept within 6.25%.
+ * Recording is lock-free; the sum is striped over a few padded cells so that threads recording at
+ * once rarely update the same one.
+ */
+final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private static final int STRIPES = 8;
+  // cells are 8 longs apart so that stripes do not share a cache line
+  private static final int PADDING = 8;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLongArray sums = new AtomicLongArray(STRIPES * PADDING);
+  private final AtomicLong max = new AtomicLong();
+  private final AtomicLong rateLimited = new AtomicLong();
+
+  void record(long nanos, boolean wasRateLimited) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(index(value));
+    int stripe = (int) (Thread.currentThread().getId() % STRIPES);
+    sums.addAndGet(stripe * PADDING, value);
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+    if (wasRateLimited) {
+      rateLimited.incrementAndGet();
+    }
+  }
+
+  /**
+   * Copies the histogram into a series, optionally resetting it. Values recorded while the copy
+   * is taken land either in the copy or in the next one.
+   */
+  LatencySeries snapshot(ApiResource.RequestMethod method, String path, String statusClass,
+      boolean reset) {
+    long[] copy = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      copy[i] = reset ? counts.getAndSet(i, 0) : counts.get(i);
+    }
+    long sum = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      sum += reset ? sums.getAndSet(i * PADDING, 0) : sums.get(i * PADDING);
+    }
+    long maxValue = reset ? max.getAndSet(0) : max.get();
+    long rateLimitedCount = reset ? rateLimited.getAndSet(0) : rateLimited.get();
+    return new LatencySeries(method, path, statusClass, copy, sum, maxValue, rateLimitedCount);
+  }
+
+  static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Returns the highest value that falls into a bucket.
+   */
+  static long highestValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+    long subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+    long lowest = (SUB_BUCKETS + subBucket) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
@@ -0,0 +1,135 @@
+package com.stripe.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link RequestListener} that keeps a latency histogram per endpoint (method and URL template,
+ * such as {@code GET /v1/charges/{id}}) and class of status, from which it reports percentiles and
+ * error and 429 rates.
+ *
+ * <p>Recording takes no lock: histograms are arrays of atomic counters, created once per series.
+ *
+ * <p><pre>
+ * {@code
+ * LatencyMetrics metrics = new LatencyMetrics();
+ * Stripe.addRequestListener(metrics);
+ *
+ * // every minute
+ * LatencySnapshot lastMinute = metrics.snapshotAndReset();
+ * log.info("p99 of charge creations: {}ns", lastMinute.getSeries(
+ *     RequestMethod.POST, "/v1/charges", "2xx").getP99Nanos());
+ *
+ * // or on a /metrics endpoint
+ * response.write(metrics.snapshot().toPrometheusText());
+ * }
+ * </pre>
+ */
+public class LatencyMetrics implements RequestListener {
+  private static final Comparator<LatencySeries> SERIES_ORDER = new Comparator<LatencySeries>() {
+    @Override
+    public int compare(LatencySeries a, LatencySeries b) {
+      int byPath = a.getPath().compareTo(b.getPath());
+      if (byPath != 0) {
+        return byPath;
+      }
+      int byMethod = a.getMethod().compareTo(b.getMethod());
+      return (byMethod != 0) ? byMethod : a.getStatusClass().compareTo(b.getStatusClass());
+    }
+  };
+
+  private final ConcurrentMap<SeriesKey, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+  private final AtomicLong startMillis = new AtomicLong(System.currentTimeMillis());
+
+  /**
+   * Records the requests that reach their last phase, {@link RequestEvent.Phase#DESERIALIZED} or
+   * {@link RequestEvent.Phase#ERROR}.
+   */
+  @Override
+  public void onRequestEvent(RequestEvent event) {
+    if (event.getPhase() != RequestEvent.Phase.DESERIALIZED
+        && event.getPhase() != RequestEvent.Phase.ERROR) {
+      return;
+    }
+    SeriesKey key = new SeriesKey(event.getMethod(), event.getUrlTemplate(),
+        statusClass(event.getStatus()));
+    LatencyHistogram histogram = histograms.get(key);
+    if (histogram == null) {
+      LatencyHistogram created = new LatencyHistogram();
+      histogram = histograms.putIfAbsent(key, created);
+      if (histogram == null) {
+        histogram = created;
+      }
+    }
+    histogram.record(event.getElapsedNanos(), event.getStatus() == 429);
+  }
+
+  /**
+   * Returns the latencies recorded since the collector was created or last reset.
+   */
+  public LatencySnapshot snapshot() {
+    return takeSnapshot(false);
+  }
+
+  /**
+   * Returns the latencies recorded since the collector was created or last reset, and resets it,
+   * so that snapshots taken periodically each cover one period.
+   */
+  public LatencySnapshot snapshotAndReset() {
+    return takeSnapshot(true);
+  }
+
+  private LatencySnapshot takeSnapshot(boolean reset) {
+    long now = System.currentTimeMillis();
+    long start = reset ? startMillis.getAndSet(now) : startMillis.get();
+    List<LatencySeries> series = new ArrayList<>();
+    for (Map.Entry<SeriesKey, LatencyHistogram> entry : histograms.entrySet()) {
+      SeriesKey key = entry.getKey();
+      LatencySeries s = entry.getValue().snapshot(key.method, key.path, key.statusClass, reset);
+      if (s.getCount() > 0) {
+        series.add(s);
+      }
+    }
+    Collections.sort(series, SERIES_ORDER);
+    return new LatencySnapshot(series, start, now);
+  }
+
+  private static String statusClass(int status) {
+    return (status >= 100 && status < 600) ? (status / 100) + "xx" : "error";
+  }
+
+  private static final class SeriesKey {
+    private final ApiResource.RequestMethod method;
+    private final String path;
+    private final String statusClass;
+
+    SeriesKey(ApiResource.RequestMethod method, String path, String statusClass) {
+      this.method = method;
+      this.path = (path != null) ? path : "";
+      this.statusClass = statusClass;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof SeriesKey)) {
+        return false;
+      }
+      SeriesKey that = (SeriesKey) o;
+      return method == that.method && path.equals(that.path)
+          && statusClass.equals(that.statusClass);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = String.valueOf(method).hashCode();
+      result = 31 * result + path.hashCode();
+      return 31 * result + statusClass.hashCode();
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com.stripe.net;
+
+/**
+ * The latencies of the requests to one endpoint that ended with one class of status, as copied
+ * from a {@link LatencyMetrics} collector.
+ */
+public final class LatencySeries {
+  private final ApiResource.RequestMethod method;
+  private final String path;
+  private final String statusClass;
+  private final long[] counts;
+  private final long count;
+  private final long sumNanos;
+  private final long maxNanos;
+  private final long rateLimited;
+
+  LatencySeries(ApiResource.RequestMethod method, String path, String statusClass, long[] counts,
+      long sumNanos, long maxNanos, long rateLimited) {
+    this.method = method;
+    this.path = path;
+    this.statusClass = statusClass;
+    this.counts = counts;
+    long total = 0;
+    for (long bucket : counts) {
+      total += bucket;
+    }
+    this.count = total;
+    this.sumNanos = sumNanos;
+    this.maxNanos = maxNanos;
+    this.rateLimited = rateLimited;
+  }
+
+  public ApiResource.RequestMethod getMethod() {
+    return method;
+  }
+
+  /**
+   * Returns the URL template of the endpoint, such as {@code /v1/charges/{id}}.
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Returns the class of the HTTP status, such as {@code 2xx} or {@code 4xx}, or {@code error}
+   * for requests that failed without a response.
+   */
+  public String getStatusClass() {
+    return statusClass;
+  }
+
+  /**
+   * Returns whether the series counts as errors: anything but {@code 2xx}.
+   */
+  public boolean isError() {
+    return !"2xx".equals(statusClass);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the number of requests of the series answered with a {@code 429}.
+   */
+  public long getRateLimited() {
+    return rateLimited;
+  }
+
+  public long getSumNanos() {
+    return sumNanos;
+  }
+
+  public long getMaxNanos() {
+    return maxNanos;
+  }
+
+  public long getMeanNanos() {
+    return (count == 0) ? 0 : sumNanos / count;
+  }
+
+  /**
+   * Returns the latency below which the given percentage of the requests fall, within the 6.25%
+   * precision of the histogram.
+   *
+   * @param percentile the percentage, between 0 and 100
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(LatencyHistogram.highestValue(i), maxNanos);
+      }
+    }
+    return maxNanos;
+  }
+
+  public long getP50Nanos() {
+    return getValueAtPercentile(50);
+  }
+
+  public long getP90Nanos() {
+    return getValueAtPercentile(90);
+  }
+
+  public long getP99Nanos() {
+    return getValueAtPercentile(99);
+  }
+
+  public long getP999Nanos() {
+    return getValueAtPercentile(99.9);
+  }
+}
@@ -0,0 +1,177 @@
+package com.stripe.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The latencies recorded by a {@link LatencyMetrics} collector, per endpoint and class of status.
+ */
+public final class LatencySnapshot {
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  private final List<LatencySeries> series;
+  private final long startMillis;
+  private final long endMillis;
+
+  LatencySnapshot(List<LatencySeries> series, long startMillis, long endMillis) {
+    this.series = Collections.unmodifiableList(new ArrayList<>(series));
+    this.startMillis = startMillis;
+    this.endMillis = endMillis;
+  }
+
+  /**
+   * Returns the series, sorted by path, method and status class.
+   */
+  public List<LatencySeries> getSeries() {
+    return series;
+  }
+
+  /**
+   * Returns the series of one endpoint and class of status, or {@code null} if no request
+   * matched.
+   */
+  public LatencySeries getSeries(ApiResource.RequestMethod method, String path,
+      String statusClass) {
+    for (LatencySeries s : series) {
+      if (s.getMethod() == method && s.getPath().equals(path)
+          && s.getStatusClass().equals(statusClass)) {
+        return s;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns when the recording of the snapshot started: when the collector was created or last
+   * reset, in epoch milliseconds.
+   */
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  /**
+   * Returns when the snapshot was taken, in epoch milliseconds.
+   */
+  public long getEndMillis() {
+    return endMillis;
+  }
+
+  /**
+   * Returns the share of all requests that did not end with a {@code 2xx}, between 0 and 1.
+   */
+  public double getErrorRate() {
+    return errorRate(series);
+  }
+
+  /**
+   * Returns the share of the requests to an endpoint that did not end with a {@code 2xx},
+   * between 0 and 1.
+   */
+  public double getErrorRate(ApiResource.RequestMethod method, String path) {
+    return errorRate(endpoint(method, path));
+  }
+
+  /**
+   * Returns the share of all requests answered with a {@code 429}, between 0 and 1.
+   */
+  public double getRateLimitedRate() {
+    return rateLimitedRate(series);
+  }
+
+  /**
+   * Returns the share of the requests to an endpoint answered with a {@code 429}, between 0 and
+   * 1.
+   */
+  public double getRateLimitedRate(ApiResource.RequestMethod method, String path) {
+    return rateLimitedRate(endpoint(method, path));
+  }
+
+  /**
+   * Formats the snapshot in the Prometheus text exposition format: a
+   * {@code stripe_request_duration_seconds} summary per series, and the error and 429 ratios
+   * per endpoint.
+   */
+  public String toPrometheusText() {
+    StringBuilder out = new StringBuilder();
+    out.append("# HELP stripe_request_duration_seconds Latency of Stripe API requests.\n");
+    out.append("# TYPE stripe_request_duration_seconds summary\n");
+    for (LatencySeries s : series) {
+      String labels = String.format("method=\"%s\",path=\"%s\",status=\"%s\"", s.getMethod(),
+          escape(s.getPath()), s.getStatusClass());
+      for (double quantile : QUANTILES) {
+        out.append("stripe_request_duration_seconds{").append(labels)
+            .append(",quantile=\"").append(quantile).append("\"} ")
+            .append(seconds(s.getValueAtPercentile(quantile * 100))).append('\n');
+      }
+      out.append("stripe_request_duration_seconds_sum{").append(labels).append("} ")
+          .append(seconds(s.getSumNanos())).append('\n');
+      out.append("stripe_request_duration_seconds_count{").append(labels).append("} ")
+          .append(s.getCount()).append('\n');
+    }
+
+    Map<String, List<LatencySeries>> endpoints = new LinkedHashMap<>();
+    for (LatencySeries s : series) {
+      String labels = String.format("method=\"%s\",path=\"%s\"", s.getMethod(),
+          escape(s.getPath()));
+      if (!endpoints.containsKey(labels)) {
+        endpoints.put(labels, new ArrayList<LatencySeries>());
+      }
+      endpoints.get(labels).add(s);
+    }
+    out.append("# HELP stripe_request_error_ratio Share of requests not answered with a 2xx.\n");
+    out.append("# TYPE stripe_request_error_ratio gauge\n");
+    for (Map.Entry<String, List<LatencySeries>> endpoint : endpoints.entrySet()) {
+      out.append("stripe_request_error_ratio{").append(endpoint.getKey()).append("} ")
+          .append(errorRate(endpoint.getValue())).append('\n');
+    }
+    out.append("# HELP stripe_request_rate_limited_ratio Share of requests answered with a 429.\n");
+    out.append("# TYPE stripe_request_rate_limited_ratio gauge\n");
+    for (Map.Entry<String, List<LatencySeries>> endpoint : endpoints.entrySet()) {
+      out.append("stripe_request_rate_limited_ratio{").append(endpoint.getKey()).append("} ")
+          .append(rateLimitedRate(endpoint.getValue())).append('\n');
+    }
+    return out.toString();
+  }
+
+  private List<LatencySeries> endpoint(ApiResource.RequestMethod method, String path) {
+    List<LatencySeries> matching = new ArrayList<>();
+    for (LatencySeries s : series) {
+      if (s.getMethod() == method && s.getPath().equals(path)) {
+        matching.add(s);
+      }
+    }
+    return matching;
+  }
+
+  private static double errorRate(List<LatencySeries> series) {
+    long total = 0;
+    long errors = 0;
+    for (LatencySeries s : series) {
+      total += s.getCount();
+      errors += s.isError() ? s.getCount() : 0;
+    }
+    return (total == 0) ? 0 : (double) errors / total;
+  }
+
+  private static double rateLimitedRate(List<LatencySeries> series) {
+    long total = 0;
+    long rateLimited = 0;
+    for (LatencySeries s : series) {
+      total += s.getCount();
+      rateLimited += s.getRateLimited();
+    }
+    return (total == 0) ? 0 : (double) rateLimited / total;
+  }
+
+  private static String seconds(long nanos) {
+    return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
@@ -0,0 +1,139 @@
+package com.stripe.net;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.stripe.model.BalanceTransactionDeserializer;
+import com.stripe.model.ChargeRefundCollectionDeserializer;
+import com.stripe.model.DisputeDataDeserializer;
+import com.stripe.model.EphemeralKeyDeserializer;
+import com.stripe.model.EventDataDeserializer;
+import com.stripe.model.EventRequestDeserializer;
+import com.stripe.model.ExpandableFieldDeserializer;
+import com.stripe.model.FeeRefundCollectionDeserializer;
+import com.stripe.model.OrderItemDeserializer;
+import com.stripe.model.PaymentIntentSourceActionDeserializer;
+import com.stripe.model.Source;
+import com.stripe.model.SourceMandateNotification;
+import com.stripe.model.SourceTransaction;
+import com.stripe.model.SourceTypeDataDeserializer;
+import com.stripe.model.StripeRawJsonObjectDeserializer;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Applies the custom deserializers of the models to the {@link ApiResource#GSON} instance.
+ * Models are matched on the name of their raw type, as {@code GsonBuilder.registerTypeAdapter}
+ * does, so that neither a model nor its deserializer is loaded before Gson first needs an adapter
+ * for it.
+ */
+final class LazyDeserializerFactory implements TypeAdapterFactory {
+  private static final String MODEL = "com.stripe.model.";
+
+  @Override
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    @SuppressWarnings("unchecked")
+    JsonDeserializer<T> deserializer =
+        (JsonDeserializer<T>) newDeserializer(type.getRawType().getName());
+    if (deserializer == null) {
+      return null;
+    }
+    return new DeserializerAdapter<>(gson, this, type, deserializer);
+  }
+
+  /**
+   * Returns the deserializer of the model with the given class name, or {@code null} if it has
+   * none. The model classes below are only type arguments, and are not loaded.
+   */
+  static JsonDeserializer<?> newDeserializer(String className) {
+    if (!className.startsWith(MODEL)) {
+      return null;
+    }
+    switch (className.substring(MODEL.length())) {
+      case "BalanceTransaction":
+        return new BalanceTransactionDeserializer();
+      case "ChargeRefundCollection":
+        return new ChargeRefundCollectionDeserializer();
+      case "Dispute":
+        return new DisputeDataDeserializer();
+      case "EphemeralKey":
+        return new EphemeralKeyDeserializer();
+      case "EventData":
+        return new EventDataDeserializer();
+      case "EventRequest":
+        return new EventRequestDeserializer();
+      case "ExpandableField":
+        return new ExpandableFieldDeserializer();
+      case "FeeRefundCollection":
+        return new FeeRefundCollectionDeserializer();
+      case "OrderItem":
+        return new OrderItemDeserializer();
+      case "PaymentIntentSourceAction":
+        return new PaymentIntentSourceActionDeserializer();
+      case "Source":
+        return new SourceTypeDataDeserializer<Source>();
+      case "SourceMandateNotification":
+        return new SourceTypeDataDeserializer<SourceMandateNotification>();
+      case "SourceTransaction":
+        return new SourceTypeDataDeserializer<SourceTransaction>();
+      case "StripeRawJsonObject":
+        return new StripeRawJsonObjectDeserializer();
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Reads with a deserializer and writes with the adapter Gson would otherwise have used, like
+   * the adapter {@code GsonBuilder.registerTypeAdapter} creates for a deserializer.
+   */
+  private static final class DeserializerAdapter<T> extends TypeAdapter<T> {
+    private final Gson gson;
+    private final TypeAdapterFactory skipPast;
+    private final TypeToken<T> type;
+    private final JsonDeserializer<T> deserializer;
+    private final JsonDeserializationContext context;
+    private volatile TypeAdapter<T> delegate;
+
+    DeserializerAdapter(final Gson gson, TypeAdapterFactory skipPast, TypeToken<T> type,
+        JsonDeserializer<T> deserializer) {
+      this.gson = gson;
+      this.skipPast = skipPast;
+      this.type = type;
+      this.deserializer = deserializer;
+      this.context = new JsonDeserializationContext() {
+        @Override
+        public <R> R deserialize(JsonElement json, Type typeOfT) throws JsonParseException {
+          return gson.fromJson(json, typeOfT);
+        }
+      };
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+      JsonElement tree = gson.getAdapter(JsonElement.class).read(in);
+      if (tree.isJsonNull()) {
+        return null;
+      }
+      return deserializer.deserialize(tree, type.getType(), context);
+    }
+
+    @Override
+    public void write(JsonWriter out, T value) throws IOException {
+      TypeAdapter<T> adapter = delegate;
+      if (adapter == null) {
+        adapter = gson.getDelegateAdapter(skipPast, type);
+        delegate = adapter;
+      }
+      adapter.write(out, value);
+    }
+  }
+}
@@ -33,6 +33,7 @@ import java.net.Authenticator;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.PasswordAuthentication;
+import java.net.Proxy;
 import java.net.URL;
 import java.net.URLStreamHandler;
 import java.nio.charset.StandardCharsets;
@@ -43,6 +44,7 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLSocketFactory;
 
@@ -71,6 +73,26 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
 
   private static final SSLSocketFactory socketFactory = new StripeSslSocketFactory();
 
+  private final StripeClient client;
+  private final RequestTelemetry telemetry =
+      new RequestTelemetry(RequestTelemetry.DEFAULT_CAPACITY);
+  private volatile ClientHeaders clientHeaders;
+
+  /**
+   * Creates a getter configured by the global settings on {@link Stripe}.
+   */
+  public LiveStripeResponseGetter() {
+    this(StripeClient.getDefault());
+  }
+
+  /**
+   * Creates a getter configured by the settings of a client, which fall back to the global
+   * settings when unset.
+   */
+  LiveStripeResponseGetter(StripeClient client) {
+    this.client = client;
+  }
+
   @Override
   public <T> T request(
       ApiResource.RequestMethod method,
@@ -80,7 +102,16 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
       ApiResource.RequestType type,
       RequestOptions options)
       throws StripeException {
-    return staticRequest(method, url, params, clazz, type, options);
+    RequestTrace trace = RequestTrace.start(client.getRequestListener(), method, url,
+        params);
+    try {
+      T resource = executeRequest(method, url, params, clazz, type, options, trace);
+      trace.deserialized();
+      return resource;
+    } catch (StripeException | RuntimeException e) {
+      trace.error(e);
+      throw e;
+    }
   }
 
   @Override
@@ -92,7 +123,39 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
       ApiResource.RequestType type,
       RequestOptions options)
       throws StripeException {
-    return staticOAuthRequest(method, url, params, clazz, type, options);
+    RequestTrace trace = RequestTrace.start(client.getRequestListener(), method, url,
+        params);
+    try {
+      T resource = executeOAuthRequest(method, url, params, clazz, type, options, trace);
+      trace.deserialized();
+      return resource;
+    } catch (StripeException | RuntimeException e) {
+      trace.error(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Issues a request and returns the response without buffering its body. The caller owns the
+   * returned stream and must close it, which also releases the underlying connection. Non-2xx
+   * responses are read in full and raised as the usual {@link StripeException} subclasses.
+   *
+   * <p>Multipart requests are not supported by this method.
+   */
+  public StripeResponseStream streamRequest(
+      ApiResource.RequestMethod method,
+      String url,
+      Map<String, Object> params,
+      RequestOptions options)
+      throws StripeException {
+    RequestTrace trace = RequestTrace.start(client.getRequestListener(), method, url,
+        params);
+    try {
+      return executeStreamRequest(method, url, params, options, trace);
+    } catch (StripeException | RuntimeException e) {
+      trace.error(e);
+      throw e;
+    }
   }
 
   private static String urlEncodePair(String k, String v)
@@ -112,34 +175,21 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
   }
 
   static Map<String, String> getHeaders(RequestOptions options) {
+    return getHeaders(options, new ClientHeaders(Stripe.getAppInfo()));
+  }
+
+  private static Map<String, String> getHeaders(RequestOptions options,
+      ClientHeaders clientHeaders) {
     Map<String, String> headers = new HashMap<>();
 
-    String userAgent = String.format("Stripe/v1 JavaBindings/%s", Stripe.VERSION);
-    if (Stripe.getAppInfo() != null) {
-      userAgent += " " + formatAppInfo(Stripe.getAppInfo());
-    }
-    headers.put("User-Agent", userAgent);
+    headers.put("User-Agent", clientHeaders.userAgent);
 
     headers.put("Accept-Charset", ApiResource.CHARSET);
     headers.put("Accept", "application/json");
 
     headers.put("Authorization", String.format("Bearer %s", options.getApiKey()));
 
-    // debug headers
-    String[] propertyNames = {"os.name", "os.version", "os.arch",
-        "java.version", "java.vendor", "java.vm.version",
-        "java.vm.vendor"};
-    Map<String, String> propertyMap = new HashMap<>();
-    for (String propertyName : propertyNames) {
-      propertyMap.put(propertyName, System.getProperty(propertyName));
-    }
-    propertyMap.put("bindings.version", Stripe.VERSION);
-    propertyMap.put("lang", "Java");
-    propertyMap.put("publisher", "Stripe");
-    if (Stripe.getAppInfo() != null) {
-      propertyMap.put("application", ApiResource.GSON.toJson(Stripe.getAppInfo()));
-    }
-    headers.put("X-Stripe-Client-User-Agent", ApiResource.GSON.toJson(propertyMap));
+    headers.put("X-Stripe-Client-User-Agent", clientHeaders.clientUserAgent);
     if (options.getStripeVersion() != null) {
       headers.put("Stripe-Version", options.getStripeVersion());
     }
@@ -152,8 +202,71 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
     return headers;
   }
 
+  /**
+   * Returns the headers of a request, reusing the client headers as long as the application
+   * information they describe is unchanged, and reporting the measurement of a previous request
+   * when telemetry is enabled.
+   */
+  private Map<String, String> headers(RequestOptions options) {
+    Map<String, String> appInfo = client.getAppInfo();
+    ClientHeaders cached = clientHeaders;
+    if (cached == null || !cached.describes(appInfo)) {
+      cached = new ClientHeaders(appInfo);
+      clientHeaders = cached;
+    }
+    Map<String, String> headers = getHeaders(options, cached);
+    if (client.isTelemetryEnabled()) {
+      String lastRequestMetrics = telemetry.nextHeader();
+      if (lastRequestMetrics != null) {
+        headers.put(RequestTelemetry.HEADER, lastRequestMetrics);
+      }
+    }
+    return headers;
+  }
+
+  /**
+   * The headers describing the bindings and the application, which only change with the
+   * application information.
+   */
+  private static final class ClientHeaders {
+    private final Map<String, String> appInfo;
+    private final String userAgent;
+    private final String clientUserAgent;
+
+    ClientHeaders(Map<String, String> appInfo) {
+      // Stripe.setAppInfo updates its map in place, so a copy is kept to notice changes
+      this.appInfo = (appInfo != null) ? new HashMap<>(appInfo) : null;
+
+      String userAgent = String.format("Stripe/v1 JavaBindings/%s", Stripe.VERSION);
+      if (appInfo != null) {
+        userAgent += " " + formatAppInfo(appInfo);
+      }
+      this.userAgent = userAgent;
+
+      // debug headers
+      String[] propertyNames = {"os.name", "os.version", "os.arch",
+          "java.version", "java.vendor", "java.vm.version",
+          "java.vm.vendor"};
+      Map<String, String> propertyMap = new HashMap<>();
+      for (String propertyName : propertyNames) {
+        propertyMap.put(propertyName, System.getProperty(propertyName));
+      }
+      propertyMap.put("bindings.version", Stripe.VERSION);
+      propertyMap.put("lang", "Java");
+      propertyMap.put("publisher", "Stripe");
+      if (appInfo != null) {
+        propertyMap.put("application", ApiResource.GSON.toJson(appInfo));
+      }
+      this.clientUserAgent = ApiResource.GSON.toJson(propertyMap);
+    }
+
+    boolean describes(Map<String, String> appInfo) {
+      return (this.appInfo != null) ? this.appInfo.equals(appInfo) : appInfo == null;
+    }
+  }
+
   @SuppressWarnings("unchecked")
-  private static HttpURLConnection createStripeConnection(
+  private HttpURLConnection createStripeConnection(
       String url, RequestOptions options) throws IOException {
     URL stripeUrl;
     String customUrlStreamHandlerClassName = System.getProperty(
@@ -186,12 +299,14 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
       stripeUrl = new URL(url);
     }
     HttpURLConnection conn;
-    if (Stripe.getConnectionProxy() != null) {
-      conn = (HttpURLConnection) stripeUrl.openConnection(Stripe.getConnectionProxy());
+    final Proxy proxy = client.getConnectionProxy();
+    if (proxy != null) {
+      conn = (HttpURLConnection) stripeUrl.openConnection(proxy);
+      final PasswordAuthentication proxyCredential = client.getProxyCredential();
       Authenticator.setDefault(new Authenticator() {
         @Override
         protected PasswordAuthentication getPasswordAuthentication() {
-          return Stripe.getProxyCredential();
+          return proxyCredential;
         }
       });
     } else {
@@ -200,7 +315,7 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
     conn.setConnectTimeout(options.getConnectTimeout());
     conn.setReadTimeout(options.getReadTimeout());
     conn.setUseCaches(false);
-    for (Map.Entry<String, String> header : getHeaders(options).entrySet()) {
+    for (Map.Entry<String, String> header : headers(options).entrySet()) {
       conn.setRequestProperty(header.getKey(), header.getValue());
     }
     if (conn instanceof HttpsURLConnection) {
@@ -220,40 +335,58 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
     }
   }
 
-  private static HttpURLConnection createGetConnection(
-      String url, String query, RequestOptions options) throws IOException {
+  private HttpURLConnection createGetConnection(
+      String url, String query, RequestOptions options, RequestTrace trace) throws IOException {
     String getUrl = formatUrl(url, query);
     HttpURLConnection conn = createStripeConnection(getUrl, options);
     conn.setRequestMethod("GET");
+    connect(conn, trace);
 
     return conn;
   }
 
-  private static HttpURLConnection createPostConnection(
-      String url, String query, RequestOptions options) throws IOException {
+  private HttpURLConnection createPostConnection(
+      String url, String query, RequestOptions options, RequestTrace trace) throws IOException {
     HttpURLConnection conn = createStripeConnection(url, options);
 
     conn.setDoOutput(true);
     conn.setRequestMethod("POST");
     conn.setRequestProperty("Content-Type", String.format(
         "application/x-www-form-urlencoded;charset=%s", ApiResource.CHARSET));
+    connect(conn, trace);
 
     @Cleanup OutputStream output = conn.getOutputStream();
     output.write(query.getBytes(ApiResource.CHARSET));
+    trace.written();
 
     return conn;
   }
 
-  private static HttpURLConnection createDeleteConnection(
-      String url, String query, RequestOptions options) throws IOException {
+  private HttpURLConnection createDeleteConnection(
+      String url, String query, RequestOptions options, RequestTrace trace) throws IOException {
     String deleteUrl = formatUrl(url, query);
     HttpURLConnection conn = createStripeConnection(
         deleteUrl, options);
     conn.setRequestMethod("DELETE");
+    connect(conn, trace);
 
     return conn;
   }
 
+  /**
+   * Opens a connection, or takes one from the keep-alive pool, and times it.
+   */
+  private void connect(HttpURLConnection conn, RequestTrace trace) throws IOException {
+    trace.connecting();
+    try {
+      conn.connect();
+    } catch (IOException | RuntimeException e) {
+      trace.connectFailed();
+      throw e;
+    }
+    trace.connected();
+  }
+
   static String createQuery(Map<String, Object> params)
       throws UnsupportedEncodingException, InvalidRequestException {
     StringBuilder queryStringBuffer = new StringBuilder();
@@ -403,31 +536,35 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
     }
   }
 
-  private static StripeResponse makeUrlConnectionRequest(
+  private HttpURLConnection createConnection(
       ApiResource.RequestMethod method, String url, String query,
-      RequestOptions options) throws ApiConnectionException {
+      RequestOptions options, RequestTrace trace) throws IOException, ApiConnectionException {
+    switch (method) {
+      case GET:
+        return createGetConnection(url, query, options, trace);
+      case POST:
+        return createPostConnection(url, query, options, trace);
+      case DELETE:
+        return createDeleteConnection(url, query, options, trace);
+      default:
+        throw new ApiConnectionException(
+            String.format(
+                "Unrecognized HTTP method %s. "
+                    + "This indicates a bug in the Stripe bindings. Please contact "
+                    + "support@stripe.com for assistance.",
+                method));
+    }
+  }
+
+  private StripeResponse makeUrlConnectionRequest(
+      ApiResource.RequestMethod method, String url, String query,
+      RequestOptions options, RequestTrace trace) throws ApiConnectionException {
     HttpURLConnection conn = null;
     try {
-      switch (method) {
-        case GET:
-          conn = createGetConnection(url, query, options);
-          break;
-        case POST:
-          conn = createPostConnection(url, query, options);
-          break;
-        case DELETE:
-          conn = createDeleteConnection(url, query, options);
-          break;
-        default:
-          throw new ApiConnectionException(
-              String.format(
-                  "Unrecognized HTTP method %s. "
-                      + "This indicates a bug in the Stripe bindings. Please contact "
-                      + "support@stripe.com for assistance.",
-                  method));
-      }
+      conn = createConnection(method, url, query, options, trace);
       // trigger the request
       int responseCode = conn.getResponseCode();
+      trace.firstByte(responseCode, conn.getHeaderField("Request-Id"));
       String responseBody;
       Map<String, List<String>> headers;
 
@@ -436,6 +573,7 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
       } else {
         responseBody = getResponseBody(conn.getErrorStream());
       }
+      trace.bodyRead(responseBody);
       headers = conn.getHeaderFields();
       return new StripeResponse(responseCode, responseBody, headers);
 
@@ -446,7 +584,7 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
                   + "Please check your internet connection and try again. If this problem persists,"
                   + "you should check Stripe's service status at https://twitter.com/stripestatus,"
                   + " or let us know at support@stripe.com.",
-              Stripe.getApiBase(), e.getMessage()), e);
+              client.getApiBase(), e.getMessage()), e);
     } finally {
       if (conn != null) {
         conn.disconnect();
@@ -454,9 +592,9 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
     }
   }
 
-  private static StripeResponse rawRequest(
+  private StripeResponse rawRequest(
       ApiResource.RequestMethod method, String url, Map<String, Object> params,
-      ApiResource.RequestType type, RequestOptions options)
+      ApiResource.RequestType type, RequestOptions options, RequestTrace trace)
       throws AuthenticationException, InvalidRequestException, ApiConnectionException,
       ApiException {
     if (options == null) {
@@ -484,25 +622,17 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
       allowedToSetTtl = false;
     }
 
-    String apiKey = options.getApiKey();
-    if (apiKey == null || apiKey.trim().isEmpty()) {
-      throw new AuthenticationException(
-          "No API key provided. (HINT: set your API key using 'Stripe.apiKey = <API-KEY>'. "
-              + "You can generate API keys from the Stripe web interface. "
-              + "See https://stripe.com/api for details or email support@stripe.com if you have "
-              + "questions.",
-          null, null, 0);
-    }
+    checkApiKey(options);
 
     try {
       StripeResponse response;
       switch (type) {
         case NORMAL:
-          response = getStripeResponse(method, url, params, options);
+          response = getStripeResponse(method, url, params, options, trace);
           break;
         case MULTIPART:
           response = getMultipartStripeResponse(method, url, params,
-              options);
+              options, trace);
           break;
         default:
           throw new RuntimeException(
@@ -519,11 +649,129 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
     }
   }
 
-  private static <T> T staticRequest(
+  private static void checkApiKey(RequestOptions options) throws AuthenticationException {
+    String apiKey = options.getApiKey();
+    if (apiKey == null || apiKey.trim().isEmpty()) {
+      throw new AuthenticationException(
+          "No API key provided. (HINT: set your API key using 'Stripe.apiKey = <API-KEY>'. "
+              + "You can generate API keys from the Stripe web interface. "
+              + "See https://stripe.com/api for details or email support@stripe.com if you have "
+              + "questions.",
+          null, null, 0);
+    }
+  }
+
+  private static void acquireRateLimit(RateLimiter rateLimiter, ApiResource.RequestMethod method,
+      RequestOptions options) throws ApiConnectionException {
+    if (rateLimiter == null) {
+      return;
+    }
+    try {
+      rateLimiter.acquire(method, options);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiConnectionException(
+          "Interrupted while waiting for the client-side rate limiter", e);
+    }
+  }
+
+  private StripeResponse rateLimitedRawRequest(
       ApiResource.RequestMethod method, String url, Map<String, Object> params,
-      Class<T> clazz, ApiResource.RequestType type, RequestOptions options)
+      ApiResource.RequestType type, RequestOptions options, RequestTrace trace)
       throws StripeException {
-    StripeResponse response = rawRequest(method, url, params, type, options);
+    RateLimiter rateLimiter = client.getRateLimiter();
+    acquireRateLimit(rateLimiter, method, options);
+    trace.dequeued();
+
+    long start = System.nanoTime();
+    StripeResponse response = rawRequest(method, url, params, type, options, trace);
+    if (client.isTelemetryEnabled()) {
+      telemetry.record(response.requestId(),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+    if (response.code() == 429 && rateLimiter != null) {
+      rateLimiter.onRateLimited(method, options);
+    }
+    return response;
+  }
+
+  private StripeResponseStream executeStreamRequest(
+      ApiResource.RequestMethod method, String url, Map<String, Object> params,
+      RequestOptions options, RequestTrace trace) throws StripeException {
+    if (options == null) {
+      options = RequestOptions.getDefault();
+    }
+    checkApiKey(options);
+    String query = encodeQuery(params);
+    trace.encoded(query.length());
+    RateLimiter rateLimiter = client.getRateLimiter();
+    acquireRateLimit(rateLimiter, method, options);
+
+    HttpURLConnection conn = null;
+    boolean handedOff = false;
+    try {
+      conn = createConnection(method, url, query, options, trace);
+      int responseCode = conn.getResponseCode();
+      trace.firstByte(responseCode, conn.getHeaderField("Request-Id"));
+
+      if (responseCode < 200 || responseCode >= 300) {
+        if (responseCode == 429 && rateLimiter != null) {
+          rateLimiter.onRateLimited(method, options);
+        }
+        handleApiError(getResponseBody(conn.getErrorStream()), responseCode,
+            conn.getHeaderField("Request-Id"));
+      }
+
+      StripeResponseStream response = new StripeResponseStream(responseCode,
+          conn.getInputStream(), conn.getHeaderFields(), conn);
+      handedOff = true;
+      return response;
+    } catch (IOException e) {
+      throw new ApiConnectionException(
+          String.format(
+              "IOException during API request to Stripe (%s): %s "
+                  + "Please check your internet connection and try again. If this problem persists,"
+                  + "you should check Stripe's service status at https://twitter.com/stripestatus,"
+                  + " or let us know at support@stripe.com.",
+              client.getApiBase(), e.getMessage()), e);
+    } finally {
+      // on success the connection is owned by the returned stream
+      if (conn != null && !handedOff) {
+        conn.disconnect();
+      }
+    }
+  }
+
+  private <T> T executeRequest(
+      ApiResource.RequestMethod method, String url, Map<String, Object> params,
+      Class<T> clazz, ApiResource.RequestType type, RequestOptions options,
+      RequestTrace trace) throws StripeException {
+    if (options == null) {
+      options = RequestOptions.getDefault();
+    }
+
+    StripeResponse response;
+    RequestCoalescer coalescer = client.getRequestCoalescer();
+    String coalescingKey = (coalescer != null)
+        ? RequestCoalescer.key(method, url, encodeQuery(params), type, options) : null;
+    if (coalescingKey != null) {
+      final ApiResource.RequestMethod sharedMethod = method;
+      final String sharedUrl = url;
+      final Map<String, Object> sharedParams = params;
+      final ApiResource.RequestType sharedType = type;
+      final RequestOptions sharedOptions = options;
+      // requests answered by another one in flight only report their start and end
+      final RequestTrace sharedTrace = trace;
+      response = coalescer.execute(coalescingKey, new RequestCoalescer.Call() {
+        @Override
+        public StripeResponse execute() throws StripeException {
+          return rateLimitedRawRequest(sharedMethod, sharedUrl, sharedParams, sharedType,
+              sharedOptions, sharedTrace);
+        }
+      });
+    } else {
+      response = rateLimitedRawRequest(method, url, params, type, options, trace);
+    }
 
     int responseCode = response.code();
     String responseBody = response.body();
@@ -534,25 +782,36 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
     }
 
     T resource = null;
+    trace.deserializing();
     try {
-      resource = ApiResource.GSON.fromJson(responseBody, clazz);
+      resource = deserialize(responseBody, clazz);
     } catch (JsonSyntaxException e) {
       raiseMalformedJsonError(responseBody, responseCode, requestId);
     }
 
     if (resource instanceof StripeObject) {
       StripeObject obj = (StripeObject)resource;
-      obj.setLastResponse(response);
+      obj.setLastResponse(response.withTimings(trace.timings()));
+    }
+    return resource;
+  }
+
+  private static <T> T deserialize(String body, Class<T> clazz) {
+    Object event = FlightRecorderEvent.RESPONSE_PARSE.begin();
+    T resource = ApiResource.GSON.fromJson(body, clazz);
+    if (event != null) {
+      FlightRecorderEvent.RESPONSE_PARSE.commit(event, clazz.getName(),
+          (body != null) ? RequestTrace.utf8Length(body) : 0L);
     }
     return resource;
   }
 
-  private static <T> T staticOAuthRequest(
+  private <T> T executeOAuthRequest(
       ApiResource.RequestMethod method, String url, Map<String, Object> params,
-      Class<T> clazz, ApiResource.RequestType type, RequestOptions options)
-      throws AuthenticationException, InvalidRequestException,
+      Class<T> clazz, ApiResource.RequestType type, RequestOptions options,
+      RequestTrace trace) throws AuthenticationException, InvalidRequestException,
       ApiConnectionException, ApiException, OAuthException {
-    StripeResponse response = rawRequest(method, url, params, type, options);
+    StripeResponse response = rawRequest(method, url, params, type, options, trace);
 
     int responseCode = response.code();
     String responseBody = response.body();
@@ -564,7 +823,7 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
 
     T resource = null;
     try {
-      resource = ApiResource.GSON.fromJson(responseBody, clazz);
+      resource = deserialize(responseBody, clazz);
     } catch (JsonSyntaxException e) {
       raiseMalformedJsonError(responseBody, responseCode, requestId);
     }
@@ -572,24 +831,17 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
     return resource;
   }
 
-  private static StripeResponse getStripeResponse(
+  private StripeResponse getStripeResponse(
       ApiResource.RequestMethod method, String url,
-      Map<String, Object> params, RequestOptions options)
+      Map<String, Object> params, RequestOptions options, RequestTrace trace)
       throws InvalidRequestException, ApiConnectionException,
       ApiException {
-    String query;
-    try {
-      query = createQuery(params);
-    } catch (UnsupportedEncodingException e) {
-      throw new InvalidRequestException("Unable to encode parameters to "
-          + ApiResource.CHARSET
-          + ". Please contact support@stripe.com for assistance.",
-          null, null, null, 0, e);
-    }
+    String query = encodeQuery(params);
+    trace.encoded(query.length());
 
     try {
       // HTTPSURLConnection verifies SSL cert by default
-      return makeUrlConnectionRequest(method, url, query, options);
+      return makeUrlConnectionRequest(method, url, query, options, trace);
     } catch (ClassCastException ce) {
       // appengine doesn't have HTTPSConnection, use URLFetch API
       String appEngineEnv = System.getProperty(
@@ -603,9 +855,21 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
     }
   }
 
-  private static StripeResponse getMultipartStripeResponse(
+  private static String encodeQuery(Map<String, Object> params)
+      throws InvalidRequestException {
+    try {
+      return createQuery(params);
+    } catch (UnsupportedEncodingException e) {
+      throw new InvalidRequestException("Unable to encode parameters to "
+          + ApiResource.CHARSET
+          + ". Please contact support@stripe.com for assistance.",
+          null, null, null, 0, e);
+    }
+  }
+
+  private StripeResponse getMultipartStripeResponse(
       ApiResource.RequestMethod method, String url,
-      Map<String, Object> params, RequestOptions options)
+      Map<String, Object> params, RequestOptions options, RequestTrace trace)
       throws InvalidRequestException, ApiConnectionException,
       ApiException {
 
@@ -624,6 +888,9 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
       conn.setRequestMethod("POST");
       conn.setRequestProperty("Content-Type", String.format(
           "multipart/form-data; boundary=%s", boundary));
+      // the size of the multipart body is not known until it is written
+      trace.encoded(-1);
+      connect(conn, trace);
 
       MultipartProcessor multipartProcessor = null;
       try {
@@ -672,9 +939,11 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
           multipartProcessor.finish();
         }
       }
+      trace.written();
 
       // trigger the request
       int responseCode = conn.getResponseCode();
+      trace.firstByte(responseCode, conn.getHeaderField("Request-Id"));
       String responseBody;
       Map<String, List<String>> headers;
 
@@ -683,6 +952,7 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
       } else {
         responseBody = getResponseBody(conn.getErrorStream());
       }
+      trace.bodyRead(responseBody);
       headers = conn.getHeaderFields();
       return new StripeResponse(responseCode, responseBody, headers);
 
@@ -693,7 +963,7 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
                   + "Please check your internet connection and try again. If this problem persists,"
                   + "you should check Stripe's service status at https://twitter.com/stripestatus,"
                   + " or let us know at support@stripe.com.",
-              Stripe.getApiBase(), e.getMessage()), e);
+              client.getApiBase(), e.getMessage()), e);
     } finally {
       if (conn != null) {
         conn.disconnect();
@@ -783,7 +1053,7 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
    * This is slower than usual because of reflection but avoids having to
    * maintain AppEngine-specific JAR
    */
-  private static StripeResponse makeAppEngineRequest(ApiResource.RequestMethod method,
+  private StripeResponse makeAppEngineRequest(ApiResource.RequestMethod method,
                              String url, String query, RequestOptions options) throws ApiException {
     String unknownErrorMessage = "Sorry, an unknown error occurred while trying to use the "
         + "Google App Engine runtime. Please contact support@stripe.com for assistance.";
@@ -834,7 +1104,7 @@ public class LiveStripeResponseGetter implements StripeResponseGetter {
             .invoke(request, query.getBytes(StandardCharsets.UTF_8));
       }
 
-      for (Map.Entry<String, String> header : getHeaders(options)
+      for (Map.Entry<String, String> header : headers(options)
           .entrySet()) {
         Class<?> httpHeaderClass = Class
             .forName("com.google.appengine.api.urlfetch.HTTPHeader");
@@ -0,0 +1,491 @@
+package com.stripe.net;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.StripeObject;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache for {@code retrieve} calls on rarely changing resources, such as plans,
+ * products or coupons.
+ *
+ * <p>Only classes registered with {@link ObjectCacheBuilder#addClass} are cached, each with its
+ * own time to live and size bound; the least recently used entry is evicted when a class is full.
+ * Entries are keyed by object id, API key, {@code Stripe-Account} and API version. Retrieves that
+ * carry parameters (for instance {@code expand}) bypass the cache.
+ *
+ * <p>The raw response is cached rather than the deserialized object, so every hit returns a fresh
+ * instance that the caller is free to modify. Any {@code POST} or {@code DELETE} made on a cached
+ * object through this library drops all of its entries.
+ *
+ * <p><pre>
+ * {@code
+ * Stripe.setObjectCache(ObjectCache.builder()
+ *     .addClass(Plan.class, TimeUnit.MINUTES.toMillis(10), 1000)
+ *     .addClass(Product.class, TimeUnit.MINUTES.toMillis(10), 1000)
+ *     .build());
+ * }
+ * </pre>
+ */
+public class ObjectCache {
+  private final Map<Class<?>, Region> regions;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong expirations = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+  private final AtomicLong refreshes = new AtomicLong();
+
+  private ObjectCache(Map<Class<?>, Policy> policies) {
+    Map<Class<?>, Region> regions = new HashMap<>();
+    for (Map.Entry<Class<?>, Policy> policy : policies.entrySet()) {
+      regions.put(policy.getKey(), new Region(
+          TimeUnit.MILLISECONDS.toNanos(policy.getValue().ttlMillis),
+          policy.getValue().maxEntries));
+    }
+    this.regions = Collections.unmodifiableMap(regions);
+  }
+
+  public static ObjectCacheBuilder builder() {
+    return new ObjectCacheBuilder();
+  }
+
+  /**
+   * Returns whether objects of the given class are cached.
+   */
+  public boolean isCached(Class<?> clazz) {
+    return regions.containsKey(clazz);
+  }
+
+  /**
+   * Drops every cached entry for the given object, whatever account or API version it was
+   * retrieved with.
+   */
+  public void invalidate(Class<?> clazz, String id) {
+    Region region = regions.get(clazz);
+    if (region != null && id != null) {
+      invalidations.addAndGet(region.invalidate(id));
+    }
+  }
+
+  /**
+   * Drops every cached entry.
+   */
+  public void invalidateAll() {
+    for (Region region : regions.values()) {
+      invalidations.addAndGet(region.clear());
+    }
+  }
+
+  /**
+   * Returns a snapshot of the cache's counters.
+   */
+  public ObjectCacheStats getStats() {
+    long size = 0;
+    for (Region region : regions.values()) {
+      size += region.size();
+    }
+    return new ObjectCacheStats(hits.get(), misses.get(), evictions.get(), expirations.get(),
+        invalidations.get(), refreshes.get(), size);
+  }
+
+  /**
+   * Brings the cached entries of an object up to date with a change notified by an event.
+   *
+   * <p>Entries retrieved with the API version of the event are replaced by {@code current}.
+   * Entries retrieved with another version are patched with the new values of
+   * {@code changedKeys} when those keep the JSON type they had in the entry, and dropped
+   * otherwise. Entries are ordered against the event by the {@code Date} header of their
+   * response, so that both times come from Stripe's clock; entries served in the second the event
+   * was created or later, or without a date, may already reflect a later change and are dropped.
+   *
+   * @param current the object as sent in the event
+   * @param changedKeys the top-level attributes listed in {@code previous_attributes}, or
+   *     {@code null} if unknown
+   * @param createdSeconds the {@code created} time of the event
+   */
+  void applyChange(Class<?> clazz, String id, String stripeVersion, JsonObject current,
+      Set<String> changedKeys, long createdSeconds) {
+    Region region = regions.get(clazz);
+    if (region != null && id != null) {
+      region.applyChange(id, stripeVersion, current, changedKeys, createdSeconds,
+          System.nanoTime());
+    }
+  }
+
+  /**
+   * Sends a request through the cache: retrieves of cached classes are answered from the cache
+   * when possible, and writes to cached objects invalidate them. URLs are matched against the
+   * API base of the client sending the request.
+   */
+  <T> T request(ApiResource.RequestMethod method, String url, Map<String, Object> params,
+      Class<T> clazz, RequestOptions options, StripeResponseGetter getter, String apiBase)
+      throws StripeException {
+    Region region = regions.get(clazz);
+    String id = (region != null) ? objectId(url, ApiResource.classUrl(clazz, apiBase)) : null;
+    if (id == null) {
+      return getter.request(method, url, params, clazz, ApiResource.RequestType.NORMAL, options);
+    }
+
+    if (method != ApiResource.RequestMethod.GET) {
+      invalidate(clazz, id);
+      return getter.request(method, url, params, clazz, ApiResource.RequestType.NORMAL, options);
+    }
+    if (params != null && !params.isEmpty()) {
+      return getter.request(method, url, params, clazz, ApiResource.RequestType.NORMAL, options);
+    }
+
+    RequestOptions resolved = (options != null) ? options : RequestOptions.getDefault();
+    EntryKey key = new EntryKey(id, resolved.getApiKey(), resolved.getStripeAccount(),
+        resolved.getStripeVersion());
+    StripeResponse cached = region.get(key, System.nanoTime());
+    if (cached != null) {
+      hits.incrementAndGet();
+      T resource = ApiResource.GSON.fromJson(cached.body(), clazz);
+      if (resource instanceof StripeObject) {
+        ((StripeObject) resource).setLastResponse(cached);
+      }
+      return resource;
+    }
+
+    misses.incrementAndGet();
+    long generation = region.generation(id);
+    T resource = getter.request(method, url, null, clazz, ApiResource.RequestType.NORMAL, options);
+    if (resource instanceof StripeObject) {
+      StripeResponse response = ((StripeObject) resource).getLastResponse();
+      if (response != null && response.body() != null) {
+        region.put(key, response, generation, System.nanoTime());
+      }
+    }
+    return resource;
+  }
+
+  /**
+   * Returns the decoded object id if {@code url} is the instance URL of an object under
+   * {@code classUrl}, or {@code null} otherwise. URLs of nested resources and actions such as
+   * {@code /v1/invoices/in_123/pay} resolve to the id of their parent object.
+   */
+  static String objectId(String url, String classUrl) {
+    if (url.length() <= classUrl.length() + 1 || !url.startsWith(classUrl)
+        || url.charAt(classUrl.length()) != '/') {
+      return null;
+    }
+    int start = classUrl.length() + 1;
+    int end = url.indexOf('/', start);
+    String id = url.substring(start, (end < 0) ? url.length() : end);
+    try {
+      return URLDecoder.decode(id, ApiResource.CHARSET);
+    } catch (UnsupportedEncodingException e) {
+      return id;
+    }
+  }
+
+  /**
+   * Applies the new values of {@code changedKeys} to a cached body, or returns {@code null} if
+   * one of them cannot be carried over safely.
+   */
+  static String patch(String cachedBody, JsonObject current, Set<String> changedKeys) {
+    JsonObject cached;
+    try {
+      cached = new JsonParser().parse(cachedBody).getAsJsonObject();
+    } catch (JsonParseException | IllegalStateException e) {
+      return null;
+    }
+    for (String changedKey : changedKeys) {
+      JsonElement value = current.get(changedKey);
+      if (value == null || !sameKind(cached.get(changedKey), value)) {
+        return null;
+      }
+      cached.add(changedKey, value);
+    }
+    return cached.toString();
+  }
+
+  /**
+   * Returns the time of the {@code Date} header of a response in seconds, or -1 if the response
+   * has none.
+   */
+  static long servedAtSeconds(StripeResponse response) {
+    String date = (response.headers() != null) ? response.headers().get("Date") : null;
+    if (date == null) {
+      return -1;
+    }
+    DateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    try {
+      return TimeUnit.MILLISECONDS.toSeconds(format.parse(date).getTime());
+    } catch (ParseException e) {
+      return -1;
+    }
+  }
+
+  private static boolean sameKind(JsonElement cached, JsonElement current) {
+    if (cached == null) {
+      // the attribute does not exist in the entry's API version
+      return false;
+    }
+    if (cached.isJsonNull()) {
+      return current.isJsonNull() || current.isJsonPrimitive();
+    }
+    if (current.isJsonNull()) {
+      return cached.isJsonPrimitive();
+    }
+    return cached.isJsonPrimitive() == current.isJsonPrimitive()
+        && cached.isJsonObject() == current.isJsonObject()
+        && cached.isJsonArray() == current.isJsonArray();
+  }
+
+  static final class EntryKey {
+    private final String id;
+    private final String apiKey;
+    private final String stripeAccount;
+    private final String stripeVersion;
+
+    EntryKey(String id, String apiKey, String stripeAccount, String stripeVersion) {
+      this.id = id;
+      this.apiKey = apiKey;
+      this.stripeAccount = stripeAccount;
+      this.stripeVersion = stripeVersion;
+    }
+
+    String getId() {
+      return id;
+    }
+
+    String getStripeVersion() {
+      return stripeVersion;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof EntryKey)) {
+        return false;
+      }
+      EntryKey that = (EntryKey) o;
+      return id.equals(that.id)
+          && equal(apiKey, that.apiKey)
+          && equal(stripeAccount, that.stripeAccount)
+          && equal(stripeVersion, that.stripeVersion);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = id.hashCode();
+      result = 31 * result + (apiKey != null ? apiKey.hashCode() : 0);
+      result = 31 * result + (stripeAccount != null ? stripeAccount.hashCode() : 0);
+      result = 31 * result + (stripeVersion != null ? stripeVersion.hashCode() : 0);
+      return result;
+    }
+
+    private static boolean equal(String a, String b) {
+      return (a != null) ? a.equals(b) : b == null;
+    }
+  }
+
+  private static final class CacheEntry {
+    final StripeResponse response;
+    final long expiresAtNanos;
+    // when Stripe served the object, or -1 if unknown
+    final long servedAtSeconds;
+
+    CacheEntry(StripeResponse response, long expiresAtNanos, long servedAtSeconds) {
+      this.response = response;
+      this.expiresAtNanos = expiresAtNanos;
+      this.servedAtSeconds = servedAtSeconds;
+    }
+  }
+
+  /**
+   * The entries of a single class, kept in access order so the eldest entry is the least
+   * recently used one.
+   */
+  final class Region {
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LinkedHashMap<EntryKey, CacheEntry> entries;
+    // every invalidation stamps the object with a new generation, so that a retrieve racing with
+    // a write cannot put a stale response back into the cache
+    private final Map<String, Long> generations = new HashMap<>();
+    private long generation;
+    // generation of the objects that have not been invalidated since the last reset
+    private long epoch;
+
+    Region(long ttlNanos, final int maxEntries) {
+      this.ttlNanos = ttlNanos;
+      this.maxEntries = maxEntries;
+      this.entries = new LinkedHashMap<EntryKey, CacheEntry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<EntryKey, CacheEntry> eldest) {
+          if (size() > Region.this.maxEntries) {
+            evictions.incrementAndGet();
+            return true;
+          }
+          return false;
+        }
+      };
+    }
+
+    synchronized StripeResponse get(EntryKey key, long now) {
+      CacheEntry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (now - entry.expiresAtNanos >= 0) {
+        entries.remove(key);
+        expirations.incrementAndGet();
+        return null;
+      }
+      return entry.response;
+    }
+
+    synchronized long generation(String id) {
+      Long invalidated = generations.get(id);
+      return (invalidated != null) ? invalidated : epoch;
+    }
+
+    synchronized void put(EntryKey key, StripeResponse response, long generation, long now) {
+      if (generation(key.getId()) != generation) {
+        return;
+      }
+      entries.put(key, new CacheEntry(response, now + ttlNanos, servedAtSeconds(response)));
+    }
+
+    synchronized void applyChange(String id, String stripeVersion, JsonObject current,
+        Set<String> changedKeys, long createdSeconds, long now) {
+      // retrieves in flight were answered before the change, or after it; either way they must
+      // not overwrite what the event tells us
+      stamp(id);
+
+      String body = current.toString();
+      Iterator<Map.Entry<EntryKey, CacheEntry>> it = entries.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<EntryKey, CacheEntry> entry = it.next();
+        EntryKey key = entry.getKey();
+        CacheEntry cached = entry.getValue();
+        if (!key.getId().equals(id)) {
+          continue;
+        }
+
+        String updated = null;
+        if (cached.servedAtSeconds >= 0 && cached.servedAtSeconds < createdSeconds) {
+          if (stripeVersion != null && stripeVersion.equals(key.getStripeVersion())) {
+            updated = body;
+          } else if (changedKeys != null) {
+            updated = patch(cached.response.body(), current, changedKeys);
+          }
+        }
+
+        if (updated != null) {
+          entry.setValue(new CacheEntry(new StripeResponse(200, updated),
+              now + ttlNanos, createdSeconds));
+          refreshes.incrementAndGet();
+        } else {
+          it.remove();
+          invalidations.incrementAndGet();
+        }
+      }
+    }
+
+    synchronized int invalidate(String id) {
+      stamp(id);
+
+      int removed = 0;
+      Iterator<EntryKey> it = entries.keySet().iterator();
+      while (it.hasNext()) {
+        EntryKey key = it.next();
+        if (key.getId().equals(id)) {
+          it.remove();
+          removed++;
+        }
+      }
+      return removed;
+    }
+
+    synchronized int clear() {
+      int removed = entries.size();
+      entries.clear();
+      resetGenerations();
+      return removed;
+    }
+
+    private void stamp(String id) {
+      if (generations.size() >= maxEntries) {
+        // moving every object to a new epoch at worst skips caching the responses of retrieves
+        // in flight, and keeps the stamps bounded
+        resetGenerations();
+      }
+      generations.put(id, ++generation);
+    }
+
+    private void resetGenerations() {
+      generations.clear();
+      epoch = ++generation;
+    }
+
+    synchronized int size() {
+      return entries.size();
+    }
+  }
+
+  private static final class Policy {
+    final long ttlMillis;
+    final int maxEntries;
+
+    Policy(long ttlMillis, int maxEntries) {
+      this.ttlMillis = ttlMillis;
+      this.maxEntries = maxEntries;
+    }
+  }
+
+  public static final class ObjectCacheBuilder {
+    private final Map<Class<?>, Policy> policies = new HashMap<>();
+
+    /**
+     * Caches retrieves of the given class.
+     *
+     * @param clazz the resource class, for instance {@code Plan.class}
+     * @param ttlMillis how long a retrieved object is served from the cache
+     * @param maxEntries how many objects of this class are kept at most
+     */
+    public ObjectCacheBuilder addClass(Class<? extends ApiResource> clazz, long ttlMillis,
+        int maxEntries) {
+      if (ttlMillis <= 0 || maxEntries <= 0) {
+        throw new IllegalArgumentException("TTL and maximum size must be positive");
+      }
+      policies.put(clazz, new Policy(ttlMillis, maxEntries));
+      return this;
+    }
+
+    /**
+     * Constructs a {@link ObjectCache} with the specified values.
+     */
+    public ObjectCache build() {
+      return new ObjectCache(policies);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.stripe.net;
+
+/**
+ * Snapshot of the counters of an {@link ObjectCache}.
+ */
+public final class ObjectCacheStats {
+  private final long hits;
+  private final long misses;
+  private final long evictions;
+  private final long expirations;
+  private final long invalidations;
+  private final long refreshes;
+  private final long size;
+
+  ObjectCacheStats(long hits, long misses, long evictions, long expirations, long invalidations,
+      long refreshes, long size) {
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.expirations = expirations;
+    this.invalidations = invalidations;
+    this.refreshes = refreshes;
+    this.size = size;
+  }
+
+  /**
+   * Returns the number of retrieves answered from the cache.
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of cacheable retrieves that had to go to the network.
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Returns the share of cacheable retrieves answered from the cache, between 0 and 1.
+   */
+  public double getHitRate() {
+    long lookups = hits + misses;
+    return (lookups == 0) ? 0 : (double) hits / lookups;
+  }
+
+  /**
+   * Returns the number of entries evicted to keep a class within its size bound.
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * Returns the number of entries dropped because their time to live had passed.
+   */
+  public long getExpirations() {
+    return expirations;
+  }
+
+  /**
+   * Returns the number of entries dropped because their object was changed.
+   */
+  public long getInvalidations() {
+    return invalidations;
+  }
+
+  /**
+   * Returns the number of entries brought up to date from an event.
+   */
+  public long getRefreshes() {
+    return refreshes;
+  }
+
+  /**
+   * Returns the number of entries currently cached.
+   */
+  public long getSize() {
+    return size;
+  }
+}
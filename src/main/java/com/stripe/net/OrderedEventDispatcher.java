@@ -0,0 +1,336 @@
+package com.stripe.net;
+
+import com.stripe.model.Event;
+
+import java.io.Closeable;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands events to a handler one at a time per entity, in the order they were created.
+ *
+ * <p>Stripe may deliver the events about an object out of order, and concurrently. The
+ * dispatcher partitions events by {@link EventKeyExtractor key} onto a fixed number of lanes,
+ * each served by a single thread, so that the events about the same entity never run
+ * concurrently while unrelated entities are handled in parallel. Within a lane, events are held
+ * for a short reordering window and handled by ascending {@code created} time, so that an
+ * {@code invoice.paid} event delivered just before the {@code invoice.updated} event that
+ * precedes it is still handled second.
+ *
+ * <p>The dispatcher is itself a {@link WebhookEventHandler}, so it can sit between a
+ * {@link WebhookReceiver} and the application's handler:
+ *
+ * <p><pre>
+ * {@code
+ * OrderedEventDispatcher dispatcher = OrderedEventDispatcher.builder()
+ *     .setHandler(handler)
+ *     .setKeyExtractor(EventKeyExtractor.CUSTOMER_ID)
+ *     .build();
+ * WebhookReceiver receiver = WebhookReceiver.builder()
+ *     .setSecret("whsec_...")
+ *     .setDefaultHandler(dispatcher)
+ *     .build();
+ * }
+ * </pre>
+ */
+public class OrderedEventDispatcher implements WebhookEventHandler, Closeable {
+  private final WebhookEventHandler handler;
+  private final EventKeyExtractor keyExtractor;
+  private final long windowNanos;
+  private final int windowSize;
+  private final Lane[] lanes;
+
+  private final AtomicLong sequence = new AtomicLong();
+  private final AtomicLong dispatched = new AtomicLong();
+  private final AtomicLong handled = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong reordered = new AtomicLong();
+  private final AtomicLong late = new AtomicLong();
+
+  private OrderedEventDispatcher(OrderedEventDispatcherBuilder builder) {
+    this.handler = builder.handler;
+    this.keyExtractor = builder.keyExtractor;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(builder.windowMillis);
+    this.windowSize = builder.windowSize;
+    this.lanes = new Lane[builder.lanes];
+    for (int i = 0; i < lanes.length; i++) {
+      lanes[i] = new Lane(i);
+    }
+  }
+
+  public static OrderedEventDispatcherBuilder builder() {
+    return new OrderedEventDispatcherBuilder();
+  }
+
+  /**
+   * Queues an event on the lane of its key. Blocks while the lane already holds as many events
+   * as its reordering window allows.
+   *
+   * @throws InterruptedException if interrupted while waiting for room in the lane
+   */
+  public void dispatch(Event event) throws InterruptedException {
+    String key = keyExtractor.key(event);
+    int hash = (key != null) ? key.hashCode() : 0;
+    // spread the hash so that sequential IDs do not all land on the same lanes
+    hash ^= (hash >>> 16);
+    lanes[(hash & Integer.MAX_VALUE) % lanes.length].offer(event);
+  }
+
+  /**
+   * Same as {@link #dispatch}, so that the dispatcher can be registered as the handler of a
+   * {@link WebhookReceiver}.
+   */
+  @Override
+  public void onEvent(Event event) throws InterruptedException {
+    dispatch(event);
+  }
+
+  /**
+   * Returns a snapshot of the dispatcher's counters.
+   */
+  public OrderedEventDispatcherStats getStats() {
+    int buffered = 0;
+    for (Lane lane : lanes) {
+      buffered += lane.size();
+    }
+    return new OrderedEventDispatcherStats(dispatched.get(), handled.get(), failed.get(),
+        reordered.get(), late.get(), buffered);
+  }
+
+  /**
+   * Stops accepting events, and waits for the events already dispatched to be handled.
+   */
+  @Override
+  public void close() {
+    for (Lane lane : lanes) {
+      lane.close();
+    }
+    boolean interrupted = false;
+    for (Lane lane : lanes) {
+      while (true) {
+        try {
+          lane.thread.join();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class Pending {
+    final Event event;
+    final long created;
+    final long sequence;
+    final long releaseAtNanos;
+
+    Pending(Event event, long sequence, long releaseAtNanos) {
+      this.event = event;
+      this.created = (event.getCreated() != null) ? event.getCreated() : 0;
+      this.sequence = sequence;
+      this.releaseAtNanos = releaseAtNanos;
+    }
+  }
+
+  private static final Comparator<Pending> CREATION_ORDER = new Comparator<Pending>() {
+    @Override
+    public int compare(Pending a, Pending b) {
+      int result = Long.compare(a.created, b.created);
+      return (result != 0) ? result : Long.compare(a.sequence, b.sequence);
+    }
+  };
+
+  /**
+   * A single-threaded partition of the events. The events of the lane wait in a heap ordered by
+   * creation time; the oldest is handed to the handler once it has waited for the window, or
+   * as soon as the lane is full.
+   */
+  private final class Lane implements Runnable {
+    final ReentrantLock lock = new ReentrantLock();
+    final Condition changed = lock.newCondition();
+    final Condition notFull = lock.newCondition();
+    final PriorityQueue<Pending> buffer = new PriorityQueue<>(16, CREATION_ORDER);
+    final Thread thread;
+
+    // only accessed by the lane's thread
+    long maxHandledSequence = -1;
+    // guarded by lock
+    long maxHandledCreated = Long.MIN_VALUE;
+    boolean closed;
+
+    Lane(int index) {
+      thread = new Thread(this, String.format("stripe-event-lane-%d", index));
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    void offer(Event event) throws InterruptedException {
+      lock.lockInterruptibly();
+      try {
+        while (buffer.size() >= windowSize && !closed) {
+          notFull.await();
+        }
+        if (closed) {
+          throw new IllegalStateException("The dispatcher is closed");
+        }
+        Pending pending = new Pending(event, sequence.getAndIncrement(),
+            System.nanoTime() + windowNanos);
+        if (pending.created < maxHandledCreated) {
+          late.incrementAndGet();
+        }
+        buffer.add(pending);
+        dispatched.incrementAndGet();
+        changed.signal();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    int size() {
+      lock.lock();
+      try {
+        return buffer.size();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void close() {
+      lock.lock();
+      try {
+        closed = true;
+        changed.signal();
+        notFull.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        Pending next = take();
+        if (next == null) {
+          return;
+        }
+        if (next.sequence < maxHandledSequence) {
+          reordered.incrementAndGet();
+        }
+        maxHandledSequence = Math.max(maxHandledSequence, next.sequence);
+        try {
+          handler.onEvent(next.event);
+        } catch (Exception e) {
+          failed.incrementAndGet();
+        }
+        handled.incrementAndGet();
+      }
+    }
+
+    /**
+     * Waits for the oldest event of the lane to be released, or returns null once the lane is
+     * closed and drained.
+     */
+    private Pending take() {
+      lock.lock();
+      try {
+        while (true) {
+          Pending head = buffer.peek();
+          if (head == null) {
+            if (closed) {
+              return null;
+            }
+            changed.awaitUninterruptibly();
+            continue;
+          }
+          long wait = head.releaseAtNanos - System.nanoTime();
+          if (wait <= 0 || buffer.size() >= windowSize || closed) {
+            buffer.poll();
+            maxHandledCreated = Math.max(maxHandledCreated, head.created);
+            notFull.signal();
+            return head;
+          }
+          try {
+            changed.awaitNanos(wait);
+          } catch (InterruptedException e) {
+            // lane threads are only stopped through close
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  public static final class OrderedEventDispatcherBuilder {
+    private WebhookEventHandler handler;
+    private EventKeyExtractor keyExtractor = EventKeyExtractor.OBJECT_ID;
+    private int lanes = Runtime.getRuntime().availableProcessors();
+    private long windowMillis = 500;
+    private int windowSize = 1000;
+
+    /**
+     * Sets the handler the events are handed to.
+     */
+    public OrderedEventDispatcherBuilder setHandler(WebhookEventHandler handler) {
+      this.handler = handler;
+      return this;
+    }
+
+    /**
+     * Sets how events are partitioned. Defaults to {@link EventKeyExtractor#OBJECT_ID}.
+     */
+    public OrderedEventDispatcherBuilder setKeyExtractor(EventKeyExtractor keyExtractor) {
+      this.keyExtractor = keyExtractor;
+      return this;
+    }
+
+    /**
+     * Sets the number of lanes, and therefore of threads. Defaults to the number of processors.
+     */
+    public OrderedEventDispatcherBuilder setLanes(int lanes) {
+      this.lanes = lanes;
+      return this;
+    }
+
+    /**
+     * Sets how long an event is held to let older events delivered after it overtake it.
+     * Defaults to 500 milliseconds; 0 handles events in arrival order.
+     */
+    public OrderedEventDispatcherBuilder setWindowMillis(long windowMillis) {
+      this.windowMillis = windowMillis;
+      return this;
+    }
+
+    /**
+     * Sets how many events a lane holds at most. A full lane releases its oldest event before
+     * the end of the window, and {@link OrderedEventDispatcher#dispatch} blocks until the
+     * handler catches up. Defaults to 1000.
+     */
+    public OrderedEventDispatcherBuilder setWindowSize(int windowSize) {
+      this.windowSize = windowSize;
+      return this;
+    }
+
+    /**
+     * Constructs an {@link OrderedEventDispatcher} with the specified values, and starts its
+     * lanes.
+     */
+    public OrderedEventDispatcher build() {
+      if (handler == null || keyExtractor == null) {
+        throw new IllegalArgumentException("A handler and a key extractor are required");
+      }
+      if (lanes < 1 || windowSize < 1 || windowMillis < 0) {
+        throw new IllegalArgumentException(
+            "Lanes and window size must be positive, and the window cannot be negative");
+      }
+      return new OrderedEventDispatcher(this);
+    }
+  }
+}
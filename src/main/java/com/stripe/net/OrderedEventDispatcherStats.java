@@ -0,0 +1,67 @@
+package com.stripe.net;
+
+/**
+ * Snapshot of the counters of an {@link OrderedEventDispatcher}.
+ */
+public final class OrderedEventDispatcherStats {
+  private final long dispatched;
+  private final long handled;
+  private final long failed;
+  private final long reordered;
+  private final long late;
+  private final int buffered;
+
+  OrderedEventDispatcherStats(long dispatched, long handled, long failed, long reordered,
+      long late, int buffered) {
+    this.dispatched = dispatched;
+    this.handled = handled;
+    this.failed = failed;
+    this.reordered = reordered;
+    this.late = late;
+    this.buffered = buffered;
+  }
+
+  /**
+   * Returns the number of events handed to the dispatcher.
+   */
+  public long getDispatched() {
+    return dispatched;
+  }
+
+  /**
+   * Returns the number of events that went through the handler, including the failed ones.
+   */
+  public long getHandled() {
+    return handled;
+  }
+
+  /**
+   * Returns the number of events whose handler threw an exception.
+   */
+  public long getFailed() {
+    return failed;
+  }
+
+  /**
+   * Returns the number of events handled after an event that was dispatched later but created
+   * earlier.
+   */
+  public long getReordered() {
+    return reordered;
+  }
+
+  /**
+   * Returns the number of events dispatched after a newer event of their lane was already
+   * handled, and which therefore could not be put back in order.
+   */
+  public long getLate() {
+    return late;
+  }
+
+  /**
+   * Returns the number of events waiting in the reordering windows.
+   */
+  public int getBuffered() {
+    return buffered;
+  }
+}
@@ -0,0 +1,306 @@
+package com.stripe.net;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side token bucket limiter applied to every API request before it is sent.
+ *
+ * <p>Buckets are kept per API key and {@code Stripe-Account}, with separate budgets for reads
+ * ({@code GET}) and writes ({@code POST}, {@code DELETE}), mirroring how Stripe accounts for
+ * requests. When a request is rejected with a {@code 429} the rate of its bucket is cut
+ * multiplicatively, at most once per second. It then grows back additively over time until the
+ * configured rate is reached again.
+ *
+ * <p>Requests that find their bucket empty wait in the calling thread until a token is
+ * available. The time spent waiting is reported by {@link #getStats()}.
+ *
+ * <p><pre>
+ * {@code
+ * Stripe.setRateLimiter(RateLimiter.builder().setReadRate(50).setWriteRate(25).build());
+ * }
+ * </pre>
+ */
+public class RateLimiter {
+  private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final double readRate;
+  private final double writeRate;
+  private final double burstSeconds;
+  private final double minRate;
+  private final double decreaseFactor;
+  private final double recoveryPerSecond;
+
+  private final ConcurrentMap<BucketKey, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+  private final AtomicLong acquisitions = new AtomicLong();
+  private final AtomicLong delayedAcquisitions = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+  private final AtomicLong rateLimitedResponses = new AtomicLong();
+
+  private RateLimiter(double readRate, double writeRate, double burstSeconds, double minRate,
+      double decreaseFactor, double recoveryPerSecond) {
+    this.readRate = readRate;
+    this.writeRate = writeRate;
+    this.burstSeconds = burstSeconds;
+    this.minRate = minRate;
+    this.decreaseFactor = decreaseFactor;
+    this.recoveryPerSecond = recoveryPerSecond;
+  }
+
+  public static RateLimiterBuilder builder() {
+    return new RateLimiterBuilder();
+  }
+
+  /**
+   * Blocks until the bucket for the request has a token available.
+   *
+   * @return the time spent waiting, in nanoseconds
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public long acquire(ApiResource.RequestMethod method, RequestOptions options)
+      throws InterruptedException {
+    long waitNanos = bucket(method, options).reserve(System.nanoTime());
+
+    acquisitions.incrementAndGet();
+    if (waitNanos > 0) {
+      delayedAcquisitions.incrementAndGet();
+      totalWaitNanos.addAndGet(waitNanos);
+      long max = maxWaitNanos.get();
+      while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+        max = maxWaitNanos.get();
+      }
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+    return waitNanos;
+  }
+
+  /**
+   * Records a {@code 429} response for the request, shrinking the rate of its bucket.
+   */
+  public void onRateLimited(ApiResource.RequestMethod method, RequestOptions options) {
+    rateLimitedResponses.incrementAndGet();
+    bucket(method, options).onRateLimited(System.nanoTime());
+  }
+
+  /**
+   * Returns the current rate, in requests per second, of the bucket the request would use.
+   */
+  public double getCurrentRate(ApiResource.RequestMethod method, RequestOptions options) {
+    return bucket(method, options).currentRate(System.nanoTime());
+  }
+
+  /**
+   * Returns a snapshot of the limiter's counters.
+   */
+  public RateLimiterStats getStats() {
+    return new RateLimiterStats(acquisitions.get(), delayedAcquisitions.get(),
+        totalWaitNanos.get(), maxWaitNanos.get(), rateLimitedResponses.get());
+  }
+
+  private TokenBucket bucket(ApiResource.RequestMethod method, RequestOptions options) {
+    boolean write = method != ApiResource.RequestMethod.GET;
+    BucketKey key = new BucketKey(options.getApiKey(), options.getStripeAccount(), write);
+    TokenBucket bucket = buckets.get(key);
+    if (bucket == null) {
+      double rate = write ? writeRate : readRate;
+      TokenBucket created = new TokenBucket(rate, burstSeconds, minRate, decreaseFactor,
+          recoveryPerSecond, System.nanoTime());
+      bucket = buckets.putIfAbsent(key, created);
+      if (bucket == null) {
+        bucket = created;
+      }
+    }
+    return bucket;
+  }
+
+  private static final class BucketKey {
+    private final String apiKey;
+    private final String stripeAccount;
+    private final boolean write;
+
+    BucketKey(String apiKey, String stripeAccount, boolean write) {
+      this.apiKey = apiKey;
+      this.stripeAccount = stripeAccount;
+      this.write = write;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof BucketKey)) {
+        return false;
+      }
+      BucketKey that = (BucketKey) o;
+      return write == that.write
+          && (apiKey != null ? apiKey.equals(that.apiKey) : that.apiKey == null)
+          && (stripeAccount != null ? stripeAccount.equals(that.stripeAccount)
+              : that.stripeAccount == null);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = apiKey != null ? apiKey.hashCode() : 0;
+      result = 31 * result + (stripeAccount != null ? stripeAccount.hashCode() : 0);
+      result = 31 * result + (write ? 1 : 0);
+      return result;
+    }
+  }
+
+  /**
+   * A token bucket whose rate follows an additive-increase/multiplicative-decrease schedule.
+   * Tokens may go negative: a negative balance is the queue of callers that have reserved a
+   * future token and are sleeping until it becomes available.
+   */
+  static final class TokenBucket {
+    private final double maxRate;
+    private final double burstSeconds;
+    private final double minRate;
+    private final double decreaseFactor;
+    private final double recoveryPerSecond;
+
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+    private long lastDecreaseNanos;
+    private boolean decreased;
+
+    TokenBucket(double maxRate, double burstSeconds, double minRate, double decreaseFactor,
+        double recoveryPerSecond, long now) {
+      this.maxRate = maxRate;
+      this.burstSeconds = burstSeconds;
+      this.minRate = minRate;
+      this.decreaseFactor = decreaseFactor;
+      this.recoveryPerSecond = recoveryPerSecond;
+      this.rate = maxRate;
+      this.tokens = capacity();
+      this.lastRefillNanos = now;
+    }
+
+    /**
+     * Takes a token and returns how long the caller has to wait before using it.
+     */
+    synchronized long reserve(long now) {
+      refill(now);
+      tokens -= 1;
+      if (tokens >= 0) {
+        return 0;
+      }
+      return (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    synchronized void onRateLimited(long now) {
+      refill(now);
+      if (decreased && now - lastDecreaseNanos < DECREASE_INTERVAL_NANOS) {
+        // a burst of 429s caused by the same overload only counts once
+        return;
+      }
+      rate = Math.max(minRate, rate * decreaseFactor);
+      tokens = Math.min(tokens, 0);
+      lastDecreaseNanos = now;
+      decreased = true;
+    }
+
+    synchronized double currentRate(long now) {
+      refill(now);
+      return rate;
+    }
+
+    private double capacity() {
+      return Math.max(1, rate * burstSeconds);
+    }
+
+    private void refill(long now) {
+      long elapsedNanos = now - lastRefillNanos;
+      if (elapsedNanos <= 0) {
+        return;
+      }
+      double elapsed = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+      lastRefillNanos = now;
+
+      if (rate < maxRate) {
+        rate = Math.min(maxRate, rate + recoveryPerSecond * elapsed);
+      }
+      tokens = Math.min(capacity(), tokens + elapsed * rate);
+    }
+  }
+
+  public static final class RateLimiterBuilder {
+    private double readRate = 100;
+    private double writeRate = 100;
+    private double burstSeconds = 1;
+    private double minRate = 1;
+    private double decreaseFactor = 0.5;
+    private double recoveryPerSecond = 1;
+
+    /**
+     * Sets the number of read ({@code GET}) requests per second allowed for each API key and
+     * account. Defaults to 100.
+     */
+    public RateLimiterBuilder setReadRate(double readRate) {
+      this.readRate = readRate;
+      return this;
+    }
+
+    /**
+     * Sets the number of write ({@code POST} and {@code DELETE}) requests per second allowed for
+     * each API key and account. Defaults to 100.
+     */
+    public RateLimiterBuilder setWriteRate(double writeRate) {
+      this.writeRate = writeRate;
+      return this;
+    }
+
+    /**
+     * Sets how many seconds' worth of requests may be sent in a single burst. Defaults to 1.
+     */
+    public RateLimiterBuilder setBurstSeconds(double burstSeconds) {
+      this.burstSeconds = burstSeconds;
+      return this;
+    }
+
+    /**
+     * Sets the rate below which a bucket never shrinks. Defaults to 1 request per second.
+     */
+    public RateLimiterBuilder setMinRate(double minRate) {
+      this.minRate = minRate;
+      return this;
+    }
+
+    /**
+     * Sets the factor applied to a bucket's rate when a {@code 429} is observed. Defaults to
+     * 0.5.
+     */
+    public RateLimiterBuilder setDecreaseFactor(double decreaseFactor) {
+      this.decreaseFactor = decreaseFactor;
+      return this;
+    }
+
+    /**
+     * Sets by how many requests per second a shrunk bucket recovers every second. Defaults to 1.
+     */
+    public RateLimiterBuilder setRecoveryPerSecond(double recoveryPerSecond) {
+      this.recoveryPerSecond = recoveryPerSecond;
+      return this;
+    }
+
+    /**
+     * Constructs a {@link RateLimiter} with the specified values.
+     */
+    public RateLimiter build() {
+      if (readRate <= 0 || writeRate <= 0 || minRate <= 0) {
+        throw new IllegalArgumentException("Rates must be positive");
+      }
+      if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+        throw new IllegalArgumentException("Decrease factor must be between 0 and 1");
+      }
+      return new RateLimiter(readRate, writeRate, burstSeconds, minRate, decreaseFactor,
+          recoveryPerSecond);
+    }
+  }
+}
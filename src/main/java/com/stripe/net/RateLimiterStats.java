@@ -0,0 +1,63 @@
+package com.stripe.net;
+
+/**
+ * Snapshot of the counters of a {@link RateLimiter}.
+ */
+public final class RateLimiterStats {
+  private final long acquisitions;
+  private final long delayedAcquisitions;
+  private final long totalWaitNanos;
+  private final long maxWaitNanos;
+  private final long rateLimitedResponses;
+
+  RateLimiterStats(long acquisitions, long delayedAcquisitions, long totalWaitNanos,
+      long maxWaitNanos, long rateLimitedResponses) {
+    this.acquisitions = acquisitions;
+    this.delayedAcquisitions = delayedAcquisitions;
+    this.totalWaitNanos = totalWaitNanos;
+    this.maxWaitNanos = maxWaitNanos;
+    this.rateLimitedResponses = rateLimitedResponses;
+  }
+
+  /**
+   * Returns the number of requests that went through the limiter.
+   */
+  public long getAcquisitions() {
+    return acquisitions;
+  }
+
+  /**
+   * Returns the number of requests that had to queue for a token.
+   */
+  public long getDelayedAcquisitions() {
+    return delayedAcquisitions;
+  }
+
+  /**
+   * Returns the total time requests spent queued, in nanoseconds.
+   */
+  public long getTotalWaitNanos() {
+    return totalWaitNanos;
+  }
+
+  /**
+   * Returns the longest time a single request spent queued, in nanoseconds.
+   */
+  public long getMaxWaitNanos() {
+    return maxWaitNanos;
+  }
+
+  /**
+   * Returns the average queue wait over all requests, in nanoseconds.
+   */
+  public long getMeanWaitNanos() {
+    return (acquisitions == 0) ? 0 : totalWaitNanos / acquisitions;
+  }
+
+  /**
+   * Returns the number of {@code 429} responses reported to the limiter.
+   */
+  public long getRateLimitedResponses() {
+    return rateLimitedResponses;
+  }
+}
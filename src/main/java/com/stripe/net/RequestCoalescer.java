@@ -0,0 +1,111 @@
+package com.stripe.net;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collapses concurrent identical {@code GET} requests into a single HTTP call.
+ *
+ * <p>While a request is in flight, any other request for the same URL, query string, API key,
+ * {@code Stripe-Account}, API version, idempotency key and timeouts waits for it instead of going
+ * to the network. Every caller then deserializes the shared response on its own, so callers
+ * never share model instances. Writes are never coalesced.
+ *
+ * <p><pre>
+ * {@code
+ * Stripe.setRequestCoalescer(new RequestCoalescer());
+ * }
+ * </pre>
+ */
+public class RequestCoalescer {
+  private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong coalescedRequests = new AtomicLong();
+
+  /**
+   * Returns a snapshot of the coalescer's counters.
+   */
+  public RequestCoalescerStats getStats() {
+    return new RequestCoalescerStats(requests.get(), coalescedRequests.get());
+  }
+
+  /**
+   * Runs {@code call}, or waits for the identical call already in flight and returns its
+   * response.
+   */
+  StripeResponse execute(String key, Call call) throws StripeException {
+    requests.incrementAndGet();
+
+    InFlight flight = new InFlight();
+    InFlight existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      coalescedRequests.incrementAndGet();
+      return existing.await();
+    }
+
+    try {
+      flight.response = call.execute();
+      return flight.response;
+    } catch (StripeException | RuntimeException e) {
+      flight.error = e;
+      throw e;
+    } finally {
+      inFlight.remove(key, flight);
+      flight.done.countDown();
+    }
+  }
+
+  /**
+   * Returns the key identifying a request, or {@code null} if it must not be coalesced.
+   */
+  static String key(ApiResource.RequestMethod method, String url, String query,
+      ApiResource.RequestType type, RequestOptions options) {
+    if (method != ApiResource.RequestMethod.GET || type != ApiResource.RequestType.NORMAL) {
+      return null;
+    }
+    // RequestOptions#equals ignores the account, so the key spells out every field that changes
+    // what the API returns, and the timeouts, so that no caller waits longer than it asked for
+    StringBuilder key = new StringBuilder(url);
+    if (query != null && !query.isEmpty()) {
+      key.append('?').append(query);
+    }
+    return key.append('\n').append(options.getApiKey())
+        .append('\n').append(options.getStripeAccount())
+        .append('\n').append(options.getStripeVersion())
+        .append('\n').append(options.getIdempotencyKey())
+        .append('\n').append(options.getConnectTimeout())
+        .append('\n').append(options.getReadTimeout())
+        .toString();
+  }
+
+  interface Call {
+    StripeResponse execute() throws StripeException;
+  }
+
+  private static final class InFlight {
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile StripeResponse response;
+    volatile Exception error;
+
+    StripeResponse await() throws StripeException {
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ApiConnectionException("Interrupted while waiting for a coalesced request", e);
+      }
+      if (error instanceof StripeException) {
+        throw (StripeException) error;
+      } else if (error instanceof RuntimeException) {
+        throw (RuntimeException) error;
+      }
+      return response;
+    }
+  }
+}
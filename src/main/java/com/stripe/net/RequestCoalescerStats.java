@@ -0,0 +1,42 @@
+package com.stripe.net;
+
+/**
+ * Snapshot of the counters of a {@link RequestCoalescer}.
+ */
+public final class RequestCoalescerStats {
+  private final long requests;
+  private final long coalescedRequests;
+
+  RequestCoalescerStats(long requests, long coalescedRequests) {
+    this.requests = requests;
+    this.coalescedRequests = coalescedRequests;
+  }
+
+  /**
+   * Returns the number of coalescable requests seen.
+   */
+  public long getRequests() {
+    return requests;
+  }
+
+  /**
+   * Returns the number of requests answered by another caller's in-flight call.
+   */
+  public long getCoalescedRequests() {
+    return coalescedRequests;
+  }
+
+  /**
+   * Returns the number of HTTP calls actually made.
+   */
+  public long getExecutedRequests() {
+    return requests - coalescedRequests;
+  }
+
+  /**
+   * Returns the share of requests that did not need an HTTP call of their own, between 0 and 1.
+   */
+  public double getCoalescingRatio() {
+    return (requests == 0) ? 0 : (double) coalescedRequests / requests;
+  }
+}
@@ -0,0 +1,199 @@
+package com.stripe.net;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A phase of an API request, as reported to a {@link RequestListener}.
+ *
+ * <p>Times are {@link System#nanoTime()} values: {@link #getElapsedNanos()} is the time from the
+ * start of the request to this phase.
+ */
+public final class RequestEvent {
+  /**
+   * The phases of a request, in the order they are reached.
+   */
+  public enum Phase {
+    /**
+     * The request was issued, before it waits for the rate limiter.
+     */
+    START,
+    /**
+     * The parameters were encoded. {@link RequestEvent#getRequestBytes()} is known from here.
+     */
+    ENCODED,
+    /**
+     * The connection to the API is established, or was taken from the keep-alive pool.
+     */
+    CONNECTED,
+    /**
+     * The status line and headers of the response were received.
+     * {@link RequestEvent#getStatus()} and {@link RequestEvent#getRequestId()} are known from
+     * here.
+     */
+    FIRST_BYTE,
+    /**
+     * The body of the response was read. {@link RequestEvent#getResponseBytes()} is known from
+     * here. Not reported for streamed responses, whose body is read by the caller.
+     */
+    BODY_READ,
+    /**
+     * The response was deserialized and the request completed successfully.
+     */
+    DESERIALIZED,
+    /**
+     * The request failed, with {@link RequestEvent#getError()}. This ends the request.
+     */
+    ERROR
+  }
+
+  private final Phase phase;
+  private final ApiResource.RequestMethod method;
+  private final String url;
+  private final String urlTemplate;
+  private final Map<String, Object> params;
+  private final int status;
+  private final String requestId;
+  private final int attempt;
+  private final long requestBytes;
+  private final long responseBytes;
+  private final long startNanos;
+  private final long nanoTime;
+  private final Throwable error;
+
+  RequestEvent(Phase phase, ApiResource.RequestMethod method, String url, String urlTemplate,
+      Map<String, Object> params, int status, String requestId, int attempt, long requestBytes,
+      long responseBytes, long startNanos, long nanoTime, Throwable error) {
+    this.phase = phase;
+    this.method = method;
+    this.url = url;
+    this.urlTemplate = urlTemplate;
+    this.params = params;
+    this.status = status;
+    this.requestId = requestId;
+    this.attempt = attempt;
+    this.requestBytes = requestBytes;
+    this.responseBytes = responseBytes;
+    this.startNanos = startNanos;
+    this.nanoTime = nanoTime;
+    this.error = error;
+  }
+
+  public Phase getPhase() {
+    return phase;
+  }
+
+  public ApiResource.RequestMethod getMethod() {
+    return method;
+  }
+
+  /**
+   * Returns the URL of the request, without its query string.
+   */
+  public String getUrl() {
+    return url;
+  }
+
+  /**
+   * Returns the path of the request with object IDs replaced by {@code {id}}, such as
+   * {@code /v1/customers/{id}/sources}, suitable as a metric label.
+   */
+  public String getUrlTemplate() {
+    return urlTemplate;
+  }
+
+  /**
+   * Returns the shape of the parameters of the request: their keys, flattened the way they are
+   * encoded and sorted, without their values. Nested keys are in brackets and list indexes are
+   * left out, as in {@code metadata[order_id]} or {@code expand[]}. Computed on each call.
+   */
+  public List<String> getParamKeys() {
+    Set<String> keys = new TreeSet<>();
+    addKeys(keys, params, null);
+    return new ArrayList<>(keys);
+  }
+
+  /**
+   * Returns the HTTP status of the response, or 0 before {@link Phase#FIRST_BYTE} and for
+   * requests that failed without a response.
+   */
+  public int getStatus() {
+    return status;
+  }
+
+  /**
+   * Returns the {@code Request-Id} header of the response, or {@code null} if not known yet.
+   */
+  public String getRequestId() {
+    return requestId;
+  }
+
+  /**
+   * Returns the attempt the event belongs to, starting at 1.
+   */
+  public int getAttempt() {
+    return attempt;
+  }
+
+  /**
+   * Returns the size of the encoded parameters, in bytes, or -1 if not known, as for multipart
+   * requests.
+   */
+  public long getRequestBytes() {
+    return requestBytes;
+  }
+
+  /**
+   * Returns the size of the response body, in bytes, or -1 before {@link Phase#BODY_READ}.
+   */
+  public long getResponseBytes() {
+    return responseBytes;
+  }
+
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  public long getNanoTime() {
+    return nanoTime;
+  }
+
+  public long getElapsedNanos() {
+    return nanoTime - startNanos;
+  }
+
+  /**
+   * Returns the failure of an {@link Phase#ERROR} event, usually a
+   * {@link com.stripe.exception.StripeException}, or {@code null} for other phases.
+   */
+  public Throwable getError() {
+    return error;
+  }
+
+  private static void addKeys(Set<String> keys, Object value, String prefix) {
+    if (value instanceof Map<?, ?>) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      if (map.isEmpty() && prefix != null) {
+        keys.add(prefix);
+      }
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        String key = String.valueOf(entry.getKey());
+        addKeys(keys, entry.getValue(), (prefix != null) ? prefix + "[" + key + "]" : key);
+      }
+    } else if (value instanceof List<?> || value instanceof Object[]) {
+      List<?> list = (value instanceof List<?>) ? (List<?>) value : Arrays.asList((Object[]) value);
+      if (list.isEmpty()) {
+        keys.add(prefix + "[]");
+      }
+      for (Object element : list) {
+        addKeys(keys, element, prefix + "[]");
+      }
+    } else if (prefix != null) {
+      keys.add(prefix);
+    }
+  }
+}
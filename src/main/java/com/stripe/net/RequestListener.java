@@ -0,0 +1,20 @@
+package com.stripe.net;
+
+/**
+ * Observes the phases of the API requests, for instance to build latency histograms or traces
+ * without timing every call site. Install it with {@link com.stripe.Stripe#addRequestListener} or
+ * {@link StripeClient.StripeClientBuilder#addRequestListener}; several listeners can be installed
+ * side by side.
+ *
+ * <p>Listeners are called synchronously on the thread sending the request, every phase of a
+ * request on the same thread, so they must be fast and thread-safe. Exceptions they throw are
+ * ignored.
+ */
+public interface RequestListener {
+  /**
+   * Called when a request reaches a phase.
+   *
+   * @param event the phase reached, with what is known of the request so far
+   */
+  void onRequestEvent(RequestEvent event);
+}
@@ -0,0 +1,122 @@
+package com.stripe.net;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A slow or failed request, as captured by a {@link RequestSampler}. Only the keys of the
+ * parameters are kept, never their values.
+ */
+public final class RequestSample {
+  private final long timestampMillis;
+  private final ApiResource.RequestMethod method;
+  private final String path;
+  private final List<String> paramKeys;
+  private final int status;
+  private final String requestId;
+  private final long durationNanos;
+  private final long requestBytes;
+  private final long responseBytes;
+  private final String errorType;
+  private final boolean slow;
+
+  RequestSample(long timestampMillis, ApiResource.RequestMethod method, String path,
+      List<String> paramKeys, int status, String requestId, long durationNanos,
+      long requestBytes, long responseBytes, String errorType, boolean slow) {
+    this.timestampMillis = timestampMillis;
+    this.method = method;
+    this.path = path;
+    this.paramKeys = paramKeys;
+    this.status = status;
+    this.requestId = requestId;
+    this.durationNanos = durationNanos;
+    this.requestBytes = requestBytes;
+    this.responseBytes = responseBytes;
+    this.errorType = errorType;
+    this.slow = slow;
+  }
+
+  /**
+   * Returns when the request ended, in epoch milliseconds.
+   */
+  public long getTimestampMillis() {
+    return timestampMillis;
+  }
+
+  public ApiResource.RequestMethod getMethod() {
+    return method;
+  }
+
+  /**
+   * Returns the URL template of the request, such as {@code /v1/invoices/upcoming}.
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Returns the keys of the parameters of the request.
+   *
+   * @see RequestEvent#getParamKeys()
+   */
+  public List<String> getParamKeys() {
+    return paramKeys;
+  }
+
+  /**
+   * Returns the HTTP status of the response, or 0 for requests that failed without a response.
+   */
+  public int getStatus() {
+    return status;
+  }
+
+  public String getRequestId() {
+    return requestId;
+  }
+
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /**
+   * Returns the size of the encoded parameters, in bytes, or -1 if not known.
+   */
+  public long getRequestBytes() {
+    return requestBytes;
+  }
+
+  /**
+   * Returns the size of the response body, in bytes, or -1 if not read.
+   */
+  public long getResponseBytes() {
+    return responseBytes;
+  }
+
+  /**
+   * Returns the simple class name of the exception the request failed with, or {@code null} if
+   * it succeeded.
+   */
+  public String getErrorType() {
+    return errorType;
+  }
+
+  public boolean isError() {
+    return errorType != null;
+  }
+
+  /**
+   * Returns whether the request took longer than the sampler's threshold. A request can be both
+   * slow and an error.
+   */
+  public boolean isSlow() {
+    return slow;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s %s %s status=%d request_id=%s duration=%dms request_bytes=%d "
+            + "response_bytes=%d params=%s%s", slow ? "slow" : "error", method, path, status,
+        requestId, TimeUnit.NANOSECONDS.toMillis(durationNanos), requestBytes, responseBytes,
+        paramKeys, (errorType != null) ? " error=" + errorType : "");
+  }
+}
@@ -0,0 +1,12 @@
+package com.stripe.net;
+
+/**
+ * Receives the requests captured by a {@link RequestSampler}, for instance to log them.
+ */
+public interface RequestSampleHandler {
+  /**
+   * Handles a captured request. Called on the sampler's drainer thread, one sample at a time;
+   * exceptions are counted as failures in the sampler's statistics.
+   */
+  void onSample(RequestSample sample) throws Exception;
+}
@@ -0,0 +1,245 @@
+package com.stripe.net;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link RequestListener} that captures the requests slower than a threshold, and the failed
+ * ones, and hands them to a {@link RequestSampleHandler} on a background thread, so that
+ * pathological calls such as a 30 second {@code Invoice.upcoming} or a huge expanded list can be
+ * found. Samples hold the method, URL template, parameter keys (never values), status,
+ * {@code Request-Id}, duration and sizes of the request.
+ *
+ * <p>The thread sending a request never waits for the handler: samples go through a bounded
+ * lock-free ring buffer, and are dropped, and counted, when the handler falls behind. Requests
+ * that are neither slow nor failed cost a comparison.
+ *
+ * <p><pre>
+ * {@code
+ * RequestSampler sampler = RequestSampler.builder()
+ *     .setThreshold(2, TimeUnit.SECONDS)
+ *     .setHandler(new RequestSampleHandler() {
+ *       public void onSample(RequestSample sample) {
+ *         log.warn("Stripe request: {}", sample);
+ *       }
+ *     })
+ *     .build();
+ * Stripe.addRequestListener(sampler);
+ * }
+ * </pre>
+ */
+public class RequestSampler implements RequestListener, Closeable {
+  // how long the drainer sleeps when not woken up by a sample
+  private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final RequestSampleHandler handler;
+  private final long thresholdNanos;
+  private final boolean captureErrors;
+
+  // the ring buffer: producers claim slots by moving the tail, the drainer alone moves the head
+  private final AtomicReferenceArray<RequestSample> slots;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+
+  private final AtomicLong captured = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong handled = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  private final Thread drainer;
+  private volatile boolean closed;
+  // producers that may have seen the sampler open and not finished their offer yet; the drainer
+  // keeps running until they are done, so that no captured sample is left behind
+  private final AtomicInteger offering = new AtomicInteger();
+
+  private RequestSampler(RequestSamplerBuilder builder) {
+    this.handler = builder.handler;
+    this.thresholdNanos = builder.thresholdNanos;
+    this.captureErrors = builder.captureErrors;
+    int capacity = Integer.highestOneBit(builder.capacity - 1) << 1;
+    this.slots = new AtomicReferenceArray<>(Math.max(1, capacity));
+    this.mask = slots.length() - 1;
+
+    this.drainer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        drain();
+      }
+    }, "stripe-request-sampler");
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+
+  public static RequestSamplerBuilder builder() {
+    return new RequestSamplerBuilder();
+  }
+
+  /**
+   * Captures the requests that end, with {@link RequestEvent.Phase#DESERIALIZED} or
+   * {@link RequestEvent.Phase#ERROR}, after the threshold or with an error.
+   */
+  @Override
+  public void onRequestEvent(RequestEvent event) {
+    boolean error = event.getPhase() == RequestEvent.Phase.ERROR;
+    if (!error && event.getPhase() != RequestEvent.Phase.DESERIALIZED) {
+      return;
+    }
+    boolean slow = event.getElapsedNanos() >= thresholdNanos;
+    if (!slow && !(error && captureErrors)) {
+      return;
+    }
+    RequestSample sample = new RequestSample(System.currentTimeMillis(), event.getMethod(),
+        event.getUrlTemplate(), event.getParamKeys(), event.getStatus(), event.getRequestId(),
+        event.getElapsedNanos(), event.getRequestBytes(), event.getResponseBytes(),
+        (event.getError() != null) ? event.getError().getClass().getSimpleName() : null, slow);
+    offering.incrementAndGet();
+    try {
+      if (closed || !offer(sample)) {
+        dropped.incrementAndGet();
+        return;
+      }
+      captured.incrementAndGet();
+    } finally {
+      offering.decrementAndGet();
+    }
+    LockSupport.unpark(drainer);
+  }
+
+  /**
+   * Returns a snapshot of the sampler's counters.
+   */
+  public RequestSamplerStats getStats() {
+    return new RequestSamplerStats(captured.get(), dropped.get(), handled.get(), failed.get(),
+        (int) Math.max(0, tail.get() - head.get()));
+  }
+
+  /**
+   * Stops capturing requests, and waits for the samples already captured to be handled.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(drainer);
+    boolean interrupted = false;
+    while (true) {
+      try {
+        drainer.join();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private boolean offer(RequestSample sample) {
+    long claimed;
+    do {
+      claimed = tail.get();
+      if (claimed - head.get() >= slots.length()) {
+        return false;
+      }
+    } while (!tail.compareAndSet(claimed, claimed + 1));
+    slots.lazySet((int) (claimed & mask), sample);
+    return true;
+  }
+
+  /**
+   * Takes the oldest sample, or returns {@code null} if there is none yet. Only called by the
+   * drainer.
+   */
+  private RequestSample poll() {
+    long next = head.get();
+    int slot = (int) (next & mask);
+    // a claimed slot stays empty until its producer has written the sample
+    RequestSample sample = slots.get(slot);
+    if (sample == null) {
+      return null;
+    }
+    slots.lazySet(slot, null);
+    head.lazySet(next + 1);
+    return sample;
+  }
+
+  private void drain() {
+    while (true) {
+      boolean stopping = closed;
+      RequestSample sample;
+      while ((sample = poll()) != null) {
+        try {
+          handler.onSample(sample);
+        } catch (Exception e) {
+          failed.incrementAndGet();
+        }
+        handled.incrementAndGet();
+      }
+      // offering is read first: once it is 0, every sample offered while open is in the buffer,
+      // and producers coming later see the sampler closed
+      if (stopping && offering.get() == 0 && head.get() == tail.get()) {
+        return;
+      }
+      LockSupport.parkNanos(this, stopping ? 1000 : IDLE_NANOS);
+    }
+  }
+
+  public static final class RequestSamplerBuilder {
+    private RequestSampleHandler handler;
+    private long thresholdNanos = TimeUnit.SECONDS.toNanos(5);
+    private boolean captureErrors = true;
+    private int capacity = 1024;
+
+    /**
+     * Sets the handler the samples are handed to.
+     */
+    public RequestSamplerBuilder setHandler(RequestSampleHandler handler) {
+      this.handler = handler;
+      return this;
+    }
+
+    /**
+     * Sets the duration from which a request is captured as slow. Defaults to 5 seconds.
+     */
+    public RequestSamplerBuilder setThreshold(long duration, TimeUnit unit) {
+      this.thresholdNanos = unit.toNanos(duration);
+      return this;
+    }
+
+    /**
+     * Sets whether failed requests are captured whatever their duration. Defaults to true.
+     */
+    public RequestSamplerBuilder setCaptureErrors(boolean captureErrors) {
+      this.captureErrors = captureErrors;
+      return this;
+    }
+
+    /**
+     * Sets how many samples can wait for the handler, rounded up to a power of two. Defaults to
+     * 1024.
+     */
+    public RequestSamplerBuilder setCapacity(int capacity) {
+      this.capacity = capacity;
+      return this;
+    }
+
+    /**
+     * Constructs a {@link RequestSampler} with the specified values, and starts its drainer.
+     */
+    public RequestSampler build() {
+      if (handler == null) {
+        throw new IllegalArgumentException("A handler is required");
+      }
+      if (capacity < 1 || capacity > (1 << 30) || thresholdNanos < 0) {
+        throw new IllegalArgumentException(
+            "Capacity must be between 1 and 2^30, and the threshold cannot be negative");
+      }
+      return new RequestSampler(this);
+    }
+  }
+}
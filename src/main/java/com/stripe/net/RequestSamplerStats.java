@@ -0,0 +1,55 @@
+package com.stripe.net;
+
+/**
+ * Snapshot of the counters of a {@link RequestSampler}.
+ */
+public final class RequestSamplerStats {
+  private final long captured;
+  private final long dropped;
+  private final long handled;
+  private final long failed;
+  private final int pending;
+
+  RequestSamplerStats(long captured, long dropped, long handled, long failed, int pending) {
+    this.captured = captured;
+    this.dropped = dropped;
+    this.handled = handled;
+    this.failed = failed;
+    this.pending = pending;
+  }
+
+  /**
+   * Returns the number of slow or failed requests queued for the handler.
+   */
+  public long getCaptured() {
+    return captured;
+  }
+
+  /**
+   * Returns the number of slow or failed requests dropped because the buffer was full.
+   */
+  public long getDropped() {
+    return dropped;
+  }
+
+  /**
+   * Returns the number of samples handed to the handler, including failed ones.
+   */
+  public long getHandled() {
+    return handled;
+  }
+
+  /**
+   * Returns the number of samples the handler threw on.
+   */
+  public long getFailed() {
+    return failed;
+  }
+
+  /**
+   * Returns the number of samples waiting for the drainer.
+   */
+  public int getPending() {
+    return pending;
+  }
+}
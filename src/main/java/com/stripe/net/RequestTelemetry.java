@@ -0,0 +1,74 @@
+package com.stripe.net;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the {@code Request-Id} and duration of completed requests until they are reported to
+ * Stripe in the {@code X-Stripe-Client-Telemetry} header of a following request.
+ *
+ * <p>The buffer is bounded and lock-free: measurements are dropped rather than queued once it is
+ * full, since only recent ones are worth reporting.
+ */
+final class RequestTelemetry {
+  static final String HEADER = "X-Stripe-Client-Telemetry";
+  static final int DEFAULT_CAPACITY = 100;
+
+  private final Queue<RequestMetrics> metrics = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final int capacity;
+
+  RequestTelemetry(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Records a completed request, unless the buffer is full.
+   */
+  void record(String requestId, long durationMillis) {
+    if (requestId == null) {
+      return;
+    }
+    if (size.incrementAndGet() > capacity) {
+      size.decrementAndGet();
+      return;
+    }
+    metrics.offer(new RequestMetrics(requestId, durationMillis));
+  }
+
+  /**
+   * Takes the oldest measurement and formats it as the value of the telemetry header, or returns
+   * {@code null} if there is none.
+   */
+  String nextHeader() {
+    RequestMetrics next = metrics.poll();
+    if (next == null) {
+      return null;
+    }
+    size.decrementAndGet();
+    return ApiResource.GSON.toJson(new ClientTelemetry(next));
+  }
+
+  int size() {
+    return size.get();
+  }
+
+  private static final class ClientTelemetry {
+    private final RequestMetrics lastRequestMetrics;
+
+    ClientTelemetry(RequestMetrics lastRequestMetrics) {
+      this.lastRequestMetrics = lastRequestMetrics;
+    }
+  }
+
+  private static final class RequestMetrics {
+    private final String requestId;
+    private final long requestDurationMs;
+
+    RequestMetrics(String requestId, long requestDurationMs) {
+      this.requestId = requestId;
+      this.requestDurationMs = requestDurationMs;
+    }
+  }
+}
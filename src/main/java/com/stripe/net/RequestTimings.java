@@ -0,0 +1,117 @@
+package com.stripe.net;
+
+/**
+ * How long each phase of a request took, in nanoseconds from {@link System#nanoTime()}, as
+ * attached to its response:
+ *
+ * <p><pre>
+ * {@code
+ * Charge charge = Charge.create(params);
+ * RequestTimings timings = charge.getLastResponse().timings();
+ * if (timings.getTotalNanos() > TimeUnit.SECONDS.toNanos(1)) {
+ *   log.warn("slow charge: {}", timings);
+ * }
+ * }
+ * </pre>
+ *
+ * <p>Phases that did not happen take 0: a connection reused from the keep-alive pool has no
+ * connect or TLS handshake, and a request answered by an identical one in flight (see
+ * {@link RequestCoalescer}) spends all of its network time queued.
+ */
+public final class RequestTimings {
+  private final long queueNanos;
+  private final long dnsNanos;
+  private final long connectNanos;
+  private final long tlsHandshakeNanos;
+  private final long requestWriteNanos;
+  private final long timeToFirstByteNanos;
+  private final long bodyReadNanos;
+  private final long deserializationNanos;
+  private final long totalNanos;
+
+  RequestTimings(long queueNanos, long dnsNanos, long connectNanos, long tlsHandshakeNanos,
+      long requestWriteNanos, long timeToFirstByteNanos, long bodyReadNanos,
+      long deserializationNanos, long totalNanos) {
+    this.queueNanos = queueNanos;
+    this.dnsNanos = dnsNanos;
+    this.connectNanos = connectNanos;
+    this.tlsHandshakeNanos = tlsHandshakeNanos;
+    this.requestWriteNanos = requestWriteNanos;
+    this.timeToFirstByteNanos = timeToFirstByteNanos;
+    this.bodyReadNanos = bodyReadNanos;
+    this.deserializationNanos = deserializationNanos;
+    this.totalNanos = totalNanos;
+  }
+
+  /**
+   * Returns the time spent waiting before the request was sent: for the client-side
+   * {@link RateLimiter}, or for an identical request in flight.
+   */
+  public long getQueueNanos() {
+    return queueNanos;
+  }
+
+  /**
+   * Returns 0. {@code HttpURLConnection} resolves the host while opening a connection, and only
+   * when it opens a new one, so the DNS lookup is counted in {@link #getConnectNanos()}.
+   */
+  public long getDnsNanos() {
+    return dnsNanos;
+  }
+
+  /**
+   * Returns the time taken to open or reuse a connection, up to the TLS handshake. For a new
+   * connection, this includes resolving the host.
+   */
+  public long getConnectNanos() {
+    return connectNanos;
+  }
+
+  public long getTlsHandshakeNanos() {
+    return tlsHandshakeNanos;
+  }
+
+  /**
+   * Returns the time taken to write the body of the request. {@code HttpURLConnection} buffers
+   * bodies and sends them with the headers when the response is awaited, so this covers
+   * buffering, and the transmission counts towards {@link #getTimeToFirstByteNanos()}.
+   */
+  public long getRequestWriteNanos() {
+    return requestWriteNanos;
+  }
+
+  /**
+   * Returns the time from the written request to the response status: transmission and the
+   * time taken by Stripe.
+   */
+  public long getTimeToFirstByteNanos() {
+    return timeToFirstByteNanos;
+  }
+
+  public long getBodyReadNanos() {
+    return bodyReadNanos;
+  }
+
+  /**
+   * Returns the time taken to turn the body of the response into a model object.
+   */
+  public long getDeserializationNanos() {
+    return deserializationNanos;
+  }
+
+  /**
+   * Returns the time from the start of the request to the end of its deserialization, which
+   * also covers encoding parameters and the time between phases.
+   */
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("RequestTimings{queue=%dns, dns=%dns, connect=%dns, tls=%dns, "
+            + "write=%dns, ttfb=%dns, bodyRead=%dns, deserialization=%dns, total=%dns}",
+        queueNanos, dnsNanos, connectNanos, tlsHandshakeNanos, requestWriteNanos,
+        timeToFirstByteNanos, bodyReadNanos, deserializationNanos, totalNanos);
+  }
+}
@@ -0,0 +1,279 @@
+package com.stripe.net;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks one request through the transport and reports its phases to a {@link RequestListener}
+ * and as {@link FlightRecorderEvent}s. Beyond noting the time of each phase, for the
+ * {@link RequestTimings} of the response, every method is a no-op when there is no listener and
+ * nothing is recording. Not thread-safe: a trace belongs to the thread sending its request.
+ */
+final class RequestTrace {
+  // path segments that group resources rather than name one
+  private static final Set<String> NAMESPACES = new HashSet<>(Arrays.asList(
+      "checkout", "issuing", "radar", "reporting", "sigma", "terminal"));
+  // resources with a single instance, which are not followed by an ID
+  private static final Set<String> SINGLETONS = new HashSet<>(Arrays.asList(
+      "account", "balance"));
+  // words found where an ID is expected
+  private static final Set<String> ACTIONS = new HashSet<>(Arrays.asList("upcoming"));
+  // the trace of the connection being opened on this thread, for the TLS socket factory
+  private static final ThreadLocal<RequestTrace> CONNECTING = new ThreadLocal<>();
+
+  private final RequestListener listener;
+  private final ApiResource.RequestMethod method;
+  private final String url;
+  private final Map<String, Object> params;
+  private final String urlTemplate;
+  private final long startNanos;
+  // the transport sends each request once
+  private final int attempt = 1;
+  private int status;
+  private String requestId;
+  private long requestBytes = -1;
+  private long responseBytes = -1;
+  // JFR events in progress, null when not recorded
+  private final Object requestEvent;
+  private Object connectionEvent;
+  // when each phase started, 0 for phases that did not happen
+  private long dequeuedNanos;
+  private long connectingNanos;
+  private long handshakingNanos;
+  private long connectedNanos;
+  private long writtenNanos;
+  private long firstByteNanos;
+  private long bodyReadNanos;
+  private long deserializingNanos;
+
+  private RequestTrace(RequestListener listener, ApiResource.RequestMethod method, String url,
+      Map<String, Object> params) {
+    this.listener = listener;
+    this.method = method;
+    this.params = params;
+    int query = (url != null) ? url.indexOf('?') : -1;
+    this.url = (query >= 0) ? url.substring(0, query) : url;
+    this.requestEvent = FlightRecorderEvent.API_REQUEST.begin();
+    boolean traced = listener != null || requestEvent != null;
+    this.urlTemplate = traced ? urlTemplate(this.url) : null;
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Starts tracing a request, reporting {@link RequestEvent.Phase#START}.
+   */
+  static RequestTrace start(RequestListener listener, ApiResource.RequestMethod method,
+      String url, Map<String, Object> params) {
+    RequestTrace trace = new RequestTrace(listener, method, url, params);
+    trace.report(RequestEvent.Phase.START, null);
+    return trace;
+  }
+
+  /**
+   * Notes that the request is leaving the client-side queues to be sent.
+   */
+  void dequeued() {
+    dequeuedNanos = System.nanoTime();
+  }
+
+  void encoded(long requestBytes) {
+    this.requestBytes = requestBytes;
+    connectionEvent = FlightRecorderEvent.CONNECTION_ACQUIRE.begin();
+    report(RequestEvent.Phase.ENCODED, null);
+  }
+
+  /**
+   * Notes that a connection is being opened, until {@link #connected()} or
+   * {@link #connectFailed()}.
+   */
+  void connecting() {
+    connectingNanos = System.nanoTime();
+    CONNECTING.set(this);
+  }
+
+  /**
+   * Notes that the connection being opened on the current thread, if any, starts its TLS
+   * handshake.
+   */
+  static void handshaking() {
+    RequestTrace trace = CONNECTING.get();
+    if (trace != null) {
+      trace.handshakingNanos = System.nanoTime();
+    }
+  }
+
+  void connectFailed() {
+    CONNECTING.remove();
+  }
+
+  void connected() {
+    CONNECTING.remove();
+    connectedNanos = System.nanoTime();
+    if (connectionEvent != null) {
+      FlightRecorderEvent.CONNECTION_ACQUIRE.commit(connectionEvent, host(url));
+      connectionEvent = null;
+    }
+    report(RequestEvent.Phase.CONNECTED, null);
+  }
+
+  /**
+   * Notes that the body of the request has been written.
+   */
+  void written() {
+    writtenNanos = System.nanoTime();
+  }
+
+  void firstByte(int status, String requestId) {
+    firstByteNanos = System.nanoTime();
+    this.status = status;
+    this.requestId = requestId;
+    report(RequestEvent.Phase.FIRST_BYTE, null);
+  }
+
+  void bodyRead(String body) {
+    bodyReadNanos = System.nanoTime();
+    if (listener == null && requestEvent == null) {
+      return;
+    }
+    this.responseBytes = (body != null) ? utf8Length(body) : 0;
+    report(RequestEvent.Phase.BODY_READ, null);
+  }
+
+  void deserializing() {
+    deserializingNanos = System.nanoTime();
+  }
+
+  /**
+   * Returns the timings of the request, which ends now.
+   */
+  RequestTimings timings() {
+    long now = System.nanoTime();
+    if (firstByteNanos == 0) {
+      // answered by another request: all of the time until deserialization was spent waiting
+      long waited = ((deserializingNanos != 0) ? deserializingNanos : now) - startNanos;
+      return new RequestTimings(waited, 0, 0, 0, 0, 0, 0, since(deserializingNanos, now),
+          now - startNanos);
+    }
+    long handshaken = (handshakingNanos != 0) ? handshakingNanos : connectedNanos;
+    long written = (writtenNanos != 0) ? writtenNanos : connectedNanos;
+    return new RequestTimings(
+        ((dequeuedNanos != 0) ? dequeuedNanos : startNanos) - startNanos,
+        0,
+        handshaken - connectingNanos,
+        connectedNanos - handshaken,
+        written - connectedNanos,
+        firstByteNanos - written,
+        since(firstByteNanos, bodyReadNanos),
+        since(deserializingNanos, now),
+        now - startNanos);
+  }
+
+  private static long since(long from, long to) {
+    return (from != 0 && to != 0) ? to - from : 0;
+  }
+
+  void deserialized() {
+    commitRequestEvent();
+    report(RequestEvent.Phase.DESERIALIZED, null);
+  }
+
+  void error(Throwable error) {
+    commitRequestEvent();
+    report(RequestEvent.Phase.ERROR, error);
+  }
+
+  private void commitRequestEvent() {
+    if (requestEvent != null) {
+      FlightRecorderEvent.API_REQUEST.commit(requestEvent, String.valueOf(method), urlTemplate,
+          status, requestId, requestBytes, responseBytes);
+    }
+  }
+
+  private void report(RequestEvent.Phase phase, Throwable error) {
+    if (listener == null) {
+      return;
+    }
+    try {
+      listener.onRequestEvent(new RequestEvent(phase, method, url, urlTemplate, params, status,
+          requestId, attempt, requestBytes, responseBytes, startNanos, System.nanoTime(),
+          error));
+    } catch (RuntimeException e) {
+      // a failing listener must not fail the request
+    }
+  }
+
+  /**
+   * Returns the path of a URL with the object IDs replaced by {@code {id}}. API paths alternate
+   * resource names and IDs, such as {@code /v1/customers/cus_123/sources/card_123}.
+   */
+  static String urlTemplate(String url) {
+    if (url == null) {
+      return null;
+    }
+    int query = url.indexOf('?');
+    String path = (query >= 0) ? url.substring(0, query) : url;
+    int scheme = path.indexOf("://");
+    if (scheme >= 0) {
+      int slash = path.indexOf('/', scheme + 3);
+      path = (slash >= 0) ? path.substring(slash) : "/";
+    }
+
+    StringBuilder template = new StringBuilder(path.length());
+    boolean expectId = false;
+    for (String segment : path.split("/")) {
+      if (segment.isEmpty()) {
+        continue;
+      }
+      template.append('/');
+      if (segment.startsWith("v") && template.length() == 1 && isVersion(segment)) {
+        template.append(segment);
+      } else if (expectId) {
+        template.append(ACTIONS.contains(segment) ? segment : "{id}");
+        expectId = false;
+      } else {
+        template.append(segment);
+        expectId = !NAMESPACES.contains(segment) && !SINGLETONS.contains(segment);
+      }
+    }
+    return (template.length() > 0) ? template.toString() : "/";
+  }
+
+  private static String host(String url) {
+    int scheme = (url != null) ? url.indexOf("://") : -1;
+    if (scheme < 0) {
+      return null;
+    }
+    int slash = url.indexOf('/', scheme + 3);
+    return url.substring(scheme + 3, (slash >= 0) ? slash : url.length());
+  }
+
+  private static boolean isVersion(String segment) {
+    for (int i = 1; i < segment.length(); i++) {
+      if (!Character.isDigit(segment.charAt(i))) {
+        return false;
+      }
+    }
+    return segment.length() > 1;
+  }
+
+  static long utf8Length(String s) {
+    long length = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+          && Character.isLowSurrogate(s.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+}
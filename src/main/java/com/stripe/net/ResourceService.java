@@ -0,0 +1,109 @@
+package com.stripe.net;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.StripeCollectionInterface;
+
+import java.util.Map;
+
+/**
+ * The standard operations of a top-level resource, issued through a {@link StripeClient}: its
+ * URLs are built on the client's API base and its requests use the client's transport, limiter,
+ * cache and default options.
+ *
+ * <p>Resource-specific actions, such as capturing a charge, are not covered: use the methods of
+ * the resource classes with {@link StripeClient#requestOptionsBuilder()} options for those.
+ *
+ * @param <T> the resource class, such as {@code Charge}
+ * @param <C> the collection class returned by its list endpoint, such as {@code ChargeCollection}
+ */
+public class ResourceService<T extends ApiResource, C extends StripeCollectionInterface<T>> {
+  private final StripeClient client;
+  private final Class<T> resourceClass;
+  private final Class<C> collectionClass;
+
+  ResourceService(StripeClient client, Class<T> resourceClass, Class<C> collectionClass) {
+    this.client = client;
+    this.resourceClass = resourceClass;
+    this.collectionClass = collectionClass;
+  }
+
+  public T create(Map<String, Object> params) throws StripeException {
+    return create(params, null);
+  }
+
+  /**
+   * Creates an object.
+   *
+   * @param options the options of the request, or {@code null} for the client's defaults
+   */
+  public T create(Map<String, Object> params, RequestOptions options) throws StripeException {
+    return client.request(ApiResource.RequestMethod.POST, classUrl(), params, resourceClass,
+        options);
+  }
+
+  public T retrieve(String id) throws StripeException {
+    return retrieve(id, null, null);
+  }
+
+  /**
+   * Retrieves an object, with parameters such as {@code expand}.
+   *
+   * @param options the options of the request, or {@code null} for the client's defaults
+   */
+  public T retrieve(String id, Map<String, Object> params, RequestOptions options)
+      throws StripeException {
+    return client.request(ApiResource.RequestMethod.GET, instanceUrl(id), params, resourceClass,
+        options);
+  }
+
+  public T update(String id, Map<String, Object> params) throws StripeException {
+    return update(id, params, null);
+  }
+
+  /**
+   * Updates an object.
+   *
+   * @param options the options of the request, or {@code null} for the client's defaults
+   */
+  public T update(String id, Map<String, Object> params, RequestOptions options)
+      throws StripeException {
+    return client.request(ApiResource.RequestMethod.POST, instanceUrl(id), params, resourceClass,
+        options);
+  }
+
+  public T delete(String id) throws StripeException {
+    return delete(id, null);
+  }
+
+  /**
+   * Deletes an object, for the resources that support it.
+   *
+   * @param options the options of the request, or {@code null} for the client's defaults
+   */
+  public T delete(String id, RequestOptions options) throws StripeException {
+    return client.request(ApiResource.RequestMethod.DELETE, instanceUrl(id), null, resourceClass,
+        options);
+  }
+
+  public C list(Map<String, Object> params) throws StripeException {
+    return list(params, null);
+  }
+
+  /**
+   * Lists objects. The returned collection carries the client's default options when none are
+   * given, so that its auto-pagination uses the client's API key.
+   *
+   * @param options the options of the request, or {@code null} for the client's defaults
+   */
+  public C list(Map<String, Object> params, RequestOptions options) throws StripeException {
+    return client.requestCollection(classUrl(), params, collectionClass, options);
+  }
+
+  private String classUrl() {
+    return ApiResource.classUrl(resourceClass, client.getApiBase());
+  }
+
+  private String instanceUrl(String id) throws StripeException {
+    return ApiResource.instanceUrl(resourceClass, id, client.getApiBase());
+  }
+}
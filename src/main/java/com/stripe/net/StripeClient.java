@@ -0,0 +1,557 @@
+package com.stripe.net;
+
+import com.stripe.Stripe;
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Charge;
+import com.stripe.model.ChargeCollection;
+import com.stripe.model.Customer;
+import com.stripe.model.CustomerCollection;
+import com.stripe.model.Event;
+import com.stripe.model.EventCollection;
+import com.stripe.model.Invoice;
+import com.stripe.model.InvoiceCollection;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.PaymentIntentCollection;
+import com.stripe.model.Payout;
+import com.stripe.model.PayoutCollection;
+import com.stripe.model.Plan;
+import com.stripe.model.PlanCollection;
+import com.stripe.model.Product;
+import com.stripe.model.ProductCollection;
+import com.stripe.model.Refund;
+import com.stripe.model.RefundCollection;
+import com.stripe.model.StripeCollection;
+import com.stripe.model.StripeCollectionInterface;
+import com.stripe.model.Subscription;
+import com.stripe.model.SubscriptionCollection;
+import com.stripe.model.Transfer;
+import com.stripe.model.TransferCollection;
+
+import java.net.PasswordAuthentication;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client with its own configuration, for applications that need differently configured clients
+ * side by side, such as one per connected platform with its own key, timeouts and rate limiter.
+ *
+ * <p>Each client owns its transport, with its cache of client headers, and its rate limiter,
+ * request coalescer, object cache, request listener and counters. Settings left unset fall back
+ * to the global configuration on {@link Stripe}, read at request time. The static methods of the
+ * resource classes are a facade over the {@linkplain #getDefault() default client}, which has no
+ * settings of its own.
+ *
+ * <p><pre>
+ * {@code
+ * StripeClient client = StripeClient.builder()
+ *     .setApiKey(platformKey)
+ *     .setReadTimeout(20 * 1000)
+ *     .setRateLimiter(RateLimiter.builder().build())
+ *     .build();
+ *
+ * Charge charge = client.charges().create(params);
+ * }
+ * </pre>
+ */
+public class StripeClient {
+  private static final StripeClient DEFAULT = new StripeClient(builder());
+
+  private final String apiKey;
+  private final String apiVersion;
+  private final String apiBase;
+  private final int connectTimeout;
+  private final int readTimeout;
+  private final Proxy connectionProxy;
+  private final PasswordAuthentication proxyCredential;
+  private final Map<String, String> appInfo;
+  private final RateLimiter rateLimiter;
+  private final RequestCoalescer requestCoalescer;
+  private final ObjectCache objectCache;
+  private final RequestListener requestListener;
+  private final Boolean telemetryEnabled;
+  private volatile StripeResponseGetter responseGetter;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong rateLimited = new AtomicLong();
+  private final AtomicLong totalLatencyNanos = new AtomicLong();
+  private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+  private final ResourceService<Charge, ChargeCollection> charges;
+  private final ResourceService<Customer, CustomerCollection> customers;
+  private final ResourceService<Event, EventCollection> events;
+  private final ResourceService<Invoice, InvoiceCollection> invoices;
+  private final ResourceService<PaymentIntent, PaymentIntentCollection> paymentIntents;
+  private final ResourceService<Payout, PayoutCollection> payouts;
+  private final ResourceService<Plan, PlanCollection> plans;
+  private final ResourceService<Product, ProductCollection> products;
+  private final ResourceService<Refund, RefundCollection> refunds;
+  private final ResourceService<Subscription, SubscriptionCollection> subscriptions;
+  private final ResourceService<Transfer, TransferCollection> transfers;
+
+  private StripeClient(StripeClientBuilder builder) {
+    this.apiKey = builder.apiKey;
+    this.apiVersion = builder.apiVersion;
+    this.apiBase = builder.apiBase;
+    this.connectTimeout = builder.connectTimeout;
+    this.readTimeout = builder.readTimeout;
+    this.connectionProxy = builder.connectionProxy;
+    this.proxyCredential = builder.proxyCredential;
+    this.appInfo = (builder.appInfo != null)
+        ? Collections.unmodifiableMap(new HashMap<>(builder.appInfo)) : null;
+    this.rateLimiter = builder.rateLimiter;
+    this.requestCoalescer = builder.requestCoalescer;
+    this.objectCache = builder.objectCache;
+    this.requestListener = builder.requestListener;
+    this.telemetryEnabled = builder.telemetryEnabled;
+    this.responseGetter = (builder.responseGetter != null)
+        ? builder.responseGetter : new LiveStripeResponseGetter(this);
+
+    this.charges = service(Charge.class, ChargeCollection.class);
+    this.customers = service(Customer.class, CustomerCollection.class);
+    this.events = service(Event.class, EventCollection.class);
+    this.invoices = service(Invoice.class, InvoiceCollection.class);
+    this.paymentIntents = service(PaymentIntent.class, PaymentIntentCollection.class);
+    this.payouts = service(Payout.class, PayoutCollection.class);
+    this.plans = service(Plan.class, PlanCollection.class);
+    this.products = service(Product.class, ProductCollection.class);
+    this.refunds = service(Refund.class, RefundCollection.class);
+    this.subscriptions = service(Subscription.class, SubscriptionCollection.class);
+    this.transfers = service(Transfer.class, TransferCollection.class);
+  }
+
+  public static StripeClientBuilder builder() {
+    return new StripeClientBuilder();
+  }
+
+  /**
+   * Returns the client behind the static methods of the resource classes. It has no settings of
+   * its own: everything comes from the global configuration on {@link Stripe}.
+   */
+  public static StripeClient getDefault() {
+    return DEFAULT;
+  }
+
+  public ResourceService<Charge, ChargeCollection> charges() {
+    return charges;
+  }
+
+  public ResourceService<Customer, CustomerCollection> customers() {
+    return customers;
+  }
+
+  public ResourceService<Event, EventCollection> events() {
+    return events;
+  }
+
+  public ResourceService<Invoice, InvoiceCollection> invoices() {
+    return invoices;
+  }
+
+  public ResourceService<PaymentIntent, PaymentIntentCollection> paymentIntents() {
+    return paymentIntents;
+  }
+
+  public ResourceService<Payout, PayoutCollection> payouts() {
+    return payouts;
+  }
+
+  public ResourceService<Plan, PlanCollection> plans() {
+    return plans;
+  }
+
+  public ResourceService<Product, ProductCollection> products() {
+    return products;
+  }
+
+  public ResourceService<Refund, RefundCollection> refunds() {
+    return refunds;
+  }
+
+  public ResourceService<Subscription, SubscriptionCollection> subscriptions() {
+    return subscriptions;
+  }
+
+  public ResourceService<Transfer, TransferCollection> transfers() {
+    return transfers;
+  }
+
+  /**
+   * Returns a service for any other top-level resource, such as
+   * {@code service(Coupon.class, CouponCollection.class)}.
+   */
+  public <T extends ApiResource, C extends StripeCollectionInterface<T>> ResourceService<T, C>
+      service(Class<T> resourceClass, Class<C> collectionClass) {
+    return new ResourceService<>(this, resourceClass, collectionClass);
+  }
+
+  /**
+   * Returns a builder of request options preset with the client's API key, API version and
+   * timeouts, for the calls that take options, such as the instance methods of resources.
+   */
+  public RequestOptions.RequestOptionsBuilder requestOptionsBuilder() {
+    return RequestOptions.builder()
+        .setApiKey(getApiKey())
+        .setStripeVersion(getApiVersion())
+        .setConnectTimeout(getConnectTimeout())
+        .setReadTimeout(getReadTimeout());
+  }
+
+  /**
+   * Sends a request through the client and deserializes the response into {@code clazz}.
+   * Retrieves may be answered from the client's {@link ObjectCache}.
+   *
+   * @param options the options of the request, or {@code null} for the client's defaults
+   */
+  public <T> T request(ApiResource.RequestMethod method, String url, Map<String, Object> params,
+      Class<T> clazz, RequestOptions options) throws StripeException {
+    final RequestOptions requestOptions = withDefaults(options);
+    final StripeResponseGetter getter = responseGetter;
+    final ObjectCache cache = getObjectCache();
+    long start = System.nanoTime();
+    try {
+      if (cache != null) {
+        return cache.request(method, url, params, clazz, requestOptions, getter, getApiBase());
+      }
+      return getter.request(method, url, params, clazz, ApiResource.RequestType.NORMAL,
+          requestOptions);
+    } catch (StripeException e) {
+      recordError(e);
+      throw e;
+    } finally {
+      recordRequest(start);
+    }
+  }
+
+  /**
+   * Sends a multipart request through the client, such as a file upload.
+   *
+   * @param options the options of the request, or {@code null} for the client's defaults
+   */
+  public <T> T multipartRequest(ApiResource.RequestMethod method, String url,
+      Map<String, Object> params, Class<T> clazz, RequestOptions options)
+      throws StripeException {
+    long start = System.nanoTime();
+    try {
+      return responseGetter.request(method, url, params, clazz,
+          ApiResource.RequestType.MULTIPART, withDefaults(options));
+    } catch (StripeException e) {
+      recordError(e);
+      throw e;
+    } finally {
+      recordRequest(start);
+    }
+  }
+
+  /**
+   * Sends a list request through the client. The returned collection keeps the options and
+   * parameters, to request the following pages.
+   *
+   * @param options the options of the request, or {@code null} for the client's defaults
+   */
+  public <T extends StripeCollectionInterface<?>> T requestCollection(String url,
+      Map<String, Object> params, Class<T> clazz, RequestOptions options)
+      throws StripeException {
+    final RequestOptions requestOptions = withDefaults(options);
+    Object event = FlightRecorderEvent.PAGE_FETCH.begin();
+    T collection = request(ApiResource.RequestMethod.GET, url, params, clazz, requestOptions);
+    if (collection != null) {
+      collection.setRequestOptions(requestOptions);
+      collection.setRequestParams(params);
+      if (collection instanceof StripeCollection) {
+        ((StripeCollection<?>) collection).setClient(this);
+      }
+    }
+    if (event != null && collection != null) {
+      FlightRecorderEvent.PAGE_FETCH.commit(event, RequestTrace.urlTemplate(url),
+          (collection.getData() != null) ? collection.getData().size() : 0,
+          Boolean.TRUE.equals(collection.getHasMore()));
+    }
+    return collection;
+  }
+
+  /**
+   * Issues a request through the client and returns the response with its body left unread. The
+   * caller is responsible for closing the returned stream. Only the time to the response headers
+   * is counted in the client's latency.
+   *
+   * @param options the options of the request, or {@code null} for the client's defaults
+   */
+  public StripeResponseStream requestStream(ApiResource.RequestMethod method, String url,
+      Map<String, Object> params, RequestOptions options) throws StripeException {
+    final StripeResponseGetter getter = responseGetter;
+    LiveStripeResponseGetter live = (getter instanceof LiveStripeResponseGetter)
+        ? (LiveStripeResponseGetter) getter : new LiveStripeResponseGetter(this);
+    long start = System.nanoTime();
+    try {
+      return live.streamRequest(method, url, params, withDefaults(options));
+    } catch (StripeException e) {
+      recordError(e);
+      throw e;
+    } finally {
+      recordRequest(start);
+    }
+  }
+
+  /**
+   * Returns a snapshot of the client's counters.
+   */
+  public StripeClientStats getStats() {
+    return new StripeClientStats(requests.get(), errors.get(), rateLimited.get(),
+        totalLatencyNanos.get(), maxLatencyNanos.get());
+  }
+
+  public String getApiKey() {
+    return (apiKey != null) ? apiKey : Stripe.apiKey;
+  }
+
+  public String getApiVersion() {
+    return (apiVersion != null) ? apiVersion : Stripe.apiVersion;
+  }
+
+  public String getApiBase() {
+    return (apiBase != null) ? apiBase : Stripe.getApiBase();
+  }
+
+  public int getConnectTimeout() {
+    return (connectTimeout >= 0) ? connectTimeout : Stripe.getConnectTimeout();
+  }
+
+  public int getReadTimeout() {
+    return (readTimeout >= 0) ? readTimeout : Stripe.getReadTimeout();
+  }
+
+  public Proxy getConnectionProxy() {
+    return (connectionProxy != null) ? connectionProxy : Stripe.getConnectionProxy();
+  }
+
+  public PasswordAuthentication getProxyCredential() {
+    return (proxyCredential != null) ? proxyCredential : Stripe.getProxyCredential();
+  }
+
+  public Map<String, String> getAppInfo() {
+    return (appInfo != null) ? appInfo : Stripe.getAppInfo();
+  }
+
+  public RateLimiter getRateLimiter() {
+    return (rateLimiter != null) ? rateLimiter : Stripe.getRateLimiter();
+  }
+
+  public RequestCoalescer getRequestCoalescer() {
+    return (requestCoalescer != null) ? requestCoalescer : Stripe.getRequestCoalescer();
+  }
+
+  public ObjectCache getObjectCache() {
+    return (objectCache != null) ? objectCache : Stripe.getObjectCache();
+  }
+
+  public RequestListener getRequestListener() {
+    return (requestListener != null) ? requestListener : Stripe.getRequestListener();
+  }
+
+  public boolean isTelemetryEnabled() {
+    return (telemetryEnabled != null) ? telemetryEnabled : Stripe.isTelemetryEnabled();
+  }
+
+  StripeResponseGetter getResponseGetter() {
+    return responseGetter;
+  }
+
+  /**
+   * Replaces the transport, for {@link ApiResource#setStripeResponseGetter}.
+   */
+  void setResponseGetter(StripeResponseGetter responseGetter) {
+    this.responseGetter = responseGetter;
+  }
+
+  /**
+   * Returns the given options on top of the client's own defaults. The default client passes the
+   * options, or {@code null}, along so that the transport reads the global configuration.
+   *
+   * <p>A {@link RequestOptions.RequestOptionsBuilder} starts from the global API key and version,
+   * so only the settings that differ from the global ones, and the Stripe account and idempotency
+   * key, are taken as set by the caller.
+   */
+  private RequestOptions withDefaults(RequestOptions options) {
+    if (apiKey == null && apiVersion == null && connectTimeout < 0 && readTimeout < 0) {
+      return options;
+    }
+    RequestOptions.RequestOptionsBuilder builder = requestOptionsBuilder();
+    if (options == null) {
+      return builder.build();
+    }
+    if (options.getApiKey() != null && !options.getApiKey().equals(Stripe.apiKey)) {
+      builder.setApiKey(options.getApiKey());
+    }
+    if (options.getStripeVersion() != null
+        && !options.getStripeVersion().equals(Stripe.apiVersion)) {
+      builder.setStripeVersion(options.getStripeVersion());
+    }
+    if (options.getConnectTimeout() > 0
+        && options.getConnectTimeout() != Stripe.getConnectTimeout()) {
+      builder.setConnectTimeout(options.getConnectTimeout());
+    }
+    if (options.getReadTimeout() > 0 && options.getReadTimeout() != Stripe.getReadTimeout()) {
+      builder.setReadTimeout(options.getReadTimeout());
+    }
+    return builder
+        .setClientId(options.getClientId())
+        .setStripeAccount(options.getStripeAccount())
+        .setIdempotencyKey(options.getIdempotencyKey())
+        .build();
+  }
+
+  private void recordError(StripeException e) {
+    errors.incrementAndGet();
+    if (e instanceof RateLimitException) {
+      rateLimited.incrementAndGet();
+    }
+  }
+
+  private void recordRequest(long start) {
+    long elapsed = System.nanoTime() - start;
+    requests.incrementAndGet();
+    totalLatencyNanos.addAndGet(elapsed);
+    long max = maxLatencyNanos.get();
+    while (elapsed > max && !maxLatencyNanos.compareAndSet(max, elapsed)) {
+      max = maxLatencyNanos.get();
+    }
+  }
+
+  public static final class StripeClientBuilder {
+    private String apiKey;
+    private String apiVersion;
+    private String apiBase;
+    private int connectTimeout = -1;
+    private int readTimeout = -1;
+    private Proxy connectionProxy;
+    private PasswordAuthentication proxyCredential;
+    private Map<String, String> appInfo;
+    private RateLimiter rateLimiter;
+    private RequestCoalescer requestCoalescer;
+    private ObjectCache objectCache;
+    private RequestListener requestListener;
+    private Boolean telemetryEnabled;
+    private StripeResponseGetter responseGetter;
+
+    public StripeClientBuilder setApiKey(String apiKey) {
+      this.apiKey = apiKey;
+      return this;
+    }
+
+    public StripeClientBuilder setApiVersion(String apiVersion) {
+      this.apiVersion = apiVersion;
+      return this;
+    }
+
+    /**
+     * Sets the base URL of the API, for instance to hit a mocked server in tests.
+     */
+    public StripeClientBuilder setApiBase(String apiBase) {
+      this.apiBase = apiBase;
+      return this;
+    }
+
+    /**
+     * Sets the timeout for making new connections, in milliseconds.
+     */
+    public StripeClientBuilder setConnectTimeout(int timeout) {
+      this.connectTimeout = timeout;
+      return this;
+    }
+
+    /**
+     * Sets the timeout for reading from an established connection, in milliseconds.
+     */
+    public StripeClientBuilder setReadTimeout(int timeout) {
+      this.readTimeout = timeout;
+      return this;
+    }
+
+    public StripeClientBuilder setConnectionProxy(Proxy proxy) {
+      this.connectionProxy = proxy;
+      return this;
+    }
+
+    public StripeClientBuilder setProxyCredential(PasswordAuthentication auth) {
+      this.proxyCredential = auth;
+      return this;
+    }
+
+    /**
+     * Sets information about your application, passed along to Stripe with the client's
+     * requests.
+     *
+     * @see Stripe#setAppInfo(String, String, String, String)
+     */
+    public StripeClientBuilder setAppInfo(String name, String version, String url,
+        String partnerId) {
+      this.appInfo = new HashMap<>();
+      this.appInfo.put("name", name);
+      this.appInfo.put("version", version);
+      this.appInfo.put("url", url);
+      this.appInfo.put("partner_id", partnerId);
+      return this;
+    }
+
+    public StripeClientBuilder setRateLimiter(RateLimiter rateLimiter) {
+      this.rateLimiter = rateLimiter;
+      return this;
+    }
+
+    public StripeClientBuilder setRequestCoalescer(RequestCoalescer requestCoalescer) {
+      this.requestCoalescer = requestCoalescer;
+      return this;
+    }
+
+    public StripeClientBuilder setObjectCache(ObjectCache objectCache) {
+      this.objectCache = objectCache;
+      return this;
+    }
+
+    public StripeClientBuilder setRequestListener(RequestListener requestListener) {
+      this.requestListener = requestListener;
+      return this;
+    }
+
+    /**
+     * Adds a listener notified of the phases of the client's requests, after the listeners added
+     * so far. The client then no longer uses the global listeners.
+     */
+    public StripeClientBuilder addRequestListener(RequestListener requestListener) {
+      this.requestListener = CompositeRequestListener.combine(this.requestListener,
+          requestListener);
+      return this;
+    }
+
+    /**
+     * Sets whether the client reports request metrics to Stripe.
+     *
+     * @see Stripe#setTelemetryEnabled(boolean)
+     */
+    public StripeClientBuilder setTelemetryEnabled(boolean enabled) {
+      this.telemetryEnabled = enabled;
+      return this;
+    }
+
+    /**
+     * Sets the transport of the client. Defaults to a {@link LiveStripeResponseGetter} using the
+     * client's settings.
+     */
+    public StripeClientBuilder setResponseGetter(StripeResponseGetter responseGetter) {
+      this.responseGetter = responseGetter;
+      return this;
+    }
+
+    /**
+     * Constructs a {@link StripeClient} with the specified values.
+     */
+    public StripeClient build() {
+      return new StripeClient(this);
+    }
+  }
+}
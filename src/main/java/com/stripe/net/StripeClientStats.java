@@ -0,0 +1,63 @@
+package com.stripe.net;
+
+/**
+ * Snapshot of the counters of a {@link StripeClient}.
+ */
+public final class StripeClientStats {
+  private final long requests;
+  private final long errors;
+  private final long rateLimited;
+  private final long totalLatencyNanos;
+  private final long maxLatencyNanos;
+
+  StripeClientStats(long requests, long errors, long rateLimited, long totalLatencyNanos,
+      long maxLatencyNanos) {
+    this.requests = requests;
+    this.errors = errors;
+    this.rateLimited = rateLimited;
+    this.totalLatencyNanos = totalLatencyNanos;
+    this.maxLatencyNanos = maxLatencyNanos;
+  }
+
+  /**
+   * Returns the number of requests issued through the client, cached ones included.
+   */
+  public long getRequests() {
+    return requests;
+  }
+
+  /**
+   * Returns the number of requests that failed with a {@link com.stripe.exception.StripeException}.
+   */
+  public long getErrors() {
+    return errors;
+  }
+
+  /**
+   * Returns the number of requests rejected by the API with a {@code 429}.
+   */
+  public long getRateLimited() {
+    return rateLimited;
+  }
+
+  /**
+   * Returns the total time spent in requests, in nanoseconds.
+   */
+  public long getTotalLatencyNanos() {
+    return totalLatencyNanos;
+  }
+
+  /**
+   * Returns the longest time spent in a single request, in nanoseconds.
+   */
+  public long getMaxLatencyNanos() {
+    return maxLatencyNanos;
+  }
+
+  /**
+   * Returns the average time spent in a request, in nanoseconds.
+   */
+  public long getMeanLatencyNanos() {
+    return (requests == 0) ? 0 : totalLatencyNanos / requests;
+  }
+}
@@ -25,8 +25,26 @@ public class StripeHeaders {
     return value;
   }
 
+  /**
+   * Returns all header values for a given key. Header names are case-insensitive, as some
+   * servers and proxies do not preserve their case.
+   * @param name The name of the header key
+   * @return the values for the given key
+   */
   public List<String> values(String name) {
-    return headers == null ? null : headers.get(name);
+    if (headers == null) {
+      return null;
+    }
+    List<String> values = headers.get(name);
+    if (values != null) {
+      return values;
+    }
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      if (name.equalsIgnoreCase(header.getKey())) {
+        return header.getValue();
+      }
+    }
+    return null;
   }
 
 }
@@ -8,6 +8,7 @@ public class StripeResponse {
   int code;
   String body;
   StripeHeaders headers;
+  RequestTimings timings;
 
   /**
    * Constructs a Stripe response with the specified status code and body.
@@ -46,4 +47,23 @@ public class StripeResponse {
   public String requestId() {
     return (headers != null) ? headers.get("Request-Id") : null;
   }
+
+  /**
+   * Returns how long each phase of the request took, or {@code null} if the response was not
+   * deserialized by the bindings.
+   */
+  public RequestTimings timings() {
+    return timings;
+  }
+
+  /**
+   * Returns a copy of the response with the given timings. Responses shared by coalesced requests
+   * are copied so that each carries its own.
+   */
+  StripeResponse withTimings(RequestTimings timings) {
+    StripeResponse copy = new StripeResponse(code, body);
+    copy.headers = headers;
+    copy.timings = timings;
+    return copy;
+  }
 }
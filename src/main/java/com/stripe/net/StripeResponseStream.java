@@ -0,0 +1,60 @@
+package com.stripe.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A successful response from the Stripe API whose body has not been read yet. Closing the stream
+ * releases the underlying connection.
+ */
+public class StripeResponseStream implements Closeable {
+
+  int code;
+  InputStream body;
+  StripeHeaders headers;
+
+  private final HttpURLConnection conn;
+
+  StripeResponseStream(int code, InputStream body, Map<String, List<String>> headers,
+      HttpURLConnection conn) {
+    this.code = code;
+    this.body = body;
+    this.headers = new StripeHeaders(headers);
+    this.conn = conn;
+  }
+
+  public int code() {
+    return this.code;
+  }
+
+  public InputStream body() {
+    return this.body;
+  }
+
+  public StripeHeaders headers() {
+    return headers;
+  }
+
+  public String idempotencyKey() {
+    return (headers != null) ? headers.get("Idempotency-Key") : null;
+  }
+
+  public String requestId() {
+    return (headers != null) ? headers.get("Request-Id") : null;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      body.close();
+    } finally {
+      if (conn != null) {
+        conn.disconnect();
+      }
+    }
+  }
+}
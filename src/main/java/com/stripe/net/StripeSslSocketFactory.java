@@ -84,6 +84,8 @@ public class StripeSslSocketFactory extends SSLSocketFactory {
   @Override
   public Socket createSocket(Socket s, String host, int port, boolean autoClose)
       throws IOException {
+    // layered over a connected socket, so the TLS handshake comes next
+    RequestTrace.handshaking();
     return fixupSocket(this.under.createSocket(s, host, port, autoClose));
   }
 
@@ -3,6 +3,15 @@ package com.stripe.net;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.Event;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
@@ -13,7 +22,7 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
 public final class Webhook {
-  private static final long DEFAULT_TOLERANCE = 300;
+  static final long DEFAULT_TOLERANCE = 300;
 
   /**
    * Returns an Event instance using the provided JSON payload. Throws a
@@ -48,14 +57,53 @@ public final class Webhook {
    */
   public static Event constructEvent(String payload, String sigHeader, String secret,
       long tolerance) throws SignatureVerificationException {
-    Event event = ApiResource.GSON.fromJson(payload, Event.class);
+    // verify first, so that forged payloads are rejected before being parsed
     Signature.verifyHeader(payload, sigHeader, secret, tolerance);
-    return event;
+    return ApiResource.GSON.fromJson(payload, Event.class);
+  }
+
+  /**
+   * Returns an Event instance using the provided UTF-8 encoded JSON payload, as read from the
+   * request body. Throws a JsonSyntaxException if the payload is not valid JSON, and a
+   * SignatureVerificationException if the signature verification fails for any reason.
+   *
+   * @param payload   the payload sent by Stripe.
+   * @param sigHeader the contents of the signature header sent by Stripe.
+   * @param secret    secret used to generate the signature.
+   * @return the Event instance
+   * @throws SignatureVerificationException if the verification fails.
+   */
+  public static Event constructEvent(byte[] payload, String sigHeader, String secret)
+      throws SignatureVerificationException {
+    return constructEvent(payload, sigHeader, secret, DEFAULT_TOLERANCE);
+  }
+
+  /**
+   * Returns an Event instance using the provided UTF-8 encoded JSON payload, as read from the
+   * request body. Throws a JsonSyntaxException if the payload is not valid JSON, and a
+   * SignatureVerificationException if the signature verification fails for any reason.
+   *
+   * @param payload   the payload sent by Stripe.
+   * @param sigHeader the contents of the signature header sent by Stripe.
+   * @param secret    secret used to generate the signature.
+   * @param tolerance maximum difference in seconds allowed between the header's
+   *                  timestamp and the current time
+   * @return the Event instance
+   * @throws SignatureVerificationException if the verification fails.
+   */
+  public static Event constructEvent(byte[] payload, String sigHeader, String secret,
+      long tolerance) throws SignatureVerificationException {
+    Signature.verifyHeader(payload, sigHeader, secret, tolerance);
+    return ApiResource.GSON.fromJson(
+        new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8),
+        Event.class);
   }
 
   public static final class Signature {
     public static final String EXPECTED_SCHEME = "v1";
 
+    private static final int CHUNK_SIZE = 8192;
+
     /**
      * Verifies the signature header sent by Stripe. Throws a
      * SignatureVerificationException if the verification fails for any reason.
@@ -69,101 +117,285 @@ public final class Webhook {
      */
     public static boolean verifyHeader(String payload, String sigHeader, String secret,
         long tolerance) throws SignatureVerificationException {
-      // Get timestamp and signatures from header
-      long timestamp = getTimestamp(sigHeader);
-      List<String> signatures = getSignatures(sigHeader, EXPECTED_SCHEME);
-      if (timestamp <= 0) {
-        throw new SignatureVerificationException(
-            "Unable to extract timestamp and signatures from header", sigHeader);
+      Header header = Header.parse(sigHeader, tolerance);
+      Mac mac = header.newMac(secret);
+      update(payload, mac);
+      return header.verify(mac.doFinal());
+    }
+
+    /**
+     * Verifies the signature header sent by Stripe against the raw, UTF-8 encoded payload.
+     * Throws a SignatureVerificationException if the verification fails for any reason.
+     *
+     * @param payload   the payload sent by Stripe.
+     * @param sigHeader the contents of the signature header sent by Stripe.
+     * @param secret    secret used to generate the signature.
+     * @param tolerance maximum difference allowed between the header's
+     *                  timestamp and the current time
+     * @throws SignatureVerificationException if the verification fails.
+     */
+    public static boolean verifyHeader(byte[] payload, String sigHeader, String secret,
+        long tolerance) throws SignatureVerificationException {
+      return verifyHeader(ByteBuffer.wrap(payload), sigHeader, secret, tolerance);
+    }
+
+    /**
+     * Verifies the signature header sent by Stripe against the remaining bytes of a buffer
+     * holding the raw, UTF-8 encoded payload. The position of the buffer is left unchanged.
+     * Throws a SignatureVerificationException if the verification fails for any reason.
+     *
+     * @param payload   the payload sent by Stripe.
+     * @param sigHeader the contents of the signature header sent by Stripe.
+     * @param secret    secret used to generate the signature.
+     * @param tolerance maximum difference allowed between the header's
+     *                  timestamp and the current time
+     * @throws SignatureVerificationException if the verification fails.
+     */
+    public static boolean verifyHeader(ByteBuffer payload, String sigHeader, String secret,
+        long tolerance) throws SignatureVerificationException {
+      Header header = Header.parse(sigHeader, tolerance);
+      Mac mac = header.newMac(secret);
+      mac.update(payload.duplicate());
+      return header.verify(mac.doFinal());
+    }
+
+    /**
+     * Verifies the signature header sent by Stripe against the raw, UTF-8 encoded payload read
+     * from a stream, such as a request body. The stream is read to its end but not closed, and
+     * the payload is never held in memory as a whole. Throws a SignatureVerificationException if
+     * the verification fails for any reason.
+     *
+     * @param payload   the payload sent by Stripe.
+     * @param sigHeader the contents of the signature header sent by Stripe.
+     * @param secret    secret used to generate the signature.
+     * @param tolerance maximum difference allowed between the header's
+     *                  timestamp and the current time
+     * @throws SignatureVerificationException if the verification fails.
+     * @throws IOException if the payload cannot be read.
+     */
+    public static boolean verifyHeader(InputStream payload, String sigHeader, String secret,
+        long tolerance) throws SignatureVerificationException, IOException {
+      Header header = Header.parse(sigHeader, tolerance);
+      Mac mac = header.newMac(secret);
+      byte[] chunk = new byte[CHUNK_SIZE];
+      int read;
+      while ((read = payload.read(chunk)) != -1) {
+        mac.update(chunk, 0, read);
       }
-      if (signatures.size() == 0) {
-        throw new SignatureVerificationException("No signatures found with expected scheme",
-            sigHeader);
+      return header.verify(mac.doFinal());
+    }
+
+    /**
+     * Feeds the UTF-8 encoding of a string to MACs, one chunk at a time. Every chunk is encoded
+     * once and fed to all of the MACs.
+     */
+    static void update(String payload, Mac... macs) {
+      CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      CharBuffer in = CharBuffer.wrap(payload);
+      ByteBuffer out = ByteBuffer.allocate(Math.min(CHUNK_SIZE, 16 + payload.length() * 3));
+      boolean flushing = false;
+      while (true) {
+        final CoderResult result = flushing ? encoder.flush(out) : encoder.encode(in, out, true);
+        out.flip();
+        for (Mac mac : macs) {
+          mac.update(out.duplicate());
+        }
+        out.clear();
+        if (result.isUnderflow()) {
+          if (flushing) {
+            return;
+          }
+          flushing = true;
+        }
       }
+    }
+
+    /**
+     * The timestamp and the signatures of a {@code Stripe-Signature} header.
+     */
+    static final class Header {
+      private static final int SIGNATURE_LENGTH = 32;
 
-      // Compute expected signature
-      String signedPayload = String.format("%d.%s", timestamp, payload);
-      String expectedSignature;
-      try {
-        expectedSignature = computeSignature(signedPayload, secret);
-      } catch (Exception e) {
-        throw new SignatureVerificationException("Unable to compute signature for payload",
-            sigHeader);
+      private final String sigHeader;
+      private final long timestamp;
+      // decoded signatures with the expected scheme; null for values that are not valid hex
+      private final List<byte[]> signatures;
+      // the JFR event timing the verification, null when not recorded
+      private final Object event = FlightRecorderEvent.WEBHOOK_VERIFY.begin();
+      private boolean recorded;
+
+      private Header(String sigHeader, long timestamp, List<byte[]> signatures) {
+        this.sigHeader = sigHeader;
+        this.timestamp = timestamp;
+        this.signatures = signatures;
       }
 
-      // Check if expected signature is found in list of header's signatures
-      boolean signatureFound = false;
-      for (String signature : signatures) {
-        if (Util.secureCompare(expectedSignature, signature)) {
-          signatureFound = true;
-          break;
+      /**
+       * Parses a signature header and checks its timestamp against the tolerance, before any
+       * work is done on the payload.
+       */
+      static Header parse(String sigHeader, long tolerance)
+          throws SignatureVerificationException {
+        long timestamp = -1;
+        List<byte[]> signatures = new ArrayList<>(2);
+
+        // Get timestamp and signatures from header, a comma separated list of key=value items
+        int length = sigHeader.length();
+        int start = 0;
+        while (start <= length) {
+          int end = sigHeader.indexOf(',', start);
+          if (end < 0) {
+            end = length;
+          }
+          int separator = sigHeader.indexOf('=', start);
+          if (separator >= 0 && separator < end) {
+            int keyLength = separator - start;
+            if (keyLength == 1 && sigHeader.charAt(start) == 't') {
+              if (timestamp == -1) {
+                timestamp = parseTimestamp(sigHeader, separator + 1, end);
+              }
+            } else if (keyLength == EXPECTED_SCHEME.length()
+                && sigHeader.startsWith(EXPECTED_SCHEME, start)) {
+              signatures.add(decodeHex(sigHeader, separator + 1, end));
+            }
+          }
+          start = end + 1;
+        }
+
+        if (timestamp <= 0) {
+          throw new SignatureVerificationException(
+              "Unable to extract timestamp and signatures from header", sigHeader);
+        }
+        if (signatures.size() == 0) {
+          throw new SignatureVerificationException("No signatures found with expected scheme",
+              sigHeader);
+        }
+
+        // Check tolerance
+        if ((tolerance > 0) && (timestamp < (Util.getTimeNow() - tolerance))) {
+          throw new SignatureVerificationException("Timestamp outside the tolerance zone",
+              sigHeader);
         }
+
+        return new Header(sigHeader, timestamp, signatures);
       }
-      if (!signatureFound) {
-        throw new SignatureVerificationException(
-            "No signatures found matching the expected signature for payload", sigHeader);
+
+      long getTimestamp() {
+        return timestamp;
       }
 
-      // Check tolerance
-      if ((tolerance > 0) && (timestamp < (Util.getTimeNow() - tolerance))) {
-        throw new SignatureVerificationException("Timestamp outside the tolerance zone", sigHeader);
+      String sigHeader() {
+        return sigHeader;
       }
 
-      return true;
-    }
+      /**
+       * Returns a MAC keyed with {@code secret} that has already been fed the signed prefix
+       * ({@code "<timestamp>."}). The payload is fed to it next, as is.
+       */
+      Mac newMac(String secret) throws SignatureVerificationException {
+        Mac mac;
+        try {
+          mac = Mac.getInstance("HmacSHA256");
+          mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+          throw new SignatureVerificationException("Unable to compute signature for payload",
+              sigHeader);
+        }
+        updatePrefix(mac);
+        return mac;
+      }
 
-    /**
-     * Extracts the timestamp in a signature header.
-     *
-     * @param sigHeader the signature header
-     * @return the timestamp contained in the header.
-     */
-    private static long getTimestamp(String sigHeader) {
-      String[] items = sigHeader.split(",", -1);
+      /**
+       * Feeds the signed prefix ({@code "<timestamp>."}) to a MAC.
+       */
+      void updatePrefix(Mac mac) {
+        mac.update(Long.toString(timestamp).getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) '.');
+      }
 
-      for (String item : items) {
-        String[] itemParts = item.split("=", 2);
-        if (itemParts[0].equals("t")) {
-          return Long.parseLong(itemParts[1]);
+      /**
+       * Returns whether the header holds the given signature. The time taken is independent of
+       * how much of the signatures match.
+       */
+      boolean matches(byte[] expectedSignature) {
+        boolean signatureFound = false;
+        for (byte[] signature : signatures) {
+          if (signature != null && MessageDigest.isEqual(expectedSignature, signature)) {
+            signatureFound = true;
+          }
         }
+        return signatureFound;
       }
 
-      return -1;
-    }
+      /**
+       * Checks that the header holds the given signature.
+       */
+      boolean verify(byte[] expectedSignature) throws SignatureVerificationException {
+        boolean verified = matches(expectedSignature);
+        recordVerification(verified, 1);
+        if (!verified) {
+          throw new SignatureVerificationException(
+              "No signatures found matching the expected signature for payload", sigHeader);
+        }
+        return true;
+      }
 
-    /**
-     * Extracts the signatures matching a given scheme in a signature header.
-     *
-     * @param sigHeader the signature header
-     * @param scheme    the signature scheme to look for.
-     * @return the list of signatures matching the provided scheme.
-     */
-    private static List<String> getSignatures(String sigHeader, String scheme) {
-      List<String> signatures = new ArrayList<String>();
-      String[] items = sigHeader.split(",", -1);
-
-      for (String item : items) {
-        String[] itemParts = item.split("=", 2);
-        if (itemParts[0].equals(scheme)) {
-          signatures.add(itemParts[1]);
+      /**
+       * Records the outcome of the verification, once the payload has been checked against
+       * {@code secrets} secrets. Only the first outcome recorded counts.
+       */
+      void recordVerification(boolean verified, int secrets) {
+        if (event != null && !recorded) {
+          recorded = true;
+          FlightRecorderEvent.WEBHOOK_VERIFY.commit(event, verified, secrets);
         }
       }
 
-      return signatures;
-    }
+      private static long parseTimestamp(String s, int from, int to) {
+        // at most 18 digits, so the value cannot overflow
+        if (from == to || to - from > 18) {
+          return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+          char c = s.charAt(i);
+          if (c < '0' || c > '9') {
+            return -1;
+          }
+          value = value * 10 + (c - '0');
+        }
+        return value;
+      }
 
-    /**
-     * Computes the signature for a given payload and secret.
-     *
-     * <p>The current scheme used by Stripe ("v1") is HMAC/SHA-256.
-     *
-     * @param payload the payload to sign.
-     * @param secret  the secret used to generate the signature.
-     * @return the signature as a string.
-     */
-    private static String computeSignature(String payload, String secret)
-        throws NoSuchAlgorithmException, InvalidKeyException {
-      return Util.computeHmacSha256(secret, payload);
+      private static byte[] decodeHex(String s, int from, int to) {
+        // an HMAC-SHA256 signature is 32 bytes; anything else, such as an empty value, can never
+        // be a valid signature
+        if (to - from != 2 * SIGNATURE_LENGTH) {
+          return null;
+        }
+        byte[] bytes = new byte[(to - from) / 2];
+        for (int i = 0; i < bytes.length; i++) {
+          int high = hexDigit(s.charAt(from + 2 * i));
+          int low = hexDigit(s.charAt(from + 2 * i + 1));
+          if (high < 0 || low < 0) {
+            return null;
+          }
+          bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+      }
+
+      private static int hexDigit(char c) {
+        // signatures are lower case, like the ones computed by computeHmacSha256
+        if (c >= '0' && c <= '9') {
+          return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+          return c - 'a' + 10;
+        }
+        return -1;
+      }
     }
   }
 
@@ -179,12 +411,15 @@ public final class Webhook {
         throws NoSuchAlgorithmException, InvalidKeyException {
       Mac hasher = Mac.getInstance("HmacSHA256");
       hasher.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
-      byte[] hash = hasher.doFinal(message.getBytes(StandardCharsets.UTF_8));
-      String result = "";
-      for (byte b : hash) {
-        result += Integer.toString((b & 0xff) + 0x100, 16).substring(1);
+      return toHex(hasher.doFinal(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String toHex(byte[] bytes) {
+      StringBuilder result = new StringBuilder(bytes.length * 2);
+      for (byte b : bytes) {
+        result.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
       }
-      return result;
+      return result.toString();
     }
 
     /**
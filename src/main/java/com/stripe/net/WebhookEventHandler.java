@@ -0,0 +1,14 @@
+package com.stripe.net;
+
+import com.stripe.model.Event;
+
+/**
+ * Handles the events of a given type received by a {@link WebhookReceiver}.
+ */
+public interface WebhookEventHandler {
+  /**
+   * Handles a verified event. Exceptions are counted as failures in the receiver's statistics;
+   * the event has already been acknowledged to Stripe and will not be retried.
+   */
+  void onEvent(Event event) throws Exception;
+}
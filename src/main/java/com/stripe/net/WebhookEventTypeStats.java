@@ -0,0 +1,74 @@
+package com.stripe.net;
+
+/**
+ * Snapshot of the counters kept by a {@link WebhookReceiver} for a single event type.
+ */
+public final class WebhookEventTypeStats {
+  private final String type;
+  private final long handled;
+  private final long failed;
+  private final long totalLatencyNanos;
+  private final long totalHandlerNanos;
+  private final long maxHandlerNanos;
+  private final long elapsedNanos;
+
+  WebhookEventTypeStats(String type, long handled, long failed, long totalLatencyNanos,
+      long totalHandlerNanos, long maxHandlerNanos, long elapsedNanos) {
+    this.type = type;
+    this.handled = handled;
+    this.failed = failed;
+    this.totalLatencyNanos = totalLatencyNanos;
+    this.totalHandlerNanos = totalHandlerNanos;
+    this.maxHandlerNanos = maxHandlerNanos;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * Returns the number of events of this type that went through their handler, including the
+   * failed ones.
+   */
+  public long getHandled() {
+    return handled;
+  }
+
+  /**
+   * Returns the number of events of this type whose handler threw an exception.
+   */
+  public long getFailed() {
+    return failed;
+  }
+
+  /**
+   * Returns the average time between receiving an event and its handler completing, in
+   * nanoseconds.
+   */
+  public long getMeanLatencyNanos() {
+    return (handled == 0) ? 0 : totalLatencyNanos / handled;
+  }
+
+  /**
+   * Returns the average time spent in the handler, in nanoseconds.
+   */
+  public long getMeanHandlerNanos() {
+    return (handled == 0) ? 0 : totalHandlerNanos / handled;
+  }
+
+  /**
+   * Returns the longest time spent in the handler for a single event, in nanoseconds.
+   */
+  public long getMaxHandlerNanos() {
+    return maxHandlerNanos;
+  }
+
+  /**
+   * Returns the average number of events of this type handled per second since the receiver
+   * started.
+   */
+  public double getEventsPerSecond() {
+    return (elapsedNanos <= 0) ? 0 : handled * 1e9 / elapsedNanos;
+  }
+}
@@ -0,0 +1,712 @@
+package com.stripe.net;
+
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Event;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lightweight HTTP endpoint that receives webhooks, verifies their signature and dispatches the
+ * events to handlers registered by event type, without requiring a servlet container.
+ *
+ * <p>A single selector thread accepts connections, reads requests and verifies signatures. Once
+ * verified, an event is queued for its handler and acknowledged with a {@code 200} right away,
+ * before the handler runs. When {@link WebhookReceiverBuilder#setQueueCapacity queue capacity}
+ * events are already pending, further events are answered with a {@code 503} so that Stripe
+ * retries them later. Handlers run on the configured executor.
+ *
+ * <p><pre>
+ * {@code
+ * WebhookReceiver receiver = WebhookReceiver.builder()
+ *     .setPort(8080)
+ *     .setSecret("whsec_...")
+ *     .addHandler("invoice.payment_failed", new WebhookEventHandler() {
+ *       public void onEvent(Event event) {
+ *         ...
+ *       }
+ *     })
+ *     .build();
+ * receiver.start();
+ * }
+ * </pre>
+ */
+public class WebhookReceiver implements Closeable {
+  private static final int HEAD_BUFFER_SIZE = 8192;
+  private static final long SELECT_TIMEOUT_MILLIS = 250;
+
+  private final InetSocketAddress address;
+  private final String path;
+  private final String secret;
+  private final long tolerance;
+  private final Map<String, WebhookEventHandler> handlers;
+  private final WebhookEventHandler defaultHandler;
+  private final EventJournal journal;
+  private final ExecutorService executor;
+  private final boolean ownsExecutor;
+  private final int queueCapacity;
+  private final Semaphore queue;
+  private final int maxBodySize;
+  private final long requestTimeoutNanos;
+
+  private final AtomicLong accepted = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong invalid = new AtomicLong();
+  private final ConcurrentMap<String, TypeCounters> eventTypes = new ConcurrentHashMap<>();
+
+  private ServerSocketChannel server;
+  private Selector selector;
+  private Thread selectorThread;
+  private volatile boolean running;
+  private volatile long startNanos;
+
+  private WebhookReceiver(WebhookReceiverBuilder builder) {
+    this.address = (builder.host != null)
+        ? new InetSocketAddress(builder.host, builder.port) : new InetSocketAddress(builder.port);
+    this.path = builder.path;
+    this.secret = builder.secret;
+    this.tolerance = builder.tolerance;
+    this.handlers = Collections.unmodifiableMap(new HashMap<>(builder.handlers));
+    this.defaultHandler = builder.defaultHandler;
+    this.journal = builder.journal;
+    this.ownsExecutor = builder.executor == null;
+    this.executor = ownsExecutor
+        ? Executors.newFixedThreadPool(builder.threads, new HandlerThreadFactory())
+        : builder.executor;
+    this.queueCapacity = builder.queueCapacity;
+    this.queue = new Semaphore(builder.queueCapacity);
+    this.maxBodySize = builder.maxBodySize;
+    this.requestTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(builder.requestTimeoutMillis);
+  }
+
+  public static WebhookReceiverBuilder builder() {
+    return new WebhookReceiverBuilder();
+  }
+
+  /**
+   * Binds the listening socket and starts accepting webhooks.
+   *
+   * @throws IOException if the socket cannot be bound
+   */
+  public synchronized void start() throws IOException {
+    if (selectorThread != null) {
+      throw new IllegalStateException("The receiver is already started");
+    }
+    selector = Selector.open();
+    server = ServerSocketChannel.open();
+    try {
+      server.configureBlocking(false);
+      server.socket().setReuseAddress(true);
+      server.socket().bind(address);
+      server.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      server.close();
+      selector.close();
+      throw e;
+    }
+
+    running = true;
+    startNanos = System.nanoTime();
+    selectorThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        select();
+      }
+    }, "stripe-webhook-receiver");
+    selectorThread.setDaemon(true);
+    selectorThread.start();
+  }
+
+  /**
+   * Returns the port the receiver listens on, which is useful when it was built with port 0.
+   */
+  public int getPort() {
+    ServerSocketChannel server = this.server;
+    return (server != null) ? server.socket().getLocalPort() : -1;
+  }
+
+  /**
+   * Returns a snapshot of the receiver's counters.
+   */
+  public WebhookReceiverStats getStats() {
+    long elapsed = (startNanos == 0) ? 0 : System.nanoTime() - startNanos;
+    Map<String, WebhookEventTypeStats> types = new TreeMap<>();
+    for (Map.Entry<String, TypeCounters> entry : eventTypes.entrySet()) {
+      TypeCounters counters = entry.getValue();
+      types.put(entry.getKey(), new WebhookEventTypeStats(entry.getKey(),
+          counters.handled.get(), counters.failed.get(), counters.totalLatencyNanos.get(),
+          counters.totalHandlerNanos.get(), counters.maxHandlerNanos.get(), elapsed));
+    }
+    return new WebhookReceiverStats(accepted.get(), rejected.get(), invalid.get(),
+        queueCapacity - queue.availablePermits(), Collections.unmodifiableMap(types));
+  }
+
+  /**
+   * Stops accepting webhooks. Events already acknowledged are still handled, unless the
+   * executor was provided by the caller and is shut down separately.
+   */
+  @Override
+  public void close() throws IOException {
+    Thread thread;
+    synchronized (this) {
+      // the selector thread may have stopped on its own, leaving the executor to shut down
+      if (selectorThread == null) {
+        return;
+      }
+      running = false;
+      thread = selectorThread;
+      selectorThread = null;
+      selector.wakeup();
+    }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (ownsExecutor) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Hands the journaled events created within the given range to the receiver's handlers, as if
+   * they had just been received. Events are handled one at a time on the calling thread, and
+   * counted in the receiver's statistics.
+   *
+   * @param journal the journal to read the events from
+   * @param fromCreated the lower bound of the {@code created} time, inclusive
+   * @param toCreated the upper bound of the {@code created} time, exclusive
+   * @return the number of events replayed
+   */
+  public int replay(EventJournal journal, long fromCreated, long toCreated) {
+    int count = 0;
+    for (EventJournalEntry entry : journal.entries(fromCreated, toCreated)) {
+      dispatch(entry.payload(), System.nanoTime());
+      count++;
+    }
+    return count;
+  }
+
+  private void select() {
+    try {
+      while (running) {
+        selector.select(SELECT_TIMEOUT_MILLIS);
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          try {
+            if (!key.isValid()) {
+              continue;
+            }
+            if (key.isAcceptable()) {
+              accept();
+            } else if (key.isReadable()) {
+              ((Connection) key.attachment()).onReadable();
+            } else if (key.isWritable()) {
+              ((Connection) key.attachment()).onWritable();
+            }
+          } catch (IOException e) {
+            closeQuietly(key);
+          } catch (RuntimeException e) {
+            // a failure on one connection must not stop the receiver
+            if (key.attachment() instanceof Connection) {
+              ((Connection) key.attachment()).fail();
+            }
+          }
+        }
+        closeTimedOut();
+      }
+    } catch (IOException e) {
+      // the selector itself failed; nothing can be accepted anymore
+    } finally {
+      running = false;
+      for (SelectionKey key : selector.keys()) {
+        closeQuietly(key);
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        // ignored, the receiver is shutting down
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel = server.accept();
+    if (channel == null) {
+      return;
+    }
+    channel.configureBlocking(false);
+    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+    key.attach(new Connection(channel, key));
+  }
+
+  private void closeTimedOut() {
+    long now = System.nanoTime();
+    for (SelectionKey key : selector.keys()) {
+      Object attachment = key.attachment();
+      if (attachment instanceof Connection
+          && now - ((Connection) attachment).openedAt > requestTimeoutNanos) {
+        closeQuietly(key);
+      }
+    }
+  }
+
+  private static void closeQuietly(SelectionKey key) {
+    key.cancel();
+    try {
+      key.channel().close();
+    } catch (IOException e) {
+      // ignored, the connection is dropped either way
+    }
+  }
+
+  private boolean enqueue(final byte[] payload) {
+    if (!queue.tryAcquire()) {
+      return false;
+    }
+    final long receivedAt = System.nanoTime();
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            dispatch(payload, receivedAt);
+          } finally {
+            queue.release();
+          }
+        }
+      });
+      return true;
+    } catch (RejectedExecutionException e) {
+      queue.release();
+      return false;
+    }
+  }
+
+  private void dispatch(byte[] payload, long receivedAt) {
+    Event event = null;
+    boolean failed = false;
+    long handlerStart = System.nanoTime();
+    try {
+      event = ApiResource.GSON.fromJson(
+          new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8),
+          Event.class);
+      WebhookEventHandler handler = handlers.get(event.getType());
+      if (handler == null) {
+        handler = defaultHandler;
+      }
+      handlerStart = System.nanoTime();
+      if (handler != null) {
+        handler.onEvent(event);
+      }
+    } catch (Exception e) {
+      failed = true;
+    }
+    long end = System.nanoTime();
+
+    String type = (event != null && event.getType() != null) ? event.getType() : "unknown";
+    TypeCounters counters = eventTypes.get(type);
+    if (counters == null) {
+      TypeCounters created = new TypeCounters();
+      counters = eventTypes.putIfAbsent(type, created);
+      if (counters == null) {
+        counters = created;
+      }
+    }
+    counters.record(end - receivedAt, end - handlerStart, failed);
+  }
+
+  private static final class TypeCounters {
+    final AtomicLong handled = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicLong totalLatencyNanos = new AtomicLong();
+    final AtomicLong totalHandlerNanos = new AtomicLong();
+    final AtomicLong maxHandlerNanos = new AtomicLong();
+
+    void record(long latencyNanos, long handlerNanos, boolean failure) {
+      handled.incrementAndGet();
+      if (failure) {
+        failed.incrementAndGet();
+      }
+      totalLatencyNanos.addAndGet(latencyNanos);
+      totalHandlerNanos.addAndGet(handlerNanos);
+      long max = maxHandlerNanos.get();
+      while (handlerNanos > max && !maxHandlerNanos.compareAndSet(max, handlerNanos)) {
+        max = maxHandlerNanos.get();
+      }
+    }
+  }
+
+  /**
+   * State of a single HTTP exchange. Connections are not kept alive: every response closes
+   * its connection.
+   */
+  private final class Connection {
+    final SocketChannel channel;
+    final SelectionKey key;
+    final long openedAt = System.nanoTime();
+
+    ByteBuffer head = ByteBuffer.allocate(HEAD_BUFFER_SIZE);
+    ByteBuffer body;
+    String signature;
+    ByteBuffer response;
+
+    Connection(SocketChannel channel, SelectionKey key) {
+      this.channel = channel;
+      this.key = key;
+    }
+
+    void onReadable() throws IOException {
+      if (body == null) {
+        if (channel.read(head) < 0) {
+          closeQuietly(key);
+          return;
+        }
+        int headLength = indexOfHeadEnd();
+        if (headLength < 0) {
+          if (!head.hasRemaining()) {
+            respond(431, "Request Header Fields Too Large");
+          }
+          return;
+        }
+        if (!parseHead(headLength)) {
+          return;
+        }
+      } else if (channel.read(body) < 0) {
+        closeQuietly(key);
+        return;
+      }
+
+      if (!body.hasRemaining()) {
+        body.flip();
+        onRequest();
+      }
+    }
+
+    /**
+     * Answers a request whose handling failed unexpectedly with a {@code 500}, so that Stripe
+     * delivers the event again, or drops the connection if a response was already started.
+     */
+    void fail() {
+      if (response != null || !key.isValid()) {
+        closeQuietly(key);
+        return;
+      }
+      try {
+        respond(500, "Internal Server Error");
+      } catch (IOException | RuntimeException e) {
+        closeQuietly(key);
+      }
+    }
+
+    void onWritable() throws IOException {
+      channel.write(response);
+      if (!response.hasRemaining()) {
+        closeQuietly(key);
+      }
+    }
+
+    private int indexOfHeadEnd() {
+      byte[] bytes = head.array();
+      for (int i = 3; i < head.position(); i++) {
+        if (bytes[i] == '\n' && bytes[i - 1] == '\r' && bytes[i - 2] == '\n'
+            && bytes[i - 3] == '\r') {
+          return i + 1;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Parses the request line and headers, and sets up the body buffer. Returns false if an
+     * error response was sent instead.
+     */
+    private boolean parseHead(int headLength) throws IOException {
+      String text = new String(head.array(), 0, headLength, StandardCharsets.ISO_8859_1);
+      int lineEnd = text.indexOf("\r\n");
+      String[] requestLine = text.substring(0, lineEnd).split(" ");
+      if (requestLine.length != 3) {
+        respond(400, "Bad Request");
+        return false;
+      }
+      String target = requestLine[1];
+      int query = target.indexOf('?');
+      if (query >= 0) {
+        target = target.substring(0, query);
+      }
+      if (!path.equals(target)) {
+        respond(404, "Not Found");
+        return false;
+      }
+      if (!"POST".equals(requestLine[0])) {
+        respond(405, "Method Not Allowed");
+        return false;
+      }
+
+      long contentLength = -1;
+      int start = lineEnd + 2;
+      while (start < headLength - 2) {
+        int end = text.indexOf("\r\n", start);
+        int colon = text.indexOf(':', start);
+        if (colon > start && colon < end) {
+          String name = text.substring(start, colon).trim();
+          String value = text.substring(colon + 1, end).trim();
+          if ("Content-Length".equalsIgnoreCase(name)) {
+            try {
+              contentLength = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+              contentLength = -1;
+            }
+          } else if ("Stripe-Signature".equalsIgnoreCase(name)) {
+            signature = value;
+          }
+        }
+        start = end + 2;
+      }
+
+      if (contentLength < 0) {
+        respond(411, "Length Required");
+        return false;
+      }
+      if (contentLength > maxBodySize) {
+        respond(413, "Payload Too Large");
+        return false;
+      }
+
+      body = ByteBuffer.allocate((int) contentLength);
+      head.flip();
+      head.position(headLength);
+      if (head.remaining() > body.remaining()) {
+        head.limit(headLength + body.remaining());
+      }
+      body.put(head);
+      head = null;
+      return true;
+    }
+
+    private void onRequest() throws IOException {
+      if (signature == null) {
+        respond(400, "Bad Request");
+        return;
+      }
+      try {
+        Webhook.Signature.verifyHeader(body, signature, secret, tolerance);
+      } catch (SignatureVerificationException e) {
+        respond(400, "Bad Request");
+        return;
+      }
+
+      if (journal != null) {
+        try {
+          journal.append(body.array());
+        } catch (IllegalArgumentException e) {
+          respond(400, "Bad Request");
+          return;
+        } catch (IOException e) {
+          // not acknowledging the event makes Stripe deliver it again later
+          respond(500, "Internal Server Error");
+          return;
+        }
+      }
+
+      if (enqueue(body.array())) {
+        accepted.incrementAndGet();
+        respond(200, "OK");
+      } else {
+        rejected.incrementAndGet();
+        respond(503, "Service Unavailable");
+      }
+    }
+
+    private void respond(int status, String reason) throws IOException {
+      if (status >= 400 && status < 500) {
+        invalid.incrementAndGet();
+      }
+      String extra = (status == 503) ? "Retry-After: 1\r\n" : "";
+      response = ByteBuffer.wrap(String.format(
+          "HTTP/1.1 %d %s\r\nContent-Length: 0\r\nConnection: close\r\n%s\r\n", status, reason,
+          extra).getBytes(StandardCharsets.ISO_8859_1));
+      key.interestOps(SelectionKey.OP_WRITE);
+      onWritable();
+    }
+  }
+
+  private static final class HandlerThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r,
+          String.format("stripe-webhook-handler-%d", threadNumber.incrementAndGet()));
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  public static final class WebhookReceiverBuilder {
+    private String host;
+    private int port = 0;
+    private String path = "/webhooks";
+    private String secret;
+    private long tolerance = 300;
+    private final Map<String, WebhookEventHandler> handlers = new HashMap<>();
+    private WebhookEventHandler defaultHandler;
+    private EventJournal journal;
+    private ExecutorService executor;
+    private int threads = 4;
+    private int queueCapacity = 1000;
+    private int maxBodySize = 1024 * 1024;
+    private long requestTimeoutMillis = 10 * 1000;
+
+    /**
+     * Sets the address to listen on. Defaults to all interfaces.
+     */
+    public WebhookReceiverBuilder setHost(String host) {
+      this.host = host;
+      return this;
+    }
+
+    /**
+     * Sets the port to listen on. Defaults to 0, which picks a free port.
+     */
+    public WebhookReceiverBuilder setPort(int port) {
+      this.port = port;
+      return this;
+    }
+
+    /**
+     * Sets the path of the endpoint. Defaults to {@code /webhooks}.
+     */
+    public WebhookReceiverBuilder setPath(String path) {
+      this.path = path;
+      return this;
+    }
+
+    /**
+     * Sets the signing secret of the endpoint, as shown in the Dashboard.
+     */
+    public WebhookReceiverBuilder setSecret(String secret) {
+      this.secret = secret;
+      return this;
+    }
+
+    /**
+     * Sets the maximum age, in seconds, of the signatures accepted. Defaults to 300.
+     */
+    public WebhookReceiverBuilder setTolerance(long tolerance) {
+      this.tolerance = tolerance;
+      return this;
+    }
+
+    /**
+     * Registers the handler of the events of the given type, for instance
+     * {@code invoice.payment_failed}.
+     */
+    public WebhookReceiverBuilder addHandler(String eventType, WebhookEventHandler handler) {
+      this.handlers.put(eventType, handler);
+      return this;
+    }
+
+    /**
+     * Sets the handler of the events whose type has no handler of its own. By default, such
+     * events are acknowledged and dropped.
+     */
+    public WebhookReceiverBuilder setDefaultHandler(WebhookEventHandler defaultHandler) {
+      this.defaultHandler = defaultHandler;
+      return this;
+    }
+
+    /**
+     * Sets the journal verified events are appended to before they are acknowledged. Events
+     * that cannot be journaled are answered with a {@code 500}, so that Stripe delivers them
+     * again later.
+     */
+    public WebhookReceiverBuilder setJournal(EventJournal journal) {
+      this.journal = journal;
+      return this;
+    }
+
+    /**
+     * Sets the executor the handlers run on. By default the receiver uses its own pool of
+     * {@link #setThreads threads}, which it shuts down when closed.
+     */
+    public WebhookReceiverBuilder setExecutor(ExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Sets the number of threads of the receiver's own executor. Defaults to 4.
+     */
+    public WebhookReceiverBuilder setThreads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Sets how many acknowledged events may wait for or run in their handler before new events
+     * are answered with a {@code 503}. Defaults to 1000.
+     */
+    public WebhookReceiverBuilder setQueueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Sets the largest request body accepted, in bytes. Defaults to 1 MB.
+     */
+    public WebhookReceiverBuilder setMaxBodySize(int maxBodySize) {
+      this.maxBodySize = maxBodySize;
+      return this;
+    }
+
+    /**
+     * Sets how long a client may take to send its request before the connection is dropped.
+     * Defaults to 10 seconds.
+     */
+    public WebhookReceiverBuilder setRequestTimeoutMillis(long requestTimeoutMillis) {
+      this.requestTimeoutMillis = requestTimeoutMillis;
+      return this;
+    }
+
+    /**
+     * Constructs a {@link WebhookReceiver} with the specified values.
+     */
+    public WebhookReceiver build() {
+      if (secret == null) {
+        throw new IllegalArgumentException("A signing secret is required");
+      }
+      if (queueCapacity < 1 || threads < 1 || maxBodySize < 1) {
+        throw new IllegalArgumentException(
+            "Queue capacity, threads and maximum body size must be positive");
+      }
+      return new WebhookReceiver(this);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.stripe.net;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the counters of a {@link WebhookReceiver}.
+ */
+public final class WebhookReceiverStats {
+  private final long accepted;
+  private final long rejected;
+  private final long invalid;
+  private final int pending;
+  private final Map<String, WebhookEventTypeStats> eventTypes;
+
+  WebhookReceiverStats(long accepted, long rejected, long invalid, int pending,
+      Map<String, WebhookEventTypeStats> eventTypes) {
+    this.accepted = accepted;
+    this.rejected = rejected;
+    this.invalid = invalid;
+    this.pending = pending;
+    this.eventTypes = eventTypes;
+  }
+
+  /**
+   * Returns the number of verified events acknowledged with a {@code 200}.
+   */
+  public long getAccepted() {
+    return accepted;
+  }
+
+  /**
+   * Returns the number of verified events turned away with a {@code 503} because the queue was
+   * full. Stripe retries them later.
+   */
+  public long getRejected() {
+    return rejected;
+  }
+
+  /**
+   * Returns the number of requests answered with a {@code 4xx}, most of them because their
+   * signature could not be verified.
+   */
+  public long getInvalid() {
+    return invalid;
+  }
+
+  /**
+   * Returns the number of accepted events whose handler has not completed yet.
+   */
+  public int getPending() {
+    return pending;
+  }
+
+  /**
+   * Returns the counters of every event type handled so far, keyed by type.
+   */
+  public Map<String, WebhookEventTypeStats> getEventTypes() {
+    return eventTypes;
+  }
+}
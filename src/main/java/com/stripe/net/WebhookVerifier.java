@@ -0,0 +1,249 @@
+package com.stripe.net;
+
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Event;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Verifies webhook signatures against several endpoint secrets at once, for instance while a
+ * secret is being rolled and Stripe signs events with both the old and the new one.
+ *
+ * <p>The verifier is built once and is thread-safe. A MAC is keyed for every secret when it is
+ * built, and cloned for each verification instead of being keyed again. The signature header is
+ * parsed once, and the payload is read once, every chunk being fed to the MACs of all secrets.
+ *
+ * <p><pre>
+ * {@code
+ * WebhookVerifier verifier = WebhookVerifier.builder()
+ *     .addSecret(currentSecret)
+ *     .addSecret(previousSecret)
+ *     .build();
+ *
+ * int secret = verifier.verifyHeader(payload, sigHeader);
+ * if (secret > 0) {
+ *   // signed with the previous secret only: the sender has not switched yet
+ * }
+ * }
+ * </pre>
+ */
+public class WebhookVerifier {
+  private static final int CHUNK_SIZE = 8192;
+
+  private final List<String> secrets;
+  private final long tolerance;
+  // keyed MACs that are cloned for each verification, or null if the provider cannot clone
+  private final Mac[] prototypes;
+
+  private WebhookVerifier(WebhookVerifierBuilder builder) {
+    this.secrets = new ArrayList<>(builder.secrets);
+    this.tolerance = builder.tolerance;
+    this.prototypes = keyedMacs(secrets);
+  }
+
+  public static WebhookVerifierBuilder builder() {
+    return new WebhookVerifierBuilder();
+  }
+
+  /**
+   * Verifies the signature header sent by Stripe against the raw, UTF-8 encoded payload.
+   *
+   * @param payload the payload sent by Stripe
+   * @param sigHeader the contents of the signature header sent by Stripe
+   * @return the index of the secret the payload was signed with, in the order the secrets were
+   *     added. If several secrets match, the first one is returned.
+   * @throws SignatureVerificationException if the payload was not signed with any of the
+   *     secrets, or the header is invalid or too old
+   */
+  public int verifyHeader(byte[] payload, String sigHeader)
+      throws SignatureVerificationException {
+    return verifyHeader(ByteBuffer.wrap(payload), sigHeader);
+  }
+
+  /**
+   * Verifies the signature header sent by Stripe against the remaining bytes of a buffer holding
+   * the raw, UTF-8 encoded payload. The position of the buffer is left unchanged.
+   *
+   * @see #verifyHeader(byte[], String)
+   */
+  public int verifyHeader(ByteBuffer payload, String sigHeader)
+      throws SignatureVerificationException {
+    Webhook.Signature.Header header = Webhook.Signature.Header.parse(sigHeader, tolerance);
+    Mac[] macs = newMacs(header, sigHeader);
+    ByteBuffer chunk = payload.duplicate();
+    int end = chunk.limit();
+    while (chunk.position() < end) {
+      chunk.limit(Math.min(end, chunk.position() + CHUNK_SIZE));
+      for (Mac mac : macs) {
+        mac.update(chunk.duplicate());
+      }
+      chunk.position(chunk.limit());
+    }
+    return match(header, macs);
+  }
+
+  /**
+   * Verifies the signature header sent by Stripe against the payload.
+   *
+   * @see #verifyHeader(byte[], String)
+   */
+  public int verifyHeader(String payload, String sigHeader)
+      throws SignatureVerificationException {
+    Webhook.Signature.Header header = Webhook.Signature.Header.parse(sigHeader, tolerance);
+    Mac[] macs = newMacs(header, sigHeader);
+    Webhook.Signature.update(payload, macs);
+    return match(header, macs);
+  }
+
+  /**
+   * Verifies the signature header sent by Stripe against the raw, UTF-8 encoded payload read
+   * from a stream. The stream is read to its end but not closed.
+   *
+   * @see #verifyHeader(byte[], String)
+   * @throws IOException if the payload cannot be read
+   */
+  public int verifyHeader(InputStream payload, String sigHeader)
+      throws SignatureVerificationException, IOException {
+    Webhook.Signature.Header header = Webhook.Signature.Header.parse(sigHeader, tolerance);
+    Mac[] macs = newMacs(header, sigHeader);
+    byte[] chunk = new byte[CHUNK_SIZE];
+    int read;
+    while ((read = payload.read(chunk)) != -1) {
+      for (Mac mac : macs) {
+        mac.update(chunk, 0, read);
+      }
+    }
+    return match(header, macs);
+  }
+
+  /**
+   * Returns an Event instance using the provided JSON payload, once its signature has been
+   * verified against the secrets.
+   *
+   * @throws SignatureVerificationException if the verification fails
+   */
+  public Event constructEvent(String payload, String sigHeader)
+      throws SignatureVerificationException {
+    verifyHeader(payload, sigHeader);
+    return ApiResource.GSON.fromJson(payload, Event.class);
+  }
+
+  /**
+   * Returns an Event instance using the provided raw, UTF-8 encoded JSON payload, once its
+   * signature has been verified against the secrets.
+   *
+   * @throws SignatureVerificationException if the verification fails
+   */
+  public Event constructEvent(byte[] payload, String sigHeader)
+      throws SignatureVerificationException {
+    verifyHeader(payload, sigHeader);
+    return ApiResource.GSON.fromJson(
+        new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8),
+        Event.class);
+  }
+
+  /**
+   * Returns MACs for every secret, already fed the signed prefix of the header.
+   */
+  private Mac[] newMacs(Webhook.Signature.Header header, String sigHeader)
+      throws SignatureVerificationException {
+    Mac[] macs = new Mac[secrets.size()];
+    for (int i = 0; i < macs.length; i++) {
+      if (prototypes != null) {
+        try {
+          macs[i] = (Mac) prototypes[i].clone();
+          header.updatePrefix(macs[i]);
+          continue;
+        } catch (CloneNotSupportedException e) {
+          // keyed below instead
+        }
+      }
+      macs[i] = header.newMac(secrets.get(i));
+    }
+    return macs;
+  }
+
+  private static int match(Webhook.Signature.Header header, Mac[] macs)
+      throws SignatureVerificationException {
+    int matched = -1;
+    // every MAC is checked, so that the time taken does not reveal which secret matched
+    for (int i = macs.length - 1; i >= 0; i--) {
+      if (header.matches(macs[i].doFinal())) {
+        matched = i;
+      }
+    }
+    header.recordVerification(matched >= 0, macs.length);
+    if (matched < 0) {
+      // reported the same way as a single-secret verification
+      throw new SignatureVerificationException(
+          "No signatures found matching the expected signature for payload", header.sigHeader());
+    }
+    return matched;
+  }
+
+  private static Mac[] keyedMacs(List<String> secrets) {
+    Mac[] macs = new Mac[secrets.size()];
+    try {
+      for (int i = 0; i < macs.length; i++) {
+        macs[i] = Mac.getInstance("HmacSHA256");
+        macs[i].init(
+            new SecretKeySpec(secrets.get(i).getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        // check once that the provider supports cloning
+        macs[i].clone();
+      }
+    } catch (NoSuchAlgorithmException | InvalidKeyException | CloneNotSupportedException e) {
+      // verifications key a new MAC every time, and report errors then
+      return null;
+    }
+    return macs;
+  }
+
+  public static final class WebhookVerifierBuilder {
+    private final List<String> secrets = new ArrayList<>();
+    private long tolerance = Webhook.DEFAULT_TOLERANCE;
+
+    /**
+     * Adds an endpoint secret. Secrets are identified by the order they are added in.
+     */
+    public WebhookVerifierBuilder addSecret(String secret) {
+      this.secrets.add(secret);
+      return this;
+    }
+
+    /**
+     * Sets the maximum age, in seconds, of the signatures accepted. Defaults to 300, like
+     * {@link Webhook#constructEvent(String, String, String)}.
+     */
+    public WebhookVerifierBuilder setTolerance(long tolerance) {
+      this.tolerance = tolerance;
+      return this;
+    }
+
+    /**
+     * Constructs a {@link WebhookVerifier} with the specified values.
+     */
+    public WebhookVerifier build() {
+      if (secrets.isEmpty()) {
+        throw new IllegalArgumentException("At least one secret is required");
+      }
+      for (String secret : secrets) {
+        if (secret == null) {
+          throw new IllegalArgumentException("Secrets cannot be null");
+        }
+      }
+      return new WebhookVerifier(this);
+    }
+  }
+}
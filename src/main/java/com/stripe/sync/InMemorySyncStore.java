@@ -0,0 +1,60 @@
+package com.stripe.sync;
+
+import com.stripe.model.StripeObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link SyncStore} holding the mirrored objects in memory, for caches and tests. Deleted
+ * objects are removed.
+ */
+public class InMemorySyncStore implements SyncStore {
+  private final ConcurrentMap<Class<? extends StripeObject>, Map<String, StripeObject>> objects =
+      new ConcurrentHashMap<>();
+  private volatile SyncPosition position;
+
+  @Override
+  public void apply(SyncChange change) {
+    Map<String, StripeObject> byId = objects.get(change.getObjectClass());
+    if (byId == null) {
+      Map<String, StripeObject> created = new ConcurrentHashMap<>();
+      byId = objects.putIfAbsent(change.getObjectClass(), created);
+      if (byId == null) {
+        byId = created;
+      }
+    }
+    if (change.getKind() == SyncChange.Kind.DELETED) {
+      byId.remove(change.getId());
+    } else {
+      byId.put(change.getId(), change.getObject());
+    }
+  }
+
+  @Override
+  public SyncPosition getPosition() {
+    return position;
+  }
+
+  @Override
+  public void setPosition(SyncPosition position) {
+    this.position = position;
+  }
+
+  /**
+   * Returns the mirrored object with the given class and ID, or {@code null} if there is none.
+   */
+  public <T extends StripeObject> T get(Class<T> clazz, String id) {
+    Map<String, StripeObject> byId = objects.get(clazz);
+    return (byId != null) ? clazz.cast(byId.get(id)) : null;
+  }
+
+  /**
+   * Returns the number of mirrored objects of the given class.
+   */
+  public int size(Class<? extends StripeObject> clazz) {
+    Map<String, StripeObject> byId = objects.get(clazz);
+    return (byId != null) ? byId.size() : 0;
+  }
+}
@@ -0,0 +1,113 @@
+package com.stripe.sync;
+
+import com.stripe.model.StripeObject;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A change to apply to a {@link SyncStore}: an object listed while bootstrapping, or the object
+ * of an event.
+ */
+public final class SyncChange {
+  /**
+   * What happened to the object.
+   */
+  public enum Kind {
+    /**
+     * The object was listed while bootstrapping.
+     */
+    SNAPSHOT,
+    /**
+     * The object was created.
+     */
+    CREATED,
+    /**
+     * Some attributes of the object changed, as listed by
+     * {@link SyncChange#getChangedAttributes()}.
+     */
+    UPDATED,
+    /**
+     * The object was deleted, or for some resources such as subscriptions, canceled. The
+     * object still carries its last state.
+     */
+    DELETED
+  }
+
+  private final Kind kind;
+  private final Class<? extends StripeObject> objectClass;
+  private final String id;
+  private final StripeObject object;
+  private final Map<String, Object> previousAttributes;
+  private final String eventId;
+  private final Long eventCreated;
+
+  SyncChange(Kind kind, Class<? extends StripeObject> objectClass, String id,
+      StripeObject object, Map<String, Object> previousAttributes, String eventId,
+      Long eventCreated) {
+    this.kind = kind;
+    this.objectClass = objectClass;
+    this.id = id;
+    this.object = object;
+    this.previousAttributes = (previousAttributes != null)
+        ? Collections.unmodifiableMap(previousAttributes)
+        : Collections.<String, Object>emptyMap();
+    this.eventId = eventId;
+    this.eventCreated = eventCreated;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * Returns the resource class the change is about, as registered with
+   * {@link SyncEngine.SyncEngineBuilder#addResource}.
+   */
+  public Class<? extends StripeObject> getObjectClass() {
+    return objectClass;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Returns the full state of the object after the change.
+   */
+  public StripeObject getObject() {
+    return object;
+  }
+
+  /**
+   * Returns the previous values of the attributes that changed, for {@link Kind#UPDATED}
+   * changes. Empty for other kinds.
+   */
+  public Map<String, Object> getPreviousAttributes() {
+    return previousAttributes;
+  }
+
+  /**
+   * Returns the names of the attributes that changed, for {@link Kind#UPDATED} changes. Stores
+   * that keep attributes in separate columns can restrict their update to these.
+   */
+  public Set<String> getChangedAttributes() {
+    return previousAttributes.keySet();
+  }
+
+  /**
+   * Returns the ID of the event the change comes from, or {@code null} for snapshots.
+   */
+  public String getEventId() {
+    return eventId;
+  }
+
+  /**
+   * Returns the creation time of the event the change comes from, or {@code null} for
+   * snapshots.
+   */
+  public Long getEventCreated() {
+    return eventCreated;
+  }
+}
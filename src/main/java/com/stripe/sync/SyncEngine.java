@@ -0,0 +1,310 @@
+package com.stripe.sync;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.model.EventCollection;
+import com.stripe.model.EventData;
+import com.stripe.model.HasId;
+import com.stripe.model.StreamingPagingIterator;
+import com.stripe.model.StripeObject;
+import com.stripe.net.ApiResource;
+import com.stripe.net.RequestOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a local mirror of Stripe objects up to date from the events endpoint, instead of
+ * listing every object again on each run.
+ *
+ * <p>The first {@link #sync()} bootstraps the mirror: it notes the newest event, then lists every
+ * object of the synced resources into the {@link SyncStore}. Each following sync lists the events
+ * created since the saved position, oldest first, and applies those about synced resources.
+ * Changes made while the mirror is bootstrapped are picked up by the next sync, so the mirror
+ * converges even though the listing is not a consistent snapshot.
+ *
+ * <p><pre>
+ * {@code
+ * Map<String, Object> allSubscriptions = new HashMap<>();
+ * allSubscriptions.put("status", "all");
+ *
+ * SyncEngine engine = SyncEngine.builder()
+ *     .setStore(store)
+ *     .addResource(Customer.class)
+ *     .addResource(Subscription.class, allSubscriptions)
+ *     .addResource(Invoice.class)
+ *     .build();
+ *
+ * // on a schedule
+ * engine.sync();
+ * }
+ * </pre>
+ *
+ * <p>Stripe keeps events for 30 days. A mirror that was not synced for longer must be
+ * bootstrapped again with {@link #reset()}.
+ */
+public class SyncEngine {
+  private final SyncStore store;
+  private final Map<Class<? extends StripeObject>, Map<String, Object>> resources;
+  private final RequestOptions options;
+  private final int pageSize;
+
+  private final AtomicLong snapshots = new AtomicLong();
+  private final AtomicLong eventsApplied = new AtomicLong();
+  private final AtomicLong eventsIgnored = new AtomicLong();
+  private final AtomicLong eventPages = new AtomicLong();
+
+  private SyncEngine(SyncEngineBuilder builder) {
+    this.store = builder.store;
+    this.resources = Collections.unmodifiableMap(new LinkedHashMap<>(builder.resources));
+    this.options = builder.options;
+    this.pageSize = builder.pageSize;
+  }
+
+  public static SyncEngineBuilder builder() {
+    return new SyncEngineBuilder();
+  }
+
+  /**
+   * Brings the store up to date, bootstrapping it first if it has no saved position.
+   *
+   * @return the number of changes applied to the store
+   */
+  public synchronized int sync() throws StripeException {
+    int applied = 0;
+    SyncPosition position = store.getPosition();
+    if (position == null) {
+      long startedAt = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+      // note the newest event first, so that changes made while listing are replayed
+      Map<String, Object> params = new HashMap<>();
+      params.put("limit", 1);
+      List<Event> newest = Event.list(params, options).getData();
+      position = (newest != null && !newest.isEmpty())
+          ? new SyncPosition(newest.get(0).getId(), created(newest.get(0)))
+          : new SyncPosition(null, startedAt - 1);
+
+      for (Map.Entry<Class<? extends StripeObject>, Map<String, Object>> resource
+          : resources.entrySet()) {
+        applied += snapshot(resource.getKey(), resource.getValue());
+      }
+      store.setPosition(position);
+    }
+    return applied + tail(position);
+  }
+
+  /**
+   * Drops the saved position, so that the next {@link #sync()} bootstraps the store again.
+   */
+  public synchronized void reset() {
+    store.setPosition(null);
+  }
+
+  /**
+   * Returns a snapshot of the engine's counters.
+   */
+  public SyncStats getStats() {
+    return new SyncStats(snapshots.get(), eventsApplied.get(), eventsIgnored.get(),
+        eventPages.get(), store.getPosition());
+  }
+
+  private int snapshot(Class<? extends StripeObject> clazz, Map<String, Object> listParams)
+      throws StripeException {
+    Map<String, Object> params = new HashMap<>(listParams);
+    if (!params.containsKey("limit")) {
+      params.put("limit", pageSize);
+    }
+
+    int count = 0;
+    StreamingPagingIterator<? extends HasId> iterator =
+        ApiResource.requestCollectionStream(clazz.asSubclass(HasId.class), params, options)
+            .iterator();
+    try {
+      while (iterator.hasNext()) {
+        HasId object = iterator.next();
+        store.apply(new SyncChange(SyncChange.Kind.SNAPSHOT, clazz, object.getId(),
+            (StripeObject) object, null, null, null));
+        snapshots.incrementAndGet();
+        count++;
+      }
+    } catch (RuntimeException e) {
+      // the streaming iterator wraps API errors
+      if (e.getCause() instanceof StripeException) {
+        throw (StripeException) e.getCause();
+      }
+      throw e;
+    } finally {
+      iterator.close();
+    }
+    return count;
+  }
+
+  /**
+   * Applies the events created after the given position, oldest first, saving the position after
+   * every page.
+   */
+  private int tail(SyncPosition position) throws StripeException {
+    if (position.getEventId() == null) {
+      return tailFromTime(position);
+    }
+
+    int count = 0;
+    String cursor = position.getEventId();
+    boolean hasMore = true;
+    while (hasMore) {
+      Map<String, Object> params = new HashMap<>();
+      params.put("limit", pageSize);
+      // the page holds the events right after the cursor, newest first
+      params.put("ending_before", cursor);
+      EventCollection page = Event.list(params, options);
+      eventPages.incrementAndGet();
+      List<Event> events = (page.getData() != null) ? page.getData()
+          : Collections.<Event>emptyList();
+      if (events.isEmpty()) {
+        break;
+      }
+
+      for (int i = events.size() - 1; i >= 0; i--) {
+        count += apply(events.get(i));
+      }
+      Event newest = events.get(0);
+      cursor = newest.getId();
+      store.setPosition(new SyncPosition(cursor, created(newest)));
+      hasMore = Boolean.TRUE.equals(page.getHasMore());
+    }
+    return count;
+  }
+
+  /**
+   * Applies the events created after the time of the given position, when no event was applied
+   * yet. The events endpoint can only be walked forward from an event, so the events are
+   * gathered first and applied oldest first.
+   */
+  private int tailFromTime(SyncPosition position) throws StripeException {
+    Map<String, Object> created = new HashMap<>();
+    created.put("gt", position.getCreated());
+    Map<String, Object> params = new HashMap<>();
+    params.put("limit", pageSize);
+    params.put("created", created);
+
+    List<Event> events = new ArrayList<>();
+    boolean hasMore = true;
+    while (hasMore) {
+      if (!events.isEmpty()) {
+        params.put("starting_after", events.get(events.size() - 1).getId());
+      }
+      EventCollection page = Event.list(params, options);
+      eventPages.incrementAndGet();
+      if (page.getData() == null || page.getData().isEmpty()) {
+        break;
+      }
+      events.addAll(page.getData());
+      hasMore = Boolean.TRUE.equals(page.getHasMore());
+    }
+    if (events.isEmpty()) {
+      return 0;
+    }
+
+    int count = 0;
+    for (int i = events.size() - 1; i >= 0; i--) {
+      count += apply(events.get(i));
+    }
+    Event newest = events.get(0);
+    store.setPosition(new SyncPosition(newest.getId(), created(newest)));
+    return count;
+  }
+
+  private int apply(Event event) {
+    EventData data = event.getData();
+    StripeObject object = (data != null) ? data.getObject() : null;
+    if (object == null || !resources.containsKey(object.getClass())
+        || !(object instanceof HasId)) {
+      eventsIgnored.incrementAndGet();
+      return 0;
+    }
+
+    String type = (event.getType() != null) ? event.getType() : "";
+    SyncChange.Kind kind = SyncChange.Kind.UPDATED;
+    if (type.endsWith(".deleted")) {
+      kind = SyncChange.Kind.DELETED;
+    } else if (type.endsWith(".created")) {
+      kind = SyncChange.Kind.CREATED;
+    }
+    store.apply(new SyncChange(kind, object.getClass(), ((HasId) object).getId(), object,
+        (kind == SyncChange.Kind.UPDATED) ? data.getPreviousAttributes() : null, event.getId(),
+        event.getCreated()));
+    eventsApplied.incrementAndGet();
+    return 1;
+  }
+
+  private static long created(Event event) {
+    return (event.getCreated() != null) ? event.getCreated() : 0;
+  }
+
+  public static final class SyncEngineBuilder {
+    private SyncStore store;
+    private final Map<Class<? extends StripeObject>, Map<String, Object>> resources =
+        new LinkedHashMap<>();
+    private RequestOptions options;
+    private int pageSize = 100;
+
+    /**
+     * Sets the store the changes are applied to, and where the position is saved.
+     */
+    public SyncEngineBuilder setStore(SyncStore store) {
+      this.store = store;
+      return this;
+    }
+
+    /**
+     * Adds a resource to sync, such as {@code Customer.class}.
+     */
+    public <T extends ApiResource & HasId> SyncEngineBuilder addResource(Class<T> clazz) {
+      return addResource(clazz, Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * Adds a resource to sync, with parameters for its list endpoint. Subscriptions, for
+     * instance, need {@code status=all} for canceled ones to be bootstrapped.
+     */
+    public <T extends ApiResource & HasId> SyncEngineBuilder addResource(Class<T> clazz,
+        Map<String, Object> listParams) {
+      this.resources.put(clazz, new HashMap<>(listParams));
+      return this;
+    }
+
+    /**
+     * Sets the options of the list requests. Defaults to the global configuration.
+     */
+    public SyncEngineBuilder setRequestOptions(RequestOptions options) {
+      this.options = options;
+      return this;
+    }
+
+    /**
+     * Sets the number of objects requested per page. Defaults to 100, the maximum.
+     */
+    public SyncEngineBuilder setPageSize(int pageSize) {
+      this.pageSize = pageSize;
+      return this;
+    }
+
+    /**
+     * Constructs a {@link SyncEngine} with the specified values.
+     */
+    public SyncEngine build() {
+      if (store == null || resources.isEmpty()) {
+        throw new IllegalArgumentException("A store and at least one resource are required");
+      }
+      if (pageSize < 1 || pageSize > 100) {
+        throw new IllegalArgumentException("The page size must be between 1 and 100");
+      }
+      return new SyncEngine(this);
+    }
+  }
+}
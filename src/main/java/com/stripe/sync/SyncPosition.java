@@ -0,0 +1,35 @@
+package com.stripe.sync;
+
+/**
+ * High-water mark of a {@link SyncEngine}: the newest event applied to the store. Stores persist
+ * it with {@link SyncStore#setPosition} so that syncing resumes where it stopped.
+ */
+public final class SyncPosition {
+  private final String eventId;
+  private final long created;
+
+  /**
+   * Constructs a position.
+   *
+   * @param eventId the ID of the newest event applied, or {@code null} if no event was applied
+   *     yet, in which case events created after {@code created} are listed next
+   * @param created the creation time of that event, in seconds since the epoch
+   */
+  public SyncPosition(String eventId, long created) {
+    this.eventId = eventId;
+    this.created = created;
+  }
+
+  public String getEventId() {
+    return eventId;
+  }
+
+  public long getCreated() {
+    return created;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("SyncPosition[eventId=%s, created=%d]", eventId, created);
+  }
+}
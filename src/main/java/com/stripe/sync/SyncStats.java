@@ -0,0 +1,56 @@
+package com.stripe.sync;
+
+/**
+ * Snapshot of the counters of a {@link SyncEngine}.
+ */
+public final class SyncStats {
+  private final long snapshots;
+  private final long eventsApplied;
+  private final long eventsIgnored;
+  private final long eventPages;
+  private final SyncPosition position;
+
+  SyncStats(long snapshots, long eventsApplied, long eventsIgnored, long eventPages,
+      SyncPosition position) {
+    this.snapshots = snapshots;
+    this.eventsApplied = eventsApplied;
+    this.eventsIgnored = eventsIgnored;
+    this.eventPages = eventPages;
+    this.position = position;
+  }
+
+  /**
+   * Returns the number of objects listed while bootstrapping.
+   */
+  public long getSnapshots() {
+    return snapshots;
+  }
+
+  /**
+   * Returns the number of events applied to the store.
+   */
+  public long getEventsApplied() {
+    return eventsApplied;
+  }
+
+  /**
+   * Returns the number of events skipped because their object is not a synced resource.
+   */
+  public long getEventsIgnored() {
+    return eventsIgnored;
+  }
+
+  /**
+   * Returns the number of pages of events requested.
+   */
+  public long getEventPages() {
+    return eventPages;
+  }
+
+  /**
+   * Returns the last position saved to the store, or {@code null} before the first sync.
+   */
+  public SyncPosition getPosition() {
+    return position;
+  }
+}
@@ -0,0 +1,27 @@
+package com.stripe.sync;
+
+/**
+ * Local mirror kept up to date by a {@link SyncEngine}, for instance a set of database tables.
+ *
+ * <p>Changes are delivered at least once: after a failure, the changes applied since the last
+ * saved position are applied again. Applying a change should therefore be idempotent, which is
+ * the case when objects are upserted by ID. Stores that can should save the position in the same
+ * transaction as the changes preceding it.
+ */
+public interface SyncStore {
+  /**
+   * Applies a change to the mirror.
+   */
+  void apply(SyncChange change);
+
+  /**
+   * Returns the position saved last, or {@code null} if the mirror was never bootstrapped.
+   */
+  SyncPosition getPosition();
+
+  /**
+   * Saves the position up to which changes have been applied. Saving {@code null} makes the
+   * next sync bootstrap the mirror again.
+   */
+  void setPosition(SyncPosition position);
+}
@@ -0,0 +1,177 @@
+package com.stripe;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.stripe.model.AccountLink;
+import com.stripe.model.BalanceTransaction;
+import com.stripe.model.BalanceTransactionCollection;
+import com.stripe.model.BankAccount;
+import com.stripe.model.Card;
+import com.stripe.model.Charge;
+import com.stripe.model.EphemeralKey;
+import com.stripe.model.Event;
+import com.stripe.model.LegalEntity;
+import com.stripe.model.LoginLink;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.Payout;
+import com.stripe.model.Source;
+import com.stripe.model.SourceMandateNotification;
+import com.stripe.model.SourceTransactionCollection;
+import com.stripe.model.StripeObject;
+import com.stripe.model.Subscription;
+import com.stripe.model.UsageRecord;
+import com.stripe.model.UsageRecordSummary;
+import com.stripe.model.issuing.CardDetails;
+import com.stripe.model.terminal.ConnectionToken;
+import com.stripe.net.ApiResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Deserializes every model fixture under {@code api_fixtures}. Runs as a unit test, and as the
+ * entry point of the native image built by {@code ./gradlew nativeSmokeTest}, where the models
+ * are only reachable through the generated reflection metadata: a model missing from it comes
+ * back without its fields, which this reports as a failure.
+ */
+public class NativeImageSmokeTest {
+  private static final Map<String, Class<?>> FIXTURES = new LinkedHashMap<>();
+
+  // attributes of the fixtures that the models do not have, as "object.attribute"
+  private static final Set<String> UNMODELED = new HashSet<>(Arrays.asList(
+      "payment_intent.description", "payout.description"));
+
+  static {
+    FIXTURES.put("account_application_deauthorized.json", Event.class);
+    FIXTURES.put("account_link.json", AccountLink.class);
+    FIXTURES.put("balance_transaction_collection_with_source_expansion.json",
+        BalanceTransactionCollection.class);
+    FIXTURES.put("balance_transaction_expansion.json", BalanceTransaction.class);
+    FIXTURES.put("bank_account.json", BankAccount.class);
+    FIXTURES.put("card.json", Card.class);
+    FIXTURES.put("charge_level3.json", Charge.Level3.class);
+    FIXTURES.put("charge_outcome.json", Charge.Outcome.class);
+    FIXTURES.put("ephemeral_key.json", EphemeralKey.class);
+    FIXTURES.put("event_plan.json", Event.class);
+    FIXTURES.put("issuing/card_details.json", CardDetails.class);
+    FIXTURES.put("legal_entity.json", LegalEntity.class);
+    FIXTURES.put("login_link.json", LoginLink.class);
+    FIXTURES.put("payment_intent.json", PaymentIntent.class);
+    FIXTURES.put("payment_intent_last_payment_error.json", PaymentIntent.class);
+    FIXTURES.put("payment_intent_old_value.json", PaymentIntent.class);
+    FIXTURES.put("payment_intent_with_expansions.json", PaymentIntent.class);
+    FIXTURES.put("payout_with_del_ext_bank_acct_expansion.json", Payout.class);
+    FIXTURES.put("source_detached.json", Source.class);
+    FIXTURES.put("source_mandate_notification.json", SourceMandateNotification.class);
+    FIXTURES.put("source_mandate_notification_event.json", Event.class);
+    FIXTURES.put("source_transactions.json", SourceTransactionCollection.class);
+    FIXTURES.put("subscription.json", Subscription.class);
+    FIXTURES.put("terminal/connection_token.json", ConnectionToken.class);
+    FIXTURES.put("usage_record.json", UsageRecord.class);
+    FIXTURES.put("usage_record_summary.json", UsageRecordSummary.class);
+  }
+
+  @Test
+  public void testEveryFixtureIsListed() throws URISyntaxException {
+    File root = new File(NativeImageSmokeTest.class.getResource("/api_fixtures").toURI());
+    Set<String> fixtures = new TreeSet<>();
+    listFixtures(root, "", fixtures);
+    assertEquals(fixtures, new TreeSet<>(FIXTURES.keySet()));
+  }
+
+  @Test
+  public void testDeserializesEveryFixture() throws IOException {
+    assertEquals(Collections.emptyList(), deserializeAll());
+  }
+
+  /**
+   * Deserializes the fixtures, and exits with a non-zero status if any fails.
+   */
+  public static void main(String[] args) throws IOException {
+    List<String> failures = deserializeAll();
+    for (String failure : failures) {
+      System.err.println(failure);
+    }
+    System.out.println(String.format("Deserialized %d of %d fixtures",
+        FIXTURES.size() - failures.size(), FIXTURES.size()));
+    System.exit(failures.isEmpty() ? 0 : 1);
+  }
+
+  /**
+   * Deserializes each fixture and serializes it back, and returns a description of each fixture
+   * whose attributes did not all come back.
+   */
+  static List<String> deserializeAll() throws IOException {
+    List<String> failures = new ArrayList<>();
+    for (Map.Entry<String, Class<?>> fixture : FIXTURES.entrySet()) {
+      try {
+        JsonObject expected = new JsonParser().parse(readFixture(fixture.getKey()))
+            .getAsJsonObject();
+        Object model = ApiResource.GSON.fromJson(expected, fixture.getValue());
+        JsonObject actual = StripeObject.PRETTY_PRINT_GSON.toJsonTree(model).getAsJsonObject();
+        Set<String> missing = new TreeSet<>();
+        for (Map.Entry<String, JsonElement> attribute : expected.entrySet()) {
+          String key = attribute.getKey();
+          if (!attribute.getValue().isJsonNull() && !actual.has(key)
+              && !isUnmodeled(expected, key)) {
+            missing.add(key);
+          }
+        }
+        if (!missing.isEmpty()) {
+          failures.add(fixture.getKey() + ": missing " + missing);
+        }
+      } catch (RuntimeException e) {
+        failures.add(fixture.getKey() + ": " + e);
+      }
+    }
+    return failures;
+  }
+
+  private static boolean isUnmodeled(JsonObject fixture, String key) {
+    // sources keep the attribute named after their type as typeData
+    if (fixture.has("type") && key.equals(fixture.get("type").getAsString())) {
+      return true;
+    }
+    return fixture.has("object")
+        && UNMODELED.contains(fixture.get("object").getAsString() + "." + key);
+  }
+
+  private static String readFixture(String name) throws IOException {
+    try (InputStream input =
+        NativeImageSmokeTest.class.getResourceAsStream("/api_fixtures/" + name)) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      for (int read = input.read(buffer); read > 0; read = input.read(buffer)) {
+        output.write(buffer, 0, read);
+      }
+      return output.toString("UTF-8");
+    }
+  }
+
+  private static void listFixtures(File dir, String prefix, Set<String> fixtures) {
+    for (File file : dir.listFiles()) {
+      if (file.isDirectory()) {
+        listFixtures(file, prefix + file.getName() + "/", fixtures);
+      } else if (file.getName().endsWith(".json")) {
+        fixtures.add(prefix + file.getName());
+      }
+    }
+  }
+}
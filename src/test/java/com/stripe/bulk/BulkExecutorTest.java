@@ -0,0 +1,195 @@
+package com.stripe.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.stripe.exception.CardException;
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import com.stripe.net.RequestOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class BulkExecutorTest {
+  private static Iterator<Map<String, Object>> inputs(final int count,
+      final AtomicInteger pulled) {
+    return new Iterator<Map<String, Object>>() {
+      @Override
+      public boolean hasNext() {
+        return pulled.get() < count;
+      }
+
+      @Override
+      public Map<String, Object> next() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("n", pulled.getAndIncrement());
+        return params;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Test
+  public void testBoundedConcurrencyAndIdempotencyKeys() throws InterruptedException {
+    final AtomicInteger pulled = new AtomicInteger();
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    final AtomicInteger maxAhead = new AtomicInteger();
+    final AtomicInteger completed = new AtomicInteger();
+    final Set<String> keys = Collections.synchronizedSet(new HashSet<String>());
+
+    final BulkExecutor executor = BulkExecutor.builder()
+        .setConcurrency(3)
+        .setIdempotencyKeyPrefix("recall-42")
+        .setRequestOptions(RequestOptions.builder().setApiKey("sk_test_bulk").build())
+        .build();
+
+    final BulkReport<Integer> report = executor.execute(inputs(50, pulled),
+        new BulkOperation<Integer>() {
+          @Override
+          public Integer execute(Map<String, Object> params, RequestOptions options) {
+            int current = inFlight.incrementAndGet();
+            synchronized (maxInFlight) {
+              maxInFlight.set(Math.max(maxInFlight.get(), current));
+              maxAhead.set(Math.max(maxAhead.get(), pulled.get() - completed.get()));
+            }
+            keys.add(options.getIdempotencyKey());
+            assertEquals("sk_test_bulk", options.getApiKey());
+            try {
+              Thread.sleep(2);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            completed.incrementAndGet();
+            return (Integer) params.get("n");
+          }
+        });
+
+    assertEquals(50, report.getSuccessCount());
+    assertEquals(0, report.getFailureCount());
+    assertEquals(50, report.getResults().size());
+    assertTrue(maxInFlight.get() <= 3);
+    // inputs are pulled lazily, never more than the concurrency level ahead of completions
+    assertTrue(maxAhead.get() <= 3);
+    assertEquals(50, keys.size());
+    assertTrue(keys.contains("recall-42-0"));
+    assertTrue(keys.contains("recall-42-49"));
+  }
+
+  @Test
+  public void testRateLimitedItemsAreRetriedWithSameKey() throws InterruptedException {
+    final Map<String, List<String>> keysByItem = new HashMap<>();
+
+    final BulkExecutor executor = BulkExecutor.builder()
+        .setConcurrency(2)
+        .setBackoff(1, 4)
+        .build();
+
+    final List<BulkResult<String>> results = new ArrayList<>();
+    final BulkReport<String> report = executor.execute(inputs(4, new AtomicInteger()),
+        new BulkOperation<String>() {
+          @Override
+          public String execute(Map<String, Object> params, RequestOptions options)
+              throws StripeException {
+            List<String> keys;
+            synchronized (keysByItem) {
+              String item = String.valueOf(params.get("n"));
+              keys = keysByItem.get(item);
+              if (keys == null) {
+                keys = new ArrayList<>();
+                keysByItem.put(item, keys);
+              }
+              keys.add(options.getIdempotencyKey());
+            }
+            if (keys.size() < 3) {
+              throw new RateLimitException("Too many requests", null, null, null, 429, null);
+            }
+            if (params.get("n").equals(3)) {
+              throw new CardException("Declined", null, "card_declined", null, null, null, 402,
+                  null);
+            }
+            return "ok";
+          }
+        },
+        new BulkResultHandler<String>() {
+          @Override
+          public void onResult(BulkResult<String> result) {
+            results.add(result);
+          }
+        });
+
+    assertEquals(3, report.getSuccessCount());
+    assertEquals(1, report.getFailureCount());
+    assertEquals(8, report.getRateLimitedCount());
+    assertTrue(report.getResults().isEmpty());
+    assertEquals(4, results.size());
+
+    for (BulkResult<String> result : results) {
+      assertEquals(3, result.getAttempts());
+      List<String> keys = keysByItem.get(String.valueOf(result.getParams().get("n")));
+      assertEquals(1, new HashSet<>(keys).size());
+      assertEquals(result.getIdempotencyKey(), keys.get(0));
+      if (result.getIndex() == 3) {
+        assertFalse(result.isSuccess());
+        assertNull(result.getValue());
+        assertTrue(result.getError() instanceof CardException);
+      } else {
+        assertEquals("ok", result.getValue());
+      }
+    }
+  }
+
+  @Test
+  public void testRetriesAreBounded() throws InterruptedException {
+    final BulkReport<String> report = BulkExecutor.builder()
+        .setMaxRetries(2)
+        .setBackoff(1, 1)
+        .build()
+        .execute(inputs(1, new AtomicInteger()), new BulkOperation<String>() {
+          @Override
+          public String execute(Map<String, Object> params, RequestOptions options)
+              throws StripeException {
+            throw new RateLimitException("Too many requests", null, null, null, 429, null);
+          }
+        });
+
+    assertEquals(1, report.getFailureCount());
+    assertEquals(3, report.getResults().get(0).getAttempts());
+    assertTrue(report.getResults().get(0).getError() instanceof RateLimitException);
+  }
+
+  @Test
+  public void testAdaptiveLimit() throws InterruptedException {
+    final BulkExecutor.AdaptiveLimit limit = new BulkExecutor.AdaptiveLimit(8);
+    limit.onThrottled();
+    assertEquals(4, limit.getLimit());
+    limit.onThrottled();
+    limit.onThrottled();
+    limit.onThrottled();
+    assertEquals(1, limit.getLimit());
+
+    limit.onSuccess();
+    assertEquals(2, limit.getLimit());
+    limit.onSuccess();
+    assertEquals(2, limit.getLimit());
+    limit.onSuccess();
+    assertEquals(3, limit.getLimit());
+  }
+}
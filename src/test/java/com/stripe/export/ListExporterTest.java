@@ -0,0 +1,303 @@
+package com.stripe.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import com.stripe.BaseStripeTest;
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.net.ApiResource;
+import com.stripe.net.LiveStripeResponseGetter;
+import com.stripe.net.RequestOptions;
+import com.stripe.net.StripeResponseStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ListExporterTest extends BaseStripeTest {
+  private static final String PAGE_0 = "{\"object\": \"list\", \"data\": ["
+      + "{\"id\": \"ch_1\", \"amount\": 100, \"currency\": \"usd\","
+      + " \"outcome\": {\"risk_level\": \"normal\"}, \"description\": \"a, \\\"b\\\"\"},"
+      + "{\"id\": \"ch_2\", \"amount\": 2.50, \"currency\": \"eur\", \"outcome\": null,"
+      + " \"description\": null}"
+      + "], \"has_more\": true, \"url\": \"/v1/charges\"}";
+
+  private static final String PAGE_1 = "{\"object\": \"list\", \"data\": ["
+      + "{\"id\": \"ch_3\", \"amount\": 300, \"currency\": \"usd\","
+      + " \"outcome\": {\"risk_level\": \"elevated\"}, \"description\": \"c\"}"
+      + "], \"has_more\": false, \"url\": \"/v1/charges\"}";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Serves the two pages above as raw response streams.
+   */
+  @Before
+  public void setUpMockPages() throws StripeException {
+    final List<String> pages = Arrays.asList(PAGE_0, PAGE_1);
+
+    Mockito
+        .doAnswer(new Answer<StripeResponseStream>() {
+          private int count = 0;
+
+          @Override
+          public StripeResponseStream answer(InvocationOnMock invocation) {
+            final StripeResponseStream response = Mockito.mock(StripeResponseStream.class);
+            Mockito.when(response.body()).thenReturn(new ByteArrayInputStream(
+                pages.get(count++ % pages.size()).getBytes(StandardCharsets.UTF_8)));
+            return response;
+          }
+        })
+        .when((LiveStripeResponseGetter) networkSpy).streamRequest(
+          Mockito.any(ApiResource.RequestMethod.class),
+          Mockito.anyString(),
+          Mockito.<Map<String, Object>>any(),
+          Mockito.<RequestOptions>any()
+      );
+  }
+
+  @Test
+  public void testNdjsonExport() throws StripeException, IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final ExportStats stats = new ListExporter(ExportOptions.builder().build())
+        .export("/v1/charges", out);
+
+    final String[] lines = out.toString("UTF-8").split("\n");
+    assertEquals(3, lines.length);
+    assertEquals("{\"id\":\"ch_1\",\"amount\":100,\"currency\":\"usd\","
+        + "\"outcome\":{\"risk_level\":\"normal\"},\"description\":\"a, \\\"b\\\"\"}", lines[0]);
+    assertEquals("{\"id\":\"ch_2\",\"amount\":2.50,\"currency\":\"eur\",\"outcome\":null,"
+        + "\"description\":null}", lines[1]);
+
+    assertEquals(3, stats.getObjectCount());
+    assertEquals(2, stats.getPageCount());
+    assertEquals("ch_3", stats.getCursor());
+    assertEquals(PAGE_0.length() + PAGE_1.length(), stats.getBytesRead());
+    assertEquals(out.size(), stats.getBytesWritten());
+  }
+
+  @Test
+  public void testNdjsonExportWithColumns() throws StripeException, IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new ListExporter(ExportOptions.builder()
+        .setColumns(Arrays.asList("id", "outcome.risk_level"))
+        .build())
+        .export("/v1/charges", out);
+
+    final String[] lines = out.toString("UTF-8").split("\n");
+    assertEquals("{\"id\":\"ch_1\",\"outcome.risk_level\":\"normal\"}", lines[0]);
+    assertEquals("{\"id\":\"ch_2\",\"outcome.risk_level\":null}", lines[1]);
+  }
+
+  @Test
+  public void testGzipCsvExport() throws StripeException, IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new ListExporter(ExportOptions.builder()
+        .setFormat(ExportFormat.CSV)
+        .setColumns(Arrays.asList("id", "amount", "outcome.risk_level", "description"))
+        .setGzip(true)
+        .build())
+        .export("/v1/charges", out);
+
+    assertEquals(
+        "id,amount,outcome.risk_level,description\r\n"
+            + "ch_1,100,normal,\"a, \"\"b\"\"\"\r\n"
+            + "ch_2,2.50,,\r\n"
+            + "ch_3,300,elevated,c\r\n",
+        gunzip(out.toByteArray()));
+  }
+
+  @Test
+  public void testGzipOutputIsCompleteAtEachCheckpoint() throws StripeException, IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final List<String> outputs = new ArrayList<>();
+    new ListExporter(ExportOptions.builder()
+        .setColumns(Arrays.asList("id"))
+        .setGzip(true)
+        .setCheckpoint(new ExportCheckpoint() {
+          @Override
+          public void onPage(ExportStats stats) {
+            try {
+              outputs.add(gunzip(out.toByteArray()));
+            } catch (IOException e) {
+              throw new AssertionError(e);
+            }
+          }
+        })
+        .build())
+        .export("/v1/charges", out);
+
+    assertEquals(Arrays.asList(
+        "{\"id\":\"ch_1\"}\n{\"id\":\"ch_2\"}\n",
+        "{\"id\":\"ch_1\"}\n{\"id\":\"ch_2\"}\n{\"id\":\"ch_3\"}\n"), outputs);
+  }
+
+  @Test
+  public void testResumeFromCheckpoint() throws StripeException, IOException {
+    final List<String> cursors = new ArrayList<>();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new ListExporter(ExportOptions.builder()
+        .setFormat(ExportFormat.CSV)
+        .setColumns(Arrays.asList("id", "amount"))
+        .setStartingAfter("ch_0")
+        .setCheckpoint(new ExportCheckpoint() {
+          @Override
+          public void onPage(ExportStats stats) {
+            cursors.add(stats.getCursor());
+          }
+        })
+        .build())
+        .export("/v1/charges", out);
+
+    assertEquals(Arrays.asList("ch_2", "ch_3"), cursors);
+    // resumed CSV exports don't repeat the header
+    assertTrue(out.toString("UTF-8").startsWith("ch_1,100\r\n"));
+
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<Map<String, Object>> captor = ArgumentCaptor.forClass(Map.class);
+    Mockito.verify((LiveStripeResponseGetter) networkSpy, Mockito.times(2)).streamRequest(
+        Mockito.eq(ApiResource.RequestMethod.GET),
+        Mockito.eq(String.format("%s/v1/charges", Stripe.getApiBase())),
+        captor.capture(),
+        Mockito.<RequestOptions>any());
+    assertEquals("ch_0", captor.getAllValues().get(0).get("starting_after"));
+    assertEquals("ch_2", captor.getAllValues().get(1).get("starting_after"));
+  }
+
+  @Test
+  public void testResumeDiscardsFailedPage() throws StripeException, IOException {
+    // a page larger than the buffers, so that part of it reaches the file before it fails
+    final StringBuilder records = new StringBuilder();
+    final StringBuilder expected = new StringBuilder("{\"id\":\"ch_1\"}\n{\"id\":\"ch_2\"}\n");
+    for (int i = 3; i < 5000; i++) {
+      records.append((i > 3) ? "," : "").append("{\"id\": \"ch_").append(i).append("\"}");
+      expected.append("{\"id\":\"ch_").append(i).append("\"}\n");
+    }
+    final byte[] bigPage = ("{\"object\": \"list\", \"data\": [" + records
+        + "], \"has_more\": false}").getBytes(StandardCharsets.UTF_8);
+    final InputStream failing = new SequenceInputStream(
+        new ByteArrayInputStream(bigPage, 0, bigPage.length - 100), new InputStream() {
+          @Override
+          public int read() throws IOException {
+            throw new IOException("connection reset");
+          }
+        });
+    serveBodies(new ByteArrayInputStream(PAGE_0.getBytes(StandardCharsets.UTF_8)), failing);
+
+    final File file = folder.newFile("charges.ndjson");
+    final List<ExportStats> checkpoints = new ArrayList<>();
+    final ExportCheckpoint checkpoint = new ExportCheckpoint() {
+      @Override
+      public void onPage(ExportStats stats) {
+        checkpoints.add(stats);
+      }
+    };
+    try {
+      new ListExporter(ExportOptions.builder()
+          .setColumns(Arrays.asList("id"))
+          .setCheckpoint(checkpoint)
+          .build())
+          .export("/v1/charges", file);
+      fail("the export should have failed");
+    } catch (IOException e) {
+      assertEquals("connection reset", e.getMessage());
+    }
+    final ExportStats last = checkpoints.get(checkpoints.size() - 1);
+    assertEquals("ch_2", last.getCursor());
+    assertTrue(file.length() > last.getOutputLength());
+
+    serveBodies(new ByteArrayInputStream(bigPage));
+    new ListExporter(ExportOptions.builder()
+        .setColumns(Arrays.asList("id"))
+        .setStartingAfter(last.getCursor())
+        .setOutputLength(last.getOutputLength())
+        .build())
+        .export("/v1/charges", file);
+
+    assertEquals(expected.toString(),
+        new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testResumingIntoFileRequiresOutputLength() throws StripeException, IOException {
+    new ListExporter(ExportOptions.builder().setStartingAfter("ch_0").build())
+        .export("/v1/charges", folder.newFile("charges.ndjson"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testResumingCsvRequiresColumns() {
+    ExportOptions.builder()
+        .setFormat(ExportFormat.CSV)
+        .setStartingAfter("ch_0")
+        .build();
+  }
+
+  @Test
+  public void testLookup() {
+    final JsonObject object = new JsonParser()
+        .parse("{\"a\": {\"b\": {\"c\": 1}}, \"d\": 2}").getAsJsonObject();
+
+    assertEquals(1, ListExporter.lookup(object, "a.b.c").getAsInt());
+    assertEquals(2, ListExporter.lookup(object, "d").getAsInt());
+    assertNull(ListExporter.lookup(object, "a.x.c"));
+    assertNull(ListExporter.lookup(object, "d.e"));
+  }
+
+  private void serveBodies(final InputStream... bodies) throws StripeException {
+    Mockito
+        .doAnswer(new Answer<StripeResponseStream>() {
+          private int count = 0;
+
+          @Override
+          public StripeResponseStream answer(InvocationOnMock invocation) {
+            final StripeResponseStream response = Mockito.mock(StripeResponseStream.class);
+            Mockito.when(response.body()).thenReturn(bodies[count++]);
+            return response;
+          }
+        })
+        .when((LiveStripeResponseGetter) networkSpy).streamRequest(
+          Mockito.any(ApiResource.RequestMethod.class),
+          Mockito.anyString(),
+          Mockito.<Map<String, Object>>any(),
+          Mockito.<RequestOptions>any()
+      );
+  }
+
+  private static String gunzip(byte[] bytes) throws IOException {
+    final GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes));
+    final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[1024];
+    int n;
+    while ((n = in.read(buffer)) > 0) {
+      decompressed.write(buffer, 0, n);
+    }
+    return decompressed.toString("UTF-8");
+  }
+}
@@ -0,0 +1,36 @@
+package com.stripe.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class EventDataClassLookupTest {
+  @Test
+  public void testEveryTypeResolves() {
+    for (String objectType : EventDataClassLookup.objectTypes()) {
+      assertNotNull(objectType, EventDataClassLookup.findClass(objectType));
+    }
+  }
+
+  @Test
+  public void testNestedClasses() {
+    assertEquals(BalanceTransaction.Fee.class, EventDataClassLookup.findClass("fee"));
+    assertEquals(Transfer.Summary.class, EventDataClassLookup.findClass("summary"));
+    assertEquals(com.stripe.model.issuing.Card.class,
+        EventDataClassLookup.findClass("issuing.card"));
+  }
+
+  @Test
+  public void testCachesClass() {
+    assertSame(EventDataClassLookup.findClass("charge"), EventDataClassLookup.findClass("charge"));
+  }
+
+  @Test
+  public void testUnknownType() {
+    assertNull(EventDataClassLookup.findClass("unknown_object"));
+    assertNull(EventDataClassLookup.findClass(null));
+  }
+}
@@ -8,6 +8,7 @@ import com.stripe.exception.StripeException;
 import com.stripe.net.ApiResource;
 import com.stripe.net.RequestOptions;
 import com.stripe.net.RequestOptions.RequestOptionsBuilder;
+import com.stripe.net.StripeClient;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -18,6 +19,7 @@ import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
 
+import org.mockito.ArgumentMatcher;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -186,4 +188,44 @@ public class PagingIteratorTest extends BaseStripeTest {
     );
     verifyNoMoreInteractions(networkSpy);
   }
+
+  @Test
+  public void testAutoPaginationThroughClient() throws StripeException {
+    final StripeClient client = StripeClient.builder()
+        .setApiKey("sk_client_key")
+        .setApiBase("https://client.example")
+        .setResponseGetter(networkSpy)
+        .build();
+    final Map<String, Object> page0Params = new HashMap<>();
+    page0Params.put("foo", "bar");
+
+    final Map<String, Object> page1Params = new HashMap<>();
+    page1Params.put("foo", "bar");
+    page1Params.put("starting_after", "pm_124");
+
+    final PageableModelCollection collection = client.requestCollection(
+        "https://client.example/v1/pageable_models", page0Params,
+        PageableModelCollection.class, null);
+
+    final List<PageableModel> models = new ArrayList<>();
+    for (PageableModel model : collection.autoPagingIterable()) {
+      models.add(model);
+    }
+
+    assertEquals(5, models.size());
+    // later pages go to the client's API base, with the client's API key
+    Mockito.verify(networkSpy).request(
+        Mockito.eq(ApiResource.RequestMethod.GET),
+        Mockito.eq("https://client.example/v1/pageable_models"),
+        Mockito.eq(page1Params),
+        Mockito.eq(PageableModelCollection.class),
+        Mockito.eq(ApiResource.RequestType.NORMAL),
+        Mockito.argThat(new ArgumentMatcher<RequestOptions>() {
+          @Override
+          public boolean matches(RequestOptions options) {
+            return "sk_client_key".equals(options.getApiKey());
+          }
+        })
+    );
+  }
 }
@@ -0,0 +1,133 @@
+package com.stripe.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.stripe.BaseStripeTest;
+import com.stripe.exception.StripeException;
+import com.stripe.net.ApiResource;
+import com.stripe.net.LiveStripeResponseGetter;
+import com.stripe.net.RequestOptions;
+import com.stripe.net.StripeResponseStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class StreamingPagingIteratorTest extends BaseStripeTest {
+  private static class PageableModel extends ApiResource implements HasId {
+    String id;
+
+    @Override
+    public String getId() {
+      return id;
+    }
+  }
+
+  private final List<StripeResponseStream> responses = new ArrayList<>();
+
+  /**
+   * Serves the mock page fixtures as raw response streams.
+   */
+  @Before
+  public void setUpMockPages() throws IOException, StripeException {
+    final List<String> pages = new ArrayList<>();
+    pages.add(getResourceAsString("/model_fixtures/pageable_model_page_0.json"));
+    pages.add(getResourceAsString("/model_fixtures/pageable_model_page_1.json"));
+    pages.add(getResourceAsString("/model_fixtures/pageable_model_page_2.json"));
+
+    Mockito
+        .doAnswer(new Answer<StripeResponseStream>() {
+          private int count = 0;
+
+          @Override
+          public StripeResponseStream answer(InvocationOnMock invocation) {
+            if (count >= pages.size()) {
+              throw new RuntimeException("Page out of bounds");
+            }
+
+            final StripeResponseStream response = Mockito.mock(StripeResponseStream.class);
+            Mockito.when(response.body()).thenReturn(new ByteArrayInputStream(
+                pages.get(count++).getBytes(StandardCharsets.UTF_8)));
+            responses.add(response);
+            return response;
+          }
+        })
+        .when((LiveStripeResponseGetter) networkSpy).streamRequest(
+          Mockito.any(ApiResource.RequestMethod.class),
+          Mockito.anyString(),
+          Mockito.<Map<String, Object>>any(),
+          Mockito.<RequestOptions>any()
+      );
+  }
+
+  @Test
+  public void testStreamingPagination() throws StripeException, IOException {
+    final Map<String, Object> params = new HashMap<>();
+    params.put("foo", "bar");
+
+    final List<PageableModel> models = new ArrayList<>();
+    for (PageableModel model : ApiResource.requestCollectionStream(
+        "https://api.stripe.com/v1/pageable_models", params, PageableModel.class, null)) {
+      models.add(model);
+    }
+
+    assertEquals(5, models.size());
+    assertEquals("pm_123", models.get(0).getId());
+    assertEquals("pm_124", models.get(1).getId());
+    assertEquals("pm_125", models.get(2).getId());
+    assertEquals("pm_126", models.get(3).getId());
+    assertEquals("pm_127", models.get(4).getId());
+
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<Map<String, Object>> captor = ArgumentCaptor.forClass(Map.class);
+    Mockito.verify((LiveStripeResponseGetter) networkSpy, Mockito.times(3))
+        .streamRequest(
+          Mockito.eq(ApiResource.RequestMethod.GET),
+          Mockito.eq("https://api.stripe.com/v1/pageable_models"),
+          captor.capture(),
+          Mockito.<RequestOptions>any());
+    final List<Map<String, Object>> pageParams = captor.getAllValues();
+    assertNull(pageParams.get(0).get("starting_after"));
+    assertEquals("pm_124", pageParams.get(1).get("starting_after"));
+    assertEquals("pm_126", pageParams.get(2).get("starting_after"));
+    assertEquals("bar", pageParams.get(2).get("foo"));
+
+    // every page must have released its connection
+    for (StripeResponseStream response : responses) {
+      Mockito.verify(response).close();
+    }
+  }
+
+  @Test
+  public void testPageAttributesCapturedWhileStreaming() throws IOException {
+    final StreamingPagingIterator<PageableModel> iterator = ApiResource.requestCollectionStream(
+        "https://api.stripe.com/v1/pageable_models", null, PageableModel.class, null).iterator();
+
+    assertEquals("pm_123", iterator.next().getId());
+    // `has_more` comes after `data` in the fixture so it isn't known yet
+    assertNull(iterator.getHasMore());
+
+    assertEquals("pm_124", iterator.next().getId());
+    assertTrue(iterator.hasNext());
+    assertEquals("/v1/pageable_models", iterator.getUrl());
+
+    iterator.close();
+    assertFalse(iterator.hasNext());
+    Mockito.verify(responses.get(responses.size() - 1)).close();
+  }
+}
@@ -0,0 +1,53 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+
+import com.stripe.Stripe;
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.model.Balance;
+import com.stripe.model.Charge;
+import com.stripe.model.InvoiceItem;
+import com.stripe.model.SubscriptionItem;
+import com.stripe.model.ThreeDSecure;
+import com.stripe.model.UsageRecord;
+import com.stripe.model.issuing.Card;
+import com.stripe.model.sigma.ScheduledQueryRun;
+
+import org.junit.Test;
+
+public class ApiResourceTest {
+  private static final String BASE = "https://api.stripe.com";
+
+  @Test
+  public void testClassUrls() {
+    assertEquals(BASE + "/v1/charges", ApiResource.classUrl(Charge.class, BASE));
+    assertEquals(BASE + "/v1/balance", ApiResource.singleClassUrl(Balance.class, BASE));
+    assertEquals(BASE + "/v1/invoiceitems", ApiResource.classUrl(InvoiceItem.class, BASE));
+  }
+
+  @Test
+  public void testNamespacedClassUrls() {
+    assertEquals(BASE + "/v1/issuing/cards", ApiResource.classUrl(Card.class, BASE));
+    assertEquals(BASE + "/v1/sigma/scheduled_query_runs",
+        ApiResource.classUrl(ScheduledQueryRun.class, BASE));
+  }
+
+  @Test
+  public void testClassUrlWithoutObjectName() {
+    assertEquals(BASE + "/v1/three_d_secures", ApiResource.classUrl(ThreeDSecure.class, BASE));
+  }
+
+  @Test
+  public void testInstanceUrls() throws InvalidRequestException {
+    assertEquals(BASE + "/v1/charges/ch_123",
+        ApiResource.instanceUrl(Charge.class, "ch_123", BASE));
+    assertEquals(BASE + "/v1/charges/ch+1%2F2",
+        ApiResource.instanceUrl(Charge.class, "ch 1/2", BASE));
+  }
+
+  @Test
+  public void testSubresourceUrl() throws InvalidRequestException {
+    assertEquals(Stripe.getApiBase() + "/v1/subscription_items/si_123/usage_records",
+        ApiResource.subresourceUrl(SubscriptionItem.class, "si_123", UsageRecord.class));
+  }
+}
@@ -0,0 +1,234 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.model.Plan;
+import com.stripe.model.StripeObject;
+import com.stripe.net.RequestOptions.RequestOptionsBuilder;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CacheInvalidationFeedTest {
+  private static final String VERSION = "2018-09-24";
+  private static final String OLD_VERSION = "2017-08-15";
+
+  private final Map<String, String> plans = new HashMap<>();
+  private final List<String> eventPages = new ArrayList<>();
+  private int planRequests;
+  private boolean dated = true;
+
+  private ObjectCache cache;
+  private CacheInvalidationFeed feed;
+
+  /**
+   * Installs a cache for plans, and a response getter serving plans and event lists from memory.
+   */
+  @Before
+  public void setUpCache() {
+    cache = ObjectCache.builder()
+        .addClass(Plan.class, TimeUnit.MINUTES.toMillis(10), 100)
+        .build();
+    feed = new CacheInvalidationFeed(cache);
+    Stripe.setObjectCache(cache);
+    ApiResource.setStripeResponseGetter(new StripeResponseGetter() {
+      @Override
+      public <T> T request(ApiResource.RequestMethod method, String url,
+          Map<String, Object> params, Class<T> clazz, ApiResource.RequestType type,
+          RequestOptions options) {
+        String body;
+        if (url.endsWith("/v1/events")) {
+          body = eventPages.remove(0);
+        } else {
+          planRequests++;
+          body = plans.get(url.substring(url.lastIndexOf('/') + 1));
+        }
+        T resource = ApiResource.GSON.fromJson(body, clazz);
+        ((StripeObject) resource).setLastResponse(dated
+            ? new StripeResponse(200, body, dateHeader())
+            : new StripeResponse(200, body));
+        return resource;
+      }
+
+      @Override
+      public <T> T oauthRequest(ApiResource.RequestMethod method, String url,
+          Map<String, Object> params, Class<T> clazz, ApiResource.RequestType type,
+          RequestOptions options) {
+        throw new UnsupportedOperationException();
+      }
+    });
+  }
+
+  @After
+  public void tearDownCache() {
+    Stripe.setObjectCache(null);
+    ApiResource.setStripeResponseGetter(new LiveStripeResponseGetter());
+  }
+
+  private static String plan(String id, String nickname, String extra) {
+    return String.format("{\"id\": \"%s\", \"object\": \"plan\", \"nickname\": \"%s\", "
+        + "\"metadata\": {}%s}", id, nickname, extra);
+  }
+
+  private static String event(String id, long created, String type, String object,
+      String previousAttributes) {
+    return String.format("{\"id\": \"%s\", \"object\": \"event\", \"api_version\": \"%s\", "
+        + "\"created\": %d, \"type\": \"%s\", \"data\": {\"object\": %s%s}}", id, VERSION,
+        created, type, object,
+        (previousAttributes != null) ? ", \"previous_attributes\": " + previousAttributes : "");
+  }
+
+  private static Map<String, List<String>> dateHeader() {
+    DateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    return Collections.singletonMap("Date", Collections.singletonList(format.format(new Date())));
+  }
+
+  private static long inOneMinute() {
+    return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 60;
+  }
+
+  private static RequestOptions version(String stripeVersion) {
+    return new RequestOptionsBuilder().setApiKey("sk_test_123").setStripeVersion(stripeVersion)
+        .build();
+  }
+
+  @Test
+  public void testUpdateRefreshesEntriesOfEveryVersion() throws StripeException {
+    plans.put("gold", plan("gold", "Gold", ""));
+    Plan.retrieve("gold", version(VERSION));
+    Plan.retrieve("gold", version(OLD_VERSION));
+
+    assertTrue(feed.apply(ApiResource.GSON.fromJson(event("evt_1", inOneMinute(), "plan.updated",
+        plan("gold", "Gold+", ", \"trial_period_days\": 30"), "{\"nickname\": \"Gold\"}"),
+        Event.class)));
+
+    final Plan current = Plan.retrieve("gold", version(VERSION));
+    assertEquals("Gold+", current.getNickname());
+    assertEquals(Long.valueOf(30), current.getTrialPeriodDays());
+
+    // only the attributes listed as changed are carried over to other versions
+    final Plan old = Plan.retrieve("gold", version(OLD_VERSION));
+    assertEquals("Gold+", old.getNickname());
+    assertEquals(null, old.getTrialPeriodDays());
+
+    assertEquals(2, planRequests);
+    assertEquals(2, cache.getStats().getRefreshes());
+  }
+
+  @Test
+  public void testEntriesAreReplacedWithTheEventJson() throws StripeException {
+    plans.put("gold", plan("gold", "Gold", ""));
+    Plan.retrieve("gold", version(VERSION));
+
+    feed.apply(ApiResource.GSON.fromJson(event("evt_1", inOneMinute(), "plan.updated",
+        plan("gold", "Gold+", ", \"unmodeled\": 2.50"), "{\"nickname\": \"Gold\"}"),
+        Event.class));
+
+    // attributes the model does not have are kept, as the API sent them
+    final Plan current = Plan.retrieve("gold", version(VERSION));
+    assertTrue(current.getLastResponse().body().contains("\"unmodeled\":2.50"));
+    assertEquals(1, planRequests);
+  }
+
+  @Test
+  public void testEntriesWithoutDateAreDropped() throws StripeException {
+    dated = false;
+    plans.put("gold", plan("gold", "Gold", ""));
+    Plan.retrieve("gold", version(VERSION));
+
+    // without Stripe's time of the entry, it cannot be ordered against the event
+    feed.apply(ApiResource.GSON.fromJson(event("evt_1", inOneMinute(), "plan.updated",
+        plan("gold", "Gold+", ""), "{\"nickname\": \"Gold\"}"), Event.class));
+
+    assertEquals(0, cache.getStats().getRefreshes());
+    assertEquals(1, cache.getStats().getInvalidations());
+  }
+
+  @Test
+  public void testChangesThatCannotBePatchedDropEntries() throws StripeException {
+    plans.put("gold", plan("gold", "Gold", ""));
+    Plan.retrieve("gold", version(OLD_VERSION));
+
+    // trial_period_days is not part of the cached entry, so it cannot be patched in
+    feed.apply(ApiResource.GSON.fromJson(event("evt_1", inOneMinute(), "plan.updated",
+        plan("gold", "Gold", ""), "{\"nickname\": \"Gold\", \"trial_period_days\": null}"),
+        Event.class));
+
+    Plan.retrieve("gold", version(OLD_VERSION));
+    assertEquals(2, planRequests);
+    assertEquals(1, cache.getStats().getInvalidations());
+  }
+
+  @Test
+  public void testEventsOlderThanEntriesDropThem() throws StripeException {
+    plans.put("gold", plan("gold", "Gold", ""));
+    Plan.retrieve("gold", version(VERSION));
+
+    feed.apply(ApiResource.GSON.fromJson(event("evt_1", 1500000000L, "plan.updated",
+        plan("gold", "Stale", ""), "{\"nickname\": \"Gold\"}"), Event.class));
+
+    assertEquals("Gold", Plan.retrieve("gold", version(VERSION)).getNickname());
+    assertEquals(2, planRequests);
+  }
+
+  @Test
+  public void testDeletionDropsEntries() throws StripeException {
+    plans.put("gold", plan("gold", "Gold", ""));
+    Plan.retrieve("gold", version(VERSION));
+
+    feed.apply(ApiResource.GSON.fromJson(event("evt_1", inOneMinute(), "plan.deleted",
+        plan("gold", "Gold", ""), null), Event.class));
+
+    Plan.retrieve("gold", version(VERSION));
+    assertEquals(2, planRequests);
+  }
+
+  @Test
+  public void testEventsAboutOtherClassesAreIgnored() {
+    assertFalse(feed.apply(ApiResource.GSON.fromJson(event("evt_1", inOneMinute(),
+        "customer.updated", "{\"id\": \"cus_1\", \"object\": \"customer\"}", null),
+        Event.class)));
+  }
+
+  @Test
+  public void testPollAppliesNewEventsOnce() throws StripeException {
+    plans.put("gold", plan("gold", "Gold", ""));
+    Plan.retrieve("gold", version(VERSION));
+
+    final long created = inOneMinute();
+    final String first = event("evt_1", created, "plan.updated", plan("gold", "Gold 1", ""),
+        "{\"nickname\": \"Gold\"}");
+    final String second = event("evt_2", created + 1, "plan.updated",
+        plan("gold", "Gold 2", ""), "{\"nickname\": \"Gold 1\"}");
+    eventPages.add(String.format("{\"object\": \"list\", \"url\": \"/v1/events\", "
+        + "\"has_more\": false, \"data\": [%s, %s]}", second, first));
+    eventPages.add(String.format("{\"object\": \"list\", \"url\": \"/v1/events\", "
+        + "\"has_more\": false, \"data\": [%s]}", second));
+
+    assertEquals(2, feed.poll(null));
+    assertEquals("Gold 2", Plan.retrieve("gold", version(VERSION)).getNickname());
+
+    // the newest event is listed again by the next poll, but not applied twice
+    assertEquals(0, feed.poll(null));
+    assertEquals(2, cache.getStats().getRefreshes());
+  }
+}
@@ -0,0 +1,144 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.stripe.model.Event;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class EventDeduplicatorTest {
+  private static Event event(String id) {
+    return ApiResource.GSON.fromJson(String.format(
+        "{\"id\": \"%s\", \"object\": \"event\", \"type\": \"invoice.paid\"}", id), Event.class);
+  }
+
+  @Test
+  public void testLetsEachIdThroughOnceWithinWindow() {
+    final EventDeduplicator deduplicator = EventDeduplicator.builder()
+        .setWindowMillis(1000)
+        .build();
+
+    assertTrue(deduplicator.markSeen("evt_1", 10000));
+    assertTrue(deduplicator.markSeen("evt_2", 10000));
+    assertFalse(deduplicator.markSeen("evt_1", 10500));
+    // once the window has passed, the ID is let through again
+    assertTrue(deduplicator.markSeen("evt_1", 11000));
+    assertFalse(deduplicator.markSeen("evt_1", 11001));
+
+    final EventDeduplicatorStats stats = deduplicator.getStats();
+    assertEquals(5, stats.getChecked());
+    assertEquals(2, stats.getDuplicates());
+    assertEquals(0.4, stats.getHitRate(), 0.0001);
+    assertEquals(1, stats.getSize());
+  }
+
+  @Test
+  public void testEvictsOldestIdsWhenFull() {
+    final EventDeduplicator deduplicator = EventDeduplicator.builder()
+        .setMaxEntries(2)
+        .build();
+
+    deduplicator.markSeen("evt_1", 1000);
+    deduplicator.markSeen("evt_2", 1000);
+    deduplicator.markSeen("evt_3", 1000);
+
+    assertTrue(deduplicator.markSeen("evt_1", 1000));
+    assertFalse(deduplicator.markSeen("evt_3", 1000));
+    assertEquals(2, deduplicator.getStats().getEvictions());
+    assertEquals(2, deduplicator.getStats().getSize());
+  }
+
+  @Test
+  public void testMatchesReferenceSet() {
+    final EventDeduplicator deduplicator = EventDeduplicator.builder()
+        .setMaxEntries(64)
+        .setWindowMillis(50)
+        .build();
+    final Map<String, Long> seen = new HashMap<>();
+    final Random random = new Random(42);
+
+    // at most one ID per millisecond, so the window never holds more than the maximum entries
+    for (long now = 0; now < 20000; now++) {
+      final String id = "evt_" + random.nextInt(200);
+      if (random.nextInt(10) == 0) {
+        deduplicator.forget(id);
+        seen.remove(id);
+        continue;
+      }
+      final Long seenAt = seen.get(id);
+      final boolean expected = seenAt == null || seenAt <= now - 50;
+      if (expected) {
+        seen.put(id, now);
+      }
+      assertEquals(expected, deduplicator.markSeen(id, now));
+    }
+  }
+
+  @Test
+  public void testConsultsStoreForIdsNotInMemory() {
+    final List<String> removed = new ArrayList<>();
+    final Map<String, Long> records = new HashMap<>();
+    records.put("evt_old", Long.MAX_VALUE);
+    final EventDeduplicator deduplicator = EventDeduplicator.builder()
+        .setStore(new EventDeduplicationStore() {
+          @Override
+          public boolean add(String eventId, long expiresAtMillis) {
+            return records.put(eventId, expiresAtMillis) == null;
+          }
+
+          @Override
+          public void remove(String eventId) {
+            removed.add(eventId);
+            records.remove(eventId);
+          }
+        })
+        .setWindowMillis(1000)
+        .build();
+
+    assertFalse(deduplicator.markSeen("evt_old", 5000));
+    assertTrue(deduplicator.markSeen("evt_new", 5000));
+    assertEquals(Long.valueOf(6000), records.get("evt_new"));
+    assertEquals(1, deduplicator.getStats().getStoreDuplicates());
+
+    deduplicator.forget("evt_new");
+    assertEquals(1, removed.size());
+    assertTrue(deduplicator.markSeen("evt_new", 5000));
+  }
+
+  @Test
+  public void testHandlerFailuresAreRetried() throws Exception {
+    final List<String> handled = new ArrayList<>();
+    final EventDeduplicator deduplicator = EventDeduplicator.builder()
+        .setHandler(new WebhookEventHandler() {
+          @Override
+          public void onEvent(Event event) {
+            handled.add(event.getId());
+            if (handled.size() == 1) {
+              throw new IllegalStateException("boom");
+            }
+          }
+        })
+        .build();
+
+    try {
+      deduplicator.onEvent(event("evt_1"));
+      fail("the handler's exception should have been rethrown");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    deduplicator.onEvent(event("evt_1"));
+    deduplicator.onEvent(event("evt_1"));
+
+    assertEquals(2, handled.size());
+    assertEquals(1, deduplicator.getStats().getDuplicates());
+  }
+}
@@ -0,0 +1,181 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.stripe.model.Event;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EventJournalTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private EventJournal journal;
+
+  /**
+   * Closes the journal opened by the test, if any.
+   */
+  @After
+  public void tearDownJournal() throws IOException {
+    if (journal != null) {
+      journal.close();
+    }
+  }
+
+  private static String event(String id, long created) {
+    return String.format("{\"id\": \"%s\", \"object\": \"event\", \"created\": %d, "
+        + "\"type\": \"customer.updated\", \"data\": {\"object\": {\"id\": \"cus_1\", "
+        + "\"object\": \"customer\", \"description\": \"%s\"}}}", id, created, id);
+  }
+
+  private EventJournal open(int segmentSize) throws IOException {
+    return EventJournal.builder()
+        .setDirectory(folder.getRoot())
+        .setSegmentSize(segmentSize)
+        .open();
+  }
+
+  private List<String> ids(Iterable<EventJournalEntry> entries) {
+    List<String> ids = new ArrayList<>();
+    for (EventJournalEntry entry : entries) {
+      ids.add(entry.getId());
+    }
+    return ids;
+  }
+
+  @Test
+  public void testAppendsAndReadsEvents() throws IOException {
+    journal = open(1024 * 1024);
+
+    assertTrue(journal.append(event("evt_1", 1000)));
+    assertTrue(journal.append(event("evt_2", 1001)));
+    assertFalse(journal.append(event("evt_1", 1000)));
+
+    final EventJournalEntry entry = journal.get("evt_2");
+    assertEquals(1001, entry.getCreated());
+    assertEquals(event("evt_2", 1001), entry.getPayload());
+    final Event event = entry.getEvent();
+    assertEquals("customer.updated", event.getType());
+    assertTrue(event == entry.getEvent());
+    assertNull(journal.get("evt_3"));
+    assertEquals(2, journal.getStats().getEvents());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsPayloadsWithoutId() throws IOException {
+    journal = open(1024 * 1024);
+    journal.append("{\"object\": \"event\"}");
+  }
+
+  @Test
+  public void testRollsSegmentsAndListsByCreated() throws IOException {
+    journal = open(512);
+    for (int i = 0; i < 20; i++) {
+      // appended in a different order than they were created
+      journal.append(event("evt_" + i, 1000 + (i * 7) % 20));
+    }
+
+    assertTrue(journal.getStats().getSegments() > 1);
+    final List<String> ids = ids(journal.entries(1005, 1010));
+    assertEquals(Arrays.asList("evt_15", "evt_18", "evt_1", "evt_4", "evt_7"), ids);
+  }
+
+  @Test
+  public void testReopensAndRecoversFromTornRecord() throws IOException {
+    journal = open(4096);
+    journal.append(event("evt_1", 1000));
+    journal.append(event("evt_2", 1001));
+    journal.close();
+
+    // damage the last byte of the second record, as if the process died while writing it
+    final File segment = folder.getRoot().listFiles()[0];
+    final int end = 2 * (18 + "evt_1".length() + event("evt_1", 1000).length());
+    try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+      file.seek(end - 1);
+      file.write('x');
+    }
+
+    journal = open(4096);
+    assertEquals("evt_1", journal.get("evt_1").getId());
+    assertNull(journal.get("evt_2"));
+    assertTrue(journal.append(event("evt_3", 1002)));
+    journal.close();
+
+    journal = open(4096);
+    assertEquals(Arrays.asList("evt_1", "evt_3"), ids(journal.entries(0, Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void testCompactsOldEvents() throws IOException {
+    journal = open(512);
+    for (int i = 0; i < 30; i++) {
+      journal.append(event("evt_" + i, 1000 + i));
+    }
+    final int segments = journal.getStats().getSegments();
+
+    final int removed = journal.compact(1012);
+    assertTrue(removed > 0);
+    assertTrue(journal.getStats().getSegments() < segments);
+    assertEquals(30 - removed, journal.getStats().getEvents());
+    assertNull(journal.get("evt_0"));
+    assertEquals("evt_12", journal.get("evt_12").getEvent().getId());
+    journal.close();
+
+    journal = open(512);
+    assertEquals(30 - removed, ids(journal.entries(0, Long.MAX_VALUE)).size());
+    assertEquals("evt_29", journal.get("evt_29").getId());
+  }
+
+  @Test
+  public void testReplaysIntoHandler() throws Exception {
+    journal = open(1024 * 1024);
+    journal.append(event("evt_2", 1002));
+    journal.append(event("evt_1", 1001));
+
+    final List<String> handled = new ArrayList<>();
+    final int count = journal.replay(0, Long.MAX_VALUE, new WebhookEventHandler() {
+      @Override
+      public void onEvent(Event event) {
+        handled.add(event.getId());
+      }
+    });
+    assertEquals(2, count);
+    assertEquals(Arrays.asList("evt_1", "evt_2"), handled);
+  }
+
+  @Test
+  public void testReplaysIntoReceiverHandlers() throws Exception {
+    journal = open(1024 * 1024);
+    final List<String> handled = new ArrayList<>();
+    final WebhookReceiver receiver = WebhookReceiver.builder()
+        .setSecret("whsec_test_secret")
+        .setJournal(journal)
+        .addHandler("customer.updated", new WebhookEventHandler() {
+          @Override
+          public void onEvent(Event event) {
+            synchronized (handled) {
+              handled.add(event.getId());
+            }
+          }
+        })
+        .build();
+    journal.append(event("evt_1", 1000));
+
+    assertEquals(1, receiver.replay(journal, 0, Long.MAX_VALUE));
+    assertEquals(Arrays.asList("evt_1"), handled);
+    assertEquals(1, receiver.getStats().getEventTypes().get("customer.updated").getHandled());
+  }
+}
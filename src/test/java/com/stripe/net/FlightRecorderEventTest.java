@@ -0,0 +1,158 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.stripe.exception.StripeException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlightRecorderEventTest {
+  private static final String CUSTOMER = "{\"id\": \"cus_123\", \"object\": \"customer\"}";
+
+  private HttpServer server;
+  private StripeClient client;
+
+  /**
+   * Serves a customer.
+   */
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        byte[] body = CUSTOMER.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Request-Id", "req_123");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+          output.write(body);
+        }
+      }
+    });
+    server.start();
+
+    client = StripeClient.builder()
+        .setApiKey("sk_test_123")
+        .setApiBase("http://localhost:" + server.getAddress().getPort())
+        .build();
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  private static boolean jfrAvailable() {
+    try {
+      Class.forName("jdk.jfr.EventFactory");
+      return true;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  @Test
+  public void testAvailableWithJfr() {
+    assertEquals(jfrAvailable(), FlightRecorderEvent.API_REQUEST.isAvailable());
+  }
+
+  @Test
+  public void testNotRecordedByDefault() throws StripeException {
+    assertNull(FlightRecorderEvent.API_REQUEST.begin());
+    FlightRecorderEvent.API_REQUEST.commit(null, "GET");
+
+    assertEquals("cus_123", client.customers().retrieve("cus_123").getId());
+  }
+
+  @Test
+  public void testRecordsRequests() throws Exception {
+    assumeTrue(jfrAvailable());
+
+    // the test targets Java 7, so the recording is driven through reflection as well
+    Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+    Object recording = recordingClass.getConstructor().newInstance();
+    recordingClass.getMethod("enable", String.class).invoke(recording, "com.stripe.ApiRequest");
+    recordingClass.getMethod("enable", String.class)
+        .invoke(recording, "com.stripe.ConnectionAcquire");
+    recordingClass.getMethod("enable", String.class).invoke(recording, "com.stripe.ResponseParse");
+    File dump = File.createTempFile("stripe", ".jfr");
+    try {
+      recordingClass.getMethod("start").invoke(recording);
+      assertNotNull(FlightRecorderEvent.API_REQUEST.begin());
+      client.customers().retrieve("cus_123");
+      recordingClass.getMethod("stop").invoke(recording);
+      recordingClass.getMethod("dump", Path.class)
+          .invoke(recording, dump.toPath());
+
+      Map<String, Object> request = null;
+      Map<String, Object> parse = null;
+      boolean connected = false;
+      for (Object event : readEvents(dump)) {
+        String name = eventName(event);
+        if ("com.stripe.ApiRequest".equals(name)) {
+          request = fields(event, "method", "path", "status", "requestId", "responseSize");
+        } else if ("com.stripe.ResponseParse".equals(name)) {
+          parse = fields(event, "modelClass", "size");
+        } else if ("com.stripe.ConnectionAcquire".equals(name)) {
+          connected = true;
+        }
+      }
+
+      assertNotNull(request);
+      assertEquals("GET", request.get("method"));
+      assertEquals("/v1/customers/{id}", request.get("path"));
+      assertEquals(200, request.get("status"));
+      assertEquals("req_123", request.get("requestId"));
+      assertEquals((long) CUSTOMER.length(), request.get("responseSize"));
+      assertNotNull(parse);
+      assertEquals("com.stripe.model.Customer", parse.get("modelClass"));
+      assertEquals((long) CUSTOMER.length(), parse.get("size"));
+      assertTrue(connected);
+    } finally {
+      recordingClass.getMethod("close").invoke(recording);
+      dump.delete();
+    }
+  }
+
+  private static List<Object> readEvents(File dump) throws Exception {
+    Class<?> recordingFile = Class.forName("jdk.jfr.consumer.RecordingFile");
+    return new ArrayList<Object>((List<?>) recordingFile
+        .getMethod("readAllEvents", Path.class).invoke(null, dump.toPath()));
+  }
+
+  private static String eventName(Object event) throws Exception {
+    Object type = event.getClass().getMethod("getEventType").invoke(event);
+    return (String) Class.forName("jdk.jfr.EventType").getMethod("getName").invoke(type);
+  }
+
+  private static Map<String, Object> fields(Object event, String... names) throws Exception {
+    Method getValue = Class.forName("jdk.jfr.consumer.RecordedObject")
+        .getMethod("getValue", String.class);
+    Map<String, Object> fields = new HashMap<>();
+    for (String name : names) {
+      fields.put(name, getValue.invoke(event, name));
+    }
+    return fields;
+  }
+}
@@ -0,0 +1,142 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyMetricsTest {
+  private static final ApiResource.RequestMethod GET = ApiResource.RequestMethod.GET;
+
+  private static RequestEvent end(String path, int status, long nanos) {
+    return new RequestEvent(
+        (status >= 200 && status < 300) ? RequestEvent.Phase.DESERIALIZED
+            : RequestEvent.Phase.ERROR,
+        GET, "https://api.stripe.com" + path, path, null, status, null, 1, 0, 0, 0, nanos, null);
+  }
+
+  private static void assertWithinPrecision(long expected, long actual) {
+    assertTrue(actual + " is not within 6.25% of " + expected,
+        actual >= expected && actual - expected <= expected / 16);
+  }
+
+  @Test
+  public void testBucketsKeepPrecision() {
+    final Random random = new Random(42);
+    for (int i = 0; i < 100000; i++) {
+      long value = random.nextLong() >>> (1 + random.nextInt(63));
+      int index = LatencyHistogram.index(value);
+      assertTrue(index >= 0 && index < LatencyHistogram.BUCKETS);
+      assertWithinPrecision(value, LatencyHistogram.highestValue(index));
+      if (index > 0) {
+        assertTrue(LatencyHistogram.highestValue(index - 1) < value);
+      }
+    }
+  }
+
+  @Test
+  public void testReportsPercentilesPerSeries() {
+    final LatencyMetrics metrics = new LatencyMetrics();
+    for (int i = 1; i <= 1000; i++) {
+      metrics.onRequestEvent(end("/v1/charges/{id}", 200, TimeUnit.MILLISECONDS.toNanos(i)));
+    }
+    // intermediate phases are not recorded
+    metrics.onRequestEvent(new RequestEvent(RequestEvent.Phase.FIRST_BYTE, GET, null,
+        "/v1/charges/{id}", null, 200, null, 1, 0, -1, 0, 1, null));
+
+    LatencySeries series = metrics.snapshot().getSeries(GET, "/v1/charges/{id}", "2xx");
+    assertEquals(1000, series.getCount());
+    assertWithinPrecision(TimeUnit.MILLISECONDS.toNanos(500), series.getP50Nanos());
+    assertWithinPrecision(TimeUnit.MILLISECONDS.toNanos(900), series.getP90Nanos());
+    assertWithinPrecision(TimeUnit.MILLISECONDS.toNanos(990), series.getP99Nanos());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), series.getP999Nanos());
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), series.getMaxNanos());
+    assertEquals(TimeUnit.MICROSECONDS.toNanos(500500), series.getMeanNanos());
+  }
+
+  @Test
+  public void testReportsErrorAndRateLimitedRates() {
+    final LatencyMetrics metrics = new LatencyMetrics();
+    for (int i = 0; i < 6; i++) {
+      metrics.onRequestEvent(end("/v1/charges", 200, 1000));
+    }
+    metrics.onRequestEvent(end("/v1/charges", 429, 1000));
+    metrics.onRequestEvent(end("/v1/charges", 402, 1000));
+    metrics.onRequestEvent(end("/v1/charges", 0, 1000));
+    metrics.onRequestEvent(end("/v1/customers", 200, 1000));
+
+    LatencySnapshot snapshot = metrics.snapshot();
+    assertEquals(4, snapshot.getSeries().size());
+    assertEquals(2, snapshot.getSeries(GET, "/v1/charges", "4xx").getCount());
+    assertEquals(1, snapshot.getSeries(GET, "/v1/charges", "error").getCount());
+    assertEquals(3.0 / 9, snapshot.getErrorRate(GET, "/v1/charges"), 1e-9);
+    assertEquals(1.0 / 9, snapshot.getRateLimitedRate(GET, "/v1/charges"), 1e-9);
+    assertEquals(3.0 / 10, snapshot.getErrorRate(), 1e-9);
+    assertEquals(0, snapshot.getErrorRate(GET, "/v1/customers"), 0);
+  }
+
+  @Test
+  public void testSnapshotAndResetCoversOnePeriod() {
+    final LatencyMetrics metrics = new LatencyMetrics();
+    metrics.onRequestEvent(end("/v1/charges", 200, 1000));
+    assertEquals(1, metrics.snapshotAndReset().getSeries().size());
+
+    LatencySnapshot next = metrics.snapshotAndReset();
+    assertTrue(next.getSeries().isEmpty());
+    assertNull(next.getSeries(GET, "/v1/charges", "2xx"));
+    metrics.onRequestEvent(end("/v1/charges", 200, 2000));
+    assertEquals(2000, metrics.snapshot().getSeries().get(0).getMaxNanos());
+  }
+
+  @Test
+  public void testFormatsPrometheusText() {
+    final LatencyMetrics metrics = new LatencyMetrics();
+    metrics.onRequestEvent(end("/v1/charges/{id}", 200, 1500000000L));
+    metrics.onRequestEvent(end("/v1/charges/{id}", 429, 1000000L));
+
+    String text = metrics.snapshot().toPrometheusText();
+    assertTrue(text, text.contains("# TYPE stripe_request_duration_seconds summary\n"));
+    assertTrue(text, text.contains("stripe_request_duration_seconds{method=\"GET\","
+        + "path=\"/v1/charges/{id}\",status=\"2xx\",quantile=\"0.99\"} 1.5"));
+    assertTrue(text, text.contains("stripe_request_duration_seconds_count{method=\"GET\","
+        + "path=\"/v1/charges/{id}\",status=\"4xx\"} 1\n"));
+    assertTrue(text, text.contains(
+        "stripe_request_error_ratio{method=\"GET\",path=\"/v1/charges/{id}\"} 0.5\n"));
+    assertTrue(text, text.contains(
+        "stripe_request_rate_limited_ratio{method=\"GET\",path=\"/v1/charges/{id}\"} 0.5\n"));
+  }
+
+  @Test
+  public void testConcurrentRecordingLosesNothing() throws InterruptedException {
+    final LatencyMetrics metrics = new LatencyMetrics();
+    final List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      final int offset = t;
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 10000; i++) {
+            metrics.onRequestEvent(end("/v1/charges", 200, offset * 10000 + i));
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    LatencySeries series = metrics.snapshot().getSeries().get(0);
+    assertEquals(80000, series.getCount());
+    assertEquals(79999, series.getMaxNanos());
+    assertEquals(79999L * 80000 / 2, series.getSumNanos());
+  }
+}
@@ -0,0 +1,40 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.stripe.model.Customer;
+import com.stripe.model.EventData;
+import com.stripe.model.ExpandableField;
+import com.stripe.model.Source;
+import com.stripe.model.StripeRawJsonObject;
+
+import org.junit.Test;
+
+public class LazyDeserializerFactoryTest {
+  @Test
+  public void testModelsWithDeserializer() {
+    assertNotNull(LazyDeserializerFactory.newDeserializer(EventData.class.getName()));
+    assertNotNull(LazyDeserializerFactory.newDeserializer(ExpandableField.class.getName()));
+    assertNotNull(LazyDeserializerFactory.newDeserializer(Source.class.getName()));
+    assertNull(LazyDeserializerFactory.newDeserializer(Customer.class.getName()));
+    assertNull(LazyDeserializerFactory.newDeserializer("com.example.Source"));
+  }
+
+  @Test
+  public void testDeserializesAndSerializes() {
+    StripeRawJsonObject raw = ApiResource.GSON.fromJson("{\"id\": \"obj_123\"}",
+        StripeRawJsonObject.class);
+    assertNotNull(raw);
+    assertNull(ApiResource.GSON.fromJson("null", StripeRawJsonObject.class));
+
+    Source source = ApiResource.GSON.fromJson(
+        "{\"id\": \"src_123\", \"object\": \"source\", \"type\": \"card\", "
+            + "\"card\": {\"brand\": \"Visa\"}}",
+        Source.class);
+    assertEquals("Visa", source.getTypeData().get("brand"));
+    assertTrue(ApiResource.GSON.toJson(source).contains("\"src_123\""));
+  }
+}
@@ -0,0 +1,189 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Plan;
+import com.stripe.model.StripeObject;
+import com.stripe.net.RequestOptions.RequestOptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ObjectCacheTest {
+  private final List<String> requests = new ArrayList<>();
+
+  private ObjectCache cache;
+  private StripeResponseGetter getter;
+
+  /**
+   * Installs a cache for plans and a response getter that answers every request with a new
+   * version of the requested plan.
+   */
+  @Before
+  public void setUpCache() {
+    cache = ObjectCache.builder()
+        .addClass(Plan.class, TimeUnit.MINUTES.toMillis(10), 2)
+        .build();
+    Stripe.setObjectCache(cache);
+    getter = new StripeResponseGetter() {
+      @Override
+      public <T> T request(ApiResource.RequestMethod method, String url,
+          Map<String, Object> params, Class<T> clazz, ApiResource.RequestType type,
+          RequestOptions options) {
+        requests.add(method + " " + url);
+        String id = url.substring(url.lastIndexOf('/') + 1);
+        String body = String.format(
+            "{\"id\": \"%s\", \"object\": \"plan\", \"nickname\": \"%d\"}", id,
+            requests.size());
+        T resource = ApiResource.GSON.fromJson(body, clazz);
+        ((StripeObject) resource).setLastResponse(new StripeResponse(200, body));
+        return resource;
+      }
+
+      @Override
+      public <T> T oauthRequest(ApiResource.RequestMethod method, String url,
+          Map<String, Object> params, Class<T> clazz, ApiResource.RequestType type,
+          RequestOptions options) {
+        throw new UnsupportedOperationException();
+      }
+    };
+    ApiResource.setStripeResponseGetter(getter);
+  }
+
+  @After
+  public void tearDownCache() {
+    Stripe.setObjectCache(null);
+    ApiResource.setStripeResponseGetter(new LiveStripeResponseGetter());
+  }
+
+  @Test
+  public void testRetrieveIsCached() throws StripeException {
+    final Plan first = Plan.retrieve("plan_1");
+    final Plan second = Plan.retrieve("plan_1");
+
+    assertEquals(1, requests.size());
+    assertEquals("1", second.getNickname());
+    // every hit is a fresh instance
+    assertNotSame(first, second);
+
+    ObjectCacheStats stats = cache.getStats();
+    assertEquals(1, stats.getHits());
+    assertEquals(1, stats.getMisses());
+    assertEquals(1, stats.getSize());
+  }
+
+  @Test
+  public void testKeyIncludesAccountAndVersion() throws StripeException {
+    final RequestOptions connected = new RequestOptionsBuilder().setApiKey("sk_test_123")
+        .setStripeAccount("acct_123").build();
+    final RequestOptions otherVersion = new RequestOptionsBuilder().setApiKey("sk_test_123")
+        .setStripeVersion("2017-01-27").build();
+
+    Plan.retrieve("plan_1", connected);
+    Plan.retrieve("plan_1", otherVersion);
+    Plan.retrieve("plan_1", connected);
+
+    assertEquals(2, requests.size());
+  }
+
+  @Test
+  public void testClientWithOwnApiBase() throws StripeException {
+    final StripeClient client = StripeClient.builder()
+        .setApiKey("sk_test_123")
+        .setApiBase("http://localhost:12111")
+        .setObjectCache(cache)
+        .setResponseGetter(getter)
+        .build();
+
+    client.plans().retrieve("plan_1");
+    client.plans().retrieve("plan_1");
+    assertEquals(1, requests.size());
+
+    client.plans().update("plan_1", Collections.<String, Object>singletonMap("nickname", "new"));
+    client.plans().retrieve("plan_1");
+    assertEquals(3, requests.size());
+    assertEquals(1, cache.getStats().getHits());
+  }
+
+  @Test
+  public void testRetrieveWithParamsBypassesCache() throws StripeException {
+    Plan.retrieve("plan_1", Collections.<String, Object>singletonMap("expand[]", "product"),
+        null);
+    Plan.retrieve("plan_1");
+
+    assertEquals(2, requests.size());
+    assertEquals(0, cache.getStats().getHits());
+  }
+
+  @Test
+  public void testWritesInvalidate() throws StripeException {
+    final Plan plan = Plan.retrieve("plan_1");
+    plan.update(Collections.<String, Object>singletonMap("nickname", "new"));
+    assertEquals("3", Plan.retrieve("plan_1").getNickname());
+
+    plan.delete();
+    assertEquals("5", Plan.retrieve("plan_1").getNickname());
+
+    assertEquals(2, cache.getStats().getInvalidations());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntryIsEvicted() throws StripeException {
+    Plan.retrieve("plan_1");
+    Plan.retrieve("plan_2");
+    Plan.retrieve("plan_1");
+    Plan.retrieve("plan_3");
+
+    // plan_2 was the least recently used
+    Plan.retrieve("plan_1");
+    Plan.retrieve("plan_2");
+
+    assertEquals(4, requests.size());
+    assertEquals(2, cache.getStats().getEvictions());
+    assertEquals(2, cache.getStats().getSize());
+  }
+
+  @Test
+  public void testInvalidationRacingWithRetrieveIsNotOverwritten() {
+    final ObjectCache.Region region = cache.new Region(TimeUnit.MINUTES.toNanos(1), 10);
+    final ObjectCache.EntryKey key = new ObjectCache.EntryKey("plan_1", "sk_test_123", null,
+        null);
+
+    long generation = region.generation("plan_1");
+    region.invalidate("plan_1");
+    region.put(key, new StripeResponse(200, "{}"), generation, 0);
+    assertNull(region.get(key, 0));
+
+    generation = region.generation("plan_1");
+    region.invalidate("plan_2");
+    region.put(key, new StripeResponse(200, "{}"), generation, 0);
+    assertEquals("{}", region.get(key, 0).body());
+
+    // expired
+    assertNull(region.get(key, TimeUnit.MINUTES.toNanos(1)));
+  }
+
+  @Test
+  public void testObjectId() {
+    final String plans = "https://api.stripe.com/v1/plans";
+
+    assertEquals("plan_1", ObjectCache.objectId(plans + "/plan_1", plans));
+    assertEquals("gold plan", ObjectCache.objectId(plans + "/gold+plan", plans));
+    assertEquals("in_123", ObjectCache.objectId("https://api.stripe.com/v1/invoices/in_123/pay",
+        "https://api.stripe.com/v1/invoices"));
+    assertNull(ObjectCache.objectId(plans, plans));
+    assertNull(ObjectCache.objectId(plans + "/", plans));
+    assertNull(ObjectCache.objectId("https://api.stripe.com/v1/plansx/plan_1", plans));
+  }
+}
@@ -0,0 +1,163 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.stripe.model.Event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class OrderedEventDispatcherTest {
+  private final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+  private OrderedEventDispatcher dispatcher;
+
+  /**
+   * Stops the dispatcher started by the test, if any.
+   */
+  @After
+  public void tearDownDispatcher() {
+    if (dispatcher != null) {
+      dispatcher.close();
+    }
+  }
+
+  private static Event event(String id, long created, String objectId, String customer) {
+    return ApiResource.GSON.fromJson(String.format("{\"id\": \"%s\", \"object\": \"event\", "
+        + "\"created\": %d, \"type\": \"invoice.updated\", \"data\": {\"object\": "
+        + "{\"id\": \"%s\", \"object\": \"invoice\", \"customer\": \"%s\"}}}", id, created,
+        objectId, customer), Event.class);
+  }
+
+  private WebhookEventHandler recordingHandler() {
+    return new WebhookEventHandler() {
+      @Override
+      public void onEvent(Event event) {
+        handled.add(event.getId());
+      }
+    };
+  }
+
+  @Test
+  public void testReordersEventsWithinWindow() throws InterruptedException {
+    dispatcher = OrderedEventDispatcher.builder()
+        .setHandler(recordingHandler())
+        .setLanes(2)
+        .setWindowMillis(200)
+        .build();
+
+    dispatcher.dispatch(event("evt_3", 1003, "in_1", "cus_1"));
+    dispatcher.dispatch(event("evt_1", 1001, "in_1", "cus_1"));
+    dispatcher.dispatch(event("evt_2", 1002, "in_1", "cus_1"));
+    dispatcher.close();
+
+    assertEquals(Arrays.asList("evt_1", "evt_2", "evt_3"), handled);
+    final OrderedEventDispatcherStats stats = dispatcher.getStats();
+    assertEquals(3, stats.getDispatched());
+    assertEquals(3, stats.getHandled());
+    assertEquals(1, stats.getReordered());
+    assertEquals(0, stats.getBuffered());
+  }
+
+  @Test
+  public void testFullWindowReleasesOldestEvent() throws InterruptedException {
+    final CountDownLatch first = new CountDownLatch(1);
+    dispatcher = OrderedEventDispatcher.builder()
+        .setHandler(new WebhookEventHandler() {
+          @Override
+          public void onEvent(Event event) {
+            handled.add(event.getId());
+            first.countDown();
+          }
+        })
+        .setLanes(1)
+        .setWindowMillis(TimeUnit.MINUTES.toMillis(10))
+        .setWindowSize(2)
+        .build();
+
+    dispatcher.dispatch(event("evt_2", 1002, "in_1", "cus_1"));
+    dispatcher.dispatch(event("evt_1", 1001, "in_1", "cus_1"));
+    assertTrue(first.await(5, TimeUnit.SECONDS));
+    assertEquals("evt_1", handled.get(0));
+
+    // evt_2 was already held; an older event arriving now can no longer go before it
+    dispatcher.dispatch(event("evt_0", 1000, "in_1", "cus_1"));
+    assertEquals(1, dispatcher.getStats().getLate());
+  }
+
+  @Test
+  public void testKeepsOrderPerObjectAcrossLanes() throws InterruptedException {
+    final Map<String, Long> lastCreated = new HashMap<>();
+    final List<String> violations = Collections.synchronizedList(new ArrayList<String>());
+    dispatcher = OrderedEventDispatcher.builder()
+        .setHandler(new WebhookEventHandler() {
+          @Override
+          public void onEvent(Event event) {
+            String objectId = EventKeyExtractor.OBJECT_ID.key(event);
+            synchronized (lastCreated) {
+              Long previous = lastCreated.put(objectId, event.getCreated());
+              if (previous != null && previous > event.getCreated()) {
+                violations.add(event.getId());
+              }
+            }
+          }
+        })
+        .setLanes(4)
+        .setWindowMillis(1000)
+        .build();
+
+    for (int i = 0; i < 200; i++) {
+      // each object receives its events in pairs delivered newest first
+      long created = 1000 + (i ^ 1);
+      dispatcher.dispatch(event("evt_" + i, created, "in_" + (i / 2 % 10), "cus_1"));
+    }
+    dispatcher.close();
+
+    assertEquals(200, dispatcher.getStats().getHandled());
+    assertTrue(violations.isEmpty());
+  }
+
+  @Test
+  public void testCustomerKeyExtractor() {
+    assertEquals("cus_1", EventKeyExtractor.CUSTOMER_ID.key(event("evt_1", 1, "in_1", "cus_1")));
+    assertEquals("in_1", EventKeyExtractor.OBJECT_ID.key(event("evt_1", 1, "in_1", "cus_1")));
+
+    final Event customerEvent = ApiResource.GSON.fromJson("{\"id\": \"evt_1\", "
+        + "\"object\": \"event\", \"data\": {\"object\": {\"id\": \"cus_2\", "
+        + "\"object\": \"customer\"}}}", Event.class);
+    assertEquals("cus_2", EventKeyExtractor.CUSTOMER_ID.key(customerEvent));
+
+    final Event expanded = ApiResource.GSON.fromJson("{\"id\": \"evt_1\", "
+        + "\"object\": \"event\", \"data\": {\"object\": {\"id\": \"ch_3\", "
+        + "\"object\": \"charge\", \"customer\": {\"id\": \"cus_3\", "
+        + "\"object\": \"customer\"}}}}", Event.class);
+    assertEquals("cus_3", EventKeyExtractor.CUSTOMER_ID.key(expanded));
+
+    // events built without the API's JSON fall back to serializing their object
+    final Event built = event("evt_1", 1, "in_4", "cus_4");
+    built.getData().setRawObject(null);
+    assertEquals("cus_4", EventKeyExtractor.CUSTOMER_ID.key(built));
+  }
+
+  @Test
+  public void testDispatchAfterCloseFails() throws InterruptedException {
+    dispatcher = OrderedEventDispatcher.builder().setHandler(recordingHandler()).build();
+    dispatcher.close();
+    try {
+      dispatcher.dispatch(event("evt_1", 1, "in_1", "cus_1"));
+      fail("dispatch should have failed");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+}
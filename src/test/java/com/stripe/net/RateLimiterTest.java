@@ -0,0 +1,93 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.stripe.net.RequestOptions.RequestOptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RateLimiterTest {
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void testBucketQueuesOnceBurstIsSpent() {
+    final RateLimiter.TokenBucket bucket = new RateLimiter.TokenBucket(10, 1, 1, 0.5, 1, 0);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(0, bucket.reserve(0));
+    }
+    // the 11th and 12th requests wait for the next tokens, 100ms apart
+    assertEquals(SECOND / 10, bucket.reserve(0));
+    assertEquals(2 * SECOND / 10, bucket.reserve(0));
+
+    // once a second has passed the queue has drained and a token is free again
+    assertEquals(0, bucket.reserve(SECOND + SECOND / 5));
+  }
+
+  @Test
+  public void testRateShrinksMultiplicativelyAndRecoversAdditively() {
+    final RateLimiter.TokenBucket bucket = new RateLimiter.TokenBucket(8, 1, 1, 0.5, 1, 0);
+
+    bucket.onRateLimited(0);
+    assertEquals(4.0, bucket.currentRate(0), 0.001);
+
+    // further 429s from the same burst are ignored for a second
+    bucket.onRateLimited(SECOND / 2);
+    assertEquals(4.5, bucket.currentRate(SECOND / 2), 0.001);
+
+    bucket.onRateLimited(SECOND + SECOND / 2);
+    assertEquals(2.75, bucket.currentRate(SECOND + SECOND / 2), 0.001);
+
+    // recovers by one request per second, every second, up to the configured rate
+    assertEquals(5.75, bucket.currentRate(4 * SECOND + SECOND / 2), 0.001);
+    assertEquals(8.0, bucket.currentRate(60 * SECOND), 0.001);
+  }
+
+  @Test
+  public void testRateNeverDropsBelowMinimum() {
+    final RateLimiter.TokenBucket bucket = new RateLimiter.TokenBucket(4, 1, 3, 0.5, 0, 0);
+    bucket.onRateLimited(0);
+    assertEquals(3.0, bucket.currentRate(0), 0.001);
+  }
+
+  @Test
+  public void testBucketsAreKeyedByApiKeyAccountAndMethod() {
+    final RateLimiter limiter = RateLimiter.builder()
+        .setReadRate(40)
+        .setWriteRate(20)
+        .build();
+
+    final RequestOptions platform = new RequestOptionsBuilder().setApiKey("sk_test_a").build();
+    final RequestOptions connected = new RequestOptionsBuilder().setApiKey("sk_test_a")
+        .setStripeAccount("acct_123").build();
+
+    limiter.onRateLimited(ApiResource.RequestMethod.POST, connected);
+
+    assertEquals(40, limiter.getCurrentRate(ApiResource.RequestMethod.GET, platform), 0.1);
+    assertEquals(20, limiter.getCurrentRate(ApiResource.RequestMethod.POST, platform), 0.1);
+    assertEquals(40, limiter.getCurrentRate(ApiResource.RequestMethod.GET, connected), 0.1);
+    assertEquals(10, limiter.getCurrentRate(ApiResource.RequestMethod.DELETE, connected), 0.1);
+  }
+
+  @Test
+  public void testQueueWaitIsReported() throws InterruptedException {
+    final RateLimiter limiter = RateLimiter.builder()
+        .setReadRate(50)
+        .setBurstSeconds(0.02)
+        .build();
+    final RequestOptions options = new RequestOptionsBuilder().setApiKey("sk_test_a").build();
+
+    limiter.acquire(ApiResource.RequestMethod.GET, options);
+    final long waited = limiter.acquire(ApiResource.RequestMethod.GET, options);
+
+    final RateLimiterStats stats = limiter.getStats();
+    assertTrue(waited > 0);
+    assertEquals(2, stats.getAcquisitions());
+    assertEquals(1, stats.getDelayedAcquisitions());
+    assertEquals(waited, stats.getTotalWaitNanos());
+    assertEquals(waited, stats.getMaxWaitNanos());
+  }
+}
@@ -0,0 +1,125 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import com.stripe.net.RequestOptions.RequestOptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RequestCoalescerTest {
+  private static final RequestOptions OPTIONS =
+      new RequestOptionsBuilder().setApiKey("sk_test_123").build();
+
+  @Test
+  public void testConcurrentIdenticalRequestsShareOneCall() throws Exception {
+    final RequestCoalescer coalescer = new RequestCoalescer();
+    final AtomicInteger calls = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    final StripeResponse response = new StripeResponse(200, "{}");
+    final RequestCoalescer.Call call = new RequestCoalescer.Call() {
+      @Override
+      public StripeResponse execute() {
+        calls.incrementAndGet();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return response;
+      }
+    };
+
+    final ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<StripeResponse>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(pool.submit(new Callable<StripeResponse>() {
+          @Override
+          public StripeResponse call() throws StripeException {
+            return coalescer.execute("key", call);
+          }
+        }));
+      }
+      while (coalescer.getStats().getCoalescedRequests() < 7) {
+        Thread.sleep(1);
+      }
+      release.countDown();
+      for (Future<StripeResponse> result : results) {
+        assertSame(response, result.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    assertEquals(1, calls.get());
+    RequestCoalescerStats stats = coalescer.getStats();
+    assertEquals(8, stats.getRequests());
+    assertEquals(7, stats.getCoalescedRequests());
+    assertEquals(1, stats.getExecutedRequests());
+    assertEquals(0.875, stats.getCoalescingRatio(), 0.0001);
+
+    // once the call has completed, the next request goes to the network again
+    coalescer.execute("key", call);
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void testErrorsAreRethrown() throws StripeException {
+    final RequestCoalescer coalescer = new RequestCoalescer();
+    try {
+      coalescer.execute("key", new RequestCoalescer.Call() {
+        @Override
+        public StripeResponse execute() throws StripeException {
+          throw new ApiConnectionException("boom");
+        }
+      });
+      fail("Expected ApiConnectionException");
+    } catch (ApiConnectionException e) {
+      assertEquals("boom", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testKey() {
+    final RequestOptions connected = new RequestOptionsBuilder().setApiKey("sk_test_123")
+        .setStripeAccount("acct_123").build();
+
+    String key = RequestCoalescer.key(ApiResource.RequestMethod.GET, "/v1/customers/cus_1",
+        "expand[]=default_source", ApiResource.RequestType.NORMAL, OPTIONS);
+    assertEquals(key, RequestCoalescer.key(ApiResource.RequestMethod.GET,
+        "/v1/customers/cus_1", "expand[]=default_source", ApiResource.RequestType.NORMAL,
+        new RequestOptionsBuilder().setApiKey("sk_test_123").build()));
+    assertNotEquals(key, RequestCoalescer.key(ApiResource.RequestMethod.GET,
+        "/v1/customers/cus_1", "", ApiResource.RequestType.NORMAL, OPTIONS));
+    assertNotEquals(key, RequestCoalescer.key(ApiResource.RequestMethod.GET,
+        "/v1/customers/cus_1", "expand[]=default_source", ApiResource.RequestType.NORMAL,
+        connected));
+    assertNotEquals(key, RequestCoalescer.key(ApiResource.RequestMethod.GET,
+        "/v1/customers/cus_1", "expand[]=default_source", ApiResource.RequestType.NORMAL,
+        new RequestOptionsBuilder().setApiKey("sk_test_123").setReadTimeout(1000).build()));
+    assertNotEquals(key, RequestCoalescer.key(ApiResource.RequestMethod.GET,
+        "/v1/customers/cus_1", "expand[]=default_source", ApiResource.RequestType.NORMAL,
+        new RequestOptionsBuilder().setApiKey("sk_test_123").setConnectTimeout(1000).build()));
+
+    assertNull(RequestCoalescer.key(ApiResource.RequestMethod.POST, "/v1/customers/cus_1",
+        "", ApiResource.RequestType.NORMAL, OPTIONS));
+    assertNull(RequestCoalescer.key(ApiResource.RequestMethod.DELETE, "/v1/customers/cus_1",
+        "", ApiResource.RequestType.NORMAL, OPTIONS));
+  }
+}
@@ -0,0 +1,190 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.exception.StripeException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestListenerTest {
+  private static final String CUSTOMER = "{\"id\": \"cus_123\", \"object\": \"customer\"}";
+
+  private final List<RequestEvent> events = Collections.synchronizedList(
+      new ArrayList<RequestEvent>());
+  private HttpServer server;
+  private StripeClient client;
+
+  /**
+   * Serves a customer, and a 404 for anything else.
+   */
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        boolean found = exchange.getRequestURI().getPath().startsWith("/v1/customers");
+        byte[] body = (found ? CUSTOMER
+            : "{\"error\": {\"type\": \"invalid_request_error\", \"message\": \"No such\"}}")
+            .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Request-Id", "req_123");
+        exchange.sendResponseHeaders(found ? 200 : 404, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+          output.write(body);
+        }
+      }
+    });
+    server.start();
+
+    client = StripeClient.builder()
+        .setApiKey("sk_test_123")
+        .setApiBase("http://localhost:" + server.getAddress().getPort())
+        .setRequestListener(new RequestListener() {
+          @Override
+          public void onRequestEvent(RequestEvent event) {
+            events.add(event);
+          }
+        })
+        .build();
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  private List<RequestEvent.Phase> phases() {
+    List<RequestEvent.Phase> phases = new ArrayList<>();
+    for (RequestEvent event : events) {
+      phases.add(event.getPhase());
+    }
+    return phases;
+  }
+
+  @Test
+  public void testReportsEveryPhase() throws StripeException {
+    client.customers().retrieve("cus_123");
+
+    assertEquals(Arrays.asList(RequestEvent.Phase.START, RequestEvent.Phase.ENCODED,
+        RequestEvent.Phase.CONNECTED, RequestEvent.Phase.FIRST_BYTE,
+        RequestEvent.Phase.BODY_READ, RequestEvent.Phase.DESERIALIZED), phases());
+
+    RequestEvent start = events.get(0);
+    assertEquals(ApiResource.RequestMethod.GET, start.getMethod());
+    assertEquals("/v1/customers/{id}", start.getUrlTemplate());
+    assertEquals(0, start.getStatus());
+    assertNull(start.getRequestId());
+
+    RequestEvent last = events.get(events.size() - 1);
+    assertEquals(200, last.getStatus());
+    assertEquals("req_123", last.getRequestId());
+    assertEquals(1, last.getAttempt());
+    assertEquals(0, last.getRequestBytes());
+    assertEquals(CUSTOMER.length(), last.getResponseBytes());
+    assertNull(last.getError());
+    for (int i = 1; i < events.size(); i++) {
+      assertTrue(events.get(i).getElapsedNanos() >= events.get(i - 1).getElapsedNanos());
+    }
+  }
+
+  @Test
+  public void testReportsRequestSize() throws StripeException {
+    Map<String, Object> params = new HashMap<>();
+    params.put("description", "hi");
+    client.customers().update("cus_123", params);
+
+    assertEquals("description=hi".length(), events.get(events.size() - 1).getRequestBytes());
+  }
+
+  @Test
+  public void testReportsErrors() throws StripeException {
+    try {
+      client.charges().retrieve("ch_123");
+      fail("the request should have failed");
+    } catch (InvalidRequestException e) {
+      RequestEvent last = events.get(events.size() - 1);
+      assertEquals(RequestEvent.Phase.ERROR, last.getPhase());
+      assertEquals(e, last.getError());
+      assertEquals(404, last.getStatus());
+      assertEquals("/v1/charges/{id}", last.getUrlTemplate());
+    }
+  }
+
+  @Test
+  public void testIgnoresFailingListener() throws StripeException {
+    StripeClient failing = StripeClient.builder()
+        .setApiKey("sk_test_123")
+        .setApiBase("http://localhost:" + server.getAddress().getPort())
+        .setRequestListener(new RequestListener() {
+          @Override
+          public void onRequestEvent(RequestEvent event) {
+            throw new IllegalStateException("broken listener");
+          }
+        })
+        .build();
+    assertEquals("cus_123", failing.customers().retrieve("cus_123").getId());
+  }
+
+  @Test
+  public void testAddedListenersAllObserveRequests() throws StripeException {
+    final List<RequestEvent> added = new ArrayList<>();
+    StripeClient observed = StripeClient.builder()
+        .setApiKey("sk_test_123")
+        .setApiBase("http://localhost:" + server.getAddress().getPort())
+        .addRequestListener(new RequestListener() {
+          @Override
+          public void onRequestEvent(RequestEvent event) {
+            throw new IllegalStateException("broken listener");
+          }
+        })
+        .addRequestListener(new RequestListener() {
+          @Override
+          public void onRequestEvent(RequestEvent event) {
+            added.add(event);
+          }
+        })
+        .addRequestListener(client.getRequestListener())
+        .build();
+    observed.customers().retrieve("cus_123");
+
+    // the failing listener does not keep the events from the ones added after it
+    assertEquals(6, added.size());
+    assertEquals(added, events);
+    assertEquals(3,
+        ((CompositeRequestListener) observed.getRequestListener()).getListeners().size());
+  }
+
+  @Test
+  public void testUrlTemplate() {
+    assertEquals("/v1/charges", RequestTrace.urlTemplate("https://api.stripe.com/v1/charges"));
+    assertEquals("/v1/customers/{id}/sources/{id}/verify", RequestTrace.urlTemplate(
+        "https://api.stripe.com/v1/customers/cus_123/sources/ba_123/verify?expand[]=a"));
+    assertEquals("/v1/issuing/cards/{id}",
+        RequestTrace.urlTemplate("https://api.stripe.com/v1/issuing/cards/ic_123"));
+    assertEquals("/v1/balance/history/{id}",
+        RequestTrace.urlTemplate("https://api.stripe.com/v1/balance/history/txn_123"));
+    assertEquals("/v1/invoices/upcoming/lines",
+        RequestTrace.urlTemplate("https://api.stripe.com/v1/invoices/upcoming/lines"));
+    assertEquals("/v1/coupons/{id}", RequestTrace.urlTemplate("/v1/coupons/25OFF"));
+  }
+}
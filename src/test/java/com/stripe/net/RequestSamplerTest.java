@@ -0,0 +1,243 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.exception.StripeException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestSamplerTest {
+  private final List<RequestSample> samples = Collections.synchronizedList(
+      new ArrayList<RequestSample>());
+  private HttpServer server;
+
+  /**
+   * Serves customers immediately, upcoming invoices slowly, and a 404 for anything else.
+   */
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        int status = 200;
+        String body = "{\"id\": \"cus_123\", \"object\": \"customer\"}";
+        if (path.startsWith("/v1/invoices/upcoming")) {
+          try {
+            Thread.sleep(300);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          body = "{\"object\": \"invoice\"}";
+        } else if (!path.startsWith("/v1/customers")) {
+          status = 404;
+          body = "{\"error\": {\"type\": \"invalid_request_error\", \"message\": \"No such\"}}";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Request-Id", "req_123");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+          output.write(bytes);
+        }
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  private RequestSampleHandler collector() {
+    return new RequestSampleHandler() {
+      @Override
+      public void onSample(RequestSample sample) {
+        samples.add(sample);
+      }
+    };
+  }
+
+  @Test
+  public void testCapturesSlowAndFailedRequests() throws StripeException {
+    // the first request of the JVM loads classes, and would be slow
+    StripeClient.builder()
+        .setApiKey("sk_test_123")
+        .setApiBase("http://localhost:" + server.getAddress().getPort())
+        .build()
+        .customers().retrieve("cus_123");
+
+    RequestSampler sampler = RequestSampler.builder()
+        .setThreshold(200, TimeUnit.MILLISECONDS)
+        .setHandler(collector())
+        .build();
+    StripeClient client = StripeClient.builder()
+        .setApiKey("sk_test_123")
+        .setApiBase("http://localhost:" + server.getAddress().getPort())
+        .setRequestListener(sampler)
+        .build();
+
+    client.customers().retrieve("cus_123");
+    Map<String, Object> params = new HashMap<>();
+    params.put("customer", "cus_123");
+    params.put("expand", Arrays.asList("customer", "subscription"));
+    params.put("subscription_items", Arrays.asList(
+        Collections.singletonMap("plan", "gold"), Collections.singletonMap("plan", "silver")));
+    client.request(ApiResource.RequestMethod.GET,
+        client.getApiBase() + "/v1/invoices/upcoming", params,
+        com.stripe.model.Invoice.class, null);
+    try {
+      client.charges().retrieve("ch_123");
+      fail("Expected an InvalidRequestException");
+    } catch (InvalidRequestException e) {
+      // expected
+    }
+    sampler.close();
+
+    assertEquals(2, samples.size());
+    RequestSample slow = samples.get(0);
+    assertTrue(slow.isSlow());
+    assertFalse(slow.isError());
+    assertEquals("/v1/invoices/upcoming", slow.getPath());
+    assertEquals(Arrays.asList("customer", "expand[]", "subscription_items[][plan]"),
+        slow.getParamKeys());
+    assertEquals(200, slow.getStatus());
+    assertEquals("req_123", slow.getRequestId());
+    assertTrue(slow.getDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(300));
+    assertTrue(slow.getResponseBytes() > 0);
+    assertFalse(slow.toString().contains("cus_123"));
+
+    RequestSample error = samples.get(1);
+    assertTrue(error.isError());
+    assertFalse(error.isSlow());
+    assertEquals("/v1/charges/{id}", error.getPath());
+    assertEquals(404, error.getStatus());
+    assertEquals("InvalidRequestException", error.getErrorType());
+
+    RequestSamplerStats stats = sampler.getStats();
+    assertEquals(2, stats.getCaptured());
+    assertEquals(2, stats.getHandled());
+    assertEquals(0, stats.getDropped());
+    assertEquals(0, stats.getPending());
+  }
+
+  @Test
+  public void testDropsWhenHandlerFallsBehind() throws InterruptedException {
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch blocked = new CountDownLatch(1);
+    RequestSampler sampler = RequestSampler.builder()
+        .setThreshold(0, TimeUnit.NANOSECONDS)
+        .setCapacity(3)
+        .setHandler(new RequestSampleHandler() {
+          @Override
+          public void onSample(RequestSample sample) throws InterruptedException {
+            blocked.countDown();
+            release.await();
+            throw new IllegalStateException("handler failure");
+          }
+        })
+        .build();
+
+    RequestEvent end = new RequestEvent(RequestEvent.Phase.DESERIALIZED,
+        ApiResource.RequestMethod.GET, "https://api.stripe.com/v1/charges", "/v1/charges", null,
+        200, "req_123", 1, 0, 10, 0, 1, null);
+    sampler.onRequestEvent(end);
+    assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    // the handler holds the first sample, and the buffer has room for 4 more
+    for (int i = 0; i < 10; i++) {
+      sampler.onRequestEvent(end);
+    }
+    RequestSamplerStats stats = sampler.getStats();
+    assertEquals(5, stats.getCaptured());
+    assertEquals(6, stats.getDropped());
+    assertEquals(4, stats.getPending());
+
+    release.countDown();
+    sampler.close();
+    stats = sampler.getStats();
+    assertEquals(5, stats.getHandled());
+    assertEquals(5, stats.getFailed());
+    assertEquals(0, stats.getPending());
+  }
+
+  @Test
+  public void testHandlesEverySampleCapturedWhileClosing() throws InterruptedException {
+    for (int round = 0; round < 20; round++) {
+      final RequestSampler sampler = RequestSampler.builder()
+          .setThreshold(0, TimeUnit.NANOSECONDS)
+          .setHandler(collector())
+          .build();
+      final RequestEvent end = new RequestEvent(RequestEvent.Phase.DESERIALIZED,
+          ApiResource.RequestMethod.GET, "https://api.stripe.com/v1/charges", "/v1/charges",
+          null, 200, "req_123", 1, 0, 10, 0, 1, null);
+      final CountDownLatch started = new CountDownLatch(4);
+      List<Thread> producers = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        Thread producer = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            started.countDown();
+            for (int j = 0; j < 200; j++) {
+              sampler.onRequestEvent(end);
+            }
+          }
+        });
+        producer.start();
+        producers.add(producer);
+      }
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      sampler.close();
+      for (Thread producer : producers) {
+        producer.join();
+      }
+
+      // samples are either handled before close() returns, or dropped
+      RequestSamplerStats stats = sampler.getStats();
+      assertEquals(stats.getCaptured(), stats.getHandled());
+      assertEquals(800, stats.getCaptured() + stats.getDropped());
+      assertEquals(0, stats.getPending());
+    }
+  }
+
+  @Test
+  public void testIgnoresFastAndIntermediatePhases() {
+    RequestSampler sampler = RequestSampler.builder()
+        .setThreshold(1, TimeUnit.SECONDS)
+        .setCaptureErrors(false)
+        .setHandler(collector())
+        .build();
+    sampler.onRequestEvent(new RequestEvent(RequestEvent.Phase.FIRST_BYTE,
+        ApiResource.RequestMethod.GET, null, "/v1/charges", null, 200, null, 1, 0, -1, 0,
+        TimeUnit.SECONDS.toNanos(2), null));
+    sampler.onRequestEvent(new RequestEvent(RequestEvent.Phase.ERROR,
+        ApiResource.RequestMethod.GET, null, "/v1/charges", null, 500, null, 1, 0, -1, 0, 1,
+        new IllegalStateException()));
+    sampler.close();
+
+    assertTrue(samples.isEmpty());
+    assertEquals(0, sampler.getStats().getCaptured());
+  }
+}
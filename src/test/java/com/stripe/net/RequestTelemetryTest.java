@@ -0,0 +1,108 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.stripe.exception.StripeException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestTelemetryTest {
+  private static final String CUSTOMER = "{\"id\": \"cus_123\", \"object\": \"customer\"}";
+
+  private final List<String> headers = Collections.synchronizedList(new ArrayList<String>());
+  private final AtomicInteger requests = new AtomicInteger();
+  private HttpServer server;
+
+  /**
+   * Serves a customer with a new request ID every time, recording the telemetry header.
+   */
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        headers.add(exchange.getRequestHeaders().getFirst(RequestTelemetry.HEADER));
+        byte[] body = CUSTOMER.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Request-Id", "req_" + requests.incrementAndGet());
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+          output.write(body);
+        }
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  private StripeClient client(boolean telemetryEnabled) {
+    return StripeClient.builder()
+        .setApiKey("sk_test_123")
+        .setApiBase("http://localhost:" + server.getAddress().getPort())
+        .setTelemetryEnabled(telemetryEnabled)
+        .build();
+  }
+
+  @Test
+  public void testReportsPreviousRequest() throws StripeException {
+    StripeClient client = client(true);
+    client.customers().retrieve("cus_123");
+    client.customers().retrieve("cus_123");
+    client.customers().retrieve("cus_123");
+
+    assertNull(headers.get(0));
+    for (int i = 1; i < 3; i++) {
+      JsonObject metrics = new JsonParser().parse(headers.get(i)).getAsJsonObject()
+          .getAsJsonObject("last_request_metrics");
+      assertEquals("req_" + i, metrics.get("request_id").getAsString());
+      assertTrue(metrics.get("request_duration_ms").getAsLong() >= 0);
+    }
+  }
+
+  @Test
+  public void testDisabled() throws StripeException {
+    StripeClient client = client(false);
+    client.customers().retrieve("cus_123");
+    client.customers().retrieve("cus_123");
+
+    assertNull(headers.get(0));
+    assertNull(headers.get(1));
+  }
+
+  @Test
+  public void testDropsMeasurementsBeyondCapacity() {
+    RequestTelemetry telemetry = new RequestTelemetry(2);
+    telemetry.record("req_1", 10);
+    telemetry.record("req_2", 20);
+    telemetry.record("req_3", 30);
+    telemetry.record(null, 40);
+
+    assertEquals(2, telemetry.size());
+    assertTrue(telemetry.nextHeader().contains("req_1"));
+    assertTrue(telemetry.nextHeader().contains("req_2"));
+    assertNull(telemetry.nextHeader());
+    assertEquals(0, telemetry.size());
+  }
+}
@@ -0,0 +1,141 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.Customer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestTimingsTest {
+  private static final String CUSTOMER = "{\"id\": \"cus_123\", \"object\": \"customer\"}";
+  private static final long SERVER_MILLIS = 50;
+
+  private HttpServer server;
+  private StripeClient client;
+
+  /**
+   * Serves a customer after a delay.
+   */
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          Thread.sleep(SERVER_MILLIS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        byte[] body = CUSTOMER.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+          output.write(body);
+        }
+      }
+    });
+    server.start();
+
+    client = StripeClient.builder()
+        .setApiKey("sk_test_123")
+        .setApiBase("http://localhost:" + server.getAddress().getPort())
+        .build();
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  private static void assertConsistent(RequestTimings timings) {
+    long[] phases = {timings.getQueueNanos(), timings.getDnsNanos(), timings.getConnectNanos(),
+        timings.getTlsHandshakeNanos(), timings.getRequestWriteNanos(),
+        timings.getTimeToFirstByteNanos(), timings.getBodyReadNanos(),
+        timings.getDeserializationNanos()};
+    long sum = 0;
+    for (long phase : phases) {
+      assertTrue(timings.toString(), phase >= 0);
+      sum += phase;
+    }
+    assertTrue(timings.toString(), sum <= timings.getTotalNanos());
+  }
+
+  @Test
+  public void testAttachedToResponse() throws StripeException {
+    Customer customer = client.customers().retrieve("cus_123");
+
+    RequestTimings timings = customer.getLastResponse().timings();
+    assertNotNull(timings);
+    assertConsistent(timings);
+    assertEquals(0, timings.getTlsHandshakeNanos());
+    assertEquals(0, timings.getDnsNanos());
+    assertTrue(timings.getTimeToFirstByteNanos() >= TimeUnit.MILLISECONDS.toNanos(SERVER_MILLIS));
+    assertTrue(timings.getDeserializationNanos() > 0);
+  }
+
+  @Test
+  public void testPostRequest() throws StripeException {
+    Customer customer = client.customers().create(
+        Collections.<String, Object>singletonMap("description", "test"));
+
+    RequestTimings timings = customer.getLastResponse().timings();
+    assertConsistent(timings);
+    assertTrue(timings.getTimeToFirstByteNanos() >= TimeUnit.MILLISECONDS.toNanos(SERVER_MILLIS));
+  }
+
+  @Test
+  public void testPhasesFollowTrace() throws InterruptedException {
+    RequestTrace trace = RequestTrace.start(null, ApiResource.RequestMethod.GET,
+        "https://api.stripe.com/v1/customers/cus_123", null);
+    Thread.sleep(5);
+    trace.dequeued();
+    trace.connecting();
+    Thread.sleep(5);
+    RequestTrace.handshaking();
+    Thread.sleep(5);
+    trace.connected();
+    trace.firstByte(200, "req_123");
+    trace.bodyRead(CUSTOMER);
+    trace.deserializing();
+
+    RequestTimings timings = trace.timings();
+    long fiveMillis = TimeUnit.MILLISECONDS.toNanos(5);
+    assertTrue(timings.getQueueNanos() >= fiveMillis);
+    assertTrue(timings.getConnectNanos() >= fiveMillis);
+    assertTrue(timings.getTlsHandshakeNanos() >= fiveMillis);
+    assertTrue(timings.getConnectNanos() < timings.getTotalNanos() - 2 * fiveMillis);
+    assertConsistent(timings);
+
+    // the thread no longer refers to the trace once connected
+    RequestTrace.handshaking();
+    assertEquals(timings.getTlsHandshakeNanos(), trace.timings().getTlsHandshakeNanos());
+  }
+
+  @Test
+  public void testCoalescedRequestIsQueued() throws InterruptedException {
+    RequestTrace trace = RequestTrace.start(null, ApiResource.RequestMethod.GET,
+        "https://api.stripe.com/v1/customers/cus_123", null);
+    Thread.sleep(5);
+    trace.deserializing();
+
+    RequestTimings timings = trace.timings();
+    assertTrue(timings.getQueueNanos() >= TimeUnit.MILLISECONDS.toNanos(5));
+    assertEquals(0, timings.getTimeToFirstByteNanos());
+    assertConsistent(timings);
+  }
+}
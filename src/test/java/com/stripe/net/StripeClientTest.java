@@ -0,0 +1,163 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.stripe.Stripe;
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Charge;
+import com.stripe.model.ChargeCollection;
+import com.stripe.model.Coupon;
+import com.stripe.model.CouponCollection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class StripeClientTest {
+  /**
+   * A transport that records the requests it gets and answers them with {@link #body}.
+   */
+  private static class RecordingGetter implements StripeResponseGetter {
+    private final List<String> urls = new ArrayList<>();
+    private final List<RequestOptions> options = new ArrayList<>();
+    private String body = "{\"id\": \"ch_123\", \"object\": \"charge\"}";
+    private StripeException error;
+
+    @Override
+    public <T> T request(ApiResource.RequestMethod method, String url, Map<String, Object> params,
+        Class<T> clazz, ApiResource.RequestType type, RequestOptions options)
+        throws StripeException {
+      this.urls.add(method + " " + url);
+      this.options.add(options);
+      if (error != null) {
+        throw error;
+      }
+      return ApiResource.GSON.fromJson(body, clazz);
+    }
+
+    @Override
+    public <T> T oauthRequest(ApiResource.RequestMethod method, String url,
+        Map<String, Object> params, Class<T> clazz, ApiResource.RequestType type,
+        RequestOptions options) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private final RecordingGetter getter = new RecordingGetter();
+
+  private final StripeClient client = StripeClient.builder()
+      .setApiKey("sk_test_tenant")
+      .setApiBase("https://tenant.example")
+      .setReadTimeout(5000)
+      .setResponseGetter(getter)
+      .build();
+
+  @After
+  public void restoreDefaultClient() {
+    ApiResource.setStripeResponseGetter(new LiveStripeResponseGetter());
+  }
+
+  @Test
+  public void testServicesUseClientSettings() throws StripeException {
+    Map<String, Object> params = new HashMap<>();
+    params.put("amount", 100);
+    assertEquals("ch_123", client.charges().create(params).getId());
+    client.charges().retrieve("ch_123");
+    client.service(Coupon.class, CouponCollection.class).delete("25OFF");
+
+    assertEquals("POST https://tenant.example/v1/charges", getter.urls.get(0));
+    assertEquals("GET https://tenant.example/v1/charges/ch_123", getter.urls.get(1));
+    assertEquals("DELETE https://tenant.example/v1/coupons/25OFF", getter.urls.get(2));
+    assertEquals("sk_test_tenant", getter.options.get(0).getApiKey());
+    assertEquals(5000, getter.options.get(0).getReadTimeout());
+    assertEquals(Stripe.getConnectTimeout(), getter.options.get(0).getConnectTimeout());
+  }
+
+  @Test
+  public void testGivenOptionsKeepTheirSettings() throws StripeException {
+    RequestOptions options = RequestOptions.builder()
+        .setApiKey("sk_test_other")
+        .setIdempotencyKey("key")
+        .setReadTimeout(1000)
+        .build();
+    client.charges().create(new HashMap<String, Object>(), options);
+    RequestOptions sent = getter.options.get(0);
+    assertEquals("sk_test_other", sent.getApiKey());
+    assertEquals("key", sent.getIdempotencyKey());
+    assertEquals(1000, sent.getReadTimeout());
+  }
+
+  @Test
+  public void testGivenOptionsFallBackToClientSettings() throws StripeException {
+    client.charges().create(new HashMap<String, Object>(),
+        RequestOptions.builder().setStripeAccount("acct_123").build());
+    RequestOptions sent = getter.options.get(0);
+    // the builder starts from the global API key, which must not replace the client's
+    assertEquals("sk_test_tenant", sent.getApiKey());
+    assertEquals("acct_123", sent.getStripeAccount());
+    assertEquals(5000, sent.getReadTimeout());
+  }
+
+  @Test
+  public void testListKeepsOptionsForPagination() throws StripeException {
+    getter.body = "{\"object\": \"list\", \"data\": [], \"has_more\": false}";
+    ChargeCollection charges = client.charges().list(new HashMap<String, Object>());
+    assertEquals("GET https://tenant.example/v1/charges", getter.urls.get(0));
+    assertEquals("sk_test_tenant", charges.getRequestOptions().getApiKey());
+  }
+
+  @Test
+  public void testUnsetSettingsFallBackToGlobalOnes() {
+    final StripeClient bare = StripeClient.builder().build();
+    assertEquals(Stripe.getApiBase(), bare.getApiBase());
+    assertEquals(Stripe.getReadTimeout(), bare.getReadTimeout());
+    assertNull(bare.getRateLimiter());
+
+    final RateLimiter limiter = RateLimiter.builder().build();
+    Stripe.setRateLimiter(limiter);
+    try {
+      assertSame(limiter, bare.getRateLimiter());
+      assertNull(StripeClient.builder().setRateLimiter(null).build().getRequestCoalescer());
+    } finally {
+      Stripe.setRateLimiter(null);
+    }
+  }
+
+  @Test
+  public void testCountsRequestsAndErrors() throws StripeException {
+    client.charges().retrieve("ch_123");
+    getter.error = new RateLimitException("Too many requests", null, "req_123", null, 429, null);
+    try {
+      client.charges().retrieve("ch_123");
+      fail("the error should have been thrown");
+    } catch (RateLimitException e) {
+      // expected
+    }
+
+    StripeClientStats stats = client.getStats();
+    assertEquals(2, stats.getRequests());
+    assertEquals(1, stats.getErrors());
+    assertEquals(1, stats.getRateLimited());
+    assertEquals(0, StripeClient.builder().build().getStats().getRequests());
+  }
+
+  @Test
+  public void testStaticMethodsGoThroughDefaultClient() throws StripeException {
+    ApiResource.setStripeResponseGetter(getter);
+    final long before = StripeClient.getDefault().getStats().getRequests();
+
+    assertEquals("ch_123", Charge.retrieve("ch_123").getId());
+    assertEquals("GET " + Stripe.getApiBase() + "/v1/charges/ch_123", getter.urls.get(0));
+    // the default client leaves the options to the transport, which reads the global ones
+    assertNull(getter.options.get(0));
+    assertEquals(before + 1, StripeClient.getDefault().getStats().getRequests());
+  }
+}
@@ -0,0 +1,238 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.stripe.model.Event;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class WebhookReceiverTest {
+  private static final String SECRET = "whsec_test_secret";
+
+  private WebhookReceiver receiver;
+
+  /**
+   * Stops the receiver started by the test, if any.
+   */
+  @After
+  public void tearDownReceiver() throws IOException {
+    if (receiver != null) {
+      receiver.close();
+    }
+  }
+
+  private static String payload(String id, String type) {
+    return String.format("{\"id\": \"%s\", \"object\": \"event\", \"type\": \"%s\", "
+        + "\"data\": {\"object\": {\"id\": \"in_1\", \"object\": \"invoice\"}}}", id, type);
+  }
+
+  private static String sign(String payload, String secret)
+      throws NoSuchAlgorithmException, InvalidKeyException {
+    long timestamp = Webhook.Util.getTimeNow();
+    return String.format("t=%d,v1=%s", timestamp,
+        Webhook.Util.computeHmacSha256(secret, timestamp + "." + payload));
+  }
+
+  private int post(String path, String payload, String signature) throws IOException {
+    URL url = new URL(String.format("http://localhost:%d%s", receiver.getPort(), path));
+    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    conn.setRequestMethod("POST");
+    conn.setDoOutput(true);
+    if (signature != null) {
+      conn.setRequestProperty("Stripe-Signature", signature);
+    }
+    try (OutputStream out = conn.getOutputStream()) {
+      out.write(payload.getBytes(StandardCharsets.UTF_8));
+    }
+    int status = conn.getResponseCode();
+    conn.disconnect();
+    return status;
+  }
+
+  @Test
+  public void testDispatchesVerifiedEventsByType() throws Exception {
+    final BlockingQueue<Event> failed = new LinkedBlockingQueue<>();
+    final BlockingQueue<Event> other = new LinkedBlockingQueue<>();
+    receiver = WebhookReceiver.builder()
+        .setSecret(SECRET)
+        .addHandler("invoice.payment_failed", new WebhookEventHandler() {
+          @Override
+          public void onEvent(Event event) {
+            failed.add(event);
+          }
+        })
+        .setDefaultHandler(new WebhookEventHandler() {
+          @Override
+          public void onEvent(Event event) {
+            other.add(event);
+          }
+        })
+        .build();
+    receiver.start();
+
+    String payload = payload("evt_1", "invoice.payment_failed");
+    assertEquals(200, post("/webhooks", payload, sign(payload, SECRET)));
+    payload = payload("evt_2", "invoice.created");
+    assertEquals(200, post("/webhooks", payload, sign(payload, SECRET)));
+
+    assertEquals("evt_1", failed.poll(5, TimeUnit.SECONDS).getId());
+    assertEquals("evt_2", other.poll(5, TimeUnit.SECONDS).getId());
+    assertEquals(2, receiver.getStats().getAccepted());
+  }
+
+  @Test
+  public void testKeepsReceivingAfterAFailedRequest() throws Exception {
+    final File directory = Files.createTempDirectory("journal").toFile();
+    try {
+      final EventJournal journal = EventJournal.builder().setDirectory(directory).open();
+      receiver = WebhookReceiver.builder().setSecret(SECRET).setJournal(journal).build();
+      receiver.start();
+      // appending to a closed journal throws an IllegalStateException on the selector thread
+      journal.close();
+
+      final String payload = payload("evt_1", "invoice.created");
+      assertEquals(500, post("/webhooks", payload, sign(payload, SECRET)));
+      assertEquals(500, post("/webhooks", payload, sign(payload, SECRET)));
+      assertEquals(404, post("/other", payload, sign(payload, SECRET)));
+    } finally {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  @Test
+  public void testJournalsVerifiedEvents() throws Exception {
+    final File directory = Files.createTempDirectory("journal").toFile();
+    try (EventJournal journal = EventJournal.builder().setDirectory(directory).open()) {
+      receiver = WebhookReceiver.builder().setSecret(SECRET).setJournal(journal).build();
+      receiver.start();
+
+      final String payload = payload("evt_1", "invoice.created");
+      assertEquals(200, post("/webhooks", payload, sign(payload, SECRET)));
+      assertEquals(400, post("/webhooks", payload, sign(payload, "whsec_other")));
+
+      assertEquals(payload, journal.get("evt_1").getPayload());
+      assertEquals(1, journal.getStats().getEvents());
+    } finally {
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  @Test
+  public void testRejectsInvalidRequests() throws Exception {
+    receiver = WebhookReceiver.builder().setSecret(SECRET).setMaxBodySize(1024).build();
+    receiver.start();
+
+    final String payload = payload("evt_1", "invoice.created");
+    assertEquals(400, post("/webhooks", payload, sign(payload, "whsec_other")));
+    assertEquals(400, post("/webhooks", payload, null));
+    assertEquals(404, post("/other", payload, sign(payload, SECRET)));
+
+    final StringBuilder large = new StringBuilder();
+    while (large.length() <= 1024) {
+      large.append(payload);
+    }
+    assertEquals(413, post("/webhooks", large.toString(), sign(large.toString(), SECRET)));
+
+    final WebhookReceiverStats stats = receiver.getStats();
+    assertEquals(0, stats.getAccepted());
+    assertEquals(4, stats.getInvalid());
+  }
+
+  @Test
+  public void testRejectsEventsWhenQueueIsFull() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    receiver = WebhookReceiver.builder()
+        .setSecret(SECRET)
+        .setQueueCapacity(1)
+        .setDefaultHandler(new WebhookEventHandler() {
+          @Override
+          public void onEvent(Event event) throws InterruptedException {
+            started.countDown();
+            release.await();
+          }
+        })
+        .build();
+    receiver.start();
+
+    String payload = payload("evt_1", "invoice.created");
+    assertEquals(200, post("/webhooks", payload, sign(payload, SECRET)));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    payload = payload("evt_2", "invoice.created");
+    assertEquals(503, post("/webhooks", payload, sign(payload, SECRET)));
+    assertEquals(1, receiver.getStats().getRejected());
+    assertEquals(1, receiver.getStats().getPending());
+
+    release.countDown();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (receiver.getStats().getPending() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(200, post("/webhooks", payload, sign(payload, SECRET)));
+  }
+
+  @Test
+  public void testRecordsPerTypeStats() throws Exception {
+    final CountDownLatch handled = new CountDownLatch(2);
+    receiver = WebhookReceiver.builder()
+        .setSecret(SECRET)
+        .addHandler("charge.failed", new WebhookEventHandler() {
+          @Override
+          public void onEvent(Event event) {
+            handled.countDown();
+            throw new IllegalStateException("boom");
+          }
+        })
+        .addHandler("charge.succeeded", new WebhookEventHandler() {
+          @Override
+          public void onEvent(Event event) {
+            handled.countDown();
+          }
+        })
+        .build();
+    receiver.start();
+
+    String payload = payload("evt_1", "charge.failed");
+    post("/webhooks", payload, sign(payload, SECRET));
+    payload = payload("evt_2", "charge.succeeded");
+    post("/webhooks", payload, sign(payload, SECRET));
+    assertTrue(handled.await(5, TimeUnit.SECONDS));
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (receiver.getStats().getEventTypes().size() < 2 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    final WebhookEventTypeStats failed =
+        receiver.getStats().getEventTypes().get("charge.failed");
+    assertEquals(1, failed.getHandled());
+    assertEquals(1, failed.getFailed());
+    final WebhookEventTypeStats succeeded =
+        receiver.getStats().getEventTypes().get("charge.succeeded");
+    assertEquals(1, succeeded.getHandled());
+    assertEquals(0, succeeded.getFailed());
+    assertTrue(succeeded.getMeanLatencyNanos() >= succeeded.getMeanHandlerNanos());
+  }
+}
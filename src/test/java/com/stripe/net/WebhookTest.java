@@ -9,6 +9,10 @@ import com.stripe.BaseStripeTest;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.Event;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
@@ -85,6 +89,87 @@ public class WebhookTest extends BaseStripeTest {
     Webhook.constructEvent(payload, sigHeader, secret);
   }
 
+  @Test(expected = SignatureVerificationException.class)
+  public void testInvalidJsonAndInvalidSignature() throws SignatureVerificationException,
+      NoSuchAlgorithmException, InvalidKeyException {
+    // the signature is checked before the payload is parsed
+    final Map<String, Object> options = new HashMap<>();
+    options.put("signature", "bad_signature");
+    final String sigHeader = generateSigHeader(options);
+
+    Webhook.constructEvent("this is not valid JSON", sigHeader, secret);
+  }
+
+  @Test
+  public void testValidBytesAndHeader() throws SignatureVerificationException,
+      NoSuchAlgorithmException, InvalidKeyException {
+    final String sigHeader = generateSigHeader();
+
+    final Event event = Webhook.constructEvent(payload.getBytes(StandardCharsets.UTF_8),
+        sigHeader, secret);
+
+    assertEquals("evt_test_webhook", event.getId());
+  }
+
+  @Test
+  public void testValidByteBufferAndHeader() throws SignatureVerificationException,
+      NoSuchAlgorithmException, InvalidKeyException {
+    final String sigHeader = generateSigHeader();
+    final byte[] body = ("HTTP body: " + payload).getBytes(StandardCharsets.UTF_8);
+    final ByteBuffer buffer = ByteBuffer.wrap(body);
+    buffer.position("HTTP body: ".length());
+
+    assertTrue(Webhook.Signature.verifyHeader(buffer, sigHeader, secret, 10));
+    assertEquals("HTTP body: ".length(), buffer.position());
+  }
+
+  @Test
+  public void testValidInputStreamAndHeader() throws SignatureVerificationException,
+      NoSuchAlgorithmException, InvalidKeyException, IOException {
+    final String sigHeader = generateSigHeader();
+
+    assertTrue(Webhook.Signature.verifyHeader(
+        new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)), sigHeader, secret,
+        10));
+  }
+
+  @Test
+  public void testLargeMultibytePayload() throws SignatureVerificationException,
+      NoSuchAlgorithmException, InvalidKeyException, IOException {
+    // multi-byte characters straddle the boundaries of the chunks fed to the MAC
+    final StringBuilder builder = new StringBuilder("{\"description\": \"");
+    for (int i = 0; i < 5000; i++) {
+      builder.append((char) 0xe9).append(Character.toChars(0x1f600));
+    }
+    final String payload = builder.append("\"}").toString();
+    final Map<String, Object> options = new HashMap<>();
+    options.put("payload", payload);
+    final String sigHeader = generateSigHeader(options);
+
+    assertTrue(Webhook.Signature.verifyHeader(payload, sigHeader, secret, 10));
+    assertTrue(Webhook.Signature.verifyHeader(payload.getBytes(StandardCharsets.UTF_8),
+        sigHeader, secret, 10));
+    assertTrue(Webhook.Signature.verifyHeader(
+        new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)), sigHeader, secret,
+        10));
+  }
+
+  @Test
+  public void testNonNumericTimestamp() throws SignatureVerificationException {
+    thrown.expect(SignatureVerificationException.class);
+    thrown.expectMessage("Unable to extract timestamp and signatures from header");
+
+    Webhook.Signature.verifyHeader(payload, "t=soon,v1=abcdef", secret, 0);
+  }
+
+  @Test
+  public void testHeaderWithUnknownItems() throws SignatureVerificationException,
+      NoSuchAlgorithmException, InvalidKeyException {
+    final String sigHeader = String.format("v0=abc,%s,extra,v1=", generateSigHeader());
+
+    assertTrue(Webhook.Signature.verifyHeader(payload, sigHeader, secret, 10));
+  }
+
   @Test(expected = SignatureVerificationException.class)
   public void testValidJsonAndInvalidHeader() throws SignatureVerificationException {
     final String sigHeader = "bad_header";
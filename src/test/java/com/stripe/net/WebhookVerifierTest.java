@@ -0,0 +1,119 @@
+package com.stripe.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.stripe.exception.SignatureVerificationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import org.junit.Test;
+
+public class WebhookVerifierTest {
+  private static final String CURRENT = "whsec_current";
+  private static final String PREVIOUS = "whsec_previous";
+  private static final String PAYLOAD =
+      "{\n  \"id\": \"evt_test_webhook\",\n  \"object\": \"event\"\n}";
+
+  private final WebhookVerifier verifier = WebhookVerifier.builder()
+      .addSecret(CURRENT)
+      .addSecret(PREVIOUS)
+      .build();
+
+  private static String signature(String payload, String secret, long timestamp)
+      throws NoSuchAlgorithmException, InvalidKeyException {
+    return "v1=" + Webhook.Util.computeHmacSha256(secret, timestamp + "." + payload);
+  }
+
+  private static String header(String payload, String... secrets)
+      throws NoSuchAlgorithmException, InvalidKeyException {
+    final long timestamp = Webhook.Util.getTimeNow();
+    final StringBuilder header = new StringBuilder("t=").append(timestamp);
+    for (String secret : secrets) {
+      header.append(',').append(signature(payload, secret, timestamp));
+    }
+    return header.toString();
+  }
+
+  @Test
+  public void testReportsMatchingSecret() throws Exception {
+    assertEquals(0, verifier.verifyHeader(PAYLOAD, header(PAYLOAD, CURRENT)));
+    assertEquals(1, verifier.verifyHeader(PAYLOAD, header(PAYLOAD, PREVIOUS)));
+    // during a roll, Stripe sends a signature for each secret
+    assertEquals(0, verifier.verifyHeader(PAYLOAD, header(PAYLOAD, PREVIOUS, CURRENT)));
+  }
+
+  @Test
+  public void testVerifiesEveryPayloadType() throws Exception {
+    final StringBuilder large = new StringBuilder();
+    while (large.length() < 50000) {
+      large.append("caf").append((char) 0xe9).append(Character.toChars(0x1f600)).append(' ');
+    }
+    final String payload = large.toString();
+    final byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+    final String header = header(payload, PREVIOUS);
+
+    assertEquals(1, verifier.verifyHeader(payload, header));
+    assertEquals(1, verifier.verifyHeader(bytes, header));
+    assertEquals(1, verifier.verifyHeader(new ByteArrayInputStream(bytes), header));
+
+    final ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 10);
+    buffer.position(10);
+    buffer.mark();
+    buffer.put(bytes);
+    buffer.reset();
+    assertEquals(1, verifier.verifyHeader(buffer, header));
+    assertEquals(10, buffer.position());
+  }
+
+  @Test
+  public void testRejectsUnknownSecret() throws Exception {
+    try {
+      verifier.verifyHeader(PAYLOAD, header(PAYLOAD, "whsec_other"));
+      fail("the signature should not have been accepted");
+    } catch (SignatureVerificationException e) {
+      assertEquals("No signatures found matching the expected signature for payload",
+          e.getMessage());
+    }
+  }
+
+  @Test
+  public void testRejectsEmptySignature() throws Exception {
+    final String header = "t=" + Webhook.Util.getTimeNow() + ",v1=";
+    try {
+      verifier.constructEvent(PAYLOAD, header);
+      fail("an empty signature should not have been accepted");
+    } catch (SignatureVerificationException e) {
+      assertEquals("No signatures found matching the expected signature for payload",
+          e.getMessage());
+    }
+    try {
+      verifier.verifyHeader(PAYLOAD, header + ",v1=abcd");
+      fail("a short signature should not have been accepted");
+    } catch (SignatureVerificationException e) {
+      assertEquals("No signatures found matching the expected signature for payload",
+          e.getMessage());
+    }
+  }
+
+  @Test(expected = SignatureVerificationException.class)
+  public void testRejectsOldTimestamp() throws Exception {
+    final long timestamp = Webhook.Util.getTimeNow() - 600;
+    verifier.verifyHeader(PAYLOAD, "t=" + timestamp + "," + signature(PAYLOAD, CURRENT,
+        timestamp));
+  }
+
+  @Test
+  public void testConstructsEvent() throws SignatureVerificationException, IOException,
+      NoSuchAlgorithmException, InvalidKeyException {
+    assertEquals("evt_test_webhook",
+        verifier.constructEvent(PAYLOAD, header(PAYLOAD, PREVIOUS)).getId());
+    assertEquals("evt_test_webhook", verifier.constructEvent(
+        PAYLOAD.getBytes(StandardCharsets.UTF_8), header(PAYLOAD, CURRENT)).getId());
+  }
+}
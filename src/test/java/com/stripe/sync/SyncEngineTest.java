@@ -0,0 +1,200 @@
+package com.stripe.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.stripe.BaseStripeTest;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Customer;
+import com.stripe.model.EventCollection;
+import com.stripe.net.ApiResource;
+import com.stripe.net.LiveStripeResponseGetter;
+import com.stripe.net.RequestOptions;
+import com.stripe.net.StripeResponseStream;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class SyncEngineTest extends BaseStripeTest {
+  private static final String CUSTOMERS = "{\"object\": \"list\", \"url\": \"/v1/customers\", "
+      + "\"has_more\": false, \"data\": ["
+      + "{\"id\": \"cus_1\", \"object\": \"customer\", \"description\": \"old\"},"
+      + "{\"id\": \"cus_2\", \"object\": \"customer\", \"description\": \"second\"}]}";
+
+  // event lists, keyed by their ending_before cursor, or by "newest" and "created"
+  private final Map<String, String> eventPages = new HashMap<>();
+  private final List<Map<String, Object>> eventRequests = new ArrayList<>();
+
+  private static String event(String id, long created, String type, String object,
+      String previousAttributes) {
+    return String.format("{\"id\": \"%s\", \"object\": \"event\", \"created\": %d, "
+        + "\"type\": \"%s\", \"data\": {\"object\": %s%s}}", id, created, type, object,
+        (previousAttributes != null) ? ", \"previous_attributes\": " + previousAttributes : "");
+  }
+
+  private static String list(boolean hasMore, String... events) {
+    final StringBuilder data = new StringBuilder();
+    for (String event : events) {
+      data.append((data.length() > 0) ? ", " : "").append(event);
+    }
+    return String.format("{\"object\": \"list\", \"url\": \"/v1/events\", \"has_more\": %s, "
+        + "\"data\": [%s]}", hasMore, data);
+  }
+
+  /**
+   * Serves the customer list as a stream, and the event lists from {@link #eventPages}.
+   */
+  @Before
+  public void setUpMockLists() throws StripeException {
+    Mockito
+        .doAnswer(new Answer<StripeResponseStream>() {
+          @Override
+          public StripeResponseStream answer(InvocationOnMock invocation) {
+            final StripeResponseStream response = Mockito.mock(StripeResponseStream.class);
+            Mockito.when(response.body()).thenReturn(
+                new ByteArrayInputStream(CUSTOMERS.getBytes(StandardCharsets.UTF_8)));
+            return response;
+          }
+        })
+        .when((LiveStripeResponseGetter) networkSpy).streamRequest(
+          Mockito.any(ApiResource.RequestMethod.class),
+          Mockito.anyString(),
+          Mockito.<Map<String, Object>>any(),
+          Mockito.<RequestOptions>any()
+      );
+
+    Mockito
+        .doAnswer(new Answer<EventCollection>() {
+          @Override
+          public EventCollection answer(InvocationOnMock invocation) {
+            final Map<String, Object> params = invocation.getArgument(2);
+            eventRequests.add(params);
+            String key = (String) params.get("ending_before");
+            if (key == null) {
+              key = params.containsKey("created") ? "created" : "newest";
+            }
+            final String page = eventPages.containsKey(key) ? eventPages.get(key) : list(false);
+            return ApiResource.GSON.fromJson(page, EventCollection.class);
+          }
+        })
+        .when(networkSpy).request(
+          Mockito.eq(ApiResource.RequestMethod.GET),
+          Mockito.endsWith("/v1/events"),
+          Mockito.<Map<String, Object>>any(),
+          Mockito.<Class<EventCollection>>any(),
+          Mockito.any(ApiResource.RequestType.class),
+          Mockito.<RequestOptions>any()
+      );
+  }
+
+  @Test
+  public void testBootstrapsThenAppliesEventsInOrder() throws StripeException {
+    eventPages.put("newest", list(false, event("evt_1", 1000, "customer.created",
+        "{\"id\": \"cus_2\", \"object\": \"customer\"}", null)));
+    eventPages.put("evt_1", list(false,
+        event("evt_3", 1002, "customer.deleted",
+            "{\"id\": \"cus_2\", \"object\": \"customer\"}", null),
+        event("evt_2", 1001, "customer.updated",
+            "{\"id\": \"cus_1\", \"object\": \"customer\", \"description\": \"new\"}",
+            "{\"description\": \"old\"}")));
+
+    final InMemorySyncStore store = new InMemorySyncStore();
+    final List<SyncChange> changes = new ArrayList<>();
+    final SyncEngine engine = SyncEngine.builder()
+        .setStore(new SyncStore() {
+          @Override
+          public void apply(SyncChange change) {
+            changes.add(change);
+            store.apply(change);
+          }
+
+          @Override
+          public SyncPosition getPosition() {
+            return store.getPosition();
+          }
+
+          @Override
+          public void setPosition(SyncPosition position) {
+            store.setPosition(position);
+          }
+        })
+        .addResource(Customer.class)
+        .build();
+
+    assertEquals(4, engine.sync());
+
+    assertEquals(SyncChange.Kind.SNAPSHOT, changes.get(0).getKind());
+    assertEquals(SyncChange.Kind.UPDATED, changes.get(2).getKind());
+    assertEquals("old", changes.get(2).getPreviousAttributes().get("description"));
+    assertEquals(SyncChange.Kind.DELETED, changes.get(3).getKind());
+
+    assertEquals("new", store.get(Customer.class, "cus_1").getDescription());
+    assertNull(store.get(Customer.class, "cus_2"));
+    assertEquals("evt_3", store.getPosition().getEventId());
+    assertEquals(1002, store.getPosition().getCreated());
+
+    // nothing new: the next sync only asks for the events after evt_3
+    assertEquals(0, engine.sync());
+    assertEquals("evt_3", eventRequests.get(eventRequests.size() - 1).get("ending_before"));
+    assertEquals(2, engine.getStats().getSnapshots());
+    assertEquals(2, engine.getStats().getEventsApplied());
+  }
+
+  @Test
+  public void testFollowsPagesAndIgnoresOtherResources() throws StripeException {
+    final InMemorySyncStore store = new InMemorySyncStore();
+    store.setPosition(new SyncPosition("evt_1", 1000));
+    eventPages.put("evt_1", list(true,
+        event("evt_3", 1002, "charge.succeeded", "{\"id\": \"ch_1\", \"object\": \"charge\"}",
+            null),
+        event("evt_2", 1001, "customer.created", "{\"id\": \"cus_3\", \"object\": \"customer\"}",
+            null)));
+    eventPages.put("evt_3", list(false,
+        event("evt_4", 1003, "customer.updated",
+            "{\"id\": \"cus_3\", \"object\": \"customer\", \"description\": \"d\"}",
+            "{\"description\": null}")));
+
+    final SyncEngine engine = SyncEngine.builder()
+        .setStore(store)
+        .addResource(Customer.class)
+        .build();
+
+    assertEquals(2, engine.sync());
+    assertEquals("d", store.get(Customer.class, "cus_3").getDescription());
+    assertEquals("evt_4", store.getPosition().getEventId());
+    assertEquals(1, engine.getStats().getEventsIgnored());
+    assertEquals(2, engine.getStats().getEventPages());
+  }
+
+  @Test
+  public void testTailsByTimeWhenNoEventExisted() throws StripeException {
+    final InMemorySyncStore store = new InMemorySyncStore();
+    eventPages.put("created", list(false,
+        event("evt_2", 2001, "customer.updated",
+            "{\"id\": \"cus_1\", \"object\": \"customer\", \"description\": \"later\"}",
+            "{\"description\": \"old\"}"),
+        event("evt_1", 2000, "customer.created",
+            "{\"id\": \"cus_1\", \"object\": \"customer\", \"description\": \"old\"}", null)));
+
+    final SyncEngine engine = SyncEngine.builder()
+        .setStore(store)
+        .addResource(Customer.class)
+        .build();
+
+    assertEquals(4, engine.sync());
+    assertEquals("later", store.get(Customer.class, "cus_1").getDescription());
+    assertEquals(2, store.size(Customer.class));
+    assertEquals("evt_2", store.getPosition().getEventId());
+  }
+}